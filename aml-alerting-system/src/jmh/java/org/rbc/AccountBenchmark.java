@@ -0,0 +1,68 @@
+package org.rbc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.rbc.AMLAlertingConfiguration.ALERT_WINDOW_SECONDS;
+
+/**
+ * Measures {@link Account#addTransaction(long, int)} depending on the number of transactions in the alert window, with
+ * a window keeping each transaction and with bucketed windows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountBenchmark {
+
+    private static final int AMOUNT_COUNT = 1 << 12;
+
+    /**
+     * The number of transactions in the alert window once it is full.
+     */
+    @Param({"1", "16", "256", "4096"})
+    public int windowDepth;
+
+    /**
+     * The resolution of the bucketed windows, or 0 to keep each transaction.
+     */
+    @Param({"0", "1", "60"})
+    public int bucketSeconds;
+
+    private final int[] amounts = new int[AMOUNT_COUNT];
+    private Account account;
+    private long transactionCount;
+
+    @Setup(Level.Iteration)
+    public void createAccount() {
+        Random random = new Random(42);
+        for (int i = 0; i < AMOUNT_COUNT; i++) {
+            amounts[i] = random.nextInt(60000) + 1000;
+        }
+        account = new Account(1, AlertRuleSet.DEFAULT.withBucketSeconds(bucketSeconds).rulesFor(1));
+        transactionCount = 0;
+    }
+
+    @Benchmark
+    public boolean addTransaction() {
+        long i = transactionCount++;
+        // Spread the transactions so the window holds windowDepth of them
+        long timestamp = i * ALERT_WINDOW_SECONDS / windowDepth;
+        return account.addTransaction(timestamp, amounts[(int) i & (AMOUNT_COUNT - 1)]);
+    }
+}
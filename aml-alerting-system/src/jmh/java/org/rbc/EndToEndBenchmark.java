@@ -0,0 +1,109 @@
+package org.rbc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import utilities.LargeCSVGenerator;
+import utilities.LargeCSVGenerator.AccountDistribution;
+import utilities.LargeCSVGenerator.AmountDistribution;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the whole pipeline of {@link AMLAlertingSystem}, in rows per second: reading the CSV file, processing the
+ * transactions and encoding the results. The results are discarded rather than written, so the disk is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    static final int ROWS = 500_000;
+
+    @Param({"0", "4"})
+    public int ingestThreads;
+
+    @Param({"0", "4"})
+    public int shards;
+
+    @Param({"UNIFORM", "SKEWED"})
+    public AccountDistribution distribution;
+
+    private Path file;
+    private AMLAlertingOptions options;
+
+    @Setup(Level.Trial)
+    public void writeFile() throws IOException {
+        file = Files.createTempFile("aml-end-to-end-benchmark", ".csv");
+        // Enough accounts for even the hottest skewed account to stay below the limit of transactions per account
+        new LargeCSVGenerator(5000, 100, distribution, AmountDistribution.UNIFORM, 42).writeCsv(file, ROWS);
+        List<String> args = new ArrayList<>();
+        if (ingestThreads > 0)
+            args.add("--parallel-ingest=" + ingestThreads);
+        if (shards > 0)
+            args.add("--shards=" + shards);
+        args.add(file.toString());
+        options = AMLAlertingOptions.parse(args.toArray(String[]::new));
+
+        // Measure the processing rather than the console handler of the logger
+        ChannelOutputSink.logger.setLevel(java.util.logging.Level.WARNING);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void run() throws IOException {
+        try (ChannelOutputSink output = new ChannelOutputSink(new DiscardingChannel(), 0)) {
+            AMLAlertingSystem.run(options, AlertRuleSet.DEFAULT, output);
+        }
+    }
+
+    /**
+     * A channel dropping everything written to it.
+     */
+    private static class DiscardingChannel implements WritableByteChannel {
+        private boolean open = true;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int length = src.remaining();
+            src.position(src.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.rbc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import utilities.LargeCSVGenerator;
+import utilities.LargeCSVGenerator.AccountDistribution;
+import utilities.LargeCSVGenerator.AmountDistribution;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the CSV readers, in rows per second, from a file in the page cache to the sink.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    static final int ROWS = 1_000_000;
+
+    /**
+     * The number of threads of the parallel reader, or 0 for the sequential reader.
+     */
+    @Param({"0", "4"})
+    public int ingestThreads;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void writeFile() throws IOException {
+        file = Files.createTempFile("aml-parse-benchmark", ".csv");
+        new LargeCSVGenerator(5000, 100, AccountDistribution.UNIFORM, AmountDistribution.UNIFORM, 42)
+                .writeCsv(file, ROWS);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void read(Blackhole blackhole) throws IOException {
+        TransactionSink sink = (timestamp, amount, accountId) -> {
+            blackhole.consume(timestamp);
+            blackhole.consume(amount);
+            blackhole.consume(accountId);
+        };
+        if (ingestThreads > 0)
+            new AMLParallelCSVReader(ingestThreads).forEachTransaction(file.toString(), sink);
+        else
+            AMLCSVReader.forEachTransaction(file.toString(), sink);
+    }
+}
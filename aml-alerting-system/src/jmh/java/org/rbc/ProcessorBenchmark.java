@@ -0,0 +1,102 @@
+package org.rbc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import utilities.LargeCSVGenerator.AccountDistribution;
+import utilities.LargeCSVGenerator.AmountDistribution;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link AMLTransactionProcessor#processTransaction(long, int, int)} with uniform and skewed accounts, on a
+ * single writer thread and with several threads sharing a locked processor. Other thread counts can be measured with
+ * the {@code -t} option of JMH.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessorBenchmark {
+
+    static final int ACCOUNTS = 5000;
+    static final int TRACE_LENGTH = 1 << 20;
+    static final int RATE_PER_SECOND = 1000;
+
+    /**
+     * The transactions replayed by one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Trace {
+        @Param({"UNIFORM", "SKEWED"})
+        public AccountDistribution distribution;
+
+        TransactionTrace trace;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            trace = new TransactionTrace(TRACE_LENGTH, ACCOUNTS, RATE_PER_SECOND, distribution,
+                    AmountDistribution.UNIFORM);
+        }
+    }
+
+    /**
+     * A processor owned by one benchmark thread. It is recreated on each iteration, as the thread running the
+     * iterations may change.
+     */
+    @State(Scope.Thread)
+    public static class SingleWriter {
+        AMLTransactionProcessor processor;
+
+        @Setup(Level.Iteration)
+        public void create() {
+            processor = new AMLTransactionProcessor(AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER);
+        }
+    }
+
+    /**
+     * A processor shared by all the benchmark threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Shared {
+        AMLTransactionProcessor processor;
+
+        @Setup(Level.Trial)
+        public void create() {
+            processor = new AMLTransactionProcessor(AMLTransactionProcessor.ConcurrencyMode.LOCKED);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void singleWriter(Trace trace, SingleWriter state, Blackhole blackhole) {
+        trace.trace.next((timestamp, amount, accountId) ->
+                blackhole.consume(state.processor.processTransaction(timestamp, amount, accountId)));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void locked(Trace trace, Shared state, Blackhole blackhole) {
+        trace.trace.next((timestamp, amount, accountId) ->
+                blackhole.consume(state.processor.processTransaction(timestamp, amount, accountId)));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void lockedFourThreads(Trace trace, Shared state, Blackhole blackhole) {
+        trace.trace.next((timestamp, amount, accountId) ->
+                blackhole.consume(state.processor.processTransaction(timestamp, amount, accountId)));
+    }
+}
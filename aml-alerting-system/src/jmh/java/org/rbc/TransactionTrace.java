@@ -0,0 +1,46 @@
+package org.rbc;
+
+import utilities.LargeCSVGenerator;
+import utilities.LargeCSVGenerator.AccountDistribution;
+import utilities.LargeCSVGenerator.AmountDistribution;
+
+/**
+ * A generated sequence of transactions replayed in a loop by the benchmarks.
+ * <p>
+ * Each replay of the trace is shifted in time by the duration of the trace, so the times keep increasing and the
+ * windows keep evicting their old transactions as they would with an endless chronological stream. This class is not
+ * thread-safe: each benchmark thread replays its own trace.
+ */
+class TransactionTrace {
+
+    private final TransactionBatch batch;
+    private final long duration;
+    private int index;
+    private long offset;
+
+    /**
+     * @param count               The number of transactions of the trace.
+     * @param accountCount        The number of distinct accounts.
+     * @param ratePerSecond       The number of transactions per second.
+     * @param accountDistribution How the transactions are spread among the accounts.
+     * @param amountDistribution  How the amounts are drawn.
+     */
+    TransactionTrace(int count, int accountCount, int ratePerSecond, AccountDistribution accountDistribution,
+                     AmountDistribution amountDistribution) {
+        this.batch = new TransactionBatch(count);
+        new LargeCSVGenerator(accountCount, ratePerSecond, accountDistribution, amountDistribution, 42)
+                .generate(count, batch::accept);
+        this.duration = batch.timestamp(count - 1) - batch.timestamp(0) + 1;
+    }
+
+    /**
+     * Hands the next transaction of the trace to the sink.
+     */
+    void next(TransactionSink sink) {
+        sink.accept(batch.timestamp(index) + offset, batch.amount(index), batch.accountId(index));
+        if (++index == batch.size()) {
+            index = 0;
+            offset += duration;
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package org.rbc;
+
+import java.util.Arrays;
+
+/**
+ * The command-line options of the {@link AMLAlertingSystem}.
+ * Options have the form {@code --name} or {@code --name=value} and must precede the path of the input file.
+ * The path {@code -} reads the standard input, and no path is given when listening on a port, or when running as a
+ * node.
+ */
+class AMLAlertingOptions {
+
+    static final String USAGE = "Usage: java AMLAlertingSystem [--parallel-ingest[=<threads>]] [--shards[=<count>]]"
+            + " [--evict-idle-accounts] [--account-cache-cap=<accounts>] [--output=<file>] [--log-sample=<rows>]"
+            + " [--rules=<file>] [--bucket-seconds=<seconds>] [--groups=<file> [--groups-reload=<seconds>]]"
+            + " [--metrics[=<seconds>]] [--query-port=<port>]"
+            + " [--checkpoint=<file>] [--checkpoint-interval=<seconds>] [--max-lateness=<seconds>]"
+            + " [--when-full=<block|shed>] [--alert-journal=<file> [--journal-only]] [--virtual-threads] [--follow]"
+            + " <csv_file_path|->"
+            + " | [options] --listen=<port>"
+            + " | [options] --nodes=<file> [--nodes-reload=<seconds>] <csv_file_path|->"
+            + " | [--rules=<file>] [--shards[=<count>]] [--metrics[=<seconds>]] --node=<port>"
+            + " | --convert=<columnar_file> <csv_file_path>"
+            + " | [options] --sweep-thresholds=<amounts> --sweep-windows=<seconds> <csv_file_path>";
+
+    /**
+     * The path reading the transactions from the standard input.
+     */
+    static final String STANDARD_INPUT = "-";
+
+    static final int DEFAULT_GROUPS_RELOAD_SECONDS = 10;
+
+    static final int DEFAULT_NODES_RELOAD_SECONDS = 10;
+
+    private String inputFilePath;
+
+    /**
+     * The number of threads parsing the input file, or 0 to parse it sequentially on the main thread.
+     */
+    private int ingestThreads;
+
+    /**
+     * The number of shards processing the transactions in parallel, or 0 to process them on a single thread.
+     */
+    private int shards;
+
+    private boolean evictIdleAccounts;
+
+    /**
+     * The number of accounts above which the idle accounts are evicted right away, or 0 if there is no cap.
+     * With several shards, it applies to each shard.
+     */
+    private int accountCacheCap;
+
+    /**
+     * The file the results are written to, or {@code null} to write them to the standard output.
+     */
+    private String outputFilePath;
+
+    /**
+     * 0 to send the alerts to the logger, or N to send one row in N.
+     */
+    private int logSampleInterval;
+
+    /**
+     * The file defining the alert rules, or {@code null} to use the rule of {@link AMLAlertingConfiguration}.
+     */
+    private String rulesFilePath;
+
+    /**
+     * The resolution of the bucketed windows of the accounts: 1 for the exact mode, more for the approximate mode, or
+     * 0 to keep each transaction in the windows.
+     */
+    private int bucketSeconds;
+
+    /**
+     * The file mapping the accounts to their groups, or {@code null} if there is no group.
+     */
+    private String groupsFilePath;
+
+    private int groupsReloadSeconds = DEFAULT_GROUPS_RELOAD_SECONDS;
+
+    /**
+     * Whether the metrics are collected and exposed through JMX.
+     */
+    private boolean metrics;
+
+    /**
+     * The interval between two dumps of the metrics to the logger, in seconds, or 0 to dump them only at the end.
+     */
+    private int metricsDumpSeconds;
+
+    /**
+     * The file the state of the accounts is saved to and restored from, or {@code null} not to save it.
+     */
+    private String checkpointFilePath;
+
+    private int checkpointIntervalSeconds = CheckpointingSink.DEFAULT_INTERVAL_SECONDS;
+
+    /**
+     * How late a transaction may arrive after a later one, in seconds, or -1 if the input is in chronological order.
+     */
+    private int maxLatenessSeconds = -1;
+
+    /**
+     * What happens to a transaction read while the queue of the engine is full.
+     */
+    private TransactionRingBuffer.OverflowPolicy overflowPolicy = TransactionRingBuffer.OverflowPolicy.BLOCK;
+
+    /**
+     * The columnar file the input file is converted to, or {@code null} to process the input file.
+     */
+    private String convertFilePath;
+
+    /**
+     * The file the alert episodes are appended to, or {@code null} not to track the episodes.
+     */
+    private String alertJournalFilePath;
+
+    /**
+     * Whether only the alert episodes are written, without the result of each transaction.
+     */
+    private boolean journalOnly;
+
+    /**
+     * The thresholds of the grid of a backtest, or {@code null} to use the threshold of the baseline rule.
+     */
+    private long[] sweepThresholds;
+
+    /**
+     * The window durations of the grid of a backtest, or {@code null} to use the window of the baseline rule.
+     */
+    private int[] sweepWindowSeconds;
+
+    /**
+     * Whether the I/O stages run on virtual threads, see {@link IoThreads}.
+     */
+    private boolean virtualThreads;
+
+    /**
+     * Whether the input file keeps being read as it grows, instead of stopping at its end.
+     */
+    private boolean follow;
+
+    /**
+     * The port to receive the transactions on, or 0 to read them from the input file.
+     */
+    private int listenPort;
+
+    /**
+     * The port a node of a partitioned deployment listens on for its router, or 0 if this is not a node.
+     */
+    private int nodePort;
+
+    /**
+     * The file listing the nodes the transactions are routed to, or {@code null} to process them in this process.
+     */
+    private String nodesFilePath;
+
+    private int nodesReloadSeconds = DEFAULT_NODES_RELOAD_SECONDS;
+
+    /**
+     * The port serving the windows of the accounts over HTTP, or 0 if they are not served.
+     */
+    private int queryPort;
+
+    /**
+     * Parses the command-line arguments.
+     *
+     * @param args The command-line arguments.
+     * @return The parsed options.
+     * @throws IllegalArgumentException If the arguments are not valid.
+     */
+    public static AMLAlertingOptions parse(String[] args) {
+        AMLAlertingOptions options = new AMLAlertingOptions();
+        int i = 0;
+        for (; i < args.length && args[i].startsWith("--"); i++) {
+            String name = args[i];
+            String value = null;
+            int separator = name.indexOf('=');
+            if (separator >= 0) {
+                value = name.substring(separator + 1);
+                name = name.substring(0, separator);
+            }
+
+            switch (name) {
+                case "--parallel-ingest" -> options.ingestThreads = threadCount(name, value);
+                case "--shards" -> options.shards = threadCount(name, value);
+                case "--evict-idle-accounts" -> options.evictIdleAccounts = true;
+                case "--account-cache-cap" -> options.accountCacheCap = positiveInt(name, value);
+                case "--output" -> options.outputFilePath = requiredValue(name, value);
+                case "--log-sample" -> options.logSampleInterval = positiveInt(name, value);
+                case "--rules" -> options.rulesFilePath = requiredValue(name, value);
+                case "--bucket-seconds" -> options.bucketSeconds = positiveInt(name, value);
+                case "--groups" -> options.groupsFilePath = requiredValue(name, value);
+                case "--groups-reload" -> options.groupsReloadSeconds = positiveInt(name, value);
+                case "--metrics" -> {
+                    options.metrics = true;
+                    options.metricsDumpSeconds = value == null ? 0 : positiveInt(name, value);
+                }
+                case "--checkpoint" -> options.checkpointFilePath = requiredValue(name, value);
+                case "--checkpoint-interval" -> options.checkpointIntervalSeconds = positiveInt(name, value);
+                case "--max-lateness" -> options.maxLatenessSeconds = lateness(name, value);
+                case "--when-full" -> options.overflowPolicy = overflowPolicy(name, value);
+                case "--alert-journal" -> options.alertJournalFilePath = requiredValue(name, value);
+                case "--journal-only" -> options.journalOnly = true;
+                case "--sweep-thresholds" -> options.sweepThresholds = Arrays.stream(positiveList(name, value))
+                        .asLongStream().toArray();
+                case "--sweep-windows" -> options.sweepWindowSeconds = positiveList(name, value);
+                case "--virtual-threads" -> options.virtualThreads = true;
+                case "--convert" -> options.convertFilePath = requiredValue(name, value);
+                case "--follow" -> options.follow = true;
+                case "--listen" -> options.listenPort = port(name, value);
+                case "--node" -> options.nodePort = port(name, value);
+                case "--nodes" -> options.nodesFilePath = requiredValue(name, value);
+                case "--nodes-reload" -> options.nodesReloadSeconds = positiveInt(name, value);
+                case "--query-port" -> options.queryPort = port(name, value);
+                default -> throw new IllegalArgumentException("Unknown option " + name + ". " + USAGE);
+            }
+        }
+
+        if (args.length - i != (options.listenPort > 0 || options.nodePort > 0 ? 0 : 1))
+            throw new IllegalArgumentException(USAGE);
+        if (options.listenPort == 0 && options.nodePort == 0)
+            options.inputFilePath = args[i];
+        if (options.isStreaming() && options.ingestThreads > 0)
+            throw new IllegalArgumentException("A stream cannot be parsed in parallel. " + USAGE);
+        if (options.follow && (options.listenPort > 0 || STANDARD_INPUT.equals(options.inputFilePath)))
+            throw new IllegalArgumentException("Only a file can be followed. " + USAGE);
+        if (options.checkpointFilePath != null && (options.listenPort > 0
+                || STANDARD_INPUT.equals(options.inputFilePath) || options.ingestThreads > 0))
+            throw new IllegalArgumentException("Checkpoints require a file read sequentially, to resume from. "
+                    + USAGE);
+        if (options.checkpointFilePath != null && options.maxLatenessSeconds >= 0)
+            throw new IllegalArgumentException("Checkpoints cannot include the transactions waiting to be reordered. "
+                    + USAGE);
+        if (options.convertFilePath != null && options.isStreaming())
+            throw new IllegalArgumentException("Only a file can be converted. " + USAGE);
+        if (options.isBacktest() && (options.isStreaming() || options.checkpointFilePath != null
+                || options.convertFilePath != null))
+            throw new IllegalArgumentException("A backtest reads a whole file, without checkpoints. " + USAGE);
+        if (options.isBacktest() && options.bucketSeconds > 0)
+            throw new IllegalArgumentException("A backtest keeps each transaction in the windows. " + USAGE);
+        if (options.groupsFilePath != null && (options.checkpointFilePath != null || options.isBacktest()))
+            throw new IllegalArgumentException("The windows of the groups are neither checkpointed nor backtested. "
+                    + USAGE);
+        if (options.journalOnly && options.alertJournalFilePath == null)
+            throw new IllegalArgumentException("Only writing the alert episodes requires an alert journal. " + USAGE);
+        if (options.alertJournalFilePath != null && (options.isBacktest() || options.convertFilePath != null))
+            throw new IllegalArgumentException("Only the processing of the transactions writes an alert journal. "
+                    + USAGE);
+        if (options.overflowPolicy == TransactionRingBuffer.OverflowPolicy.SHED && options.shards > 0)
+            throw new IllegalArgumentException("Only the single thread engine can shed the load. " + USAGE);
+        if (options.nodePort > 0 && (options.listenPort > 0 || options.nodesFilePath != null || options.follow
+                || options.ingestThreads > 0 || options.outputFilePath != null || options.groupsFilePath != null
+                || options.checkpointFilePath != null || options.maxLatenessSeconds >= 0
+                || options.overflowPolicy == TransactionRingBuffer.OverflowPolicy.SHED
+                || options.alertJournalFilePath != null || options.convertFilePath != null || options.isBacktest()
+                || options.queryPort > 0))
+            throw new IllegalArgumentException("A node only processes the transactions sent by its router, and sends"
+                    + " back all their results. " + USAGE);
+        if (options.nodesFilePath != null && (options.shards > 0 || options.groupsFilePath != null
+                || options.checkpointFilePath != null || options.isBacktest() || options.convertFilePath != null
+                || options.overflowPolicy == TransactionRingBuffer.OverflowPolicy.SHED))
+            throw new IllegalArgumentException("The transactions routed to the nodes are processed, sharded and"
+                    + " checkpointed by the nodes only. " + USAGE);
+        if (options.queryPort > 0 && (options.isBacktest() || options.convertFilePath != null
+                || options.nodesFilePath != null))
+            throw new IllegalArgumentException("Only the process holding the windows of the accounts can serve them. "
+                    + USAGE);
+        if (options.virtualThreads && !IoThreads.isVirtualSupported())
+            throw new IllegalArgumentException("Virtual threads require Java 21 or later, not " + Runtime.version());
+        return options;
+    }
+
+    /**
+     * @return The thread count given as value, or the number of processors if no value is given.
+     */
+    private static int threadCount(String name, String value) {
+        return value == null ? Runtime.getRuntime().availableProcessors() : positiveInt(name, value);
+    }
+
+    private static String requiredValue(String name, String value) {
+        if (value == null || value.isEmpty())
+            throw new IllegalArgumentException("The option " + name + " requires a value. " + USAGE);
+        return value;
+    }
+
+    private static int positiveInt(String name, String value) {
+        try {
+            int result = Integer.parseInt(requiredValue(name, value));
+            if (result > 0)
+                return result;
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("The value of " + name + " must be a positive integer: " + value);
+    }
+
+    /**
+     * @return The positive integers of a comma-separated list.
+     */
+    private static int[] positiveList(String name, String value) {
+        return Arrays.stream(requiredValue(name, value).split(",", -1))
+                .mapToInt(item -> positiveInt(name, item.trim()))
+                .toArray();
+    }
+
+    private static int lateness(String name, String value) {
+        try {
+            int result = Integer.parseInt(requiredValue(name, value));
+            if (result >= 0 && result <= EventTimeReorderer.MAX_LATENESS_SECONDS)
+                return result;
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("The value of " + name + " must be a number of seconds up to a day: "
+                + value);
+    }
+
+    private static TransactionRingBuffer.OverflowPolicy overflowPolicy(String name, String value) {
+        return switch (requiredValue(name, value)) {
+            case "block" -> TransactionRingBuffer.OverflowPolicy.BLOCK;
+            case "shed" -> TransactionRingBuffer.OverflowPolicy.SHED;
+            default -> throw new IllegalArgumentException("The value of " + name + " must be block or shed: " + value);
+        };
+    }
+
+    private static int port(String name, String value) {
+        int port = positiveInt(name, value);
+        if (port > 65535)
+            throw new IllegalArgumentException("The value of " + name + " must be a port number: " + value);
+        return port;
+    }
+
+    /**
+     * @return The path of the input file, {@link #STANDARD_INPUT}, or {@code null} when listening on a port.
+     */
+    public String getInputFilePath() {
+        return inputFilePath;
+    }
+
+    public int getIngestThreads() {
+        return ingestThreads;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    public boolean isEvictIdleAccounts() {
+        return evictIdleAccounts;
+    }
+
+    public int getAccountCacheCap() {
+        return accountCacheCap;
+    }
+
+    public String getOutputFilePath() {
+        return outputFilePath;
+    }
+
+    public int getLogSampleInterval() {
+        return logSampleInterval;
+    }
+
+    public String getRulesFilePath() {
+        return rulesFilePath;
+    }
+
+    public int getBucketSeconds() {
+        return bucketSeconds;
+    }
+
+    /**
+     * @return The file mapping the accounts to their groups, see {@link AccountGroups}, or {@code null} if there is
+     * no group.
+     */
+    public String getGroupsFilePath() {
+        return groupsFilePath;
+    }
+
+    /**
+     * @return The interval between two checks of the modification of the groups file, in seconds.
+     */
+    public int getGroupsReloadSeconds() {
+        return groupsReloadSeconds;
+    }
+
+    public boolean isMetrics() {
+        return metrics;
+    }
+
+    public int getMetricsDumpSeconds() {
+        return metricsDumpSeconds;
+    }
+
+    public String getCheckpointFilePath() {
+        return checkpointFilePath;
+    }
+
+    public int getCheckpointIntervalSeconds() {
+        return checkpointIntervalSeconds;
+    }
+
+    /**
+     * @return How late a transaction may arrive after a later one, in seconds, or -1 if the input is in chronological
+     * order.
+     */
+    public int getMaxLatenessSeconds() {
+        return maxLatenessSeconds;
+    }
+
+    public TransactionRingBuffer.OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * @return The columnar file the input file is converted to, or {@code null} to process the input file.
+     */
+    public String getConvertFilePath() {
+        return convertFilePath;
+    }
+
+    /**
+     * @return The file the alert episodes are appended to, see {@link AlertJournal}, or {@code null} not to track the
+     * episodes.
+     */
+    public String getAlertJournalFilePath() {
+        return alertJournalFilePath;
+    }
+
+    /**
+     * @return Whether only the alert episodes are written, without the result of each transaction.
+     */
+    public boolean isJournalOnly() {
+        return journalOnly;
+    }
+
+    /**
+     * @return Whether a grid of rules is backtested against the input file instead of processing it, see
+     * {@link BacktestSweep}.
+     */
+    public boolean isBacktest() {
+        return sweepThresholds != null || sweepWindowSeconds != null;
+    }
+
+    /**
+     * @return The thresholds of the grid of the backtest, or {@code null} if only the threshold of the baseline rule
+     * is tested.
+     */
+    public long[] getSweepThresholds() {
+        return sweepThresholds;
+    }
+
+    /**
+     * @return The window durations of the grid of the backtest, or {@code null} if only the window of the baseline
+     * rule is tested.
+     */
+    public int[] getSweepWindowSeconds() {
+        return sweepWindowSeconds;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public boolean isFollow() {
+        return follow;
+    }
+
+    public int getListenPort() {
+        return listenPort;
+    }
+
+    /**
+     * @return The port a node of a partitioned deployment listens on for its router, see {@link PartitionNode}, or 0
+     * if this is not a node.
+     */
+    public int getNodePort() {
+        return nodePort;
+    }
+
+    /**
+     * @return The file listing the nodes the transactions are routed to, see {@link PartitionRouter}, or
+     * {@code null} to process them in this process.
+     */
+    public String getNodesFilePath() {
+        return nodesFilePath;
+    }
+
+    /**
+     * @return The interval between two checks of the modification of the nodes file, in seconds.
+     */
+    public int getNodesReloadSeconds() {
+        return nodesReloadSeconds;
+    }
+
+    /**
+     * @return The port serving the windows of the accounts over HTTP, see {@link AccountQueryServer}, or 0 if they are
+     * not served.
+     */
+    public int getQueryPort() {
+        return queryPort;
+    }
+
+    /**
+     * @return Whether the transactions are an unbounded stream rather than a file read once.
+     */
+    public boolean isStreaming() {
+        return follow || listenPort > 0 || STANDARD_INPUT.equals(inputFilePath);
+    }
+}
@@ -1,47 +1,487 @@
 package org.rbc;
 
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.List;
-import java.util.concurrent.Executors;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 public class AMLAlertingSystem {
     public static final Logger logger = Logger.getLogger(AMLAlertingSystem.class.getName());
 
+    /**
+     * How long a shutdown waits for the transactions already read from a stream to be processed.
+     */
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * The property of the JDK HTTP server setting {@code TCP_NODELAY} on its connections.
+     */
+    private static final String HTTP_SERVER_NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
 
     /**
      * The main entry point of the AML Alerting System.
-     * For simplicity purposes, we are printing to the standard output. In Production, we would write to an output file.
-     * We are using a single thread executor to be able to queue up tasks for execution (decoupling file reading from
-     * transaction processing) while still ensuring that the input order is maintained in the output
+     * The results are written to the standard output, or to the output file given in the options, by a
+     * {@link ChannelOutputSink} which only sends the alerts (or a sample of the rows) to the logger.
+     * Transactions are streamed from the file to a {@link TransactionEngine}, so processing starts as soon as the first
+     * row is parsed, and the results are written in input order.
+     * With {@code --follow}, {@code --listen} or the standard input, the application keeps running on an unbounded
+     * stream: the bounded queues of the engine apply backpressure to the input, and the results are written as soon
+     * as the engine is idle.
+     * With {@code --metrics}, the metrics of the hot path are exposed through JMX and logged at the end of the run, and
+     * periodically if an interval is given.
+     * With {@code --checkpoint}, the state of the accounts is saved periodically along with the position in the input
+     * file, and restored at startup: the input is then read from that position and the results are appended to the
+     * output file.
+     * With {@code --max-lateness}, the transactions arriving out of order are put back in chronological order, within
+     * the given bound, before being processed, and the results are written in that order.
+     * The times given without a date move to the next day when the input crosses midnight, see
+     * {@link DayRolloverSink}.
+     * With {@code --virtual-threads}, the threads reading the connections and writing the results and the checkpoints
+     * are virtual threads, while the transactions are still processed on platform threads.
+     * With {@code --convert}, the input file is only converted to a {@link ColumnarTransactionFile}, which can then be
+     * given as input instead of the CSV file.
+     * With {@code --groups}, the transactions are also summed per group of accounts and evaluated against the group
+     * rules, see {@link GroupWindowTable}, and the groups file is reloaded whenever it changes.
+     * With {@code --alert-journal}, the alerts of each account are also compacted into episodes, see
+     * {@link AlertEpisodeTracker}, appended to a memory-mapped {@link AlertJournal}; with {@code --journal-only}, the
+     * result of each transaction is not written at all.
+     * With {@code --node}, the application is a node of a partitioned deployment, processing the transactions its
+     * router sends over a loopback connection, see {@link PartitionNode}. With {@code --nodes}, it is the router,
+     * reading the input and forwarding each transaction to the node owning its account, see {@link PartitionRouter};
+     * the partitions move between the nodes, with their windows, whenever the nodes file changes.
+     * With {@code --query-port}, the windows of the accounts can be read over HTTP while the transactions are
+     * processed, see {@link AccountQueryServer}.
+     * With {@code --sweep-thresholds} or {@code --sweep-windows}, the input file is only backtested against a grid of
+     * rules in a single pass, see {@link BacktestSweep}, and the report is written instead of the results.
      *
-     * @param args The command-line arguments. The first argument should be the path to the CSV file containing
-     *             transaction data.
-     * @throws IOException If an error occurs while reading the CSV file.
+     * @param args The command-line arguments, see {@link AMLAlertingOptions}. The last argument should be the path to
+     *             the CSV file containing transaction data, or {@code -} for the standard input.
+     * @throws IOException If an error occurs while reading the CSV file or writing the results.
      */
     public static void main(String[] args) throws IOException {
-        if (args.length != 1) {
-            throw new IllegalArgumentException("Usage: java AMLAlertingSystem <csv_file_path>");
+        AMLAlertingOptions options = AMLAlertingOptions.parse(args);
+        if (options.getConvertFilePath() != null) {
+            int rows = ColumnarTransactionFile.convert(Path.of(options.getInputFilePath()),
+                    Path.of(options.getConvertFilePath()));
+            logger.info("Converted " + rows + " transactions to " + options.getConvertFilePath());
+            return;
+        }
+        AlertRuleSet ruleSet = loadRuleSet(options);
+        if (options.getNodePort() > 0) {
+            serveNode(options, ruleSet);
+            return;
+        }
+        if (options.isBacktest()) {
+            BacktestSweep sweep = backtest(options, ruleSet);
+            try (Writer out = options.getOutputFilePath() == null
+                    ? new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out)))
+                    : Files.newBufferedWriter(Path.of(options.getOutputFilePath()))) {
+                sweep.writeReport(out);
+            }
+            return;
+        }
+
+        try (TransactionOutputSink output = options.isJournalOnly() ? null : createOutputSink(options, ruleSet);
+             AlertJournal journal = options.getAlertJournalFilePath() == null ? null
+                     : AlertJournal.open(Path.of(options.getAlertJournalFilePath()), isResuming(options),
+                     AlertJournal.DEFAULT_FORCE_INTERVAL_MILLIS, ioThreads(options))) {
+            run(options, ruleSet, journal == null ? output : trackEpisodes(ruleSet, journal, output));
+        }
+    }
+
+    /**
+     * Reads and processes the transactions of the input file, or of the stream, given in the options.
+     *
+     * @param options The command-line options.
+     * @param ruleSet The rules evaluated against each transaction.
+     * @param output  The listener receiving the results, in input order.
+     * @throws IOException If an error occurs while reading the CSV file.
+     */
+    static void run(AMLAlertingOptions options, AlertRuleSet ruleSet, TransactionResultListener output)
+            throws IOException {
+        if ((options.isFollow() || options.getCheckpointFilePath() != null)
+                && ColumnarTransactionFile.isColumnar(Path.of(options.getInputFilePath())))
+            throw new IllegalArgumentException("A columnar file cannot be followed or resumed from a checkpoint");
+        AMLMetrics metrics = options.isMetrics() ? startMetrics(options) : null;
+        try {
+            if (options.getNodesFilePath() != null) {
+                try (PartitionRouter router = createRouter(options, ruleSet, output)) {
+                    submitTransactions(options, router, metrics, rollover -> readInput(options, rollover));
+                }
+                return;
+            }
+            // The engine is closed first, so the writer gets the checkpoints still in its queues
+            try (AccountGroups groups = loadGroups(options);
+                 CheckpointWriter checkpointWriter = options.getCheckpointFilePath() == null ? null
+                         : new CheckpointWriter(Path.of(options.getCheckpointFilePath()), ioThreads(options));
+                 StatefulEngine engine = createEngine(options, ruleSet, metrics, groups == null ? null
+                         : new GroupWindowTable(groups, ruleSet, GroupWindowTable.DEFAULT_STRIPE_COUNT), output)) {
+                // Stopped before the engine is closed
+                AccountQueryServer queryServer = options.getQueryPort() > 0 ? startQueryServer(options, engine) : null;
+                try {
+                    submitTransactions(options, engine, metrics, rollover -> {
+                        if (checkpointWriter != null)
+                            readTransactionsWithCheckpoints(options, ruleSet, engine, rollover, checkpointWriter);
+                        else
+                            readInput(options, rollover);
+                    });
+                } finally {
+                    if (queryServer != null)
+                        queryServer.close();
+                }
+            }
+        } finally {
+            if (metrics != null)
+                stopMetrics(metrics);
+        }
+    }
+
+    /**
+     * Reads the transactions into the sink given to it.
+     */
+    private interface InputReader {
+        void read(DayRolloverSink rollover) throws IOException;
+    }
+
+    /**
+     * Submits the transactions to the engine through the stages requested by the options: the reordering of the late
+     * transactions, the metrics and the rollover of the days.
+     *
+     * @param metrics The metrics to update, or {@code null}.
+     * @param reader  Reads the transactions into the first stage.
+     */
+    private static void submitTransactions(AMLAlertingOptions options, TransactionEngine engine, AMLMetrics metrics,
+                                           InputReader reader) throws IOException {
+        EventTimeReorderer reorderer = options.getMaxLatenessSeconds() < 0 ? null
+                : new EventTimeReorderer(engine, options.getMaxLatenessSeconds());
+        TransactionSink sink = reorderer == null ? engine : reorderer;
+        if (metrics != null) {
+            metrics.setQueueDepth(engine::pendingTransactions);
+            TransactionSink processingSink = sink;
+            sink = (timestamp, amount, accountId) -> {
+                metrics.rowsParsed.increment();
+                processingSink.accept(timestamp, amount, accountId);
+            };
         }
+        reader.read(new DayRolloverSink(sink));
+        if (reorderer != null)
+            reorderer.flush();
+    }
+
+    /**
+     * Reads the transactions of the stream or of the input file given in the options, without checkpoints.
+     */
+    private static void readInput(AMLAlertingOptions options, TransactionSink sink) throws IOException {
+        if (options.isStreaming())
+            streamTransactions(createSource(options), sink);
+        else
+            readTransactions(options, sink);
+    }
+
+    private static AMLMetrics startMetrics(AMLAlertingOptions options) {
+        AMLMetrics metrics = new AMLMetrics();
+        metrics.registerMBean();
+        if (options.getMetricsDumpSeconds() > 0)
+            metrics.startPeriodicDump(options.getMetricsDumpSeconds());
+        return metrics;
+    }
+
+    private static void stopMetrics(AMLMetrics metrics) {
+        metrics.stopPeriodicDump();
+        metrics.unregisterMBean();
+        AMLMetrics.logger.info(metrics.dump());
+    }
+
+    /**
+     * @return Whether a checkpoint of a previous run exists, so the input is resumed from its position.
+     */
+    private static boolean isResuming(AMLAlertingOptions options) {
+        return options.getCheckpointFilePath() != null && Files.exists(Path.of(options.getCheckpointFilePath()));
+    }
+
+    /**
+     * Restores the checkpoint of a previous run, if there is one, then reads the input file from the position
+     * recorded in it, taking checkpoints periodically and at the end of the input.
+     */
+    private static void readTransactionsWithCheckpoints(AMLAlertingOptions options, AlertRuleSet ruleSet,
+                                                        StatefulEngine engine, DayRolloverSink rollover,
+                                                        CheckpointWriter writer) throws IOException {
+        long startOffset = 0;
+        long rowCount = 0;
+        if (isResuming(options)) {
+            Checkpoint checkpoint = Checkpoint.read(Path.of(options.getCheckpointFilePath()));
+            checkpoint.checkWindowLayout(ruleSet);
+            engine.restore(checkpoint);
+            rollover.resumeAfter(checkpoint.getLatestTimestamp());
+            startOffset = checkpoint.getInputOffset();
+            rowCount = checkpoint.getRowCount();
+            logger.info("Resuming after row " + rowCount + ", at offset " + startOffset + " of "
+                    + options.getInputFilePath());
+        }
+
+        TransactionSink sink = rollover;
+        if (!options.isFollow()) {
+            AccountLimitValidator validator = new AccountLimitValidator();
+            TransactionSink engineSink = sink;
+            sink = (timestamp, amount, accountId) -> {
+                validator.validate(accountId);
+                engineSink.accept(timestamp, amount, accountId);
+            };
+        }
+        long offset = startOffset;
+        ChannelTransactionSource source = createFileSource(options, startOffset);
+        try (CheckpointingSink checkpointing = new CheckpointingSink(sink, engine,
+                () -> offset + source.getLineEnd(), rowCount, options.getCheckpointIntervalSeconds(), writer)) {
+            streamTransactions(source, checkpointing);
+            checkpointing.checkpoint();
+        }
+    }
+
+    /**
+     * Serves the router of a partitioned deployment, until the process is stopped. Each router connection gets its own
+     * engine, as configured by the options.
+     */
+    private static void serveNode(AMLAlertingOptions options, AlertRuleSet ruleSet) throws IOException {
+        AMLMetrics metrics = options.isMetrics() ? startMetrics(options) : null;
+        try (PartitionNode node = new PartitionNode(options.getNodePort(), ruleSet.windowLayoutHash(),
+                listener -> createEngine(options, ruleSet, metrics, null, listener))) {
+            logger.info("Serving the partitions of a router on port " + node.getPort());
+            node.serve();
+        } finally {
+            if (metrics != null)
+                stopMetrics(metrics);
+        }
+    }
 
-        String inputFilePath = args[0];
-        List<Transaction> transactions = AMLCSVReader.readTransactions(inputFilePath);
+    /**
+     * Creates the tracker appending the alert episodes to the journal, with the episodes the journal left open when
+     * resuming.
+     *
+     * @param output The listener the results are forwarded to, or {@code null}.
+     */
+    private static AlertEpisodeTracker trackEpisodes(AlertRuleSet ruleSet, AlertJournal journal,
+                                                     TransactionResultListener output) {
+        AlertEpisodeTracker tracker = new AlertEpisodeTracker(AlertEpisodeTracker.longestWindowSeconds(ruleSet),
+                journal, output);
+        journal.getOpenEpisodes().forEach(tracker::restoreOpenEpisode);
+        return tracker;
+    }
+
+    /**
+     * Backtests the grid of rules given in the options against the input file, in a single pass. The rule of the rule
+     * set is the baseline the alerts of the grid are compared with, and gives the threshold or the window of the grid
+     * when the options only sweep the other one.
+     *
+     * @throws IllegalArgumentException If the rule set has several rules, or a rule only applying to a segment of the
+     *                                  accounts.
+     * @throws IOException              If an error occurs while reading the input file.
+     */
+    static BacktestSweep backtest(AMLAlertingOptions options, AlertRuleSet ruleSet) throws IOException {
+        if (ruleSet.size() != 1)
+            throw new IllegalArgumentException("A backtest compares the grid with a single baseline rule");
+        AlertRule baseline = ruleSet.rule(0);
+        BacktestSweep sweep = new BacktestSweep(
+                options.getSweepThresholds() == null ? new long[]{baseline.threshold()} : options.getSweepThresholds(),
+                options.getSweepWindowSeconds() == null ? new int[]{baseline.windowSeconds()}
+                        : options.getSweepWindowSeconds(),
+                baseline);
+        EventTimeReorderer reorderer = options.getMaxLatenessSeconds() < 0 ? null
+                : new EventTimeReorderer(sweep, options.getMaxLatenessSeconds());
+        readTransactions(options, new DayRolloverSink(reorderer == null ? sweep : reorderer));
+        if (reorderer != null)
+            reorderer.flush();
+        logger.info("Backtested " + sweep.getThresholds().length * sweep.getWindowSeconds().length
+                + " configurations against " + sweep.getTransactionCount() + " transactions");
+        return sweep;
+    }
+
+    /**
+     * Loads the rules file given in the options, with the window resolution given in the options.
+     *
+     * @return The rules, or {@link AlertRuleSet#DEFAULT} if no rules file is given, or
+     * {@link AlertRuleSet#DEFAULT_WITH_GROUPS} if a groups file is given.
+     * @throws IllegalArgumentException If a groups file is given with rules without any group rule.
+     */
+    static AlertRuleSet loadRuleSet(AMLAlertingOptions options) throws IOException {
+        AlertRuleSet ruleSet = options.getRulesFilePath() != null
+                ? AlertRuleSet.load(Path.of(options.getRulesFilePath()))
+                : options.getGroupsFilePath() != null ? AlertRuleSet.DEFAULT_WITH_GROUPS : AlertRuleSet.DEFAULT;
+        if (options.getGroupsFilePath() != null && ruleSet.groupRules() == null)
+            throw new IllegalArgumentException("The groups require a rule with the group scope in "
+                    + options.getRulesFilePath());
+        return options.getBucketSeconds() > 0 ? ruleSet.withBucketSeconds(options.getBucketSeconds()) : ruleSet;
+    }
+
+    /**
+     * Loads the groups file given in the options, and watches it for changes.
+     *
+     * @return The groups, or {@code null} if no groups file is given.
+     */
+    private static AccountGroups loadGroups(AMLAlertingOptions options) throws IOException {
+        if (options.getGroupsFilePath() == null)
+            return null;
+        AccountGroups groups = AccountGroups.load(Path.of(options.getGroupsFilePath()));
+        groups.watch(options.getGroupsReloadSeconds() * 1000L, ioThreads(options));
+        logger.info("Loaded the groups of " + groups.size() + " accounts from " + options.getGroupsFilePath());
+        return groups;
+    }
+
+    /**
+     * Creates the sink writing the results to the output file given in the options, or to the standard output.
+     * The ids of the rules fired are written when the rules come from a rules file, or include the group rule.
+     */
+    private static TransactionOutputSink createOutputSink(AMLAlertingOptions options, AlertRuleSet ruleSet)
+            throws IOException {
+        WritableByteChannel channel = options.getOutputFilePath() == null
+                ? new FileOutputStream(FileDescriptor.out).getChannel()
+                : FileChannel.open(Path.of(options.getOutputFilePath()), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                isResuming(options) ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        return new ChannelOutputSink(channel, options.getLogSampleInterval(),
+                options.getRulesFilePath() == null && options.getGroupsFilePath() == null ? null : ruleSet,
+                ChannelOutputSink.DEFAULT_BUFFER_SIZE,
+                ioThreads(options));
+    }
+
+    /**
+     * @return The factory of the threads of the I/O stages: virtual threads if requested by the options.
+     */
+    private static IoThreads ioThreads(AMLAlertingOptions options) {
+        return options.isVirtualThreads() ? IoThreads.virtual() : IoThreads.PLATFORM;
+    }
 
-        AMLTransactionProcessor alertingSystem = new AMLTransactionProcessor();
-        var executorService = Executors.newSingleThreadExecutor();
-        for (Transaction transaction : transactions) {
-            executorService.submit(() -> {
-                boolean alert = alertingSystem.processTransaction(transaction);
-                String output = String.format("%s %d %d %s",
-                        transaction.timestamp(),
-                        transaction.amount(),
-                        transaction.accountId(),
-                        alert ? "Y" : "N");
-                logger.info(output);
-                System.out.println(output);  //For
-            });
+    /**
+     * Starts serving the windows of the accounts of the engine over HTTP.
+     * <p>
+     * The JDK server writes the headers and the body of a response separately: without {@code TCP_NODELAY}, the body
+     * waits for the delayed acknowledgement of the headers, which takes 40 ms per request on Linux. The server reads
+     * the property enabling it once, when the first one is created, so it is set here unless given on the command line.
+     */
+    private static AccountQueryServer startQueryServer(AMLAlertingOptions options, StatefulEngine engine)
+            throws IOException {
+        if (System.getProperty(HTTP_SERVER_NODELAY_PROPERTY) == null)
+            System.setProperty(HTTP_SERVER_NODELAY_PROPERTY, "true");
+        AccountQueryServer server = new AccountQueryServer(options.getQueryPort(), AccountQueryServer.DEFAULT_THREADS,
+                engine::queryWindow, ioThreads(options));
+        logger.info("Serving the windows of the accounts on http://localhost:" + server.getPort()
+                + AccountQueryServer.PATH);
+        return server;
+    }
+
+    /**
+     * Creates the router forwarding the transactions to the nodes listed in the file given in the options, and
+     * watches the file for changes.
+     */
+    private static PartitionRouter createRouter(AMLAlertingOptions options, AlertRuleSet ruleSet,
+                                                TransactionResultListener listener) throws IOException {
+        Path path = Path.of(options.getNodesFilePath());
+        PartitionRouter router = new PartitionRouter(PartitionRouter.readNodes(path), ruleSet.windowLayoutHash(),
+                PartitionRouter.DEFAULT_IN_FLIGHT, listener);
+        router.watchNodes(path, options.getNodesReloadSeconds() * 1000L, ioThreads(options));
+        logger.info("Routing the transactions to the nodes " + router.getRing().getNodes());
+        return router;
+    }
+
+    /**
+     * Creates the engine processing the transactions: a sharded engine if requested by the options, otherwise a
+     * single thread one.
+     *
+     * @param metrics The metrics updated by the processors, or {@code null}.
+     */
+    private static StatefulEngine createEngine(AMLAlertingOptions options, AlertRuleSet ruleSet,
+                                               AMLMetrics metrics, GroupWindowTable groupWindows,
+                                               TransactionResultListener listener) {
+        Supplier<AMLTransactionProcessor> processorFactory = () -> new AMLTransactionProcessor(
+                AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER,
+                options.isEvictIdleAccounts(),
+                options.getAccountCacheCap(),
+                ruleSet,
+                metrics,
+                groupWindows);
+        if (options.getShards() > 0)
+            return new ShardedTransactionEngine(options.getShards(), ShardedTransactionEngine.DEFAULT_QUEUE_CAPACITY,
+                    processorFactory, listener);
+        return new SingleThreadTransactionEngine(SingleThreadTransactionEngine.DEFAULT_QUEUE_CAPACITY,
+                options.getOverflowPolicy(), processorFactory, listener);
+    }
+
+    /**
+     * Reads the transactions of the source until its end, or until the JVM is asked to shut down. On shutdown, the
+     * source is closed and the transactions already read are processed and written out before the JVM exits.
+     */
+    private static void streamTransactions(TransactionSource source, TransactionSink sink) throws IOException {
+        try (source) {
+            Thread streamingThread = Thread.currentThread();
+            Thread shutdownHook = new Thread(() -> {
+                try {
+                    source.close();
+                    streamingThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+                } catch (IOException e) {
+                    logger.warning("Error closing the transaction stream: " + e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "aml-shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+            try {
+                source.forEachTransaction(sink);
+            } finally {
+                try {
+                    Runtime.getRuntime().removeShutdownHook(shutdownHook);
+                } catch (IllegalStateException e) {
+                    // The JVM is already shutting down
+                }
+            }
         }
+    }
+
+    /**
+     * Creates the source of the stream given in the options: a port, the standard input or a followed file.
+     */
+    private static TransactionSource createSource(AMLAlertingOptions options) throws IOException {
+        if (options.getListenPort() > 0) {
+            SocketTransactionSource source = new SocketTransactionSource(options.getListenPort(), ioThreads(options));
+            logger.info("Listening for transactions on port " + source.getPort());
+            return source;
+        }
+        if (AMLAlertingOptions.STANDARD_INPUT.equals(options.getInputFilePath()))
+            return new ChannelTransactionSource(new FileInputStream(FileDescriptor.in).getChannel());
+        return createFileSource(options, 0);
+    }
 
-        executorService.shutdown();
+    /**
+     * Creates the source reading the input file from the given position, following it if requested by the options.
+     * The header line is only skipped from the start of the file.
+     */
+    private static ChannelTransactionSource createFileSource(AMLAlertingOptions options, long position)
+            throws IOException {
+        Path path = Path.of(options.getInputFilePath());
+        ReadableByteChannel channel = options.isFollow()
+                ? new TailingFileChannel(path, position, TailingFileChannel.DEFAULT_POLL_INTERVAL_MILLIS)
+                : FileChannel.open(path, StandardOpenOption.READ).position(position);
+        return new ChannelTransactionSource(channel, position == 0);
+    }
+
+    /**
+     * Reads the transactions of the input file, in parallel if requested by the options.
+     */
+    private static void readTransactions(AMLAlertingOptions options, TransactionSink sink) throws IOException {
+        // A columnar file is read from memory, without any parsing to parallelize
+        if (options.getIngestThreads() > 0 && !ColumnarTransactionFile.isColumnar(Path.of(options.getInputFilePath())))
+            new AMLParallelCSVReader(options.getIngestThreads()).forEachTransaction(options.getInputFilePath(), sink);
+        else
+            AMLCSVReader.forEachTransaction(options.getInputFilePath(), sink);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,275 @@
+package org.rbc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
+
+/**
+ * An allocation-free parser for the {@code HH:mm:ss,amount,accountId} transaction CSV format.
+ * Rows are scanned directly from the raw bytes of a reusable buffer: digits are parsed in place and the time is
+ * decoded straight to seconds of day, so no object is created per row in the parsing loop.
+ * <p>
+ * Its behavior matches the original {@code String.split(",")} based reader: the first line is a header and is
+ * skipped, rows which do not have exactly three fields are ignored, and fields which cannot be parsed raise a
+ * {@link DateTimeParseException} or a {@link NumberFormatException}. A time may also be given as {@code HH:mm}, and a
+ * fraction of second is accepted and truncated. The time may be preceded by a date, as {@code yyyy-MM-ddTHH:mm:ss} or
+ * {@code yyyy-MM-dd HH:mm:ss}: the rows are then passed on with their {@link Timestamps timestamp}, otherwise with
+ * their number of seconds since midnight, see {@link DayRolloverSink}.
+ * <p>
+ * An instance reuses its buffer between calls and is therefore not thread-safe.
+ */
+class AMLCSVByteParser {
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The length of a {@code yyyy-MM-dd} date.
+     */
+    private static final int DATE_LENGTH = 10;
+
+    private ByteBuffer buffer;
+
+    /**
+     * The number of bytes read by the current parse which precede the start of the buffer.
+     */
+    private long consumed;
+
+    /**
+     * The number of bytes read by the current parse up to the end of the line of the latest row.
+     */
+    private long lineEnd;
+
+    /**
+     * Whether the input is being cut off, see {@link #cutOff()}.
+     */
+    private volatile boolean cutOff;
+
+    public AMLCSVByteParser() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public AMLCSVByteParser(int bufferSize) {
+        this.buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Parses all the rows read from the channel until its end.
+     *
+     * @param channel    The channel to read the CSV data from. It is not closed by this method.
+     * @param skipHeader Whether the first line is a header line which must be skipped.
+     * @param sink       The sink receiving the transactions, in input order.
+     * @return The number of transactions passed to the sink.
+     * @throws IOException If an error occurs while reading from the channel.
+     */
+    public long parse(ReadableByteChannel channel, boolean skipHeader, TransactionSink sink) throws IOException {
+        long rows = 0;
+        boolean headerPending = skipHeader;
+        buffer.clear();
+        consumed = 0;
+        lineEnd = 0;
+
+        while (true) {
+            int read = channel.read(buffer);
+            boolean endOfInput = read < 0;
+            int limit = buffer.position();
+            int lineStart = 0;
+
+            for (int i = 0; i < limit; i++) {
+                if (buffer.get(i) == '\n') {
+                    lineEnd = consumed + i + 1;
+                    if (headerPending)
+                        headerPending = false;
+                    else if (parseRow(buffer, lineStart, i, sink))
+                        rows++;
+                    lineStart = i + 1;
+                }
+            }
+
+            if (endOfInput) {
+                // The last line may not be terminated by a new line, unless the input was cut off in the middle of it
+                if (cutOff)
+                    return rows;
+                lineEnd = consumed + limit;
+                if (lineStart < limit && !headerPending && parseRow(buffer, lineStart, limit, sink))
+                    rows++;
+                return rows;
+            }
+
+            if (lineStart == 0 && limit == buffer.capacity()) {
+                // A single line does not fit in the buffer
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+            } else {
+                buffer.position(lineStart).limit(limit);
+                buffer.compact();
+                consumed += lineStart;
+            }
+        }
+    }
+
+    /**
+     * Tells the parser that the end of the input it is about to reach is not a real end, e.g. because the channel of a
+     * stream is being closed: a last line without a new line may then be incomplete, and is dropped rather than
+     * parsed. Can be called from any thread.
+     */
+    public void cutOff() {
+        cutOff = true;
+    }
+
+    /**
+     * Tells where the input can be resumed after the row being passed to the sink, e.g. to record it in a
+     * {@link Checkpoint}.
+     *
+     * @return The number of bytes read from the channel by the current {@link #parse}, up to and including the end of
+     * the line of the latest row passed to the sink.
+     */
+    public long getLineEnd() {
+        return lineEnd;
+    }
+
+    /**
+     * Parses a single row of the buffer. The new line character is not part of the row, a trailing carriage return
+     * is ignored.
+     *
+     * @param buffer The buffer holding the row. Its position and limit are not used nor modified.
+     * @param start  The index of the first byte of the row.
+     * @param end    The index following the last byte of the row.
+     * @param sink   The sink receiving the transaction.
+     * @return {@code true} if the row was a transaction, {@code false} if it was ignored because it does not have
+     * three fields.
+     * @throws DateTimeParseException If the time field cannot be parsed.
+     * @throws NumberFormatException  If the amount or the account id cannot be parsed.
+     */
+    static boolean parseRow(ByteBuffer buffer, int start, int end, TransactionSink sink) {
+        if (end > start && buffer.get(end - 1) == '\r')
+            end--;
+        // Trailing empty fields are discarded, as String.split does
+        while (end > start && buffer.get(end - 1) == ',')
+            end--;
+
+        int firstComma = indexOfComma(buffer, start, end);
+        if (firstComma < 0)
+            return false;
+        int secondComma = indexOfComma(buffer, firstComma + 1, end);
+        if (secondComma < 0 || indexOfComma(buffer, secondComma + 1, end) >= 0)
+            return false;
+
+        long timestamp = parseTimestamp(buffer, start, firstComma);
+        int amount = parseInt(buffer, firstComma + 1, secondComma);
+        int accountId = parseInt(buffer, secondComma + 1, end);
+        sink.accept(timestamp, amount, accountId);
+        return true;
+    }
+
+    private static int indexOfComma(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == ',')
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes a {@code [yyyy-MM-dd(T| )]HH:mm[:ss[.fraction]]} time to a {@link Timestamps timestamp}, or to a number
+     * of seconds since midnight if there is no date.
+     */
+    static long parseTimestamp(ByteBuffer buffer, int start, int end) {
+        if (end - start < DATE_LENGTH + 1 + 5 || buffer.get(start + 4) != '-')
+            return parseSecondOfDay(buffer, start, end);
+
+        byte separator = buffer.get(start + DATE_LENGTH);
+        if (buffer.get(start + 7) != '-' || separator != 'T' && separator != ' ')
+            throw timeParseException(buffer, start, end);
+        int century = twoDigits(buffer, start);
+        int yearOfCentury = twoDigits(buffer, start + 2);
+        int year = century * 100 + yearOfCentury;
+        int month = twoDigits(buffer, start + 5);
+        int day = twoDigits(buffer, start + 8);
+        if (century < 0 || yearOfCentury < 0 || year < Timestamps.DATED_FROM_YEAR || month < 1 || month > 12 || day < 1
+                || day > Timestamps.lengthOfMonth(year, month))
+            throw timeParseException(buffer, start, end);
+        return Timestamps.epochDay(year, month, day) * Timestamps.SECONDS_PER_DAY
+                + parseSecondOfDay(buffer, start + DATE_LENGTH + 1, end);
+    }
+
+    /**
+     * Decodes a {@code HH:mm[:ss[.fraction]]} time to a number of seconds since midnight.
+     */
+    static int parseSecondOfDay(ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        if (length != 5 && length < 8
+                || buffer.get(start + 2) != ':'
+                || length >= 8 && buffer.get(start + 5) != ':'
+                || length > 8 && (buffer.get(start + 8) != '.' || length == 9 || length > 18))
+            throw timeParseException(buffer, start, end);
+
+        int hours = twoDigits(buffer, start);
+        int minutes = twoDigits(buffer, start + 3);
+        int seconds = length >= 8 ? twoDigits(buffer, start + 6) : 0;
+        if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59)
+            throw timeParseException(buffer, start, end);
+        for (int i = start + 9; i < end; i++) {
+            if (!isDigit(buffer.get(i)))
+                throw timeParseException(buffer, start, end);
+        }
+        return hours * 3600 + minutes * 60 + seconds;
+    }
+
+    /**
+     * @return The value of the two digits at the index, or -1 if they are not digits.
+     */
+    private static int twoDigits(ByteBuffer buffer, int index) {
+        byte tens = buffer.get(index);
+        byte units = buffer.get(index + 1);
+        if (!isDigit(tens) || !isDigit(units))
+            return -1;
+        return (tens - '0') * 10 + (units - '0');
+    }
+
+    /**
+     * Parses a signed decimal integer, with the same rules as {@link Integer#parseInt(String)}.
+     */
+    static int parseInt(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        if (i == end)
+            throw numberFormatException(buffer, start, end);
+
+        // Accumulate negatively to be able to represent Integer.MIN_VALUE
+        long limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        long result = 0;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (!isDigit(b))
+                throw numberFormatException(buffer, start, end);
+            result = result * 10 - (b - '0');
+            if (result < limit)
+                throw numberFormatException(buffer, start, end);
+        }
+        return (int) (negative ? result : -result);
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static String text(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static DateTimeParseException timeParseException(ByteBuffer buffer, int start, int end) {
+        String text = text(buffer, start, end);
+        return new DateTimeParseException("Text '" + text + "' could not be parsed", text, 0);
+    }
+
+    private static NumberFormatException numberFormatException(ByteBuffer buffer, int start, int end) {
+        return new NumberFormatException("For input string: \"" + text(buffer, start, end) + "\"");
+    }
+}
@@ -1,21 +1,14 @@
 package org.rbc;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.time.LocalTime;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import static java.util.stream.Collectors.counting;
-import static java.util.stream.Collectors.groupingBy;
-import static org.rbc.AMLAlertingConfiguration.MAX_ACCOUNTS;
-import static org.rbc.AMLAlertingConfiguration.MAX_TRANSACTIONS_PER_ACCOUNT;
-
 /**
  * This class is responsible for reading and processing AML transactions from a CSV file.
  */
@@ -28,6 +21,8 @@ class AMLCSVReader {
 
     /**
      * Reads transactions from a CSV file and returns a list of Transaction objects.
+     * This materializes the whole file in memory. Use {@link #readTransactions(String, Consumer)} to process
+     * large files.
      *
      * @param filePath The path to the CSV file containing transaction data.
      * @return A list of Transaction objects representing the transactions read from the CSV file.
@@ -35,36 +30,54 @@ class AMLCSVReader {
      */
     public static List<Transaction> readTransactions(String filePath) throws IOException {
         List<Transaction> transactions = new ArrayList<>();
+        readTransactions(filePath, transactions::add);
+        return transactions;
+    }
+
+    /**
+     * Reads transactions from a CSV file and hands each of them to the given consumer as soon as its row is parsed.
+     * The file is never materialized in memory: the number of accounts and of transactions per account are
+     * validated incrementally, so an {@link IllegalArgumentException} is thrown at the first row exceeding a limit,
+     * after the preceding rows have already been consumed.
+     *
+     * @param filePath The path to the CSV file containing transaction data.
+     * @param consumer The consumer receiving the transactions, in file order.
+     * @throws IOException If an error occurs while reading the CSV file.
+     */
+    public static void readTransactions(String filePath, Consumer<Transaction> consumer) throws IOException {
+        forEachTransaction(filePath, (timestamp, amount, accountId) ->
+                consumer.accept(new Transaction(timestamp, amount, accountId)));
+    }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            br.readLine(); // Consume the first line as it is a header line
+    /**
+     * Reads transactions from a CSV file with the allocation-free {@link AMLCSVByteParser} and hands their fields to
+     * the given sink as soon as each row is parsed. The limits are validated incrementally, as for
+     * {@link #readTransactions(String, Consumer)}.
+     * A {@link ColumnarTransactionFile} is also accepted: its transactions are read from the mapped file, and the
+     * limits are validated from its header before the first row.
+     *
+     * @param filePath The path to the CSV file containing transaction data.
+     * @param sink     The sink receiving the transactions, in file order.
+     * @throws IOException If an error occurs while reading the CSV file.
+     */
+    public static void forEachTransaction(String filePath, TransactionSink sink) throws IOException {
+        AccountLimitValidator validator = new AccountLimitValidator();
 
-            while ((line = br.readLine()) != null) {
-                String[] values = line.split(",");
-                if (values.length == 3) {
-                    LocalTime timestamp = LocalTime.parse(values[0]);
-                    int amount = Integer.parseInt(values[1]);
-                    int accountId = Integer.parseInt(values[2]);
-                    transactions.add(new Transaction(timestamp, amount, accountId));
+        try (FileInputStream in = new FileInputStream(filePath)) {
+            if (ColumnarTransactionFile.isColumnar(in.getChannel())) {
+                // The limits are checked upfront from the header
+                try (ColumnarTransactionFile file = ColumnarTransactionFile.open(Path.of(filePath))) {
+                    file.forEachTransaction(sink);
                 }
+                return;
             }
+            new AMLCSVByteParser().parse(in.getChannel(), true, (timestamp, amount, accountId) -> {
+                validator.validate(accountId);
+                sink.accept(timestamp, amount, accountId);
+            });
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Error reading CSV file: " + e);
             throw (e);
         }
-
-        // Validate the number of accounts and transactions per account
-        Map<Integer, Long> transactionMap = transactions.stream().collect(groupingBy(Transaction::accountId, counting()));
-
-        if (transactionMap.entrySet().size() > MAX_ACCOUNTS)
-            throw new IllegalArgumentException("The maximum number of accounts allowed " +
-                    "in the input file is: " + MAX_ACCOUNTS);
-
-        if (transactionMap.values().stream().max(Comparator.naturalOrder()).orElse(Long.valueOf(0)) > MAX_TRANSACTIONS_PER_ACCOUNT)
-            throw new IllegalArgumentException("The maximum number of transactions allowed" +
-                    " per account is: " + MAX_TRANSACTIONS_PER_ACCOUNT);
-
-        return transactions;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,278 @@
+package org.rbc;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * The metrics of the hot path: parsing, queuing, processing and alerting.
+ * <p>
+ * The counters are {@link LongAdder}s, which spread concurrent increments over several cells, so the shard threads
+ * do not contend on them. The latencies and the window depths are recorded in {@link LogLinearHistogram}s, and only
+ * for one transaction in {@link #getSampleInterval()}, which keeps the cost of reading the clock off most
+ * transactions. Gauges, such as the depth of the queues, are only computed when the metrics are read.
+ * <p>
+ * The metrics can be exposed through JMX ({@link #registerMBean()}) and logged periodically as text
+ * ({@link #startPeriodicDump(long)}). This class is thread-safe.
+ */
+class AMLMetrics implements AMLMetricsMXBean {
+
+    public static final Logger logger = Logger.getLogger(AMLMetrics.class.getName());
+
+    static final String OBJECT_NAME = "org.rbc:type=AMLMetrics";
+
+    /**
+     * The default number of transactions per latency sample.
+     */
+    static final int DEFAULT_SAMPLE_INTERVAL = 64;
+
+    final LongAdder rowsParsed = new LongAdder();
+    final LongAdder transactionsProcessed = new LongAdder();
+    final LongAdder alerts = new LongAdder();
+    final LongAdder accountsTracked = new LongAdder();
+
+    /**
+     * The time spent by {@link Account#evaluateTransaction(long, int)}, in nanoseconds.
+     */
+    final LogLinearHistogram processingLatency = new LogLinearHistogram();
+
+    /**
+     * The time spent waiting for the lock of an account, in nanoseconds, in
+     * {@link AMLTransactionProcessor.ConcurrencyMode#LOCKED} mode.
+     */
+    final LogLinearHistogram lockWait = new LogLinearHistogram();
+
+    /**
+     * The number of transactions in the longest window of an account, after adding a transaction.
+     */
+    final LogLinearHistogram windowDepth = new LogLinearHistogram();
+
+    private final int sampleInterval;
+    private volatile LongSupplier queueDepth = () -> 0;
+    private ScheduledExecutorService dumper;
+
+    public AMLMetrics() {
+        this(DEFAULT_SAMPLE_INTERVAL);
+    }
+
+    /**
+     * @param sampleInterval The number of transactions per latency sample. 1 times every transaction.
+     */
+    public AMLMetrics(int sampleInterval) {
+        if (sampleInterval < 1)
+            throw new IllegalArgumentException("The sample interval must be positive");
+        this.sampleInterval = sampleInterval;
+    }
+
+    /**
+     * @return The number of transactions per latency sample.
+     */
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * Sets the gauge giving the number of transactions waiting to be processed.
+     */
+    public void setQueueDepth(LongSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, replacing the metrics previously registered.
+     */
+    public void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            try {
+                server.registerMBean(this, name);
+            } catch (InstanceAlreadyExistsException e) {
+                server.unregisterMBean(name);
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("The metrics could not be registered with JMX", e);
+        }
+    }
+
+    /**
+     * Logs the metrics periodically, from a daemon thread, until {@link #stopPeriodicDump()}.
+     *
+     * @param intervalSeconds The interval between two dumps.
+     */
+    public synchronized void startPeriodicDump(long intervalSeconds) {
+        if (dumper != null)
+            throw new IllegalStateException("The metrics are already dumped periodically");
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "aml-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        PeriodicDump periodicDump = new PeriodicDump();
+        dumper.scheduleAtFixedRate(() -> logger.info(periodicDump.next()), intervalSeconds, intervalSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the periodic dump, if it was started.
+     */
+    public synchronized void stopPeriodicDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server, if they are registered.
+     */
+    public void unregisterMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (InstanceNotFoundException e) {
+            // Not registered
+        } catch (JMException e) {
+            throw new IllegalStateException("The metrics could not be unregistered from JMX", e);
+        }
+    }
+
+    @Override
+    public long getRowsParsed() {
+        return rowsParsed.sum();
+    }
+
+    @Override
+    public long getTransactionsProcessed() {
+        return transactionsProcessed.sum();
+    }
+
+    @Override
+    public long getAlerts() {
+        return alerts.sum();
+    }
+
+    @Override
+    public long getAccountsTracked() {
+        return accountsTracked.sum();
+    }
+
+    @Override
+    public long getQueueDepth() {
+        return queueDepth.getAsLong();
+    }
+
+    @Override
+    public long getProcessingLatencyP50() {
+        return processingLatency.valueAtPercentile(50);
+    }
+
+    @Override
+    public long getProcessingLatencyP99() {
+        return processingLatency.valueAtPercentile(99);
+    }
+
+    @Override
+    public long getProcessingLatencyP999() {
+        return processingLatency.valueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getProcessingLatencyMax() {
+        return processingLatency.max();
+    }
+
+    @Override
+    public long getLockWaitP99() {
+        return lockWait.valueAtPercentile(99);
+    }
+
+    @Override
+    public long getLockWaitMax() {
+        return lockWait.max();
+    }
+
+    @Override
+    public long getWindowDepthP99() {
+        return windowDepth.valueAtPercentile(99);
+    }
+
+    @Override
+    public long getWindowDepthMax() {
+        return windowDepth.max();
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only the totals are given, so reading them has no effect on the rates of the periodic dump.
+     */
+    @Override
+    public String dump() {
+        return dump(getRowsParsed(), "", getTransactionsProcessed(), "", getAlerts(), "");
+    }
+
+    private String dump(long rowsParsed, String rowsRate, long transactionsProcessed, String transactionsRate,
+                        long alerts, String alertsRate) {
+        return "AML metrics:"
+                + "\n  rows parsed:            " + rowsParsed + rowsRate
+                + "\n  transactions processed: " + transactionsProcessed + transactionsRate
+                + "\n  alerts:                 " + alerts + alertsRate
+                + "\n  accounts tracked:       " + getAccountsTracked()
+                + "\n  queue depth:            " + getQueueDepth()
+                + "\n  processing latency ns:  " + percentiles(processingLatency)
+                + "\n  lock wait ns:           " + percentiles(lockWait)
+                + "\n  window depth:           " + percentiles(windowDepth);
+    }
+
+    /**
+     * The dumps logged periodically, with the rates per second since the previous one. Only used by the thread of the
+     * periodic dump.
+     */
+    private class PeriodicDump {
+
+        /**
+         * The time and the counters of the previous dump, to compute the rates since then.
+         */
+        private long lastDumpNanos = System.nanoTime();
+        private long lastRowsParsed;
+        private long lastTransactionsProcessed;
+        private long lastAlerts;
+
+        String next() {
+            long now = System.nanoTime();
+            double seconds = Math.max(now - lastDumpNanos, 1) / 1e9;
+            long rowsParsed = getRowsParsed();
+            long transactionsProcessed = getTransactionsProcessed();
+            long alerts = getAlerts();
+            String dump = dump(rowsParsed, rate(rowsParsed - lastRowsParsed, seconds), transactionsProcessed,
+                    rate(transactionsProcessed - lastTransactionsProcessed, seconds), alerts,
+                    rate(alerts - lastAlerts, seconds));
+            lastDumpNanos = now;
+            lastRowsParsed = rowsParsed;
+            lastTransactionsProcessed = transactionsProcessed;
+            lastAlerts = alerts;
+            return dump;
+        }
+    }
+
+    private static String rate(long count, double seconds) {
+        return " (" + Math.round(count / seconds) + "/s)";
+    }
+
+    private static String percentiles(LogLinearHistogram histogram) {
+        return "p50=" + histogram.valueAtPercentile(50)
+                + " p99=" + histogram.valueAtPercentile(99)
+                + " p99.9=" + histogram.valueAtPercentile(99.9)
+                + " max=" + histogram.max()
+                + " (" + histogram.count() + " samples)";
+    }
+}
@@ -0,0 +1,39 @@
+package org.rbc;
+
+/**
+ * The metrics of the AML Alerting System exposed through JMX, under the name {@value AMLMetrics#OBJECT_NAME}.
+ * Counters are totals since the start of the application. Latencies are in nanoseconds.
+ */
+public interface AMLMetricsMXBean {
+
+    long getRowsParsed();
+
+    long getTransactionsProcessed();
+
+    long getAlerts();
+
+    long getAccountsTracked();
+
+    long getQueueDepth();
+
+    long getProcessingLatencyP50();
+
+    long getProcessingLatencyP99();
+
+    long getProcessingLatencyP999();
+
+    long getProcessingLatencyMax();
+
+    long getLockWaitP99();
+
+    long getLockWaitMax();
+
+    long getWindowDepthP99();
+
+    long getWindowDepthMax();
+
+    /**
+     * @return The metrics in the format of the periodic dump, without its rates.
+     */
+    String dump();
+}
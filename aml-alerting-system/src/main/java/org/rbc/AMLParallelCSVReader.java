@@ -0,0 +1,195 @@
+package org.rbc;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads transactions from a CSV file by parsing it on several cores.
+ * <p>
+ * The file is split into byte ranges (chunks) aligned to line boundaries. Each chunk is memory-mapped and parsed by
+ * {@link AMLCSVByteParser} into a {@link TransactionBatch} on a fork-join pool. The parsed chunks are then handed to
+ * the sink one after the other in file order, from the calling thread, so the transactions of every account reach
+ * the sink in the same order as with a sequential read. Only a bounded number of chunks are parsed ahead of the sink,
+ * so memory stays bounded whatever the size of the file.
+ */
+class AMLParallelCSVReader {
+
+    public static final Logger logger = Logger.getLogger(AMLParallelCSVReader.class.getName());
+
+    static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * The number of chunks parsed ahead of the sink, per thread of the pool.
+     */
+    private static final int CHUNKS_AHEAD_PER_THREAD = 2;
+
+    /**
+     * The length of the reads used to find the end of the line containing a chunk boundary.
+     */
+    private static final int BOUNDARY_SCAN_SIZE = 4096;
+
+    private final int parallelism;
+    private final int chunkSize;
+
+    /**
+     * @param parallelism The number of threads parsing the file.
+     */
+    public AMLParallelCSVReader(int parallelism) {
+        this(parallelism, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param parallelism The number of threads parsing the file.
+     * @param chunkSize   The approximate number of bytes of a chunk.
+     */
+    public AMLParallelCSVReader(int parallelism, int chunkSize) {
+        if (parallelism < 1 || chunkSize < 1)
+            throw new IllegalArgumentException("The parallelism and the chunk size must be positive");
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Reads the transactions of a CSV file and hands them to the sink in file order.
+     * The first line is a header and is skipped. The limits are validated incrementally, as for
+     * {@link AMLCSVReader#forEachTransaction(String, TransactionSink)}.
+     *
+     * @param filePath The path to the CSV file containing transaction data.
+     * @param sink     The sink receiving the transactions, in file order. It is only called from the calling thread.
+     * @throws IOException If an error occurs while reading the CSV file.
+     */
+    public void forEachTransaction(String filePath, TransactionSink sink) throws IOException {
+        AccountLimitValidator validator = new AccountLimitValidator();
+        TransactionSink validatingSink = (timestamp, amount, accountId) -> {
+            validator.validate(accountId);
+            sink.accept(timestamp, amount, accountId);
+        };
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Deque<ChunkTask> pending = new ArrayDeque<>();
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "r")) {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            long chunkStart = nextLineStart(channel, 0, size); // Skip the header line
+
+            while (chunkStart < size || !pending.isEmpty()) {
+                while (chunkStart < size && pending.size() < parallelism * CHUNKS_AHEAD_PER_THREAD) {
+                    long chunkEnd = nextLineStart(channel, Math.min(chunkStart + chunkSize, size) - 1, size);
+                    ChunkTask task = new ChunkTask(channel, chunkStart, chunkEnd);
+                    pool.execute(task);
+                    pending.addLast(task);
+                    chunkStart = chunkEnd;
+                }
+                pending.removeFirst().result().forEach(validatingSink);
+            }
+        } catch (UncheckedIOException e) {
+            logger.log(Level.SEVERE, "Error reading CSV file: " + e.getCause());
+            throw e.getCause();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error reading CSV file: " + e);
+            throw (e);
+        } finally {
+            pending.forEach(task -> task.cancel(true));
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return The position following the first new line character found at or after {@code from}, or the size of the
+     * file if there is none.
+     */
+    private static long nextLineStart(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+        long position = from;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0)
+                break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n')
+                    return position + i + 1;
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Parses the lines of one chunk of the file.
+     */
+    private static class ChunkTask extends RecursiveTask<TransactionBatch> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+
+        /**
+         * The exception raised while parsing the chunk. It is kept as is rather than letting the pool rethrow a copy.
+         */
+        private RuntimeException failure;
+
+        ChunkTask(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Waits for the chunk to be parsed.
+         *
+         * @return The transactions of the chunk.
+         * @throws RuntimeException The exception raised while parsing the chunk, if any.
+         */
+        TransactionBatch result() {
+            TransactionBatch batch = join();
+            if (failure != null)
+                throw failure;
+            return batch;
+        }
+
+        @Override
+        protected TransactionBatch compute() {
+            try {
+                return parse();
+            } catch (RuntimeException e) {
+                failure = e;
+                return null;
+            }
+        }
+
+        private TransactionBatch parse() {
+            int length = (int) (end - start);
+            // Estimate the number of rows from the length of a typical "HH:mm:ss,amount,id" line
+            TransactionBatch batch = new TransactionBatch(length / 16);
+            MappedByteBuffer buffer;
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            int lineStart = 0;
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(i) == '\n') {
+                    AMLCSVByteParser.parseRow(buffer, lineStart, i, batch);
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart < length)
+                AMLCSVByteParser.parseRow(buffer, lineStart, length, batch);
+            return batch;
+        }
+    }
+}
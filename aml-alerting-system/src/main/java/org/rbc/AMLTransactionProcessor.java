@@ -1,6 +1,9 @@
 package org.rbc;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.ByteBuffer;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.logging.Logger;
 
 import static org.rbc.AMLAlertingConfiguration.MAX_ACCOUNTS;
 
@@ -8,18 +11,186 @@ import static org.rbc.AMLAlertingConfiguration.MAX_ACCOUNTS;
  * A class responsible for processing AML transactions.
  * It maintains a map of accounts and processes transactions by adding them to the corresponding accounts.
  * If the account does not exist, it will be created.
+ * <p>
+ * In {@link ConcurrencyMode#SINGLE_WRITER} mode, the processor can also evict the idle accounts, whose alert window
+ * has fully expired relative to the time of the latest transaction processed. An idle account behaves exactly like
+ * a new one, so evicting it never changes an alert decision, as long as the transactions are processed in
+ * chronological order. The idle accounts are swept periodically, at an amortized constant cost per transaction.
+ * A cap on the number of accounts can also be set: exceeding it triggers a sweep right away. The cap is soft, since
+ * accounts whose window is still live cannot be evicted without changing the following alert decisions.
+ * <p>
+ * When given {@link AMLMetrics}, the processor counts the transactions, the alerts and the accounts, and times the
+ * update of an account, along with the wait for its lock in {@link ConcurrencyMode#LOCKED} mode, for one transaction
+ * in {@link AMLMetrics#getSampleInterval()}.
+ * <p>
+ * When given a {@link GroupWindowTable}, each transaction also updates the window of the group of its account, outside
+ * the lock of the account, and the rules fired by both windows are reported together.
+ * <p>
+ * The windows of the accounts can be read from any thread while the transactions are processed, with
+ * {@link #queryWindow(int)}: the lookup does not lock the accounts, and the summary of a window is read from what its
+ * account publishes after each update, so the reads never delay the processing, whatever the mode.
  */
 class AMLTransactionProcessor {
 
+    public static final Logger logger = Logger.getLogger(AMLTransactionProcessor.class.getName());
+
+    /**
+     * The minimum number of transactions processed between two sweeps of the idle accounts.
+     */
+    static final int MIN_SWEEP_INTERVAL = 4096;
+
+    /**
+     * How the processor protects the state of the accounts from concurrent updates.
+     */
+    enum ConcurrencyMode {
+        /**
+         * Any thread may process transactions: the update of an account synchronizes on it.
+         */
+        LOCKED,
+        /**
+         * All the transactions are processed by a single writer thread, the first one to process a transaction,
+         * which owns the state of the accounts. Updates do not acquire any lock. Processing a transaction from another
+         * thread fails with an {@link IllegalStateException}.
+         */
+        SINGLE_WRITER
+    }
+
+    /**
+     * A thread-safe hash table to store accounts, keyed by their primitive account ID.
+     * The value is the corresponding Account object which contains the transactions of its alert window
+     */
+    private final AccountTable accountCache;
+
+    private final ConcurrencyMode concurrencyMode;
+
+    private final AlertRuleSet ruleSet;
+
+    /**
+     * Creates the accounts with the rules applying to them.
+     */
+    private final IntFunction<Account> accountFactory;
+
+    /**
+     * The thread owning the accounts in {@link ConcurrencyMode#SINGLE_WRITER} mode.
+     */
+    private Thread owner;
+
+    private final boolean evictIdleAccounts;
+
+    /**
+     * The number of accounts above which idle accounts are evicted right away, or 0 if there is no cap.
+     */
+    private final int accountCacheCap;
+
+    /**
+     * The number of accounts above which the next sweep is triggered. It is raised above the cap while all the accounts
+     * are live, so a full cache does not trigger a sweep per transaction.
+     */
+    private int sweepThreshold;
+
+    private int transactionsSinceSweep;
+
     /**
-     * A concurrent hash map to store accounts.
-     * The key is the account ID and the value is the corresponding Account object
-     * which contains its list of transactions
+     * The time of the latest transaction processed, see {@link Timestamps}.
      */
-    private final ConcurrentHashMap<Integer, Account> accountCache;
+    private long streamTimestamp;
 
+    private long evictedAccounts;
+
+    /**
+     * The metrics to update, or {@code null}.
+     */
+    private final AMLMetrics metrics;
+
+    /**
+     * The windows of the groups of accounts, shared with the other processors, or {@code null}.
+     */
+    private final GroupWindowTable groupWindows;
+
+    /**
+     * The number of transactions until the next one timed. In {@link ConcurrencyMode#LOCKED} mode, concurrent updates
+     * may be lost, which only shifts the samples.
+     */
+    private int untilNextSample;
+
+    /**
+     * Creates a processor which can be used by several threads concurrently.
+     */
     public AMLTransactionProcessor() {
-        this.accountCache = new ConcurrentHashMap<>(MAX_ACCOUNTS);
+        this(ConcurrencyMode.LOCKED);
+    }
+
+    public AMLTransactionProcessor(ConcurrencyMode concurrencyMode) {
+        this(concurrencyMode, false, 0);
+    }
+
+    /**
+     * @param concurrencyMode   How the accounts are protected from concurrent updates.
+     * @param evictIdleAccounts Whether the idle accounts are evicted. Requires the
+     *                          {@link ConcurrencyMode#SINGLE_WRITER} mode.
+     * @param accountCacheCap   The number of accounts above which idle accounts are evicted right away, or 0 if there
+     *                          is no cap. A cap enables the eviction of the idle accounts.
+     */
+    public AMLTransactionProcessor(ConcurrencyMode concurrencyMode, boolean evictIdleAccounts, int accountCacheCap) {
+        this(concurrencyMode, evictIdleAccounts, accountCacheCap, AlertRuleSet.DEFAULT);
+    }
+
+    /**
+     * @param concurrencyMode   How the accounts are protected from concurrent updates.
+     * @param evictIdleAccounts Whether the idle accounts are evicted. Requires the
+     *                          {@link ConcurrencyMode#SINGLE_WRITER} mode.
+     * @param accountCacheCap   The number of accounts above which idle accounts are evicted right away, or 0 if there
+     *                          is no cap. A cap enables the eviction of the idle accounts.
+     * @param ruleSet           The rules evaluated against each transaction.
+     */
+    public AMLTransactionProcessor(ConcurrencyMode concurrencyMode, boolean evictIdleAccounts, int accountCacheCap,
+                                   AlertRuleSet ruleSet) {
+        this(concurrencyMode, evictIdleAccounts, accountCacheCap, ruleSet, null);
+    }
+
+    /**
+     * @param concurrencyMode   How the accounts are protected from concurrent updates.
+     * @param evictIdleAccounts Whether the idle accounts are evicted. Requires the
+     *                          {@link ConcurrencyMode#SINGLE_WRITER} mode.
+     * @param accountCacheCap   The number of accounts above which idle accounts are evicted right away, or 0 if there
+     *                          is no cap. A cap enables the eviction of the idle accounts.
+     * @param ruleSet           The rules evaluated against each transaction.
+     * @param metrics           The metrics to update, or {@code null}. They can be shared by several processors.
+     */
+    public AMLTransactionProcessor(ConcurrencyMode concurrencyMode, boolean evictIdleAccounts, int accountCacheCap,
+                                   AlertRuleSet ruleSet, AMLMetrics metrics) {
+        this(concurrencyMode, evictIdleAccounts, accountCacheCap, ruleSet, metrics, null);
+    }
+
+    /**
+     * @param concurrencyMode   How the accounts are protected from concurrent updates.
+     * @param evictIdleAccounts Whether the idle accounts are evicted. Requires the
+     *                          {@link ConcurrencyMode#SINGLE_WRITER} mode.
+     * @param accountCacheCap   The number of accounts above which idle accounts are evicted right away, or 0 if there
+     *                          is no cap. A cap enables the eviction of the idle accounts.
+     * @param ruleSet           The rules evaluated against each transaction.
+     * @param metrics           The metrics to update, or {@code null}. They can be shared by several processors.
+     * @param groupWindows      The windows of the groups, evaluated against the group rules of the rule set, or
+     *                          {@code null}. They can be shared by several processors.
+     */
+    public AMLTransactionProcessor(ConcurrencyMode concurrencyMode, boolean evictIdleAccounts, int accountCacheCap,
+                                   AlertRuleSet ruleSet, AMLMetrics metrics, GroupWindowTable groupWindows) {
+        if ((evictIdleAccounts || accountCacheCap > 0) && concurrencyMode != ConcurrencyMode.SINGLE_WRITER)
+            throw new IllegalArgumentException("Evicting idle accounts requires the SINGLE_WRITER concurrency mode");
+        if (accountCacheCap < 0)
+            throw new IllegalArgumentException("The account cache cap must not be negative");
+        this.accountCache = new AccountTable(accountCacheCap > 0 ? accountCacheCap : MAX_ACCOUNTS);
+        this.concurrencyMode = concurrencyMode;
+        this.ruleSet = ruleSet;
+        this.metrics = metrics;
+        this.groupWindows = groupWindows;
+        this.accountFactory = metrics == null ? id -> new Account(id, ruleSet.rulesFor(id)) : id -> {
+            metrics.accountsTracked.increment();
+            return new Account(id, ruleSet.rulesFor(id));
+        };
+        this.evictIdleAccounts = evictIdleAccounts || accountCacheCap > 0;
+        this.accountCacheCap = accountCacheCap;
+        this.sweepThreshold = accountCacheCap > 0 ? accountCacheCap : Integer.MAX_VALUE;
     }
 
     /**
@@ -31,7 +202,314 @@ class AMLTransactionProcessor {
      * {@code false} if the transaction did not raise a violation alert.
      */
     public boolean processTransaction(Transaction transaction) {
-        return accountCache.computeIfAbsent(transaction.accountId(), Account::new)
-                .addTransaction(transaction);
+        return processTransaction(transaction.timestamp(), transaction.amount(),
+                transaction.accountId());
+    }
+
+    /**
+     * Processes a transaction given by its fields, see {@link #processTransaction(Transaction)}.
+     *
+     * @param timestamp   The time of the transaction, see {@link Timestamps}.
+     * @param amount      The amount of money involved in the transaction.
+     * @param accountId   The unique identifier of the account involved in the transaction.
+     * @return {@code true} if the transaction raised an AML violation alert,
+     * {@code false} if the transaction did not raise a violation alert.
+     */
+    public boolean processTransaction(long timestamp, int amount, int accountId) {
+        return evaluateTransaction(timestamp, amount, accountId) != 0;
+    }
+
+    /**
+     * Processes a transaction given by its fields and evaluates all the rules of its account.
+     *
+     * @param timestamp   The time of the transaction, see {@link Timestamps}.
+     * @param amount      The amount of money involved in the transaction.
+     * @param accountId   The unique identifier of the account involved in the transaction.
+     * @return The mask of the rules which fired, see {@link AlertRuleSet#ruleIds(long)}, or 0 if the transaction did
+     * not raise a violation alert.
+     */
+    public long evaluateTransaction(long timestamp, int amount, int accountId) {
+        return evaluateAccount(timestamp, amount, accountId,
+                groupWindows == null ? 0 : groupWindows.evaluate(timestamp, amount, accountId));
+    }
+
+    /**
+     * Processes a transaction whose place in the sequence of its group was reserved when it was dispatched, see
+     * {@link GroupWindowTable#reserve(int)}, and evaluates all the rules of its account and of its group.
+     *
+     * @param timestamp   The time of the transaction, see {@link Timestamps}.
+     * @param amount      The amount of money involved in the transaction.
+     * @param accountId   The unique identifier of the account involved in the transaction.
+     * @param groupTicket The ticket of the transaction in the sequence of its group.
+     * @return The mask of the rules which fired, or 0 if the transaction did not raise a violation alert.
+     */
+    public long evaluateTransaction(long timestamp, int amount, int accountId, long groupTicket) {
+        return evaluateAccount(timestamp, amount, accountId,
+                groupWindows == null ? 0 : groupWindows.evaluate(groupTicket, timestamp, amount));
+    }
+
+    /**
+     * Updates the account of the transaction, given the rules already fired by its group.
+     */
+    private long evaluateAccount(long timestamp, int amount, int accountId, long groupRules) {
+        if (metrics == null)
+            return updateAccount(timestamp, amount, accountId) | groupRules;
+
+        long firedRules;
+        if (--untilNextSample <= 0) {
+            untilNextSample = metrics.getSampleInterval();
+            firedRules = updateAccountTimed(timestamp, amount, accountId);
+        } else {
+            firedRules = updateAccount(timestamp, amount, accountId);
+        }
+        firedRules |= groupRules;
+        metrics.transactionsProcessed.increment();
+        if (firedRules != 0)
+            metrics.alerts.increment();
+        return firedRules;
+    }
+
+    private long updateAccount(long timestamp, int amount, int accountId) {
+        Account account = accountCache.computeIfAbsent(accountId, accountFactory);
+        if (concurrencyMode == ConcurrencyMode.SINGLE_WRITER) {
+            if (owner != Thread.currentThread())
+                checkOwner();
+            long firedRules = account.evaluateTransaction(timestamp, amount);
+            advanceStream(timestamp);
+            return firedRules;
+        }
+        synchronized (account) {
+            return account.evaluateTransaction(timestamp, amount);
+        }
+    }
+
+    /**
+     * Same as {@link #updateAccount(long, int, int)}, recording the time spent and the depth of the window in the
+     * metrics.
+     */
+    private long updateAccountTimed(long timestamp, int amount, int accountId) {
+        Account account = accountCache.computeIfAbsent(accountId, accountFactory);
+        if (concurrencyMode == ConcurrencyMode.SINGLE_WRITER) {
+            if (owner != Thread.currentThread())
+                checkOwner();
+            long start = System.nanoTime();
+            long firedRules = account.evaluateTransaction(timestamp, amount);
+            metrics.processingLatency.record(System.nanoTime() - start);
+            metrics.windowDepth.record(account.getWindowSize());
+            advanceStream(timestamp);
+            return firedRules;
+        }
+        long waitStart = System.nanoTime();
+        synchronized (account) {
+            long start = System.nanoTime();
+            metrics.lockWait.record(start - waitStart);
+            long firedRules = account.evaluateTransaction(timestamp, amount);
+            metrics.processingLatency.record(System.nanoTime() - start);
+            metrics.windowDepth.record(account.getWindowSize());
+            return firedRules;
+        }
+    }
+
+    /**
+     * Records the time of the transaction just processed by the single writer, and sweeps the idle accounts when due.
+     */
+    private void advanceStream(long timestamp) {
+        streamTimestamp = timestamp;
+        if (evictIdleAccounts && (++transactionsSinceSweep >= Math.max(accountCache.size(), MIN_SWEEP_INTERVAL)
+                || accountCache.size() > sweepThreshold))
+            evictIdleAccounts();
+    }
+
+    /**
+     * @return The rules evaluated against each transaction.
+     */
+    public AlertRuleSet getRuleSet() {
+        return ruleSet;
+    }
+
+    /**
+     * @return The windows of the groups of accounts, or {@code null}.
+     */
+    public GroupWindowTable getGroupWindows() {
+        return groupWindows;
+    }
+
+    /**
+     * Evicts the accounts whose alert window has fully expired relative to the latest transaction processed.
+     * This is done automatically when the eviction of the idle accounts is enabled, and must be called by the thread
+     * owning the accounts.
+     *
+     * @return The number of accounts evicted.
+     * @throws IllegalStateException If the processor is not in {@link ConcurrencyMode#SINGLE_WRITER} mode or if the
+     *                               accounts are owned by another thread.
+     */
+    public int evictIdleAccounts() {
+        if (concurrencyMode != ConcurrencyMode.SINGLE_WRITER)
+            throw new IllegalStateException("Evicting idle accounts requires the SINGLE_WRITER concurrency mode");
+        checkOwner();
+
+        long streamTime = streamTimestamp;
+        int evicted = accountCache.removeIf(account -> account.isIdleAt(streamTime));
+        evictedAccounts += evicted;
+        if (metrics != null)
+            metrics.accountsTracked.add(-evicted);
+        transactionsSinceSweep = 0;
+
+        int size = accountCache.size();
+        if (accountCacheCap > 0 && size > accountCacheCap) {
+            sweepThreshold = size + size / 4;
+            logger.warning(size + " accounts have a live alert window, above the cap of " + accountCacheCap
+                    + " accounts: they cannot be evicted without changing the alert decisions");
+        } else if (accountCacheCap > 0) {
+            sweepThreshold = accountCacheCap;
+        }
+        return evicted;
+    }
+
+    /**
+     * Copies the state of all the accounts into a section of a {@link Checkpoint}. Must be called by the thread
+     * owning the accounts, between two transactions.
+     *
+     * @return The section, ready to be read.
+     * @throws IllegalStateException If the processor is not in {@link ConcurrencyMode#SINGLE_WRITER} mode or if the
+     *                               accounts are owned by another thread.
+     */
+    public ByteBuffer saveAccounts() {
+        return saveAccounts(accountId -> true);
+    }
+
+    /**
+     * Copies the state of the selected accounts into a section of a {@link Checkpoint}. Must be called by the thread
+     * owning the accounts, between two transactions.
+     *
+     * @param selected Selects the accounts to save.
+     * @return The section, ready to be read.
+     * @throws IllegalStateException If the processor is not in {@link ConcurrencyMode#SINGLE_WRITER} mode or if the
+     *                               accounts are owned by another thread.
+     */
+    public ByteBuffer saveAccounts(IntPredicate selected) {
+        if (concurrencyMode != ConcurrencyMode.SINGLE_WRITER)
+            throw new IllegalStateException("Checkpoints require the SINGLE_WRITER concurrency mode");
+        checkOwner();
+
+        long[] size = {Long.BYTES + Integer.BYTES};
+        int[] count = {0};
+        accountCache.forEach(account -> {
+            if (selected.test(account.getId())) {
+                size[0] += 2 * Integer.BYTES + account.stateSize();
+                count[0]++;
+            }
+        });
+        ByteBuffer section = ByteBuffer.allocate(Math.toIntExact(size[0]));
+        section.putLong(streamTimestamp).putInt(count[0]);
+        accountCache.forEach(account -> {
+            if (selected.test(account.getId())) {
+                section.putInt(account.getId()).putInt(account.stateSize());
+                account.saveState(section);
+            }
+        });
+        return section.flip();
+    }
+
+    /**
+     * Hands the selected accounts over to another processor: their state is copied into a section of a
+     * {@link Checkpoint}, to be restored by the other processor with {@link #restoreAccounts}, and they are removed
+     * from this one. Must be called by the thread owning the accounts, between two transactions.
+     *
+     * @param selected Selects the accounts to hand over.
+     * @return The section, ready to be read.
+     * @throws IllegalStateException If the processor is not in {@link ConcurrencyMode#SINGLE_WRITER} mode or if the
+     *                               accounts are owned by another thread.
+     */
+    public ByteBuffer releaseAccounts(IntPredicate selected) {
+        ByteBuffer section = saveAccounts(selected);
+        int released = accountCache.removeIf(account -> selected.test(account.getId()));
+        if (metrics != null)
+            metrics.accountsTracked.add(-released);
+        return section;
+    }
+
+    /**
+     * Restores the accounts saved in a checkpoint. Must be called by the thread owning the accounts, before any
+     * transaction of the restored accounts is processed.
+     *
+     * @param checkpoint The checkpoint, taken with the same window layout as the rules of this processor.
+     * @param owned      Selects the accounts held by this processor, when the accounts are split among several
+     *                   processors.
+     * @throws IllegalStateException If the processor is not in {@link ConcurrencyMode#SINGLE_WRITER} mode or if the
+     *                               accounts are owned by another thread.
+     */
+    public void restoreAccounts(Checkpoint checkpoint, IntPredicate owned) {
+        if (concurrencyMode != ConcurrencyMode.SINGLE_WRITER)
+            throw new IllegalStateException("Checkpoints require the SINGLE_WRITER concurrency mode");
+        checkOwner();
+        checkpoint.checkWindowLayout(ruleSet);
+
+        for (int i = 0; i < checkpoint.getSectionCount(); i++) {
+            ByteBuffer section = checkpoint.getSection(i);
+            streamTimestamp = Math.max(streamTimestamp, section.getLong());
+            int accounts = section.getInt();
+            for (int a = 0; a < accounts; a++) {
+                int accountId = section.getInt();
+                int length = section.getInt();
+                if (owned.test(accountId))
+                    accountCache.computeIfAbsent(accountId, accountFactory)
+                            .restoreState(section.slice(section.position(), length));
+                section.position(section.position() + length);
+            }
+        }
+    }
+
+    /**
+     * Reads the window of an account as of its latest transaction. Can be called from any thread, and never blocks the
+     * processing of the transactions.
+     *
+     * @param accountId The account.
+     * @return The summary of the window, empty if the account is not tracked.
+     */
+    public WindowSummary queryWindow(int accountId) {
+        Account account = accountCache.get(accountId);
+        return account == null ? WindowSummary.empty(accountId) : account.readWindow();
+    }
+
+    /**
+     * Reads the windows of several accounts, see {@link #queryWindow(int)}. Each window is consistent on its own, but
+     * transactions may be processed between the reads of two windows.
+     *
+     * @param accountIds The accounts.
+     * @return The summaries of the windows, in the order of the accounts.
+     */
+    public WindowSummary[] queryWindows(int[] accountIds) {
+        WindowSummary[] windows = new WindowSummary[accountIds.length];
+        for (int i = 0; i < accountIds.length; i++) {
+            windows[i] = queryWindow(accountIds[i]);
+        }
+        return windows;
+    }
+
+    /**
+     * @return The number of accounts evicted since the processor was created.
+     */
+    public long getEvictedAccountCount() {
+        return evictedAccounts;
+    }
+
+    /**
+     * Makes the current thread the owner of the accounts if there is none yet.
+     *
+     * @throws IllegalStateException If the accounts are owned by another thread.
+     */
+    private synchronized void checkOwner() {
+        if (owner == null)
+            owner = Thread.currentThread();
+        else if (owner != Thread.currentThread())
+            throw new IllegalStateException("The accounts are owned by the thread " + owner.getName());
+    }
+
+    /**
+     * @return The number of accounts tracked by the processor.
+     */
+    public int getAccountCount() {
+        return accountCache.size();
     }
-}
\ No newline at end of file
+}
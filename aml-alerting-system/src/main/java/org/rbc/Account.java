@@ -1,26 +1,63 @@
 package org.rbc;
 
-import java.time.LocalTime;
-import java.util.LinkedList;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-
-import static org.rbc.AMLAlertingConfiguration.ALERT_WINDOW_SECONDS;
-import static org.rbc.AMLAlertingConfiguration.THRESHOLD_AMOUNT;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
 
 /**
  * Represents a bank account.
+ * The transactions of the alert windows are kept in an {@link AmountWindow} made of primitive arrays, so adding a
+ * transaction does not allocate any object. The windows are those needed by the {@link AccountRules} of the account,
+ * which are all evaluated in a single pass when a transaction is added.
+ * <p>
+ * An account does not lock: its state must be updated by a single thread at a time, either because it is owned by a
+ * single writer thread or because the caller synchronizes on it, see {@link AMLTransactionProcessor.ConcurrencyMode}.
+ * <p>
+ * Other threads can still read a summary of the window with {@link #readWindow()}. After each update, the writer
+ * publishes the summary into a few fields guarded by a sequence lock: it makes the version odd, writes the fields, then
+ * makes the version even again. A reader copies the fields and retries if the version was odd or changed meanwhile. The
+ * writer never waits for the readers, and a reader only retries while the writer is publishing the same account.
  */
 class Account {
+
+    private static final VarHandle VERSION;
+
+    static {
+        try {
+            VERSION = MethodHandles.lookup().findVarHandle(Account.class, "version", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private final int id;
-    private final LinkedList<Transaction> transactions;
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
-    private int runningTotal;
+    private final AccountRules rules;
+    private final AmountWindow window;
+
+    /**
+     * The version of the published summary of the window, odd while it is being written.
+     */
+    private int version;
+    private long publishedTotal;
+    private int publishedCount;
+    private long publishedOldest = WindowSummary.NO_TIMESTAMP;
+    private long publishedNewest = WindowSummary.NO_TIMESTAMP;
 
+    /**
+     * Creates an account evaluated against the rule of {@link AMLAlertingConfiguration}.
+     */
     public Account(int id) {
+        this(id, AlertRuleSet.DEFAULT.rulesFor(id));
+    }
+
+    /**
+     * @param id    The unique identifier of the account.
+     * @param rules The rules applying to the account.
+     */
+    public Account(int id, AccountRules rules) {
         this.id = id;
-        this.transactions = new LinkedList<>();
-        this.runningTotal = 0;
+        this.rules = rules;
+        this.window = rules.newWindow();
     }
 
     public int getId() {
@@ -35,24 +72,121 @@ class Account {
      * @throws NullPointerException If the transaction is null.
      */
     public boolean addTransaction(Transaction transaction) {
-        lock.writeLock().lock();
-        try {
-            // Calculate the timestamp 60 seconds ago
-            LocalTime cutOffTime = transaction.timestamp().minusSeconds(ALERT_WINDOW_SECONDS);
+        return addTransaction(transaction.timestamp(), transaction.amount());
+    }
 
-            // Remove transactions that occurred before the 60-second window
-            while (!transactions.isEmpty() && transactions.getFirst().timestamp().isBefore(cutOffTime)) {
-                runningTotal -= transactions.removeFirst().amount();
-            }
+    /**
+     * Adds a new transaction, given by its fields, to the account and checks if the running total exceeds the alert
+     * threshold.
+     *
+     * @param timestamp   The time of the transaction, see {@link Timestamps}.
+     * @param amount      The amount of the transaction.
+     * @return True if the running total exceeds the alert threshold (meaning an alert must be raised), false otherwise.
+     */
+    public boolean addTransaction(long timestamp, int amount) {
+        return evaluateTransaction(timestamp, amount) != 0;
+    }
 
-            // Add the new transaction to the account
-            transactions.addLast(transaction);
-            runningTotal += transaction.amount();
+    /**
+     * Adds a new transaction to the account and evaluates all the rules of the account.
+     *
+     * @param timestamp   The time of the transaction, see {@link Timestamps}.
+     * @param amount      The amount of the transaction.
+     * @return The mask of the rules which fired, see {@link AlertRuleSet#ruleIds(long)}, or 0 if there is no alert.
+     */
+    public long evaluateTransaction(long timestamp, int amount) {
+        // Remove the transactions that occurred before each window, add the new one and check if the running totals
+        // exceed the thresholds of the rules
+        window.add(timestamp, amount);
+        long firedRules = rules.evaluate(window);
+        publishWindow(timestamp);
+        return firedRules;
+    }
 
-            // Check if the running total exceeds the alert threshold
-            return runningTotal > THRESHOLD_AMOUNT;
-        } finally {
-            lock.writeLock().unlock();
+    /**
+     * Publishes the summary of the window for {@link #readWindow()}. Must be called by the thread updating the
+     * account.
+     *
+     * @param newestTimestamp The time of the latest transaction of the account.
+     */
+    private void publishWindow(long newestTimestamp) {
+        int v = version;
+        VERSION.setOpaque(this, v + 1);
+        // The fields must not be seen written before the version is odd
+        VarHandle.storeStoreFence();
+        publishedTotal = window.total();
+        publishedCount = window.size();
+        publishedOldest = window.oldestTimestamp();
+        publishedNewest = newestTimestamp;
+        VERSION.setRelease(this, v + 2);
+    }
+
+    /**
+     * Reads the summary of the window as of the latest transaction of the account. Can be called from any thread, and
+     * never blocks the thread updating the account.
+     */
+    public WindowSummary readWindow() {
+        while (true) {
+            int v = (int) VERSION.getAcquire(this);
+            if ((v & 1) == 0) {
+                long total = publishedTotal;
+                int count = publishedCount;
+                long oldest = publishedOldest;
+                long newest = publishedNewest;
+                // The fields must be read before the version is checked again
+                VarHandle.loadLoadFence();
+                if ((int) VERSION.getOpaque(this) == v)
+                    return new WindowSummary(id, total, count, oldest, newest);
+            }
+            Thread.onSpinWait();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Tells whether the alert window of the account has fully expired relative to the current time of the stream.
+     * An expired account behaves as a new one for all the following transactions, so it can be evicted.
+     *
+     * @param streamTimestamp The time of the latest transaction of the stream, see {@link Timestamps}.
+     * @return {@code true} if no transaction of the account is in the alert window anymore.
+     */
+    public boolean isIdleAt(long streamTimestamp) {
+        return window.isExpiredAt(streamTimestamp);
+    }
+
+    /**
+     * @return The total amount of the transactions in the longest alert window.
+     */
+    public long getRunningTotal() {
+        return window.total();
+    }
+
+    /**
+     * @return The number of transactions in the longest alert window.
+     */
+    public int getWindowSize() {
+        return window.size();
+    }
+
+    /**
+     * @return The number of bytes written by {@link #saveState(ByteBuffer)}.
+     */
+    public int stateSize() {
+        return window.stateSize();
+    }
+
+    /**
+     * Writes the state of the alert windows, see {@link AmountWindow#saveState(ByteBuffer)}.
+     */
+    public void saveState(ByteBuffer out) {
+        window.saveState(out);
+    }
+
+    /**
+     * Restores the state of the alert windows into this new account, see
+     * {@link AmountWindow#restoreState(ByteBuffer)}.
+     */
+    public void restoreState(ByteBuffer in) {
+        window.restoreState(in);
+        publishWindow(window.newestTimestamp());
+    }
+}
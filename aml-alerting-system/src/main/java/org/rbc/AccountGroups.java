@@ -0,0 +1,174 @@
+package org.rbc;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The mapping of the accounts to the groups they belong to, e.g. the accounts held by the same customer or household,
+ * whose transactions are also summed in the window of the group, see {@link GroupWindowTable}.
+ * <p>
+ * The mapping is loaded from a CSV file with the header {@code AccountId,GroupId} and one line per account, into an
+ * {@link IntIntHashMap}. An account missing from the file belongs to no group.
+ * <p>
+ * The mapping can be reloaded while the transactions are processed: the new mapping is built aside, then published
+ * through a volatile reference, so the processing threads only ever see a complete mapping and never wait for the
+ * reload. A map is never modified once published. The transactions already added to the window of a group stay in it
+ * when their account moves to another group: the change only applies to the following transactions.
+ */
+class AccountGroups implements Closeable {
+
+    public static final Logger logger = Logger.getLogger(AccountGroups.class.getName());
+
+    /**
+     * The group of the accounts belonging to no group. It is not a valid group id.
+     */
+    static final int NO_GROUP = Integer.MIN_VALUE;
+
+    static final String HEADER = "AccountId,GroupId";
+
+    private final Path path;
+    private volatile IntIntHashMap groups;
+    private FileTime lastModified;
+    private Thread watcher;
+    private volatile boolean closed;
+
+    private AccountGroups(Path path, IntIntHashMap groups, FileTime lastModified) {
+        this.path = path;
+        this.groups = groups;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Loads the mapping from a file.
+     *
+     * @throws IOException              If the file cannot be read.
+     * @throws IllegalArgumentException If the file is not a valid mapping.
+     */
+    public static AccountGroups load(Path path) throws IOException {
+        FileTime lastModified = Files.getLastModifiedTime(path);
+        return new AccountGroups(path, read(path), lastModified);
+    }
+
+    /**
+     * @return The mapping held in memory only, e.g. for testing.
+     */
+    static AccountGroups of(IntIntHashMap groups) {
+        return new AccountGroups(null, groups, null);
+    }
+
+    private static IntIntHashMap read(Path path) throws IOException {
+        IntIntHashMap groups = new IntIntHashMap();
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            String line = reader.readLine();
+            if (line == null || !line.trim().equals(HEADER))
+                throw new IllegalArgumentException("The account groups file must start with " + HEADER + ": " + path);
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank())
+                    continue;
+                int separator = line.indexOf(',');
+                try {
+                    if (separator < 0)
+                        throw new NumberFormatException();
+                    int accountId = Integer.parseInt(line.substring(0, separator).trim());
+                    int groupId = Integer.parseInt(line.substring(separator + 1).trim());
+                    if (groupId == NO_GROUP)
+                        throw new NumberFormatException();
+                    groups.put(accountId, groupId);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid account group at line " + lineNumber + " of " + path
+                            + ": " + line);
+                }
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * @return The group of the account, or {@link #NO_GROUP}. Can be called from any thread.
+     */
+    public int groupOf(int accountId) {
+        return groups.get(accountId, NO_GROUP);
+    }
+
+    /**
+     * @return The number of accounts belonging to a group.
+     */
+    public int size() {
+        return groups.size();
+    }
+
+    /**
+     * Reads the file again and replaces the mapping, without stopping the threads reading it.
+     *
+     * @throws IOException              If the file cannot be read.
+     * @throws IllegalArgumentException If the file is not a valid mapping. The previous mapping is kept.
+     */
+    public synchronized void reload() throws IOException {
+        // Recorded first, so an invalid file is only reported once
+        lastModified = Files.getLastModifiedTime(path);
+        groups = read(path);
+        logger.info("Reloaded the groups of " + groups.size() + " accounts from " + path);
+    }
+
+    /**
+     * Starts a thread reloading the mapping whenever the modification time of the file changes. A file which cannot
+     * be loaded is logged and the previous mapping is kept.
+     *
+     * @param intervalMillis The interval between two checks of the file.
+     * @param threads        Creates the thread watching the file.
+     */
+    public synchronized void watch(long intervalMillis, IoThreads threads) {
+        if (watcher != null)
+            throw new IllegalStateException("The account groups file is already watched");
+        watcher = threads.newThread("aml-groups-watcher", () -> {
+            while (!closed) {
+                try {
+                    Thread.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                reloadIfModified();
+            }
+        });
+        watcher.start();
+    }
+
+    private void reloadIfModified() {
+        try {
+            synchronized (this) {
+                if (!closed && !Files.getLastModifiedTime(path).equals(lastModified))
+                    reload();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Cannot reload the account groups, keeping the previous ones", e);
+        }
+    }
+
+    /**
+     * Stops watching the file.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Thread thread;
+        synchronized (this) {
+            thread = watcher;
+        }
+        if (thread == null)
+            return;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.rbc;
+
+import static org.rbc.AMLAlertingConfiguration.MAX_ACCOUNTS;
+import static org.rbc.AMLAlertingConfiguration.MAX_TRANSACTIONS_PER_ACCOUNT;
+
+/**
+ * Validates the input limits ({@link AMLAlertingConfiguration#MAX_ACCOUNTS} and
+ * {@link AMLAlertingConfiguration#MAX_TRANSACTIONS_PER_ACCOUNT}) incrementally, one transaction at a time.
+ * This allows the readers to stream transactions without having to keep the whole input in memory
+ * before validating it. The memory used is bounded by the number of distinct accounts, and no object is allocated
+ * per transaction.
+ */
+class AccountLimitValidator {
+
+    /**
+     * The number of transactions seen so far for each account.
+     */
+    private final IntIntHashMap transactionCounts = new IntIntHashMap(MAX_ACCOUNTS);
+
+    /**
+     * Records a transaction for the given account and checks that no limit has been exceeded.
+     *
+     * @param accountId The account of the transaction.
+     * @throws IllegalArgumentException If the transaction exceeds the number of accounts or the number of
+     *                                  transactions per account allowed in the input.
+     */
+    public void validate(int accountId) {
+        if (transactionCounts.size() >= MAX_ACCOUNTS && !transactionCounts.containsKey(accountId))
+            throw tooManyAccounts();
+
+        if (transactionCounts.addTo(accountId, 1) > MAX_TRANSACTIONS_PER_ACCOUNT)
+            throw tooManyTransactions();
+    }
+
+    /**
+     * Checks the limits at once, when the totals of the input are known upfront, e.g. from the header of a
+     * {@link ColumnarTransactionFile}.
+     *
+     * @param accountCount              The number of distinct accounts of the input.
+     * @param maxTransactionsPerAccount The largest number of transactions of an account.
+     * @throws IllegalArgumentException If the input exceeds the number of accounts or the number of transactions per
+     *                                  account allowed.
+     */
+    public static void validateTotals(int accountCount, int maxTransactionsPerAccount) {
+        if (accountCount > MAX_ACCOUNTS)
+            throw tooManyAccounts();
+        if (maxTransactionsPerAccount > MAX_TRANSACTIONS_PER_ACCOUNT)
+            throw tooManyTransactions();
+    }
+
+    private static IllegalArgumentException tooManyAccounts() {
+        return new IllegalArgumentException("The maximum number of accounts allowed " +
+                "in the input file is: " + MAX_ACCOUNTS);
+    }
+
+    private static IllegalArgumentException tooManyTransactions() {
+        return new IllegalArgumentException("The maximum number of transactions allowed" +
+                " per account is: " + MAX_TRANSACTIONS_PER_ACCOUNT);
+    }
+}
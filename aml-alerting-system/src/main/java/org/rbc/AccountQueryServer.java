@@ -0,0 +1,185 @@
+package org.rbc;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Serves the windows of the accounts over HTTP while the transactions are processed, so investigators and upstream
+ * systems can ask for the running total of an account at any time.
+ * <p>
+ * The server listens on the loopback interface, and answers {@code GET} requests with JSON:
+ * <ul>
+ *     <li>{@code /accounts/<id>}: the window of one account, as an object.</li>
+ *     <li>{@code /accounts?ids=<id>,<id>,...}: the windows of several accounts, as an array in the order of the
+ *     ids.</li>
+ * </ul>
+ * Each window has the fields of a {@link WindowSummary}, with the times in seconds, see {@link Timestamps}, or
+ * {@code null} when the window is empty. An account which is not tracked has an empty window.
+ * <p>
+ * The requests are handled by a pool of threads, and read the windows without any lock, see
+ * {@link AMLTransactionProcessor#queryWindow(int)}, so they neither wait for the processing nor slow it down beyond
+ * the CPU they use. The connections are kept alive between requests. The JDK server only sets {@code TCP_NODELAY}
+ * on them if the system property {@code sun.net.httpserver.nodelay} is {@code true} when the first server is created.
+ */
+class AccountQueryServer implements Closeable {
+
+    static final String PATH = "/accounts";
+
+    /**
+     * The maximum number of accounts of a request.
+     */
+    static final int MAX_ACCOUNTS_PER_REQUEST = 10_000;
+
+    static final int DEFAULT_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final IntFunction<WindowSummary> query;
+
+    /**
+     * Starts serving on the loopback interface.
+     *
+     * @param port      The port to listen on, or 0 to use any free port.
+     * @param threads   The number of threads handling the requests.
+     * @param query     Reads the window of an account, from any thread, e.g.
+     *                  {@link StatefulEngine#queryWindow(int)}.
+     * @param ioThreads Creates the threads handling the requests.
+     * @throws IOException If the port cannot be bound.
+     */
+    public AccountQueryServer(int port, int threads, IntFunction<WindowSummary> query, IoThreads ioThreads)
+            throws IOException {
+        this.query = query;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads,
+                task -> ioThreads.newThread("aml-query-" + threadCount.incrementAndGet(), task));
+        server.setExecutor(executor);
+        server.createContext(PATH, this::handle);
+        server.start();
+    }
+
+    /**
+     * @return The port the server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                send(exchange, 405, "Only GET is supported\n");
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            String json;
+            try {
+                if (path.startsWith(PATH + "/") && path.indexOf('/', PATH.length() + 1) < 0) {
+                    json = appendWindow(new StringBuilder(), query.apply(
+                            parseAccountId(path.substring(PATH.length() + 1)))).append('\n').toString();
+                } else if (path.equals(PATH)) {
+                    json = windowsJson(parseAccountIds(exchange.getRequestURI().getRawQuery()));
+                } else {
+                    send(exchange, 404, "Unknown path " + path + "\n");
+                    return;
+                }
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, e.getMessage() + "\n");
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            send(exchange, 200, json);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * @param query The query of the request, e.g. {@code ids=1,2,3}.
+     * @throws IllegalArgumentException If the query does not hold a valid list of accounts.
+     */
+    static int[] parseAccountIds(String query) {
+        String ids = null;
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("ids="))
+                    ids = parameter.substring("ids=".length());
+            }
+        }
+        if (ids == null || ids.isEmpty())
+            throw new IllegalArgumentException("The accounts must be given as ?ids=<id>,<id>,...");
+        // Commas may be escaped by the client
+        String[] values = ids.replace("%2C", ",").replace("%2c", ",").split(",", -1);
+        if (values.length > MAX_ACCOUNTS_PER_REQUEST)
+            throw new IllegalArgumentException("At most " + MAX_ACCOUNTS_PER_REQUEST + " accounts can be queried at"
+                    + " once, not " + values.length);
+        int[] accountIds = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            accountIds[i] = parseAccountId(values[i]);
+        }
+        return accountIds;
+    }
+
+    private static int parseAccountId(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid account id: " + value);
+        }
+    }
+
+    private String windowsJson(int[] accountIds) {
+        StringBuilder json = new StringBuilder(accountIds.length * 100 + 2).append('[');
+        for (int i = 0; i < accountIds.length; i++) {
+            if (i > 0)
+                json.append(',');
+            appendWindow(json, query.apply(accountIds[i]));
+        }
+        return json.append("]\n").toString();
+    }
+
+    static StringBuilder appendWindow(StringBuilder json, WindowSummary window) {
+        json.append("{\"accountId\":").append(window.accountId())
+                .append(",\"total\":").append(window.total())
+                .append(",\"count\":").append(window.count())
+                .append(",\"oldestTimestamp\":");
+        appendTimestamp(json, window.oldestTimestamp());
+        json.append(",\"newestTimestamp\":");
+        appendTimestamp(json, window.newestTimestamp());
+        return json.append('}');
+    }
+
+    private static void appendTimestamp(StringBuilder json, long timestamp) {
+        if (timestamp == WindowSummary.NO_TIMESTAMP)
+            json.append("null");
+        else
+            json.append(timestamp);
+    }
+
+    /**
+     * Stops serving, without waiting for the requests in progress.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
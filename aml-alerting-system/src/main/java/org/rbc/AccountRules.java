@@ -0,0 +1,84 @@
+package org.rbc;
+
+import java.util.Arrays;
+
+/**
+ * The rules of an {@link AlertRuleSet} applying to an account, along with the distinct windows they need.
+ * <p>
+ * The rules sharing a window duration share its running total, and all the windows of an account share the same
+ * storage (see {@link AmountWindow}), so adding a rule does not add a copy of the transactions.
+ * Instances are immutable and shared by all the accounts of the same segment.
+ */
+class AccountRules {
+
+    private final int[] windowSeconds;
+
+    /**
+     * The resolution of the buckets of the windows, or 0 to keep each transaction.
+     */
+    private final int bucketSeconds;
+    private final long[] thresholds;
+    private final int[] windowIndexes;
+    private final long[] ruleBits;
+
+    /**
+     * @param rules         The rules of the rule set.
+     * @param mask          The bits of the rules applying to the account: bit {@code i} stands for {@code rules[i]}.
+     * @param bucketSeconds The resolution of the buckets of the windows, or 0 to keep each transaction.
+     */
+    AccountRules(AlertRule[] rules, long mask, int bucketSeconds) {
+        this.bucketSeconds = bucketSeconds;
+        int count = Long.bitCount(mask);
+        this.thresholds = new long[count];
+        this.windowIndexes = new int[count];
+        this.ruleBits = new long[count];
+        int[] windows = new int[count];
+        int i = 0;
+        for (int r = 0; r < rules.length; r++) {
+            if ((mask & 1L << r) != 0)
+                windows[i++] = rules[r].windowSeconds();
+        }
+        this.windowSeconds = Arrays.stream(windows).distinct().sorted().toArray();
+
+        i = 0;
+        for (int r = 0; r < rules.length; r++) {
+            if ((mask & 1L << r) == 0)
+                continue;
+            thresholds[i] = rules[r].threshold();
+            windowIndexes[i] = Arrays.binarySearch(windowSeconds, rules[r].windowSeconds());
+            ruleBits[i] = 1L << r;
+            i++;
+        }
+    }
+
+    /**
+     * @return The distinct window durations needed by the rules, in ascending order.
+     */
+    int[] windowSeconds() {
+        return windowSeconds.clone();
+    }
+
+    /**
+     * @return A new window tracking the durations needed by the rules: a {@link BucketedWindow} if a resolution is
+     * set, otherwise a {@link TransactionWindow}.
+     */
+    AmountWindow newWindow() {
+        return bucketSeconds > 0 ? new BucketedWindow(windowSeconds, bucketSeconds)
+                : new TransactionWindow(windowSeconds);
+    }
+
+    /**
+     * Evaluates the rules against the running totals of a window.
+     *
+     * @param window A window created by {@link #newWindow()}.
+     * @return The bits of the rules which fired, as in {@link AlertRuleSet#ruleIds(long)}.
+     */
+    long evaluate(AmountWindow window) {
+        long fired = 0;
+        for (int i = 0; i < thresholds.length; i++) {
+            if (window.total(windowIndexes[i]) > thresholds[i])
+                fired |= ruleBits[i];
+        }
+        return fired;
+    }
+}
@@ -0,0 +1,209 @@
+package org.rbc;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * A hash table of accounts keyed by their primitive {@code int} id.
+ * <p>
+ * It uses open addressing with linear probing over a key array and a parallel account array, so lookups do not box
+ * the id and an account costs no more than its two slots, instead of a map entry per account.
+ * Lookups are lock-free: a key is published with a release write after its account, so a thread reading the key
+ * with an acquire read also sees its account. Insertions, removals and resizes are serialized by a lock, and a resize
+ * publishes a new table, so a lookup in progress on the old table never sees it modified.
+ * <p>
+ * A removed account leaves its key in the table with a {@code null} account, so lookups of the keys further in the
+ * probe sequence are not affected. These dead slots are reused if the same id comes back, and dropped when the table
+ * is rebuilt.
+ */
+class AccountTable {
+
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle ACCOUNTS = MethodHandles.arrayElementVarHandle(Account[].class);
+
+    /**
+     * The key marking a free slot. The account with this id, if any, is kept outside the table.
+     */
+    private static final int FREE_KEY = 0;
+
+    private final Object lock = new Object();
+    private volatile Table table;
+    private volatile Account freeKeyAccount;
+
+    /**
+     * The number of accounts in the table. It is only modified while holding the lock.
+     */
+    private volatile int size;
+
+    /**
+     * The number of slots holding the key of a removed account.
+     */
+    private int deadSlots;
+
+    /**
+     * @param expectedSize The number of accounts the table should hold without having to be resized.
+     */
+    public AccountTable(int expectedSize) {
+        this.table = new Table(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int size) {
+        return Integer.highestOneBit(Math.max(size, 4) * 2 - 1) << 1;
+    }
+
+    /**
+     * @return The account with the given id, or {@code null} if there is none.
+     */
+    public Account get(int id) {
+        if (id == FREE_KEY)
+            return freeKeyAccount;
+        Table t = table;
+        int index = IntIntHashMap.hash(id) & t.mask;
+        int key;
+        while ((key = (int) KEYS.getAcquire(t.keys, index)) != FREE_KEY) {
+            if (key == id)
+                return (Account) ACCOUNTS.getAcquire(t.accounts, index);
+            index = (index + 1) & t.mask;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the account with the given id, creating it with the factory if there is none.
+     * The factory is called at most once per id, even when several threads look up the same missing id.
+     *
+     * @return The existing or created account.
+     */
+    public Account computeIfAbsent(int id, IntFunction<Account> factory) {
+        Account account = get(id);
+        if (account != null)
+            return account;
+
+        synchronized (lock) {
+            account = get(id);
+            if (account != null)
+                return account;
+
+            account = factory.apply(id);
+            if (id == FREE_KEY) {
+                freeKeyAccount = account;
+            } else {
+                int index = table.indexOf(id);
+                if (table.keys[index] == id) {
+                    // Reuse the dead slot of the account previously removed
+                    deadSlots--;
+                } else if ((size + deadSlots + 1) * 2 > table.keys.length) {
+                    table = table.rebuild(capacityFor(size + 1));
+                    deadSlots = 0;
+                    index = table.indexOf(id);
+                }
+                table.set(index, id, account);
+            }
+            size++;
+            return account;
+        }
+    }
+
+    /**
+     * Removes the accounts matching the filter. The filter is called while holding the lock of the table.
+     *
+     * @return The number of accounts removed.
+     */
+    public int removeIf(Predicate<Account> filter) {
+        synchronized (lock) {
+            int removed = 0;
+            Account account = freeKeyAccount;
+            if (account != null && filter.test(account)) {
+                freeKeyAccount = null;
+                removed++;
+            }
+            Table t = table;
+            for (int i = 0; i < t.keys.length; i++) {
+                account = t.accounts[i];
+                if (account != null && filter.test(account)) {
+                    ACCOUNTS.setRelease(t.accounts, i, null);
+                    deadSlots++;
+                    removed++;
+                }
+            }
+            size -= removed;
+            if (deadSlots > size) {
+                table = t.rebuild(capacityFor(size));
+                deadSlots = 0;
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * @return The number of accounts in the table.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Performs the action for each account of the table. Accounts added or removed concurrently may or may not be
+     * visited.
+     */
+    public void forEach(Consumer<Account> action) {
+        Account account = freeKeyAccount;
+        if (account != null)
+            action.accept(account);
+        Table t = table;
+        for (int i = 0; i < t.keys.length; i++) {
+            account = (Account) ACCOUNTS.getAcquire(t.accounts, i);
+            if (account != null)
+                action.accept(account);
+        }
+    }
+
+    /**
+     * The arrays of the table, replaced as a whole when the table is rebuilt.
+     */
+    private static class Table {
+        final int[] keys;
+        final Account[] accounts;
+        final int mask;
+
+        Table(int capacity) {
+            this.keys = new int[capacity];
+            this.accounts = new Account[capacity];
+            this.mask = capacity - 1;
+        }
+
+        /**
+         * @return The slot holding the id, or the free slot where it would be inserted.
+         */
+        int indexOf(int id) {
+            int index = IntIntHashMap.hash(id) & mask;
+            while (keys[index] != id && keys[index] != FREE_KEY) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        /**
+         * Stores an account in a slot. Must be called while holding the lock.
+         */
+        void set(int index, int id, Account account) {
+            ACCOUNTS.setRelease(accounts, index, account);
+            KEYS.setRelease(keys, index, id);
+        }
+
+        /**
+         * @return A new table holding the live accounts of this one.
+         */
+        Table rebuild(int capacity) {
+            Table rebuilt = new Table(capacity);
+            for (int i = 0; i < keys.length; i++) {
+                if (accounts[i] != null)
+                    rebuilt.set(rebuilt.indexOf(keys[i]), keys[i], accounts[i]);
+            }
+            return rebuilt;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.rbc;
+
+/**
+ * Receives the alert episodes of the accounts: an episode opens with the first transaction of an account raising an
+ * alert, and closes once the account stops raising alerts. The events are delivered in input order, and never by more
+ * than one thread at a time.
+ */
+interface AlertEpisodeListener {
+
+    /**
+     * Called when an account raises an alert while it has no open episode.
+     *
+     * @param timestamp  The time of the transaction raising the alert, see {@link Timestamps}.
+     * @param accountId  The account.
+     * @param firedRules The mask of the rules fired by the transaction, see {@link AlertRuleSet#ruleIds(long)}.
+     */
+    void onEpisodeOpened(long timestamp, int accountId, long firedRules);
+
+    /**
+     * Called when the episode of an account closes.
+     *
+     * @param timestamp The time of the first transaction of the account not raising an alert, or the time its window
+     *                  drained if it had no transaction since its last alert, see {@link Timestamps}.
+     * @param accountId The account.
+     */
+    void onEpisodeClosed(long timestamp, int accountId);
+}
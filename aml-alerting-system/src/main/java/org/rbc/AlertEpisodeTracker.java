@@ -0,0 +1,186 @@
+package org.rbc;
+
+import java.util.Arrays;
+
+/**
+ * Compacts the results of the transactions into alert episodes. Once an account crosses a threshold, every following
+ * transaction raises an alert until its window drains, so a single burst raises many alerts: the tracker reports them
+ * as one episode, opened by the first alert and closed by the first transaction of the account not raising one.
+ * <p>
+ * An account may also stop transacting while its episode is open. Its episode is then closed when the stream time
+ * passes the last alert of the account by the longest window of the rules, since its windows are empty from then on.
+ * The tracker keeps the earliest time an open episode can drain, and only scans the open episodes when the stream
+ * reaches it.
+ * <p>
+ * The results are also forwarded to the next listener, if any. Each account which ever raised an alert keeps a slot
+ * in primitive arrays, so no object is allocated per result. This class is not thread-safe, like the listeners it is
+ * given to.
+ */
+class AlertEpisodeTracker implements TransactionResultListener {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int windowSeconds;
+    private final AlertEpisodeListener episodes;
+    private final TransactionResultListener next;
+
+    /**
+     * The slot of each account which ever raised an alert.
+     */
+    private final IntIntHashMap slots = new IntIntHashMap();
+
+    /**
+     * The account and the time of the last alert of each slot.
+     */
+    private int[] accountIds = new int[INITIAL_CAPACITY];
+    private long[] lastAlerts = new long[INITIAL_CAPACITY];
+
+    /**
+     * The slots of the open episodes, in no particular order, and the position of each slot in it, or -1 if its
+     * episode is closed.
+     */
+    private int[] openSlots = new int[INITIAL_CAPACITY];
+    private int[] openPositions = new int[INITIAL_CAPACITY];
+    private int openCount;
+
+    /**
+     * No open episode can drain before this time.
+     */
+    private long earliestDrain = Long.MAX_VALUE;
+
+    /**
+     * @param windowSeconds The longest window of the rules, after which an account without transactions stops
+     *                      raising alerts.
+     * @param episodes      The listener receiving the episodes.
+     * @param next          The listener the results are forwarded to, or {@code null}.
+     */
+    public AlertEpisodeTracker(int windowSeconds, AlertEpisodeListener episodes, TransactionResultListener next) {
+        this.windowSeconds = windowSeconds;
+        this.episodes = episodes;
+        this.next = next;
+    }
+
+    /**
+     * @return The longest window of the rules of the rule set.
+     */
+    static int longestWindowSeconds(AlertRuleSet ruleSet) {
+        int longest = 0;
+        for (int i = 0; i < ruleSet.size(); i++) {
+            longest = Math.max(longest, ruleSet.rule(i).windowSeconds());
+        }
+        return longest;
+    }
+
+    /**
+     * Marks the episode of an account as open without reporting it, e.g. when resuming a journal in which the
+     * episode was left open.
+     *
+     * @param accountId The account.
+     * @param lastAlert The time of the last alert known of the account.
+     */
+    public void restoreOpenEpisode(int accountId, long lastAlert) {
+        int slot = slotOf(accountId);
+        lastAlerts[slot] = lastAlert;
+        if (openPositions[slot] < 0)
+            open(slot);
+        earliestDrain = Math.min(earliestDrain, drainTime(lastAlert));
+    }
+
+    @Override
+    public void onResult(long timestamp, int amount, int accountId, long firedRules) {
+        if (timestamp >= earliestDrain)
+            closeDrained(timestamp);
+
+        if (firedRules != 0) {
+            int slot = slotOf(accountId);
+            lastAlerts[slot] = timestamp;
+            if (openPositions[slot] < 0) {
+                open(slot);
+                episodes.onEpisodeOpened(timestamp, accountId, firedRules);
+            }
+            earliestDrain = Math.min(earliestDrain, drainTime(timestamp));
+        } else if (openCount > 0) {
+            int slot = slots.get(accountId, -1);
+            if (slot >= 0 && openPositions[slot] >= 0) {
+                close(slot);
+                episodes.onEpisodeClosed(timestamp, accountId);
+            }
+        }
+
+        if (next != null)
+            next.onResult(timestamp, amount, accountId, firedRules);
+    }
+
+    @Override
+    public void onIdle() {
+        if (next != null)
+            next.onIdle();
+    }
+
+    /**
+     * @return The first time the windows of an account are empty, when its last transaction is at the given time.
+     */
+    private long drainTime(long lastAlert) {
+        return lastAlert + windowSeconds + 1;
+    }
+
+    /**
+     * Closes the episodes whose windows drained by the given time, and computes the next time an episode can drain.
+     * The open slots are scanned from the end, so closing one only moves a slot already scanned.
+     */
+    private void closeDrained(long timestamp) {
+        long earliest = Long.MAX_VALUE;
+        for (int i = openCount - 1; i >= 0; i--) {
+            int slot = openSlots[i];
+            long drain = drainTime(lastAlerts[slot]);
+            if (drain <= timestamp) {
+                close(slot);
+                episodes.onEpisodeClosed(drain, accountIds[slot]);
+            } else {
+                earliest = Math.min(earliest, drain);
+            }
+        }
+        earliestDrain = earliest;
+    }
+
+    /**
+     * @return The number of open episodes.
+     */
+    public int getOpenEpisodeCount() {
+        return openCount;
+    }
+
+    private int slotOf(int accountId) {
+        int slot = slots.get(accountId, -1);
+        if (slot >= 0)
+            return slot;
+        slot = slots.size();
+        if (slot == accountIds.length) {
+            int capacity = slot * 2;
+            accountIds = Arrays.copyOf(accountIds, capacity);
+            lastAlerts = Arrays.copyOf(lastAlerts, capacity);
+            openSlots = Arrays.copyOf(openSlots, capacity);
+            openPositions = Arrays.copyOf(openPositions, capacity);
+        }
+        slots.put(accountId, slot);
+        accountIds[slot] = accountId;
+        openPositions[slot] = -1;
+        return slot;
+    }
+
+    private void open(int slot) {
+        openSlots[openCount] = slot;
+        openPositions[slot] = openCount++;
+    }
+
+    /**
+     * Removes the slot from the open episodes, moving the last open slot in its place.
+     */
+    private void close(int slot) {
+        int position = openPositions[slot];
+        int last = openSlots[--openCount];
+        openSlots[position] = last;
+        openPositions[last] = position;
+        openPositions[slot] = -1;
+    }
+}
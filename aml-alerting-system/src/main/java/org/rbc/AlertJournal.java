@@ -0,0 +1,335 @@
+package org.rbc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An append-only binary journal of the {@link AlertEpisodeListener alert episodes}, written through a memory-mapped
+ * file, so appending an event is a few stores into the page cache, without any system call.
+ * <p>
+ * The file is little-endian: a header (magic number, version and record size), then one fixed-size record per event:
+ * its time, the mask of the rules fired (0 for a closing event), the account id and the type of the event. The file is
+ * mapped region by region ahead of the records, and the type is written last, after a release fence, so a reader
+ * tailing the file stops at the first record whose type is still 0, see
+ * {@link #read(Path, long, AlertEpisodeListener)}. A reader must read the type first, then the rest of the record
+ * after an acquire fence: only then does a written type guarantee a complete record. When the journal is closed, the
+ * file is truncated after its last record.
+ * <p>
+ * The mapped pages are forced to the disk periodically by a background thread, and when the journal is closed, so a
+ * crash of the machine loses at most the events of the last interval. A crash of the process loses none, since the
+ * pages belong to the operating system.
+ * <p>
+ * Events must be appended by a single thread at a time.
+ */
+class AlertJournal implements AlertEpisodeListener, Closeable {
+
+    public static final Logger logger = Logger.getLogger(AlertJournal.class.getName());
+
+    /**
+     * "AMLJ" in ASCII.
+     */
+    static final int MAGIC = 0x414D4C4A;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 4 * Integer.BYTES;
+
+    static final int RECORD_SIZE = 2 * Long.BYTES + 2 * Integer.BYTES;
+
+    static final int OPENED = 1;
+    static final int CLOSED = 2;
+
+    static final long DEFAULT_FORCE_INTERVAL_MILLIS = 1000;
+
+    /**
+     * The number of records mapped at once.
+     */
+    private static final int REGION_RECORDS = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long forceIntervalMillis;
+    private final Thread forcer;
+
+    /**
+     * The open episodes found in the file when it was opened, with the time of the latest event of the file.
+     */
+    private final Map<Integer, Long> openEpisodes = new HashMap<>();
+
+    /**
+     * The mapped region the next records are written to, and the position of the region in the file.
+     */
+    private volatile MappedByteBuffer region;
+    private long regionPosition;
+
+    /**
+     * The position in the file following the last record.
+     */
+    private long end;
+    private long appended;
+    private volatile boolean closed;
+
+    private AlertJournal(FileChannel channel, long forceIntervalMillis, IoThreads threads) throws IOException {
+        this.channel = channel;
+        this.forceIntervalMillis = forceIntervalMillis;
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            end = HEADER_SIZE;
+        } else {
+            end = scan();
+        }
+        map(end);
+        this.forcer = threads.newThread("aml-journal-force", this::forcePeriodically);
+        forcer.start();
+    }
+
+    /**
+     * Opens a journal, creating it if needed.
+     *
+     * @param path   The journal file.
+     * @param append {@code true} to append to the events already in the file, e.g. when resuming from a checkpoint,
+     *               {@code false} to discard them.
+     * @throws IOException If the file cannot be opened, or is not a journal.
+     */
+    public static AlertJournal open(Path path, boolean append) throws IOException {
+        return open(path, append, DEFAULT_FORCE_INTERVAL_MILLIS, IoThreads.PLATFORM);
+    }
+
+    /**
+     * Opens a journal, creating it if needed.
+     *
+     * @param path                The journal file.
+     * @param append              {@code true} to append to the events already in the file, {@code false} to discard
+     *                            them.
+     * @param forceIntervalMillis The interval between two forces of the mapped pages to the disk.
+     * @param threads             Creates the thread forcing the pages.
+     * @throws IOException If the file cannot be opened, or is not a journal.
+     */
+    public static AlertJournal open(Path path, boolean append, long forceIntervalMillis, IoThreads threads)
+            throws IOException {
+        FileChannel channel = append
+                ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            return new AlertJournal(channel, forceIntervalMillis, threads);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Validates the header, and finds the end of the records and the episodes left open.
+     *
+     * @return The position following the last record.
+     */
+    private long scan() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // Read until the header is complete or the end of the file
+        }
+        if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(2 * Integer.BYTES) != RECORD_SIZE)
+            throw new IOException("Not an alert journal");
+        if (header.getInt(Integer.BYTES) != VERSION)
+            throw new IOException("Unsupported alert journal version " + header.getInt(Integer.BYTES));
+
+        long[] latest = {Long.MIN_VALUE};
+        long scanned = read(channel, HEADER_SIZE, new AlertEpisodeListener() {
+            @Override
+            public void onEpisodeOpened(long timestamp, int accountId, long firedRules) {
+                openEpisodes.put(accountId, timestamp);
+                latest[0] = Math.max(latest[0], timestamp);
+            }
+
+            @Override
+            public void onEpisodeClosed(long timestamp, int accountId) {
+                openEpisodes.remove(accountId);
+                latest[0] = Math.max(latest[0], timestamp);
+            }
+        });
+        // An episode still open was alerting at least until the latest event
+        openEpisodes.replaceAll((accountId, timestamp) -> latest[0]);
+        return scanned;
+    }
+
+    private void map(long position) throws IOException {
+        regionPosition = position;
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, position,
+                (long) REGION_RECORDS * RECORD_SIZE);
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        region = mapped;
+    }
+
+    @Override
+    public void onEpisodeOpened(long timestamp, int accountId, long firedRules) {
+        append(timestamp, firedRules, accountId, OPENED);
+    }
+
+    @Override
+    public void onEpisodeClosed(long timestamp, int accountId) {
+        append(timestamp, 0, accountId, CLOSED);
+    }
+
+    /**
+     * @throws IllegalStateException If the journal is closed, or if the next region cannot be mapped.
+     */
+    private void append(long timestamp, long firedRules, int accountId, int type) {
+        if (closed)
+            throw new IllegalStateException("The alert journal is closed");
+        MappedByteBuffer mapped = region;
+        int offset = (int) (end - regionPosition);
+        if (offset == mapped.capacity()) {
+            try {
+                // The pages of the full region are forced now, since the forcing thread only sees the current one
+                mapped.force();
+                map(end);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot extend the alert journal", e);
+            }
+            mapped = region;
+            offset = 0;
+        }
+        mapped.putLong(offset, timestamp);
+        mapped.putLong(offset + Long.BYTES, firedRules);
+        mapped.putInt(offset + 2 * Long.BYTES, accountId);
+        // Written last, and never seen before the fields above: a reader stops at a record whose type is not written
+        // yet
+        VarHandle.releaseFence();
+        mapped.putInt(offset + 2 * Long.BYTES + Integer.BYTES, type);
+        end += RECORD_SIZE;
+        appended++;
+    }
+
+    private void forcePeriodically() {
+        while (!closed) {
+            try {
+                Thread.sleep(forceIntervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                region.force();
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Cannot force the alert journal to the disk", e);
+            }
+        }
+    }
+
+    /**
+     * @return The open episodes found in the file when it was opened, by account, with the time of the latest event
+     * of the file, since they were still raising alerts then.
+     */
+    public Map<Integer, Long> getOpenEpisodes() {
+        return openEpisodes;
+    }
+
+    /**
+     * @return The number of events appended since the journal was opened.
+     */
+    public long getAppendedCount() {
+        return appended;
+    }
+
+    /**
+     * Reads the events of a journal from the given position. The file may be appended to meanwhile: the types of the
+     * records are read first, then the records again after an acquire fence, so a record being written is either
+     * complete or not read at all.
+     *
+     * @param path     The journal file.
+     * @param position The position of the first record to read, {@link #HEADER_SIZE} for the first one.
+     * @param listener The listener receiving the events, in order.
+     * @return The position following the last complete record, to read the next events from when tailing the file.
+     * @throws IOException If an error occurs while reading the file.
+     */
+    public static long read(Path path, long position, AlertEpisodeListener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel, position, listener);
+        }
+    }
+
+    private static long read(FileChannel channel, long position, AlertEpisodeListener listener) throws IOException {
+        ByteBuffer records = ByteBuffer.allocate(1024 * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (true) {
+            int count = fill(channel, records, position) / RECORD_SIZE;
+            // The end of the records written so far
+            int written = 0;
+            while (written < count && isEvent(records.getInt(written * RECORD_SIZE + 2 * Long.BYTES + Integer.BYTES))) {
+                written++;
+            }
+            if (written > 0) {
+                // Read again after the types, so the fields written before them are visible
+                VarHandle.acquireFence();
+                fill(channel, records.limit(written * RECORD_SIZE), position);
+            }
+            for (int i = 0; i < written; i++) {
+                int offset = i * RECORD_SIZE;
+                long timestamp = records.getLong(offset);
+                int accountId = records.getInt(offset + 2 * Long.BYTES);
+                if (records.getInt(offset + 2 * Long.BYTES + Integer.BYTES) == OPENED)
+                    listener.onEpisodeOpened(timestamp, accountId, records.getLong(offset + Long.BYTES));
+                else
+                    listener.onEpisodeClosed(timestamp, accountId);
+            }
+            position += (long) written * RECORD_SIZE;
+            if (written < records.capacity() / RECORD_SIZE)
+                return position;
+        }
+    }
+
+    private static boolean isEvent(int type) {
+        return type == OPENED || type == CLOSED;
+    }
+
+    /**
+     * Reads the file from the position into the buffer, up to its limit or to the end of the file.
+     *
+     * @return The number of bytes read.
+     */
+    private static int fill(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.position(0);
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+            // Fill the buffer, up to the end of the file
+        }
+        int read = buffer.position();
+        buffer.clear();
+        return read;
+    }
+
+    /**
+     * Stops the forcing thread, forces the last records to the disk and truncates the file after them.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        forcer.interrupt();
+        try {
+            forcer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            region.force();
+            channel.truncate(end);
+        } finally {
+            channel.close();
+        }
+        logger.info("Appended " + appended + " alert episode events to the journal");
+    }
+}
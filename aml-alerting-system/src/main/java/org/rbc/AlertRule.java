@@ -0,0 +1,69 @@
+package org.rbc;
+
+/**
+ * A rule raising an alert when the total amount of the transactions of an account within a time window exceeds a
+ * threshold. A rule may only apply to a segment of the accounts, given as a range of account ids.
+ * <p>
+ * A rule with the {@link Scope#GROUP} scope is evaluated against the total of all the accounts of the group of the
+ * account instead, see {@link AccountGroups}. It applies to all the groups.
+ *
+ * @param id            The identifier of the rule, reported with the alerts it raises.
+ * @param threshold     The total amount above which an alert is raised.
+ * @param windowSeconds The duration of the window, in seconds.
+ * @param firstAccount  The first account id of the segment the rule applies to.
+ * @param lastAccount   The last account id, included, of the segment the rule applies to.
+ * @param scope         Whether the rule is evaluated against the window of the account or of its group.
+ */
+record AlertRule(int id, long threshold, int windowSeconds, int firstAccount, int lastAccount, Scope scope) {
+
+    /**
+     * The transactions whose total is compared with the threshold of a rule.
+     */
+    enum Scope {
+        /**
+         * The transactions of the account.
+         */
+        ACCOUNT,
+        /**
+         * The transactions of all the accounts of the group of the account.
+         */
+        GROUP
+    }
+
+    AlertRule {
+        if (windowSeconds < 0)
+            throw new IllegalArgumentException("The window of the rule " + id + " must not be negative");
+        if (firstAccount > lastAccount)
+            throw new IllegalArgumentException("The account segment of the rule " + id + " is empty");
+        if (scope == Scope.GROUP && (firstAccount != Integer.MIN_VALUE || lastAccount != Integer.MAX_VALUE))
+            throw new IllegalArgumentException("The group rule " + id + " cannot apply to a segment of the accounts");
+    }
+
+    /**
+     * Creates a rule applying to a segment of the accounts.
+     */
+    AlertRule(int id, long threshold, int windowSeconds, int firstAccount, int lastAccount) {
+        this(id, threshold, windowSeconds, firstAccount, lastAccount, Scope.ACCOUNT);
+    }
+
+    /**
+     * Creates a rule applying to all the accounts.
+     */
+    AlertRule(int id, long threshold, int windowSeconds) {
+        this(id, threshold, windowSeconds, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a rule applying to all the accounts, or to all the groups.
+     */
+    AlertRule(int id, long threshold, int windowSeconds, Scope scope) {
+        this(id, threshold, windowSeconds, Integer.MIN_VALUE, Integer.MAX_VALUE, scope);
+    }
+
+    /**
+     * @return {@code true} if the rule applies to the window of the account.
+     */
+    boolean appliesTo(int accountId) {
+        return scope == Scope.ACCOUNT && accountId >= firstAccount && accountId <= lastAccount;
+    }
+}
@@ -0,0 +1,285 @@
+package org.rbc;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.rbc.AMLAlertingConfiguration.ALERT_WINDOW_SECONDS;
+import static org.rbc.AMLAlertingConfiguration.THRESHOLD_AMOUNT;
+
+/**
+ * The alert rules evaluated against every transaction, in a single pass over the window of its account.
+ * <p>
+ * The rules fired by a transaction are reported as a {@code long} mask, where bit {@code i} stands for the rule at
+ * index {@code i} of the set, so a set holds at most {@value #MAX_RULES} rules. {@link #ruleIds(long)} maps a mask
+ * back to the identifiers of the rules.
+ * <p>
+ * A rule set can be loaded from a properties file defining each rule by its identifier:
+ * <pre>
+ * rule.1.threshold=50000
+ * rule.1.window=60
+ * rule.2.threshold=200000
+ * rule.2.window=3600
+ * # Only for the accounts 1000 to 1999
+ * rule.3.threshold=20000
+ * rule.3.window=60
+ * rule.3.accounts=1000-1999
+ * # On the total of the accounts of a group
+ * rule.4.threshold=150000
+ * rule.4.window=3600
+ * rule.4.scope=group
+ * </pre>
+ * The window is in seconds, and a rule without {@code accounts} applies to all the accounts. The scope is
+ * {@code account} by default, or {@code group} for a rule evaluated against the windows of the groups of accounts,
+ * see {@link AlertRule.Scope}.
+ * This class is thread-safe.
+ */
+class AlertRuleSet {
+
+    static final int MAX_RULES = Long.SIZE;
+
+    /**
+     * The single rule of {@link AMLAlertingConfiguration}, with the identifier 1.
+     */
+    static final AlertRuleSet DEFAULT = new AlertRuleSet(List.of(new AlertRule(1, THRESHOLD_AMOUNT,
+            ALERT_WINDOW_SECONDS)));
+
+    /**
+     * The rule of {@link AMLAlertingConfiguration}, applied to the accounts with the identifier 1 and to the groups
+     * with the identifier 2.
+     */
+    static final AlertRuleSet DEFAULT_WITH_GROUPS = new AlertRuleSet(List.of(
+            new AlertRule(1, THRESHOLD_AMOUNT, ALERT_WINDOW_SECONDS),
+            new AlertRule(2, THRESHOLD_AMOUNT, ALERT_WINDOW_SECONDS, AlertRule.Scope.GROUP)));
+
+    private final AlertRule[] rules;
+
+    /**
+     * The resolution of the buckets of the windows, or 0 to keep each transaction.
+     */
+    private final int bucketSeconds;
+
+    /**
+     * The rules of each combination of rules applying to an account, shared by the accounts of the same segment.
+     */
+    private final Map<Long, AccountRules> rulesByMask = new ConcurrentHashMap<>();
+
+    /**
+     * The rules of all the accounts when no rule is restricted to a segment, or {@code null}.
+     */
+    private final AccountRules globalRules;
+
+    /**
+     * The rules evaluated against the windows of the groups, or {@code null} if there is none.
+     */
+    private final AccountRules groupRules;
+
+    /**
+     * @param rules The rules, in the order of their bits in the masks of fired rules.
+     * @throws IllegalArgumentException If there is no rule, too many rules, or two rules with the same identifier.
+     */
+    public AlertRuleSet(List<AlertRule> rules) {
+        this(rules, 0);
+    }
+
+    /**
+     * @param rules         The rules, in the order of their bits in the masks of fired rules.
+     * @param bucketSeconds The resolution of the {@link BucketedWindow} of the accounts, or 0 to use a
+     *                      {@link TransactionWindow} keeping each transaction.
+     * @throws IllegalArgumentException If there is no rule, too many rules, or two rules with the same identifier.
+     */
+    public AlertRuleSet(List<AlertRule> rules, int bucketSeconds) {
+        if (bucketSeconds < 0)
+            throw new IllegalArgumentException("The resolution of the buckets must not be negative");
+        if (rules.isEmpty() || rules.size() > MAX_RULES)
+            throw new IllegalArgumentException("A rule set must have between 1 and " + MAX_RULES + " rules");
+        Set<Integer> ids = new HashSet<>();
+        for (AlertRule rule : rules) {
+            if (!ids.add(rule.id()))
+                throw new IllegalArgumentException("Duplicate rule id " + rule.id());
+        }
+        this.rules = rules.toArray(AlertRule[]::new);
+        this.bucketSeconds = bucketSeconds;
+        boolean global = rules.stream().allMatch(rule -> rule.scope() == AlertRule.Scope.GROUP
+                || rule.appliesTo(Integer.MIN_VALUE) && rule.appliesTo(Integer.MAX_VALUE));
+        long groupMask = scopeMask(AlertRule.Scope.GROUP);
+        this.globalRules = global ? new AccountRules(this.rules, scopeMask(AlertRule.Scope.ACCOUNT), bucketSeconds)
+                : null;
+        this.groupRules = groupMask == 0 ? null : new AccountRules(this.rules, groupMask, bucketSeconds);
+    }
+
+    /**
+     * Loads a rule set from a properties file, see the format above.
+     *
+     * @throws IOException              If the file cannot be read.
+     * @throws IllegalArgumentException If the file does not define valid rules.
+     */
+    public static AlertRuleSet load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+
+        Map<Integer, Map<String, String>> attributesById = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            String[] parts = key.split("\\.");
+            if (parts.length != 3 || !parts[0].equals("rule"))
+                throw new IllegalArgumentException("Invalid rule property " + key + " in " + path);
+            attributesById.computeIfAbsent(parseInt(key, parts[1]), id -> new TreeMap<>())
+                    .put(parts[2], properties.getProperty(key).trim());
+        }
+
+        List<AlertRule> rules = new ArrayList<>();
+        attributesById.forEach((id, attributes) -> rules.add(parseRule(id, attributes)));
+        if (rules.isEmpty())
+            throw new IllegalArgumentException("No rule is defined in " + path);
+        return new AlertRuleSet(rules);
+    }
+
+    private static AlertRule parseRule(int id, Map<String, String> attributes) {
+        String threshold = attributes.remove("threshold");
+        String window = attributes.remove("window");
+        String accounts = attributes.remove("accounts");
+        String scope = attributes.remove("scope");
+        if (threshold == null || window == null)
+            throw new IllegalArgumentException("The rule " + id + " must define a threshold and a window");
+        if (!attributes.isEmpty())
+            throw new IllegalArgumentException("Unknown attributes of the rule " + id + ": " + attributes.keySet());
+
+        long thresholdAmount;
+        try {
+            thresholdAmount = Long.parseLong(threshold);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid threshold of the rule " + id + ": " + threshold);
+        }
+        int windowSeconds = parseInt("window of the rule " + id, window);
+        AlertRule.Scope ruleScope = switch (scope == null ? "account" : scope) {
+            case "account" -> AlertRule.Scope.ACCOUNT;
+            case "group" -> AlertRule.Scope.GROUP;
+            default -> throw new IllegalArgumentException("The scope of the rule " + id
+                    + " must be account or group: " + scope);
+        };
+        if (accounts == null)
+            return new AlertRule(id, thresholdAmount, windowSeconds, ruleScope);
+
+        int separator = accounts.indexOf('-', 1);
+        if (separator < 0)
+            throw new IllegalArgumentException("The accounts of the rule " + id + " must be a range first-last");
+        return new AlertRule(id, thresholdAmount, windowSeconds,
+                parseInt("accounts of the rule " + id, accounts.substring(0, separator)),
+                parseInt("accounts of the rule " + id, accounts.substring(separator + 1)), ruleScope);
+    }
+
+    private static int parseInt(String name, String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    /**
+     * @return The bits of the rules of the scope.
+     */
+    private long scopeMask(AlertRule.Scope scope) {
+        long mask = 0;
+        for (int i = 0; i < rules.length; i++) {
+            if (rules[i].scope() == scope)
+                mask |= 1L << i;
+        }
+        return mask;
+    }
+
+    /**
+     * @return The rules applying to the window of the account.
+     */
+    public AccountRules rulesFor(int accountId) {
+        if (globalRules != null)
+            return globalRules;
+        long mask = 0;
+        for (int i = 0; i < rules.length; i++) {
+            if (rules[i].appliesTo(accountId))
+                mask |= 1L << i;
+        }
+        return rulesByMask.computeIfAbsent(mask, m -> new AccountRules(rules, m, bucketSeconds));
+    }
+
+    /**
+     * @return The rules evaluated against the windows of the groups, or {@code null} if there is none.
+     */
+    public AccountRules groupRules() {
+        return groupRules;
+    }
+
+    /**
+     * @param bucketSeconds The resolution of the {@link BucketedWindow} of the accounts, or 0 to use a
+     *                      {@link TransactionWindow} keeping each transaction.
+     * @return A rule set with the same rules, whose accounts use windows of the given resolution.
+     */
+    public AlertRuleSet withBucketSeconds(int bucketSeconds) {
+        return new AlertRuleSet(List.of(rules), bucketSeconds);
+    }
+
+    /**
+     * @return The resolution of the buckets of the windows, or 0 if each transaction is kept.
+     */
+    public int getBucketSeconds() {
+        return bucketSeconds;
+    }
+
+    /**
+     * Identifies the layout of the windows of the accounts: the durations of the windows, the accounts they apply to
+     * and the resolution of the buckets. The state of the accounts saved in a {@link Checkpoint} can only be restored
+     * with rules of the same layout, while the thresholds may change.
+     *
+     * @return A hash of the layout of the windows.
+     */
+    public long windowLayoutHash() {
+        long hash = bucketSeconds;
+        for (AlertRule rule : rules) {
+            hash = hash * 31 + rule.windowSeconds();
+            hash = hash * 31 + rule.firstAccount();
+            hash = hash * 31 + rule.lastAccount();
+            // The group rules do not add windows to the accounts
+            if (rule.scope() == AlertRule.Scope.GROUP)
+                hash = hash * 31 + 1;
+        }
+        return hash;
+    }
+
+    /**
+     * @return The number of rules.
+     */
+    public int size() {
+        return rules.length;
+    }
+
+    /**
+     * @return The rule at the given index, whose bit in the masks of fired rules is {@code 1L << index}.
+     */
+    public AlertRule rule(int index) {
+        return rules[index];
+    }
+
+    /**
+     * @param firedRules A mask of fired rules.
+     * @return The identifiers of the rules of the mask, in the order of the set.
+     */
+    public int[] ruleIds(long firedRules) {
+        int[] ids = new int[Long.bitCount(firedRules)];
+        int i = 0;
+        for (long bits = firedRules; bits != 0; bits &= bits - 1) {
+            ids[i++] = rules[Long.numberOfTrailingZeros(bits)].id();
+        }
+        return ids;
+    }
+}
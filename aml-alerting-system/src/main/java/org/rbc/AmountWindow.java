@@ -0,0 +1,82 @@
+package org.rbc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The sliding windows of the transactions of an account, tracking the total amount of each window.
+ * <p>
+ * Several windows of different durations are tracked at once. They all end at the latest transaction, so they are
+ * nested, and an implementation can share its storage between them. Transactions must be added in chronological
+ * order. Implementations are not thread-safe.
+ *
+ * @see TransactionWindow
+ * @see BucketedWindow
+ */
+interface AmountWindow {
+
+    /**
+     * Evicts the transactions which left each window, then adds the new transaction to all the windows.
+     *
+     * @param timestamp   The time of the transaction, see {@link Timestamps}.
+     * @param amount      The amount of the transaction.
+     * @return The total amount of the transactions in the longest window, including the new one.
+     */
+    long add(long timestamp, int amount);
+
+    /**
+     * @return The total amount of the transactions in the longest window.
+     */
+    long total();
+
+    /**
+     * @param window The index of the window, in the ascending order of the durations.
+     * @return The total amount of the transactions in the window.
+     */
+    long total(int window);
+
+    /**
+     * @return The number of transactions in the longest window.
+     */
+    int size();
+
+    /**
+     * @return The time of the oldest transaction in the longest window, see {@link Timestamps}, or
+     * {@link WindowSummary#NO_TIMESTAMP} if the window is empty.
+     */
+    long oldestTimestamp();
+
+    /**
+     * @return The time of the newest transaction, see {@link Timestamps}, or {@link WindowSummary#NO_TIMESTAMP} if the
+     * window is empty.
+     */
+    long newestTimestamp();
+
+    /**
+     * Tells whether all the transactions will have left the windows when a transaction occurs at the given time or
+     * later. The windows then behave as empty ones, and can be discarded without changing any result.
+     *
+     * @param timestamp The time of the latest transaction of the stream, see {@link Timestamps}.
+     * @return {@code true} if the windows are empty or if their newest transaction is older than the longest window.
+     */
+    boolean isExpiredAt(long timestamp);
+
+    /**
+     * @return The number of bytes written by {@link #saveState(ByteBuffer)}.
+     */
+    int stateSize();
+
+    /**
+     * Writes the state of the windows, to restore them after a restart, see {@link Checkpoint}.
+     *
+     * @param out The buffer to write to, with at least {@link #stateSize()} bytes remaining.
+     */
+    void saveState(ByteBuffer out);
+
+    /**
+     * Restores the state written by {@link #saveState(ByteBuffer)} into this new window, which must have the same
+     * durations and resolution as the saved one.
+     *
+     * @param in The buffer to read from.
+     */
+    void restoreState(ByteBuffer in);
+}
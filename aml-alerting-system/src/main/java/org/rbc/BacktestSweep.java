@@ -0,0 +1,228 @@
+package org.rbc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Evaluates a grid of alert rules, every threshold with every window duration, in a single pass over historical
+ * transactions, and compares the alerts of each configuration with those of a baseline rule.
+ * <p>
+ * The input is read and parsed once for the whole grid, and each account keeps a single {@link TransactionWindow}
+ * tracking all the window durations at once: the windows are nested, so the buffer sized for the longest one serves
+ * all the shorter ones, and each duration only costs a running total. The thresholds are not evaluated one by one
+ * either: for each window, the total of the transaction is located among the sorted thresholds by a binary search, and
+ * the number of thresholds it exceeds is counted in a histogram. The alerts of a threshold are then the transactions
+ * exceeding at least that many thresholds, summed from the histogram at the end. A transaction thus costs one update
+ * per window duration and one binary search per window duration, whatever the number of thresholds.
+ * <p>
+ * Each transaction is also evaluated against the baseline rule, and counted in one of two histograms depending on
+ * whether the baseline raised an alert, so the report gives for each configuration the alerts it adds to the baseline
+ * and the alerts it removes from it. This class is not thread-safe.
+ */
+class BacktestSweep implements TransactionSink {
+
+    private static final int INITIAL_ACCOUNTS = 1024;
+
+    private final long[] thresholds;
+    private final int[] windowSeconds;
+    private final AlertRule baseline;
+
+    /**
+     * The distinct window durations tracked by the windows of the accounts, in ascending order: those of the grid
+     * and that of the baseline.
+     */
+    private final int[] trackedWindowSeconds;
+
+    /**
+     * The index in {@link #trackedWindowSeconds} of each window of the grid, and of the window of the baseline.
+     */
+    private final int[] trackedIndexes;
+    private final int baselineIndex;
+
+    /**
+     * For each window of the grid, the number of transactions exceeding exactly {@code k} thresholds, at index
+     * {@code k}, among the transactions without and with a baseline alert.
+     */
+    private final long[][] counts;
+    private final long[][] baselineCounts;
+
+    private final IntIntHashMap accountIndexes = new IntIntHashMap(INITIAL_ACCOUNTS);
+    private final List<TransactionWindow> windows = new ArrayList<>(INITIAL_ACCOUNTS);
+
+    private long transactionCount;
+    private long baselineAlertCount;
+
+    /**
+     * @param thresholds    The thresholds of the grid, in any order.
+     * @param windowSeconds The window durations of the grid, in seconds and in any order.
+     * @param baseline      The rule the alerts of each configuration are compared with. It must apply to all the
+     *                      accounts.
+     * @throws IllegalArgumentException If the grid is empty, has a duplicate value or a negative window duration, or if
+     *                                  the baseline only applies to a segment of the accounts.
+     */
+    public BacktestSweep(long[] thresholds, int[] windowSeconds, AlertRule baseline) {
+        if (thresholds.length == 0 || windowSeconds.length == 0)
+            throw new IllegalArgumentException("A backtest needs at least one threshold and one window");
+        if (baseline.firstAccount() != Integer.MIN_VALUE || baseline.lastAccount() != Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The baseline rule of a backtest must apply to all the accounts");
+        this.thresholds = sortedDistinct(thresholds.clone(), "thresholds");
+        this.windowSeconds = sortedDistinct(windowSeconds.clone(), "windows");
+        if (this.windowSeconds[0] < 0)
+            throw new IllegalArgumentException("The windows of a backtest must not be negative");
+        this.baseline = baseline;
+
+        int[] tracked = Arrays.copyOf(this.windowSeconds, this.windowSeconds.length + 1);
+        tracked[tracked.length - 1] = baseline.windowSeconds();
+        this.trackedWindowSeconds = Arrays.stream(tracked).sorted().distinct().toArray();
+        this.trackedIndexes = new int[this.windowSeconds.length];
+        for (int w = 0; w < trackedIndexes.length; w++) {
+            trackedIndexes[w] = Arrays.binarySearch(trackedWindowSeconds, this.windowSeconds[w]);
+        }
+        this.baselineIndex = Arrays.binarySearch(trackedWindowSeconds, baseline.windowSeconds());
+
+        this.counts = new long[this.windowSeconds.length][this.thresholds.length + 1];
+        this.baselineCounts = new long[this.windowSeconds.length][this.thresholds.length + 1];
+    }
+
+    private static long[] sortedDistinct(long[] values, String name) {
+        Arrays.sort(values);
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] == values[i - 1])
+                throw new IllegalArgumentException("The " + name + " of a backtest must be distinct: " + values[i]);
+        }
+        return values;
+    }
+
+    private static int[] sortedDistinct(int[] values, String name) {
+        Arrays.sort(values);
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] == values[i - 1])
+                throw new IllegalArgumentException("The " + name + " of a backtest must be distinct: " + values[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Adds a transaction to the windows of its account and counts it for every configuration. Transactions must be
+     * given in chronological order.
+     *
+     * @param timestamp The time of the transaction, see {@link Timestamps}.
+     * @param amount    The amount of the transaction.
+     * @param accountId The account of the transaction.
+     */
+    @Override
+    public void accept(long timestamp, int amount, int accountId) {
+        TransactionWindow window = windowOf(accountId);
+        window.add(timestamp, amount);
+        transactionCount++;
+
+        boolean baselineAlert = window.total(baselineIndex) > baseline.threshold();
+        if (baselineAlert)
+            baselineAlertCount++;
+        long[][] histograms = baselineAlert ? baselineCounts : counts;
+        for (int w = 0; w < trackedIndexes.length; w++) {
+            histograms[w][exceededThresholds(window.total(trackedIndexes[w]))]++;
+        }
+    }
+
+    private TransactionWindow windowOf(int accountId) {
+        int index = accountIndexes.get(accountId, -1);
+        if (index >= 0)
+            return windows.get(index);
+        TransactionWindow window = new TransactionWindow(trackedWindowSeconds);
+        accountIndexes.put(accountId, windows.size());
+        windows.add(window);
+        return window;
+    }
+
+    /**
+     * @return The number of thresholds the total is above, which are the lowest ones.
+     */
+    private int exceededThresholds(long total) {
+        int low = 0;
+        int high = thresholds.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (thresholds[middle] < total)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * @return The thresholds of the grid, in ascending order.
+     */
+    public long[] getThresholds() {
+        return thresholds.clone();
+    }
+
+    /**
+     * @return The window durations of the grid, in ascending order.
+     */
+    public int[] getWindowSeconds() {
+        return windowSeconds.clone();
+    }
+
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    public long getBaselineAlertCount() {
+        return baselineAlertCount;
+    }
+
+    /**
+     * @param threshold The index of the threshold in {@link #getThresholds()}.
+     * @param window    The index of the window in {@link #getWindowSeconds()}.
+     * @return The number of alerts raised by the configuration.
+     */
+    public long getAlertCount(int threshold, int window) {
+        return alertsAbove(counts[window], threshold) + alertsAbove(baselineCounts[window], threshold);
+    }
+
+    /**
+     * @return The number of alerts raised by the configuration but not by the baseline.
+     */
+    public long getAddedCount(int threshold, int window) {
+        return alertsAbove(counts[window], threshold);
+    }
+
+    /**
+     * @return The number of alerts raised by the baseline but not by the configuration.
+     */
+    public long getRemovedCount(int threshold, int window) {
+        return baselineAlertCount - alertsAbove(baselineCounts[window], threshold);
+    }
+
+    /**
+     * @return The number of transactions exceeding the threshold, that is more than {@code threshold} thresholds.
+     */
+    private static long alertsAbove(long[] histogram, int threshold) {
+        long alerts = 0;
+        for (int k = threshold + 1; k < histogram.length; k++) {
+            alerts += histogram[k];
+        }
+        return alerts;
+    }
+
+    /**
+     * Writes the report of the backtest as CSV: a header line, then one line per configuration with its threshold, its
+     * window, its number of alerts and the numbers of alerts it adds to and removes from the baseline.
+     */
+    public void writeReport(Appendable out) throws IOException {
+        out.append("Threshold,WindowSeconds,Alerts,Added,Removed\n");
+        for (int w = 0; w < windowSeconds.length; w++) {
+            for (int t = 0; t < thresholds.length; t++) {
+                out.append(Long.toString(thresholds[t])).append(',')
+                        .append(Integer.toString(windowSeconds[w])).append(',')
+                        .append(Long.toString(getAlertCount(t, w))).append(',')
+                        .append(Long.toString(getAddedCount(t, w))).append(',')
+                        .append(Long.toString(getRemovedCount(t, w))).append('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package org.rbc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The sliding windows of the transactions of an account, aggregated into fixed time buckets.
+ * <p>
+ * Instead of keeping each transaction, the amounts are summed per bucket of {@code bucketSeconds} seconds in a
+ * circular array covering the longest window. The memory used is fixed when the window is created and depends on the
+ * duration of the longest window divided by the resolution of the buckets, whatever the number of transactions, so
+ * windows of hours or days stay affordable. As with {@link TransactionWindow}, the nested windows share the buckets
+ * and each of them only keeps the index of its oldest bucket and its running total.
+ * <p>
+ * Two modes are available, depending on the resolution:
+ * <ul>
+ *     <li>Exact, with buckets of 1 second. As the times of the transactions are whole seconds, a bucket is either
+ *     fully inside or fully outside a window, so the totals are the same as with a {@link TransactionWindow}.</li>
+ *     <li>Approximate, with larger buckets. The oldest bucket of a window is kept as long as a part of it is inside the
+ *     window, so a total includes all the transactions of the window, plus possibly transactions up to
+ *     {@code bucketSeconds - 1} seconds older. The totals are never underestimated: every alert of the exact mode is
+ *     raised, along with possibly a few more near the threshold.</li>
+ * </ul>
+ * Transactions must be added in chronological order. This class is not thread-safe.
+ */
+class BucketedWindow implements AmountWindow {
+
+    /**
+     * The resolution of the exact mode.
+     */
+    static final int EXACT_BUCKET_SECONDS = 1;
+
+    private final int bucketSeconds;
+    private final int[] windowSeconds;
+    private final int longest;
+
+    private final long[] bucketTotals;
+    private final int[] bucketCounts;
+    private final int mask;
+
+    /**
+     * The index of the oldest bucket of each window, relative to the start of the day.
+     */
+    private final long[] starts;
+    private final long[] totals;
+    private int size;
+
+    /**
+     * The index of the bucket of the newest transaction, or -1 if there is none yet.
+     */
+    private long newestBucket = -1;
+
+    /**
+     * The index of the oldest bucket of the longest window holding a transaction, as last found by
+     * {@link #oldestTimestamp()}. The buckets before it are never filled again, so the search resumes from it.
+     */
+    private long oldestBucket = Long.MIN_VALUE;
+
+    /**
+     * @param windowSeconds The durations of the windows, in seconds and in ascending order. There may be none, in
+     *                      which case no transaction is kept.
+     * @param bucketSeconds The resolution of the buckets, in seconds: 1 for the exact mode, more for the approximate
+     *                      mode.
+     */
+    public BucketedWindow(int[] windowSeconds, int bucketSeconds) {
+        if (bucketSeconds < 1)
+            throw new IllegalArgumentException("The resolution of the buckets must be positive");
+        for (int i = 1; i < windowSeconds.length; i++) {
+            if (windowSeconds[i] < windowSeconds[i - 1])
+                throw new IllegalArgumentException("The window durations must be in ascending order");
+        }
+        this.bucketSeconds = bucketSeconds;
+        this.windowSeconds = windowSeconds.clone();
+        this.longest = windowSeconds.length - 1;
+        this.starts = new long[windowSeconds.length];
+        this.totals = new long[windowSeconds.length];
+
+        // The longest window spans at most this number of buckets, plus the bucket of the new transaction
+        int buckets = longest < 0 ? 1 : windowSeconds[longest] / bucketSeconds + 2;
+        int capacity = Integer.highestOneBit(buckets - 1) << 1;
+        this.bucketTotals = new long[Math.max(capacity, 1)];
+        this.bucketCounts = new int[bucketTotals.length];
+        this.mask = bucketTotals.length - 1;
+    }
+
+    @Override
+    public long add(long timestamp, int amount) {
+        if (longest < 0)
+            return amount;
+
+        // A transaction out of order is counted in the newest bucket
+        long bucket = Math.max(Math.floorDiv(timestamp, bucketSeconds), newestBucket);
+        for (int w = 0; w <= longest; w++) {
+            long firstKept = Math.floorDiv(timestamp - windowSeconds[w], bucketSeconds);
+            long start = starts[w];
+            long total = totals[w];
+            // The buckets after the newest one are still empty
+            long last = Math.min(firstKept, newestBucket + 1);
+            while (start < last) {
+                total -= bucketTotals[(int) start & mask];
+                if (w == longest)
+                    size -= bucketCounts[(int) start & mask];
+                start++;
+            }
+            starts[w] = Math.max(start, firstKept);
+            totals[w] = total + amount;
+        }
+
+        // Reset the slots of the buckets between the previous newest one and the new one
+        long cleared = Math.max(newestBucket + 1, bucket - mask);
+        for (long b = cleared; b <= bucket && b > newestBucket; b++) {
+            bucketTotals[(int) b & mask] = 0;
+            bucketCounts[(int) b & mask] = 0;
+        }
+        newestBucket = bucket;
+
+        int slot = (int) bucket & mask;
+        bucketTotals[slot] += amount;
+        bucketCounts[slot]++;
+        size++;
+        return totals[longest];
+    }
+
+    @Override
+    public long total() {
+        return longest < 0 ? 0 : totals[longest];
+    }
+
+    @Override
+    public long total(int window) {
+        return totals[window];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The start of the oldest bucket holding a transaction, which is the time of the oldest transaction in the
+     * exact mode.
+     */
+    @Override
+    public long oldestTimestamp() {
+        if (size == 0)
+            return WindowSummary.NO_TIMESTAMP;
+        // The newest bucket holds at least the newest transaction
+        long bucket = Math.max(oldestBucket, starts[longest]);
+        while (bucketCounts[(int) bucket & mask] == 0) {
+            bucket++;
+        }
+        oldestBucket = bucket;
+        return bucket * bucketSeconds;
+    }
+
+    /**
+     * @return The start of the bucket of the newest transaction.
+     */
+    @Override
+    public long newestTimestamp() {
+        return size == 0 ? WindowSummary.NO_TIMESTAMP : newestBucket * bucketSeconds;
+    }
+
+    @Override
+    public boolean isExpiredAt(long timestamp) {
+        if (size == 0)
+            return true;
+        // A newest bucket later than the given time belongs to the previous day of a time-of-day input
+        return newestBucket * bucketSeconds <= timestamp
+                && Math.floorDiv(timestamp - windowSeconds[longest], bucketSeconds) > newestBucket;
+    }
+
+    /**
+     * The state is the index of the newest bucket, the number of transactions, the start and the total of each window,
+     * followed by the total and the count of each bucket from the oldest one of the longest window to the newest one.
+     */
+    @Override
+    public int stateSize() {
+        return Long.BYTES + Integer.BYTES + windowSeconds.length * 2 * Long.BYTES
+                + savedBuckets() * (Long.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * @return The number of buckets which can still be read by the windows.
+     */
+    private int savedBuckets() {
+        return longest < 0 ? 0 : (int) Math.max(newestBucket - starts[longest] + 1, 0);
+    }
+
+    @Override
+    public void saveState(ByteBuffer out) {
+        out.putLong(newestBucket);
+        out.putInt(size);
+        for (int w = 0; w <= longest; w++) {
+            out.putLong(starts[w]);
+            out.putLong(totals[w]);
+        }
+        int buckets = savedBuckets();
+        for (long b = newestBucket - buckets + 1; b <= newestBucket; b++) {
+            out.putLong(bucketTotals[(int) b & mask]);
+            out.putInt(bucketCounts[(int) b & mask]);
+        }
+    }
+
+    @Override
+    public void restoreState(ByteBuffer in) {
+        newestBucket = in.getLong();
+        size = in.getInt();
+        for (int w = 0; w <= longest; w++) {
+            starts[w] = in.getLong();
+            totals[w] = in.getLong();
+        }
+        int buckets = savedBuckets();
+        for (long b = newestBucket - buckets + 1; b <= newestBucket; b++) {
+            bucketTotals[(int) b & mask] = in.getLong();
+            bucketCounts[(int) b & mask] = in.getInt();
+        }
+    }
+
+    /**
+     * @return The resolution of the buckets, in seconds.
+     */
+    public int getBucketSeconds() {
+        return bucketSeconds;
+    }
+}
@@ -0,0 +1,329 @@
+package org.rbc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Logger;
+
+/**
+ * A {@link TransactionOutputSink} writing one {@code <time> <amount> <accountId> <Y|N>} line per transaction to a
+ * channel, such as a file or the standard output.
+ * <p>
+ * The lines are encoded straight into a byte buffer, without any intermediate string. Full buffers are handed over to
+ * a background thread writing them to the channel in large batches, while the results keep being encoded into another
+ * buffer, so the processing threads do not wait for the output unless it falls behind by all the buffers.
+ * A partially filled buffer is also handed over when the engine becomes idle, so the results of a stream are written
+ * as soon as the input pauses.
+ * <p>
+ * Only the alerts, or a sample of the rows, are also sent to the logger.
+ * <p>
+ * When the sink is given the rule set, the identifiers of the rules fired by an alert follow the {@code Y}, separated
+ * by commas, e.g. {@code 10:02:30 60000 2 Y 1,3}.
+ */
+class ChannelOutputSink implements TransactionOutputSink {
+
+    public static final Logger logger = Logger.getLogger(ChannelOutputSink.class.getName());
+
+    static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    static final int BUFFER_COUNT = 3;
+
+    /**
+     * The maximum length of a timestamp: "yyyy-MM-ddTHH:mm:ss".
+     */
+    static final int MAX_TIMESTAMP_LENGTH = 19;
+
+    /**
+     * The maximum length of a line without rule ids: "yyyy-MM-ddTHH:mm:ss -2147483648 -2147483648 Y\n".
+     */
+    private static final int MAX_LINE_LENGTH = MAX_TIMESTAMP_LENGTH + 28;
+
+    /**
+     * The maximum length of a rule id preceded by its separator.
+     */
+    private static final int MAX_RULE_ID_LENGTH = 12;
+
+    /**
+     * The buffer telling the writer thread to stop.
+     */
+    private static final ByteBuffer STOP = ByteBuffer.allocate(0);
+
+    private final WritableByteChannel channel;
+    private final int logSampleInterval;
+
+    /**
+     * The rules whose ids are written with the alerts, or {@code null} to only write {@code Y}.
+     */
+    private final AlertRuleSet ruleSet;
+    private final int maxLineLength;
+    private final BlockingQueue<ByteBuffer> freeBuffers = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final BlockingQueue<ByteBuffer> fullBuffers = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+    private final Thread writer;
+    private volatile IOException failure;
+
+    private ByteBuffer buffer;
+    private long rows;
+
+    /**
+     * @param channel           The channel the lines are written to. It is closed with the sink.
+     * @param logSampleInterval 0 to log the alerts, or N to log one row in N, whether it raised an alert or not.
+     */
+    public ChannelOutputSink(WritableByteChannel channel, int logSampleInterval) {
+        this(channel, logSampleInterval, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param channel           The channel the lines are written to. It is closed with the sink.
+     * @param logSampleInterval 0 to log the alerts, or N to log one row in N, whether it raised an alert or not.
+     * @param bufferSize        The size of each buffer, which is the size of the batches written to the channel.
+     */
+    public ChannelOutputSink(WritableByteChannel channel, int logSampleInterval, int bufferSize) {
+        this(channel, logSampleInterval, null, bufferSize);
+    }
+
+    /**
+     * @param channel           The channel the lines are written to. It is closed with the sink.
+     * @param logSampleInterval 0 to log the alerts, or N to log one row in N, whether it raised an alert or not.
+     * @param ruleSet           The rules whose ids are written with the alerts, or {@code null} to only write
+     *                          {@code Y}.
+     * @param bufferSize        The size of each buffer, which is the size of the batches written to the channel.
+     */
+    public ChannelOutputSink(WritableByteChannel channel, int logSampleInterval, AlertRuleSet ruleSet,
+                             int bufferSize) {
+        this(channel, logSampleInterval, ruleSet, bufferSize, IoThreads.PLATFORM);
+    }
+
+    /**
+     * @param channel           The channel the lines are written to. It is closed with the sink.
+     * @param logSampleInterval 0 to log the alerts, or N to log one row in N, whether it raised an alert or not.
+     * @param ruleSet           The rules whose ids are written with the alerts, or {@code null} to only write
+     *                          {@code Y}.
+     * @param bufferSize        The size of each buffer, which is the size of the batches written to the channel.
+     * @param threads           Creates the thread writing to the channel.
+     */
+    public ChannelOutputSink(WritableByteChannel channel, int logSampleInterval, AlertRuleSet ruleSet,
+                             int bufferSize, IoThreads threads) {
+        this.maxLineLength = MAX_LINE_LENGTH + (ruleSet == null ? 0 : ruleSet.size() * MAX_RULE_ID_LENGTH);
+        if (logSampleInterval < 0 || bufferSize < maxLineLength)
+            throw new IllegalArgumentException("Invalid log sample interval or buffer size");
+        this.channel = channel;
+        this.logSampleInterval = logSampleInterval;
+        this.ruleSet = ruleSet;
+        for (int i = 1; i < BUFFER_COUNT; i++) {
+            freeBuffers.add(ByteBuffer.allocate(bufferSize));
+        }
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.writer = threads.newThread("aml-output-writer", this::writeBuffers);
+        writer.start();
+    }
+
+    @Override
+    public void onResult(long timestamp, int amount, int accountId, long firedRules) {
+        if (buffer.remaining() < maxLineLength)
+            handOver();
+        boolean alert = firedRules != 0;
+
+        int start = buffer.position();
+        byte[] bytes = buffer.array();
+        int position = encodeTimestamp(bytes, start, timestamp);
+        bytes[position++] = ' ';
+        position = encodeInt(bytes, position, amount);
+        bytes[position++] = ' ';
+        position = encodeInt(bytes, position, accountId);
+        bytes[position++] = ' ';
+        bytes[position++] = (byte) (alert ? 'Y' : 'N');
+        if (alert && ruleSet != null)
+            position = encodeRuleIds(bytes, position, firedRules);
+        bytes[position++] = '\n';
+        buffer.position(position);
+
+        rows++;
+        if (logSampleInterval == 0 ? alert : rows % logSampleInterval == 0)
+            logger.info(new String(bytes, start, position - start - 1, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Hands the buffered lines over to the writer thread, so the results of a stream are not delayed until a buffer
+     * is full.
+     */
+    @Override
+    public void onIdle() {
+        if (buffer.position() > 0)
+            handOver();
+    }
+
+    /**
+     * Writes the buffered lines and closes the channel.
+     *
+     * @throws IOException If the lines could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (buffer.position() > 0)
+                handOver();
+            fullBuffers.put(STOP);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.interrupt();
+        } finally {
+            channel.close();
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Hands the current buffer over to the writer thread and takes a free one.
+     */
+    private void handOver() {
+        if (failure != null)
+            throw new UncheckedIOException("The results could not be written", failure);
+        try {
+            fullBuffers.put(buffer);
+            buffer = freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing the results", e);
+        }
+    }
+
+    /**
+     * The loop of the writer thread.
+     */
+    private void writeBuffers() {
+        try {
+            ByteBuffer full;
+            while ((full = fullBuffers.take()) != STOP) {
+                full.flip();
+                try {
+                    while (full.hasRemaining()) {
+                        channel.write(full);
+                    }
+                } catch (IOException e) {
+                    // Keep releasing the buffers, so the producer is not blocked, and report the failure to it
+                    if (failure == null)
+                        failure = e;
+                }
+                full.clear();
+                freeBuffers.put(full);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int encodeRuleIds(byte[] bytes, int position, long firedRules) {
+        byte separator = ' ';
+        for (long bits = firedRules; bits != 0; bits &= bits - 1) {
+            bytes[position++] = separator;
+            position = encodeInt(bytes, position, ruleSet.rule(Long.numberOfTrailingZeros(bits)).id());
+            separator = ',';
+        }
+        return position;
+    }
+
+    /**
+     * Encodes a timestamp as a time of day if it was given without a date, so the output of such inputs does not
+     * change, otherwise as a date and a time the way {@link java.time.LocalDateTime#toString()} does, e.g.
+     * {@code 2024-03-01T10:02:30}.
+     *
+     * @return The position following the encoded timestamp.
+     */
+    static int encodeTimestamp(byte[] bytes, int position, long timestamp) {
+        if (!Timestamps.isTimeOfDay(timestamp)) {
+            position = encodeDate(bytes, position, Timestamps.epochDay(timestamp));
+            bytes[position++] = 'T';
+        }
+        return encodeTime(bytes, position, Timestamps.secondOfDay(timestamp));
+    }
+
+    /**
+     * Encodes a date as {@code yyyy-MM-dd}, for the years from 0 to 9999.
+     *
+     * @param epochDay The number of days since 1970-01-01.
+     * @return The position following the encoded date.
+     */
+    private static int encodeDate(byte[] bytes, int position, long epochDay) {
+        // The inverse of Timestamps.epochDay(year, month, day), with years starting in March
+        long days = epochDay + 719468;
+        long era = Math.floorDiv(days, 146097);
+        long dayOfEra = days - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = (int) (dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100));
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+
+        position = encodeTwoDigits(bytes, position, year / 100);
+        position = encodeTwoDigits(bytes, position, year % 100);
+        bytes[position++] = '-';
+        position = encodeTwoDigits(bytes, position, month);
+        bytes[position++] = '-';
+        return encodeTwoDigits(bytes, position, day);
+    }
+
+    /**
+     * Encodes a time the way {@link java.time.LocalTime#toString()} does, so the output does not change:
+     * {@code HH:mm}, or {@code HH:mm:ss} if the seconds are not zero.
+     *
+     * @return The position following the encoded time.
+     */
+    static int encodeTime(byte[] bytes, int position, int secondOfDay) {
+        int hours = secondOfDay / 3600;
+        int minutes = secondOfDay / 60 % 60;
+        int seconds = secondOfDay % 60;
+        position = encodeTwoDigits(bytes, position, hours);
+        bytes[position++] = ':';
+        position = encodeTwoDigits(bytes, position, minutes);
+        if (seconds != 0) {
+            bytes[position++] = ':';
+            position = encodeTwoDigits(bytes, position, seconds);
+        }
+        return position;
+    }
+
+    private static int encodeTwoDigits(byte[] bytes, int position, int value) {
+        bytes[position] = (byte) ('0' + value / 10);
+        bytes[position + 1] = (byte) ('0' + value % 10);
+        return position + 2;
+    }
+
+    /**
+     * Encodes a signed decimal integer.
+     *
+     * @return The position following the encoded integer.
+     */
+    static int encodeInt(byte[] bytes, int position, int value) {
+        // Work on the negative value to be able to represent Integer.MIN_VALUE
+        int negative = value;
+        if (value < 0)
+            bytes[position++] = '-';
+        else
+            negative = -value;
+
+        int end = position + digitCount(negative);
+        int index = end;
+        do {
+            bytes[--index] = (byte) ('0' - negative % 10);
+            negative /= 10;
+        } while (negative != 0);
+        return end;
+    }
+
+    /**
+     * @return The number of decimal digits of a negative or zero value.
+     */
+    private static int digitCount(int negative) {
+        int count = 1;
+        for (int limit = -10; count < 10 && negative <= limit; limit *= 10) {
+            count++;
+        }
+        return count;
+    }
+}
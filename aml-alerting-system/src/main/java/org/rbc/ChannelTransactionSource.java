@@ -0,0 +1,63 @@
+package org.rbc;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A {@link TransactionSource} parsing the CSV rows read from a channel, such as the standard input or a
+ * {@link TailingFileChannel}. The first line is a header and is skipped, unless reading is resumed in the middle of
+ * the input.
+ */
+class ChannelTransactionSource implements TransactionSource {
+
+    private final ReadableByteChannel channel;
+    private final boolean skipHeader;
+    private final AMLCSVByteParser parser = new AMLCSVByteParser();
+    private volatile boolean closed;
+
+    /**
+     * @param channel The channel the CSV rows are read from. It is closed with the source.
+     */
+    public ChannelTransactionSource(ReadableByteChannel channel) {
+        this(channel, true);
+    }
+
+    /**
+     * @param channel    The channel the CSV rows are read from. It is closed with the source.
+     * @param skipHeader Whether the first line is a header line, {@code false} when resuming after a row.
+     */
+    public ChannelTransactionSource(ReadableByteChannel channel, boolean skipHeader) {
+        this.channel = channel;
+        this.skipHeader = skipHeader;
+    }
+
+    @Override
+    public void forEachTransaction(TransactionSink sink) throws IOException {
+        try {
+            parser.parse(channel, skipHeader, sink);
+        } catch (ClosedChannelException e) {
+            // Closing the source ends the stream
+            if (!closed)
+                throw e;
+        }
+    }
+
+    /**
+     * @return The number of bytes read from the channel up to the end of the line of the row being passed to the
+     * sink, see {@link AMLCSVByteParser#getLineEnd()}.
+     */
+    public long getLineEnd() {
+        return parser.getLineEnd();
+    }
+
+    /**
+     * Stops reading the channel. A row being received may be cut off: it is dropped.
+     */
+    @Override
+    public void close() throws IOException {
+        parser.cutOff();
+        closed = true;
+        channel.close();
+    }
+}
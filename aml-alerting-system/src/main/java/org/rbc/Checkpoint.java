@@ -0,0 +1,228 @@
+package org.rbc;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A consistent snapshot of the alert windows of all the accounts, taken at a position of the input, so that the
+ * processing can resume from that position after a restart and raise the same alerts as without the restart.
+ * <p>
+ * The engines take a checkpoint without pausing the processing: a barrier is queued behind the transactions submitted
+ * before it, and each processing thread copies the state of its accounts into its own section of the checkpoint when
+ * it reaches the barrier. The copy is a plain memory copy of the primitive arrays of the windows; the file is written
+ * by a {@link CheckpointWriter} on its own thread.
+ * <p>
+ * The file is binary and big-endian: a header (magic number, version, {@link AlertRuleSet#windowLayoutHash()}, input
+ * offset, row count and number of sections), then each section prefixed with its length. A section holds the time of
+ * the latest transaction of its processor and its number of accounts, then for each account its id, the length of its
+ * state and the state of its windows, see {@link AmountWindow#saveState(ByteBuffer)}. The same layout is used to send
+ * a checkpoint over a connection, see {@link #writeTo(DataOutput)}.
+ */
+class Checkpoint {
+
+    /**
+     * "AMLC" in ASCII.
+     */
+    static final int MAGIC = 0x414D4C43;
+
+    static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 3 * Integer.BYTES + 3 * Long.BYTES;
+
+    private final long windowLayoutHash;
+    private final long inputOffset;
+    private final long rowCount;
+    private final ByteBuffer[] sections;
+    private final AtomicInteger missingSections;
+
+    /**
+     * Creates an empty checkpoint, whose sections are filled by the processing threads.
+     *
+     * @param windowLayoutHash The layout of the windows of the accounts, see {@link AlertRuleSet#windowLayoutHash()}.
+     * @param inputOffset      The position in the input following the last row included in the checkpoint.
+     * @param rowCount         The number of rows included in the checkpoint.
+     * @param sectionCount     The number of processors holding accounts.
+     */
+    public Checkpoint(long windowLayoutHash, long inputOffset, long rowCount, int sectionCount) {
+        this.windowLayoutHash = windowLayoutHash;
+        this.inputOffset = inputOffset;
+        this.rowCount = rowCount;
+        this.sections = new ByteBuffer[sectionCount];
+        this.missingSections = new AtomicInteger(sectionCount);
+    }
+
+    /**
+     * Sets the state of the accounts of one processor, see {@link AMLTransactionProcessor#saveAccounts()}.
+     *
+     * @return {@code true} if it was the last section missing, so the checkpoint is complete.
+     */
+    public boolean setSection(int index, ByteBuffer section) {
+        sections[index] = section;
+        // The atomic update publishes the section to the thread completing the checkpoint
+        return missingSections.decrementAndGet() == 0;
+    }
+
+    public int getSectionCount() {
+        return sections.length;
+    }
+
+    /**
+     * @return A buffer reading the section, independent from the buffers returned to other callers.
+     */
+    public ByteBuffer getSection(int index) {
+        return sections[index].duplicate();
+    }
+
+    public long getWindowLayoutHash() {
+        return windowLayoutHash;
+    }
+
+    public long getInputOffset() {
+        return inputOffset;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return The time of the latest transaction processed before the checkpoint, see {@link Timestamps}.
+     */
+    public long getLatestTimestamp() {
+        long latest = Long.MIN_VALUE;
+        for (ByteBuffer section : sections)
+            latest = Math.max(latest, section.getLong(0));
+        return latest;
+    }
+
+    /**
+     * @return The number of accounts saved in the checkpoint.
+     */
+    public int getAccountCount() {
+        int count = 0;
+        for (ByteBuffer section : sections)
+            count += section.getInt(Long.BYTES);
+        return count;
+    }
+
+    /**
+     * @throws IllegalArgumentException If the accounts of the checkpoint were saved with windows of another layout.
+     */
+    public void checkWindowLayout(AlertRuleSet ruleSet) {
+        if (ruleSet.windowLayoutHash() != windowLayoutHash)
+            throw new IllegalArgumentException("The checkpoint was taken with other alert windows: its accounts cannot"
+                    + " be restored with the current rules");
+    }
+
+    /**
+     * Writes the checkpoint to a file, replacing it atomically: the file is first written next to it and forced to
+     * the disk, then moved, so a crash while writing leaves the previous checkpoint intact.
+     */
+    public void write(Path path) throws IOException {
+        ByteBuffer[] buffers = new ByteBuffer[1 + 2 * sections.length];
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + sections.length * Integer.BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putLong(windowLayoutHash).putLong(inputOffset).putLong(rowCount)
+                .putInt(sections.length);
+        buffers[0] = header.flip();
+        for (int i = 0; i < sections.length; i++) {
+            ByteBuffer section = getSection(i);
+            buffers[1 + 2 * i] = ByteBuffer.allocate(Integer.BYTES).putInt(0, section.remaining());
+            buffers[2 + 2 * i] = section;
+        }
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffers[buffers.length - 1].hasRemaining()) {
+                channel.write(buffers);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the checkpoint to a stream, in the layout of the file, e.g. to hand the accounts it holds over to another
+     * node, see {@link PartitionRouter}.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(windowLayoutHash);
+        out.writeLong(inputOffset);
+        out.writeLong(rowCount);
+        out.writeInt(sections.length);
+        for (int i = 0; i < sections.length; i++) {
+            ByteBuffer section = getSection(i);
+            out.writeInt(section.remaining());
+            if (section.hasArray()) {
+                out.write(section.array(), section.arrayOffset() + section.position(), section.remaining());
+            } else {
+                byte[] bytes = new byte[section.remaining()];
+                section.get(bytes);
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Reads a checkpoint written by {@link #writeTo(DataOutput)}.
+     *
+     * @throws IOException If the stream cannot be read or does not hold a checkpoint.
+     */
+    public static Checkpoint readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC)
+            throw new IOException("Not a checkpoint");
+        int version = in.readInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported checkpoint version " + version);
+        Checkpoint checkpoint = new Checkpoint(in.readLong(), in.readLong(), in.readLong(), in.readInt());
+        for (int i = 0; i < checkpoint.sections.length; i++) {
+            byte[] section = new byte[in.readInt()];
+            in.readFully(section);
+            checkpoint.setSection(i, ByteBuffer.wrap(section));
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Reads a checkpoint written by {@link #write(Path)}.
+     *
+     * @throws IOException If the file cannot be read or is not a checkpoint.
+     */
+    public static Checkpoint read(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = ByteBuffer.allocate(Math.toIntExact(channel.size()));
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read the whole file
+            }
+        }
+        buffer.flip();
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)
+            throw new IOException("Not a checkpoint file: " + path);
+        int version = buffer.getInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported checkpoint version " + version + ": " + path);
+
+        Checkpoint checkpoint = new Checkpoint(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getInt());
+        try {
+            for (int i = 0; i < checkpoint.sections.length; i++) {
+                int length = buffer.getInt();
+                checkpoint.setSection(i, buffer.slice(buffer.position(), length));
+                buffer.position(buffer.position() + length);
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Truncated checkpoint file: " + path, e);
+        }
+        return checkpoint;
+    }
+}
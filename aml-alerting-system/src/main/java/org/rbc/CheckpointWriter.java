@@ -0,0 +1,108 @@
+package org.rbc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes the {@link Checkpoint}s to a file on a background thread, so the processing threads never wait for the disk.
+ * <p>
+ * Only the latest checkpoint matters: if checkpoints complete faster than they are written, a checkpoint waiting to be
+ * written is replaced by the newer one. A failure to write a checkpoint is logged and does not stop the processing,
+ * since the previous checkpoint is still intact.
+ */
+class CheckpointWriter implements Closeable {
+
+    public static final Logger logger = Logger.getLogger(CheckpointWriter.class.getName());
+
+    private final Path path;
+    private final Thread thread;
+
+    /**
+     * The checkpoint waiting to be written, or {@code null}. Guarded by {@code this}.
+     */
+    private Checkpoint pending;
+    private boolean closed;
+    private long written;
+
+    /**
+     * @param path The checkpoint file. It is replaced by each new checkpoint.
+     */
+    public CheckpointWriter(Path path) {
+        this(path, IoThreads.PLATFORM);
+    }
+
+    /**
+     * @param path    The checkpoint file. It is replaced by each new checkpoint.
+     * @param threads Creates the thread writing the file.
+     */
+    public CheckpointWriter(Path path, IoThreads threads) {
+        this.path = path;
+        this.thread = threads.newThread("aml-checkpoint-writer", this::writeCheckpoints);
+        thread.start();
+    }
+
+    /**
+     * Schedules the writing of a complete checkpoint. Can be called from any thread.
+     */
+    public synchronized void submit(Checkpoint checkpoint) {
+        if (closed)
+            throw new IllegalStateException("The checkpoint writer is closed");
+        pending = checkpoint;
+        notifyAll();
+    }
+
+    /**
+     * @return The number of checkpoints written so far.
+     */
+    public synchronized long getWrittenCount() {
+        return written;
+    }
+
+    private void writeCheckpoints() {
+        while (true) {
+            Checkpoint checkpoint;
+            synchronized (this) {
+                while (pending == null && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending == null)
+                    return;
+                checkpoint = pending;
+                pending = null;
+            }
+            try {
+                checkpoint.write(path);
+                synchronized (this) {
+                    written++;
+                }
+                logger.fine("Checkpoint written at offset " + checkpoint.getInputOffset());
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.SEVERE, "Error writing the checkpoint " + path, e);
+            }
+        }
+    }
+
+    /**
+     * Writes the checkpoint submitted last, if it is not written yet, and stops the background thread.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            thread.interrupt();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.rbc;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A {@link TransactionSink} passing the transactions on and periodically taking a {@link Checkpoint} of the engine
+ * processing them, at the position of the input following the latest transaction.
+ * <p>
+ * A timer only raises a flag: the checkpoint is requested by the thread submitting the transactions, between two of
+ * them, so that its barrier is ordered with the transactions in the queues of the engine and the checkpoint matches
+ * its input offset exactly. The completed checkpoints are handed to a {@link CheckpointWriter}.
+ */
+class CheckpointingSink implements TransactionSink, Closeable {
+
+    static final int DEFAULT_INTERVAL_SECONDS = 60;
+
+    private final TransactionSink sink;
+    private final StatefulEngine engine;
+    private final LongSupplier inputOffset;
+    private final CheckpointWriter writer;
+    private final ScheduledExecutorService timer;
+    private volatile boolean due;
+    private long rowCount;
+
+    /**
+     * @param sink            The sink receiving the transactions, which ends with the engine.
+     * @param engine          The engine to take the checkpoints of.
+     * @param inputOffset     Gives the position of the input following the transaction being accepted.
+     * @param rowCount        The number of rows before the first transaction accepted, when resuming from a
+     *                        checkpoint.
+     * @param intervalSeconds The interval between two checkpoints.
+     * @param writer          Writes the completed checkpoints.
+     */
+    public CheckpointingSink(TransactionSink sink, StatefulEngine engine, LongSupplier inputOffset, long rowCount,
+                             long intervalSeconds, CheckpointWriter writer) {
+        this.sink = sink;
+        this.engine = engine;
+        this.inputOffset = inputOffset;
+        this.rowCount = rowCount;
+        this.writer = writer;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "aml-checkpoint-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(() -> due = true, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void accept(long timestamp, int amount, int accountId) {
+        sink.accept(timestamp, amount, accountId);
+        rowCount++;
+        if (due) {
+            due = false;
+            checkpoint();
+        }
+    }
+
+    /**
+     * Takes a checkpoint after the latest transaction accepted, e.g. at the end of the input.
+     */
+    public void checkpoint() {
+        engine.checkpoint(inputOffset.getAsLong(), rowCount, writer::submit);
+    }
+
+    /**
+     * Stops taking checkpoints periodically. It does not take a last checkpoint, since the latest transaction may not
+     * have been accepted in full if the input failed.
+     */
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+}
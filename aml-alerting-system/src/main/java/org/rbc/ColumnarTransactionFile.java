@@ -0,0 +1,284 @@
+package org.rbc;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A file of transactions in a compact columnar binary format, converted once from a CSV file and then read through
+ * memory mapping, so a day replayed many times is not parsed again.
+ * <p>
+ * The file is little-endian: a header (magic number, version, number of rows, base timestamp, number of accounts and
+ * largest number of transactions of an account), then three columns of {@code int}s, one value per row: the times as
+ * seconds after the base timestamp, the amounts and the account ids. It ends with the table of the accounts, sorted by
+ * id, each with its number of transactions.
+ * <p>
+ * Each column is mapped as a buffer of its own, and the transactions are read straight from the mapped pages into the
+ * sink, e.g. {@link AMLTransactionProcessor#processTransaction(long, int, int)}, without any copy or object per row.
+ * The limits of the input ({@link AMLAlertingConfiguration#MAX_ACCOUNTS} and
+ * {@link AMLAlertingConfiguration#MAX_TRANSACTIONS_PER_ACCOUNT}) are checked from the header before the first row is
+ * read.
+ */
+class ColumnarTransactionFile implements TransactionSource {
+
+    /**
+     * "AMLT" in ASCII.
+     */
+    static final int MAGIC = 0x414D4C54;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 4 * Integer.BYTES + 2 * Long.BYTES;
+
+    /**
+     * The largest number of rows, so each column can be mapped as a single buffer.
+     */
+    static final int MAX_ROWS = Integer.MAX_VALUE / Integer.BYTES;
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * How often the rows being read check whether the source is closed.
+     */
+    private static final int CLOSE_CHECK_INTERVAL = 4096;
+
+    private final FileChannel channel;
+    private final int rowCount;
+    private final long baseTimestamp;
+    private final int maxTransactionsPerAccount;
+    private final IntBuffer times;
+    private final IntBuffer amounts;
+    private final IntBuffer accountIds;
+    private final IntBuffer accounts;
+    private volatile boolean closed;
+
+    private ColumnarTransactionFile(FileChannel channel, ByteBuffer header) throws IOException {
+        this.channel = channel;
+        this.rowCount = Math.toIntExact(header.getLong(2 * Integer.BYTES));
+        this.baseTimestamp = header.getLong(2 * Integer.BYTES + Long.BYTES);
+        int accountCount = header.getInt(2 * Integer.BYTES + 2 * Long.BYTES);
+        this.maxTransactionsPerAccount = header.getInt(3 * Integer.BYTES + 2 * Long.BYTES);
+
+        long columnSize = (long) rowCount * Integer.BYTES;
+        this.times = map(HEADER_SIZE, columnSize);
+        this.amounts = map(HEADER_SIZE + columnSize, columnSize);
+        this.accountIds = map(HEADER_SIZE + 2 * columnSize, columnSize);
+        this.accounts = map(HEADER_SIZE + 3 * columnSize, (long) accountCount * 2 * Integer.BYTES);
+    }
+
+    private IntBuffer map(long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer();
+    }
+
+    /**
+     * Opens a columnar file and maps its columns.
+     *
+     * @throws IOException If the file cannot be read, is not a columnar file or is truncated.
+     */
+    public static ColumnarTransactionFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // Read until the header is complete or the end of the file
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC)
+                throw new IOException("Not a columnar transaction file: " + path);
+            int version = header.getInt(Integer.BYTES);
+            if (version != VERSION)
+                throw new IOException("Unsupported columnar file version " + version + ": " + path);
+            long rows = header.getLong(2 * Integer.BYTES);
+            long accountCount = header.getInt(2 * Integer.BYTES + 2 * Long.BYTES);
+            if (rows < 0 || rows > MAX_ROWS || accountCount < 0
+                    || channel.size() != HEADER_SIZE + rows * 3 * Integer.BYTES + accountCount * 2 * Integer.BYTES)
+                throw new IOException("Truncated columnar transaction file: " + path);
+            return new ColumnarTransactionFile(channel, header);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Whether the file starts with the magic number of a columnar file.
+     */
+    public static boolean isColumnar(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return isColumnar(channel);
+        }
+    }
+
+    /**
+     * @return Whether the file starts with the magic number of a columnar file. The position of the channel does not
+     * change.
+     */
+    public static boolean isColumnar(FileChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (magic.hasRemaining() && channel.read(magic, magic.position()) > 0) {
+            // Read until the magic number is complete or the end of the file
+        }
+        return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+    }
+
+    /**
+     * Converts a CSV file to a columnar file. The whole CSV file is parsed into memory first, since the header of the
+     * columnar file needs its row count and its accounts.
+     *
+     * @param csvPath The CSV file, with a header line.
+     * @param path    The columnar file, replaced if it exists.
+     * @return The number of transactions converted.
+     * @throws IOException              If an error occurs while reading the CSV file or writing the columnar file.
+     * @throws IllegalArgumentException If the CSV file has too many rows, or if its times span more than an int of
+     *                                  seconds.
+     */
+    public static int convert(Path csvPath, Path path) throws IOException {
+        TransactionBatch batch = new TransactionBatch(Math.toIntExact(
+                Math.min(Files.size(csvPath) / 16, MAX_ROWS)));
+        try (FileInputStream in = new FileInputStream(csvPath.toFile())) {
+            new AMLCSVByteParser().parse(in.getChannel(), true, (timestamp, amount, accountId) -> {
+                if (batch.size() == MAX_ROWS)
+                    throw new IllegalArgumentException("A columnar file holds at most " + MAX_ROWS + " rows");
+                batch.accept(timestamp, amount, accountId);
+            });
+        }
+
+        int rows = batch.size();
+        long base = Long.MAX_VALUE;
+        long latest = Long.MIN_VALUE;
+        IntIntHashMap transactionCounts = new IntIntHashMap();
+        int maxTransactionsPerAccount = 0;
+        for (int i = 0; i < rows; i++) {
+            base = Math.min(base, batch.timestamp(i));
+            latest = Math.max(latest, batch.timestamp(i));
+            maxTransactionsPerAccount = Math.max(maxTransactionsPerAccount,
+                    transactionCounts.addTo(batch.accountId(i), 1));
+        }
+        if (rows == 0)
+            base = 0;
+        else if (latest - base > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The times of a columnar file must span less than "
+                    + Integer.MAX_VALUE + " seconds");
+        int[] accountIdsSorted = transactionCounts.keys();
+        Arrays.sort(accountIdsSorted);
+
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(rows).putLong(base)
+                    .putInt(accountIdsSorted.length).putInt(maxTransactionsPerAccount);
+            for (int i = 0; i < rows; i++) {
+                writeIfFull(out, buffer).putInt((int) (batch.timestamp(i) - base));
+            }
+            for (int i = 0; i < rows; i++) {
+                writeIfFull(out, buffer).putInt(batch.amount(i));
+            }
+            for (int i = 0; i < rows; i++) {
+                writeIfFull(out, buffer).putInt(batch.accountId(i));
+            }
+            for (int accountId : accountIdsSorted) {
+                writeIfFull(out, buffer).putInt(accountId);
+                writeIfFull(out, buffer).putInt(transactionCounts.get(accountId, 0));
+            }
+            write(out, buffer);
+        }
+        return rows;
+    }
+
+    private static ByteBuffer writeIfFull(FileChannel out, ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < Integer.BYTES)
+            write(out, buffer);
+        return buffer;
+    }
+
+    private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Hands the transactions to the sink in file order, reading them from the mapped columns. The limits of the
+     * input are checked first, from the header.
+     *
+     * @throws IllegalArgumentException If the file exceeds the number of accounts or the number of transactions per
+     *                                  account allowed in the input.
+     */
+    @Override
+    public void forEachTransaction(TransactionSink sink) {
+        AccountLimitValidator.validateTotals(getAccountCount(), maxTransactionsPerAccount);
+        for (int i = 0; i < rowCount; i++) {
+            if (i % CLOSE_CHECK_INTERVAL == 0 && closed)
+                return;
+            sink.accept(baseTimestamp + times.get(i), amounts.get(i), accountIds.get(i));
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public long getTimestamp(int row) {
+        return baseTimestamp + times.get(row);
+    }
+
+    public int getAmount(int row) {
+        return amounts.get(row);
+    }
+
+    public int getAccountId(int row) {
+        return accountIds.get(row);
+    }
+
+    /**
+     * @return The number of distinct accounts.
+     */
+    public int getAccountCount() {
+        return accounts.limit() / 2;
+    }
+
+    /**
+     * @return The largest number of transactions of an account.
+     */
+    public int getMaxTransactionsPerAccount() {
+        return maxTransactionsPerAccount;
+    }
+
+    /**
+     * @return The number of transactions of the account, found by a binary search of the table of the accounts.
+     */
+    public int getTransactionCount(int accountId) {
+        int low = 0;
+        int high = getAccountCount() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = accounts.get(2 * middle);
+            if (id < accountId)
+                low = middle + 1;
+            else if (id > accountId)
+                high = middle - 1;
+            else
+                return accounts.get(2 * middle + 1);
+        }
+        return 0;
+    }
+
+    /**
+     * Stops {@link #forEachTransaction} and closes the file. The mapped columns are released by the garbage
+     * collector.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+}
@@ -0,0 +1,83 @@
+package org.rbc;
+
+/**
+ * A {@link TransactionSink} placing the times of day given without a date on consecutive days, so a stream running
+ * around the clock keeps increasing timestamps across midnight.
+ * <p>
+ * A time of day more than {@value #ROLLOVER_THRESHOLD_SECONDS} seconds before the previous one starts a new day:
+ * 23:59:30 followed by 00:00:10 is 40 seconds later, not a day earlier. Conversely, shortly after midnight, a time at
+ * most {@value #MIDNIGHT_LATENESS_SECONDS} seconds before the latest one across midnight belongs to the previous day,
+ * such as a transaction of 23:59:58 arriving late after 00:00:05. Any other time after the latest one is on the same
+ * day, however long the gap, so a sorted stream never goes back in time. The timestamps with a date are passed on
+ * unchanged. This class is not thread-safe.
+ * <p>
+ * The times of day are placed on the days of the first year only, see {@link Timestamps}: a stream without dates
+ * crossing midnight a 365th time fails, rather than producing timestamps taken for dates of
+ * {@value Timestamps#DATED_FROM_YEAR}.
+ */
+class DayRolloverSink implements TransactionSink {
+
+    static final int ROLLOVER_THRESHOLD_SECONDS = Timestamps.SECONDS_PER_DAY / 2;
+
+    /**
+     * How late a transaction of the previous day may arrive after the latest one of the current day.
+     */
+    static final int MIDNIGHT_LATENESS_SECONDS = 3600;
+
+    private final TransactionSink sink;
+
+    /**
+     * The first timestamp of the current day.
+     */
+    private long dayStart;
+
+    /**
+     * The time of day of the latest transaction without a date, or -1 if there is none yet.
+     */
+    private int latestSecondOfDay = -1;
+
+    /**
+     * @param sink The sink receiving the transactions with their full timestamps.
+     */
+    public DayRolloverSink(TransactionSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Continues a stream whose latest transaction had the given timestamp, e.g. when resuming from a
+     * {@link Checkpoint}.
+     */
+    public void resumeAfter(long timestamp) {
+        if (Timestamps.isTimeOfDay(timestamp)) {
+            dayStart = Timestamps.epochDay(timestamp) * Timestamps.SECONDS_PER_DAY;
+            latestSecondOfDay = Timestamps.secondOfDay(timestamp);
+        }
+    }
+
+    @Override
+    public void accept(long timestamp, int amount, int accountId) {
+        if (timestamp < 0 || timestamp >= Timestamps.SECONDS_PER_DAY) {
+            sink.accept(timestamp, amount, accountId);
+            return;
+        }
+
+        int secondOfDay = (int) timestamp;
+        long start = dayStart;
+        if (latestSecondOfDay >= 0 && secondOfDay < latestSecondOfDay - ROLLOVER_THRESHOLD_SECONDS) {
+            if (dayStart + Timestamps.SECONDS_PER_DAY >= Timestamps.DATED_FROM)
+                throw new IllegalStateException("The times of day without a date cannot span more than "
+                        + Timestamps.DATED_FROM / Timestamps.SECONDS_PER_DAY + " days: give the dates of the"
+                        + " transactions");
+            dayStart += Timestamps.SECONDS_PER_DAY;
+            start = dayStart;
+            latestSecondOfDay = secondOfDay;
+        } else if (dayStart > 0 && secondOfDay > latestSecondOfDay + ROLLOVER_THRESHOLD_SECONDS
+                && Timestamps.SECONDS_PER_DAY - secondOfDay + latestSecondOfDay <= MIDNIGHT_LATENESS_SECONDS) {
+            // A late transaction of the previous day
+            start -= Timestamps.SECONDS_PER_DAY;
+        } else {
+            latestSecondOfDay = Math.max(latestSecondOfDay, secondOfDay);
+        }
+        sink.accept(start + secondOfDay, amount, accountId);
+    }
+}
@@ -0,0 +1,184 @@
+package org.rbc;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * A {@link TransactionSink} putting back in chronological order the transactions which arrive slightly out of order,
+ * e.g. when they are merged from several sources, before passing them on to the sink processing them.
+ * <p>
+ * Transactions may arrive up to {@code maxLatenessSeconds} seconds after a later transaction. The watermark is the
+ * time of the latest transaction received minus this bound: no transaction older than the watermark can arrive
+ * anymore, so the transactions before it are final and are released in time order, and those of the same second in
+ * arrival order. A transaction arriving later than the bound is dropped and counted, since the windows of its account
+ * have already moved past it.
+ * <p>
+ * The pending transactions are kept in a time wheel with one slot per second, of the size of the lateness bound: a
+ * transaction is appended to the slot of its second and released once when the watermark passes it. A bitmap marks
+ * the slots holding transactions, so advancing the watermark jumps from one of them to the next, reading a word of the
+ * bitmap per 64 empty seconds: the cost is amortized constant per transaction, even when the transactions are sparse.
+ * The watermark skips the gaps during which no transaction is pending, such as the nights between two days of dated
+ * transactions.
+ * <p>
+ * The pending transactions must be released with {@link #flush()} at the end of the input. This class is not
+ * thread-safe.
+ */
+class EventTimeReorderer implements TransactionSink {
+
+    public static final Logger logger = Logger.getLogger(EventTimeReorderer.class.getName());
+
+    /**
+     * The largest lateness bound: a day.
+     */
+    static final int MAX_LATENESS_SECONDS = 24 * 3600;
+
+    private static final int INITIAL_SLOT_CAPACITY = 8;
+
+    private final TransactionSink sink;
+    private final int maxLatenessSeconds;
+
+    private final int[][] amounts;
+    private final int[][] accountIds;
+    private final int[] counts;
+    private final int mask;
+
+    /**
+     * A bit per slot, set while the slot holds transactions.
+     */
+    private final long[] occupied;
+
+    /**
+     * The number of slots per word of {@link #occupied}.
+     */
+    private final int wordSlots;
+
+    private boolean started;
+
+    /**
+     * The time of the latest transaction received.
+     */
+    private long latestSecond;
+
+    /**
+     * The first second not released yet: the watermark.
+     */
+    private long nextRelease;
+
+    /**
+     * The number of transactions in the wheel.
+     */
+    private int pendingCount;
+
+    private long droppedCount;
+
+    /**
+     * @param sink               The sink receiving the transactions in chronological order.
+     * @param maxLatenessSeconds How late a transaction may arrive after a later one, in seconds.
+     */
+    public EventTimeReorderer(TransactionSink sink, int maxLatenessSeconds) {
+        if (maxLatenessSeconds < 0 || maxLatenessSeconds > MAX_LATENESS_SECONDS)
+            throw new IllegalArgumentException("The lateness bound must be between 0 and a day");
+        this.sink = sink;
+        this.maxLatenessSeconds = maxLatenessSeconds;
+        // The pending transactions span at most the lateness bound plus the second of the latest transaction
+        int slots = Math.max(Integer.highestOneBit(maxLatenessSeconds) << 1, 1);
+        // The arrays of a slot are allocated on its first transaction
+        this.amounts = new int[slots][];
+        this.accountIds = new int[slots][];
+        this.counts = new int[slots];
+        this.mask = slots - 1;
+        this.occupied = new long[Math.max(slots >>> 6, 1)];
+        this.wordSlots = Math.min(slots, Long.SIZE);
+    }
+
+    @Override
+    public void accept(long timestamp, int amount, int accountId) {
+        if (!started) {
+            started = true;
+            latestSecond = timestamp;
+            nextRelease = timestamp - maxLatenessSeconds;
+        } else if (timestamp < nextRelease) {
+            if (droppedCount++ == 0)
+                logger.warning("Dropping the transactions arriving more than " + maxLatenessSeconds
+                        + " seconds late, such as " + Timestamps.format(timestamp) + "," + amount + "," + accountId);
+            return;
+        } else if (timestamp > latestSecond) {
+            release(timestamp - maxLatenessSeconds);
+            latestSecond = timestamp;
+        }
+
+        int slot = (int) timestamp & mask;
+        int count = counts[slot];
+        if (count == 0)
+            occupied[slot >>> 6] |= 1L << slot;
+        if (amounts[slot] == null) {
+            amounts[slot] = new int[INITIAL_SLOT_CAPACITY];
+            accountIds[slot] = new int[INITIAL_SLOT_CAPACITY];
+        } else if (count == amounts[slot].length) {
+            amounts[slot] = Arrays.copyOf(amounts[slot], count * 2);
+            accountIds[slot] = Arrays.copyOf(accountIds[slot], count * 2);
+        }
+        amounts[slot][count] = amount;
+        accountIds[slot][count] = accountId;
+        counts[slot] = count + 1;
+        pendingCount++;
+    }
+
+    /**
+     * Releases the pending transactions older than the given watermark, in time order.
+     */
+    private void release(long watermark) {
+        // Only the seconds up to the latest transaction can hold pending transactions
+        long last = Math.min(watermark - 1, latestSecond);
+        for (long second = nextOccupied(nextRelease, last); second <= last && pendingCount > 0;
+             second = nextOccupied(second + 1, last)) {
+            int slot = (int) second & mask;
+            int count = counts[slot];
+            counts[slot] = 0;
+            occupied[slot >>> 6] &= ~(1L << slot);
+            pendingCount -= count;
+            for (int i = 0; i < count; i++) {
+                sink.accept(second, amounts[slot][i], accountIds[slot][i]);
+            }
+        }
+        nextRelease = Math.max(nextRelease, watermark);
+    }
+
+    /**
+     * @return The first second from the given one whose slot holds transactions, or a second after {@code last} if
+     * there is none up to it. The seconds pending span less than the wheel, so a slot holds the transactions of a
+     * single second.
+     */
+    private long nextOccupied(long second, long last) {
+        while (second <= last) {
+            int slot = (int) second & mask;
+            int bit = slot & (Long.SIZE - 1);
+            long word = occupied[slot >>> 6] >>> bit;
+            if (word != 0)
+                return second + Long.numberOfTrailingZeros(word);
+            // On to the first slot of the next word, or of the wheel
+            second += wordSlots - bit;
+        }
+        return second;
+    }
+
+    /**
+     * Releases all the pending transactions, at the end of the input. Transactions can still be accepted afterwards,
+     * as long as they are later than the latest one released.
+     */
+    public void flush() {
+        if (!started)
+            return;
+        release(latestSecond + 1);
+        if (droppedCount > 0)
+            logger.warning(droppedCount + " transactions arrived more than " + maxLatenessSeconds
+                    + " seconds late and were dropped");
+    }
+
+    /**
+     * @return The number of transactions dropped because they arrived later than the bound.
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+}
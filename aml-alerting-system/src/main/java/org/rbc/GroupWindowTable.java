@@ -0,0 +1,207 @@
+package org.rbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The windows of the groups of accounts, evaluated against the group rules of an {@link AlertRuleSet}, see
+ * {@link AlertRule.Scope#GROUP}. A table is shared by all the processors, since the accounts of a group may belong to
+ * different shards.
+ * <p>
+ * The groups are spread over stripes by hashing their id, and each stripe has its own lock and its own map of windows,
+ * separate from the accounts: a transaction updates the window of its group under the lock of the stripe of the group
+ * only, and the window of its account under the lock of the account, or without any lock in its shard. A busy group
+ * thus never delays the accounts belonging to no group, nor the groups of the other stripes.
+ * <p>
+ * A window must receive its transactions in chronological order, while the shards each run at their own pace. So when
+ * the transactions are spread over shards, the thread dispatching them first {@link #reserve reserves} a ticket for
+ * each transaction in the sequence of its group, and a shard reaching a transaction of a group waits until the
+ * transactions of the group dispatched before it are added. The totals of the groups, and hence the alerts, are then
+ * the same as when all the transactions are processed on a single thread, which can add them right away with
+ * {@link #evaluate(long, int, int)}.
+ * <p>
+ * This class is thread-safe.
+ */
+class GroupWindowTable {
+
+    static final int DEFAULT_STRIPE_COUNT = 64;
+
+    private static final int SPIN_TRIES = 200;
+
+    /**
+     * The ticket of a transaction whose account belonged to no group when it was dispatched.
+     */
+    static final long NO_GROUP_TICKET = (long) AccountGroups.NO_GROUP << Integer.SIZE;
+
+    private final AccountGroups groups;
+    private final AccountRules rules;
+    private final Stripe[] stripes;
+
+    /**
+     * The number of transactions dispatched to each group, only used by the dispatching thread.
+     */
+    private final IntIntHashMap dispatched = new IntIntHashMap();
+
+    /**
+     * @param groups      The mapping of the accounts to their groups.
+     * @param ruleSet     The rules, of which only the group rules are evaluated.
+     * @param stripeCount The number of stripes. It is rounded up to a power of two.
+     * @throws IllegalArgumentException If the rule set has no group rule.
+     */
+    public GroupWindowTable(AccountGroups groups, AlertRuleSet ruleSet, int stripeCount) {
+        if (ruleSet.groupRules() == null)
+            throw new IllegalArgumentException("The rule set has no group rule");
+        this.groups = groups;
+        this.rules = ruleSet.groupRules();
+        this.stripes = new Stripe[Integer.highestOneBit(Math.max(stripeCount, 2) - 1) << 1];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    private Stripe stripeOf(int groupId) {
+        return stripes[IntIntHashMap.hash(groupId) & (stripes.length - 1)];
+    }
+
+    /**
+     * Adds a transaction to the window of the group of its account, if any, and evaluates the group rules. The
+     * transactions must be added in chronological order, e.g. by a single thread.
+     *
+     * @param timestamp The time of the transaction, see {@link Timestamps}.
+     * @param amount    The amount of the transaction.
+     * @param accountId The account of the transaction.
+     * @return The mask of the group rules which fired, see {@link AlertRuleSet#ruleIds(long)}, or 0 if there is no
+     * alert or if the account belongs to no group.
+     */
+    public long evaluate(long timestamp, int amount, int accountId) {
+        int groupId = groups.groupOf(accountId);
+        if (groupId == AccountGroups.NO_GROUP)
+            return 0;
+        Stripe stripe = stripeOf(groupId);
+        synchronized (stripe) {
+            return stripe.add(stripe.slotOf(groupId), timestamp, amount);
+        }
+    }
+
+    /**
+     * Reserves the place of a transaction in the sequence of its group. Must be called by a single thread, in input
+     * order, for all the transactions later given to {@link #evaluate(long, long, int)}.
+     *
+     * @param accountId The account of the transaction.
+     * @return The ticket of the transaction, holding its group, or {@link #NO_GROUP_TICKET}.
+     */
+    public long reserve(int accountId) {
+        int groupId = groups.groupOf(accountId);
+        if (groupId == AccountGroups.NO_GROUP)
+            return NO_GROUP_TICKET;
+        int ticket = dispatched.addTo(groupId, 1) - 1;
+        return (long) groupId << Integer.SIZE | ticket & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Adds a transaction to the window of its group once all the transactions of the group reserved before it are
+     * added, and evaluates the group rules.
+     *
+     * @param ticket    The ticket of the transaction, from {@link #reserve(int)}.
+     * @param timestamp The time of the transaction, see {@link Timestamps}.
+     * @param amount    The amount of the transaction.
+     * @return The mask of the group rules which fired, or 0 if there is no alert or if the account belonged to no
+     * group.
+     * @throws IllegalStateException If the thread is interrupted while waiting.
+     */
+    public long evaluate(long ticket, long timestamp, int amount) {
+        if (ticket == NO_GROUP_TICKET)
+            return 0;
+        int groupId = (int) (ticket >> Integer.SIZE);
+        Stripe stripe = stripeOf(groupId);
+        for (int spins = 0; ; spins++) {
+            synchronized (stripe) {
+                int slot = stripe.slotOf(groupId);
+                if (stripe.nextTickets[slot] == (int) ticket) {
+                    try {
+                        return stripe.add(slot, timestamp, amount);
+                    } finally {
+                        // Even if the rules failed, so the following transactions of the group are not blocked
+                        stripe.nextTickets[slot]++;
+                        if (stripe.waiting > 0)
+                            stripe.notifyAll();
+                    }
+                }
+                // The previous transactions of the group are usually just being processed by another shard: spin
+                // briefly before waiting to be notified
+                if (spins >= SPIN_TRIES)
+                    await(stripe);
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void await(Stripe stripe) {
+        stripe.waiting++;
+        try {
+            stripe.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the transactions of a group", e);
+        } finally {
+            stripe.waiting--;
+        }
+    }
+
+    /**
+     * @return The mapping of the accounts to their groups.
+     */
+    public AccountGroups getGroups() {
+        return groups;
+    }
+
+    /**
+     * @return The number of groups with a window.
+     */
+    public int getGroupCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                count += stripe.windows.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The windows of the groups of a stripe, guarded by the stripe itself.
+     */
+    private class Stripe {
+        private final IntIntHashMap slots = new IntIntHashMap();
+        private final List<AmountWindow> windows = new ArrayList<>();
+
+        /**
+         * The ticket of the next transaction of each group to add.
+         */
+        private int[] nextTickets = new int[8];
+
+        /**
+         * The number of threads waiting for their ticket.
+         */
+        private int waiting;
+
+        int slotOf(int groupId) {
+            int slot = slots.get(groupId, -1);
+            if (slot < 0) {
+                slot = windows.size();
+                slots.put(groupId, slot);
+                windows.add(rules.newWindow());
+                if (slot == nextTickets.length)
+                    nextTickets = Arrays.copyOf(nextTickets, slot * 2);
+            }
+            return slot;
+        }
+
+        long add(int slot, long timestamp, int amount) {
+            AmountWindow window = windows.get(slot);
+            window.add(timestamp, amount);
+            return rules.evaluate(window);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.rbc;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from primitive {@code int} keys to primitive {@code int} values.
+ * It uses open addressing with linear probing over two parallel arrays, so neither keys nor values are boxed and
+ * no object is allocated per entry. This class is not thread-safe.
+ */
+class IntIntHashMap {
+
+    /**
+     * The key marking a free slot. The entry for this key, if any, is kept outside the arrays.
+     */
+    private static final int FREE_KEY = 0;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    private boolean hasFreeKey;
+    private int freeKeyValue;
+
+    public IntIntHashMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize The number of entries the map should hold without having to be resized.
+     */
+    public IntIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return The number of entries in the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(int key) {
+        if (key == FREE_KEY)
+            return hasFreeKey;
+        return keys[indexOf(key)] == key;
+    }
+
+    /**
+     * @return The value associated with the key, or {@code defaultValue} if the map does not contain the key.
+     */
+    public int get(int key, int defaultValue) {
+        if (key == FREE_KEY)
+            return hasFreeKey ? freeKeyValue : defaultValue;
+        int index = indexOf(key);
+        return keys[index] == key ? values[index] : defaultValue;
+    }
+
+    /**
+     * Associates the value with the key, replacing any previous value.
+     */
+    public void put(int key, int value) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey)
+                size++;
+            hasFreeKey = true;
+            freeKeyValue = value;
+            return;
+        }
+        int index = indexOf(key);
+        if (keys[index] != key)
+            index = insert(index, key);
+        values[index] = value;
+    }
+
+    /**
+     * Adds the delta to the value associated with the key, a missing key counting as 0.
+     *
+     * @return The new value associated with the key.
+     */
+    public int addTo(int key, int delta) {
+        if (key == FREE_KEY) {
+            put(key, get(key, 0) + delta);
+            return freeKeyValue;
+        }
+        int index = indexOf(key);
+        if (keys[index] != key)
+            index = insert(index, key);
+        return values[index] += delta;
+    }
+
+    /**
+     * @return The keys of the map, in no particular order.
+     */
+    public int[] keys() {
+        int[] result = new int[size];
+        int count = 0;
+        if (hasFreeKey)
+            result[count++] = FREE_KEY;
+        for (int key : keys) {
+            if (key != FREE_KEY)
+                result[count++] = key;
+        }
+        return result;
+    }
+
+    /**
+     * Removes all the entries, keeping the allocated capacity.
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        Arrays.fill(values, 0);
+        size = 0;
+        hasFreeKey = false;
+        freeKeyValue = 0;
+    }
+
+    /**
+     * @return The slot holding the key, or the free slot where it would be inserted.
+     */
+    private int indexOf(int key) {
+        int index = hash(key) & mask;
+        while (keys[index] != key && keys[index] != FREE_KEY) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private int insert(int freeIndex, int key) {
+        keys[freeIndex] = key;
+        values[freeIndex] = 0;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length * 2);
+            return indexOf(key);
+        }
+        return freeIndex;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE_KEY) {
+                int index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Spreads sequential keys, which are common for account ids, across the table.
+     */
+    static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
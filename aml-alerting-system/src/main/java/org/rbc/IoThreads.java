@@ -0,0 +1,93 @@
+package org.rbc;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Creates the threads of the I/O stages: the readers of the connections, the writer of the results and the writer of
+ * the checkpoints. These threads mostly block on a channel, so on Java 21 or later they can be virtual threads, which
+ * cost no platform thread while they wait. The processing of the transactions is CPU-bound and keeps its own platform
+ * threads, one per shard.
+ * <p>
+ * The project targets Java 17, so the virtual threads are created through reflection when the runtime supports them.
+ */
+final class IoThreads {
+
+    /**
+     * Platform threads, as daemons so an I/O thread never keeps the JVM alive.
+     */
+    static final IoThreads PLATFORM = new IoThreads(false);
+
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method UNSTARTED;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method unstarted = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class);
+            unstarted = builder.getMethod("unstarted", Runnable.class);
+        } catch (ReflectiveOperationException e) {
+            // Before Java 21: only platform threads
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        UNSTARTED = unstarted;
+    }
+
+    private final boolean virtual;
+
+    private IoThreads(boolean virtual) {
+        this.virtual = virtual;
+    }
+
+    /**
+     * @return Whether the runtime supports virtual threads.
+     */
+    static boolean isVirtualSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @return Virtual threads.
+     * @throws UnsupportedOperationException If the runtime is older than Java 21.
+     */
+    static IoThreads virtual() {
+        if (!isVirtualSupported())
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later, not "
+                    + Runtime.version());
+        return new IoThreads(true);
+    }
+
+    /**
+     * @return Whether the threads created are virtual threads.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Creates a thread, which is not started yet.
+     *
+     * @param name The name of the thread.
+     * @param task The task run by the thread.
+     */
+    public Thread newThread(String name, Runnable task) {
+        if (!virtual) {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        }
+        try {
+            return (Thread) UNSTARTED.invoke(NAME.invoke(OF_VIRTUAL.invoke(null), name), task);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot create a virtual thread", e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Cannot create a virtual thread", e.getCause());
+        }
+    }
+}
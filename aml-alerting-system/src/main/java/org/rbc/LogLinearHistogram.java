@@ -0,0 +1,120 @@
+package org.rbc;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values, such as latencies in nanoseconds, in the style of HdrHistogram.
+ * <p>
+ * Values are counted in log-linear buckets: each power of two is split into {@value #SUB_BUCKETS} linear
+ * sub-buckets, so any value is recorded with a relative error below 1/{@value #SUB_BUCKETS}, over the whole range
+ * of {@code long}, in a fixed number of buckets. Recording is a single atomic increment, without allocation or lock.
+ * <p>
+ * The counts are striped: each recording thread increments the buckets of one of several copies of the counts,
+ * chosen from its id, so threads recording at the same time rarely write to the same cache lines. The stripes are
+ * summed when the histogram is read. This class is thread-safe.
+ */
+class LogLinearHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The number of buckets of a stripe: the values below {@link #SUB_BUCKETS}, then one set of sub-buckets per power
+     * of two up to 2^62.
+     */
+    private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final int stripeMask;
+
+    public LogLinearHistogram() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param stripes The number of copies of the counts. It is rounded up to a power of two.
+     */
+    public LogLinearHistogram(int stripes) {
+        int stripeCount = Integer.highestOneBit(Math.max(stripes, 1) * 2 - 1);
+        this.counts = new AtomicLongArray(stripeCount * BUCKETS);
+        this.stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     */
+    public void record(long value) {
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        counts.getAndIncrement(stripe * BUCKETS + bucketOf(Math.max(value, 0)));
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return The highest value recorded in the bucket.
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * @return The counts of the buckets, summed over the stripes. Values recorded concurrently may or may not be
+     * included.
+     */
+    private long[] snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < counts.length(); i++) {
+            snapshot[i % BUCKETS] += counts.get(i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return The number of values recorded.
+     */
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @param percentile The percentile, between 0 and 100.
+     * @return The value below or at which the given percentage of the recorded values are, within the precision of
+     * the buckets, or 0 if no value was recorded.
+     */
+    public long valueAtPercentile(double percentile) {
+        long[] snapshot = snapshot();
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < snapshot.length; bucket++) {
+            seen += snapshot[bucket];
+            if (seen >= rank && snapshot[bucket] > 0)
+                return highestValueOf(bucket);
+        }
+        return 0;
+    }
+
+    /**
+     * @return The highest value recorded, within the precision of the buckets, or 0 if no value was recorded.
+     */
+    public long max() {
+        return valueAtPercentile(100);
+    }
+}
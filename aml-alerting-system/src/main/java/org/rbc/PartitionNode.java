@@ -0,0 +1,221 @@
+package org.rbc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A node of a partitioned deployment: it processes the transactions of the partitions of the accounts it owns, as
+ * forwarded by a {@link PartitionRouter}, and sends their results back to the router.
+ * <p>
+ * The node listens on the loopback interface and serves one router connection at a time, each with a new
+ * {@link TransactionEngine}, so a router starting over starts from empty windows. The connection carries big-endian
+ * binary messages, each starting with its type:
+ * <ul>
+ *     <li>When the connection opens, the node sends {@link #MAGIC}, {@link #VERSION} and the
+ *     {@link AlertRuleSet#windowLayoutHash()} of its rules, so the router only combines nodes evaluating the same
+ *     rules.</li>
+ *     <li>{@link #TRANSACTION}: the time, amount and account of a transaction. The node answers with a {@link #RESULT}
+ *     holding the mask of the rules fired, in the order the transactions were received.</li>
+ *     <li>{@link #RELEASE}: a list of partitions moving to another node. Once the transactions received before are
+ *     processed, the node removes their accounts and answers with a {@link #STATE} holding their windows, in the
+ *     layout of a {@link Checkpoint}.</li>
+ *     <li>{@link #RESTORE}: the windows of accounts moving to this node, as received by the router in a
+ *     {@link #STATE}. They are restored before the transactions received after.</li>
+ * </ul>
+ * The results are buffered, and written out when the engine is idle.
+ */
+class PartitionNode implements Closeable {
+
+    public static final Logger logger = Logger.getLogger(PartitionNode.class.getName());
+
+    /**
+     * "AMLN" in ASCII.
+     */
+    static final int MAGIC = 0x414D4C4E;
+
+    static final int VERSION = 1;
+
+    static final int TRANSACTION = 1;
+    static final int RELEASE = 2;
+    static final int RESTORE = 3;
+
+    static final int RESULT = 1;
+    static final int STATE = 2;
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ServerSocket server;
+    private final long windowLayoutHash;
+    private final Function<TransactionResultListener, StatefulEngine> engineFactory;
+    private volatile boolean closed;
+
+    /**
+     * Starts listening on the loopback interface.
+     *
+     * @param port             The port to listen on, or 0 to use any free port.
+     * @param windowLayoutHash The layout of the windows of the rules of the engines, see
+     *                         {@link AlertRuleSet#windowLayoutHash()}.
+     * @param engineFactory    Creates the engine of a connection, delivering the results to the given listener.
+     * @throws IOException If the port cannot be bound.
+     */
+    public PartitionNode(int port, long windowLayoutHash,
+                         Function<TransactionResultListener, StatefulEngine> engineFactory) throws IOException {
+        this.windowLayoutHash = windowLayoutHash;
+        this.engineFactory = engineFactory;
+        this.server = new ServerSocket();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * @return The port the node listens on.
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Serves the router connections one after the other, until the node is closed. A connection failing is logged,
+     * and the node goes on with the next one.
+     *
+     * @throws IOException If the connections can no longer be accepted.
+     */
+    public void serve() throws IOException {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (SocketException e) {
+                // Closing the node stops accepting connections
+                if (closed)
+                    return;
+                throw e;
+            }
+            try (socket) {
+                serve(socket);
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "The connection of the router " + socket.getRemoteSocketAddress()
+                        + " failed", e);
+            }
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        logger.info("Router connected from " + socket.getRemoteSocketAddress());
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+        ResultWriter results = new ResultWriter(new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE)));
+        results.writeHello(windowLayoutHash);
+
+        long transactions = 0;
+        try (StatefulEngine engine = engineFactory.apply(results)) {
+            int type;
+            while ((type = in.read()) >= 0) {
+                switch (type) {
+                    case TRANSACTION -> {
+                        engine.accept(in.readLong(), in.readInt(), in.readInt());
+                        transactions++;
+                    }
+                    case RELEASE -> {
+                        boolean[] released = new boolean[PartitionRing.PARTITION_COUNT];
+                        int count = in.readInt();
+                        for (int i = 0; i < count; i++) {
+                            released[in.readInt()] = true;
+                        }
+                        engine.release(accountId -> released[PartitionRing.partitionOf(accountId)], checkpoint -> {
+                            logger.info("Released " + checkpoint.getAccountCount() + " accounts of " + count
+                                    + " partitions");
+                            results.writeState(checkpoint);
+                        });
+                    }
+                    case RESTORE -> {
+                        Checkpoint checkpoint = Checkpoint.readFrom(in);
+                        engine.restore(checkpoint);
+                        logger.info("Restoring " + checkpoint.getAccountCount() + " accounts");
+                    }
+                    default -> throw new IOException("Unknown message " + type + " from the router");
+                }
+            }
+        }
+        // The engine is closed once all the results are delivered
+        results.flush();
+        logger.info("Router disconnected after " + transactions + " transactions");
+    }
+
+    /**
+     * Stops accepting connections. The connection being served, if any, is served until the router closes it.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+    }
+
+    /**
+     * Writes the messages of the node to the router. The results are written by the thread delivering them, and the
+     * states by a processing thread, so the writes are synchronized.
+     */
+    private static class ResultWriter implements TransactionResultListener {
+        private final DataOutputStream out;
+
+        ResultWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        synchronized void writeHello(long windowLayoutHash) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(windowLayoutHash);
+            out.flush();
+        }
+
+        @Override
+        public synchronized void onResult(long timestamp, int amount, int accountId, long firedRules) {
+            try {
+                out.writeByte(RESULT);
+                out.writeLong(firedRules);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot send a result to the router", e);
+            }
+        }
+
+        @Override
+        public void onIdle() {
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot send the results to the router", e);
+            }
+        }
+
+        /**
+         * @throws UncheckedIOException If the state cannot be sent, so the engine reports the failure.
+         */
+        synchronized void writeState(Checkpoint checkpoint) {
+            try {
+                out.writeByte(STATE);
+                checkpoint.writeTo(out);
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot send the released accounts to the router", e);
+            }
+        }
+
+        synchronized void flush() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.rbc;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The assignment of the accounts to the nodes of a partitioned deployment, by consistent hashing.
+ * <p>
+ * The hashes of the account ids form a ring, cut into {@link #PARTITION_COUNT} partitions of equal size: the partition
+ * of an account is the top bits of its hash. Each node is placed on the ring at {@link #VIRTUAL_NODES} points derived
+ * from its name, and owns the partitions starting between its points and the next points of the other nodes. When a
+ * node joins or leaves, only the partitions it takes or leaves change owner, about one in N, while the others stay
+ * where their accounts already are. The partitions are the unit handed over between the nodes.
+ * <p>
+ * The owners are computed once per set of nodes, so finding the node of an account is an array lookup. This class is
+ * immutable.
+ */
+class PartitionRing {
+
+    static final int PARTITION_BITS = 10;
+
+    static final int PARTITION_COUNT = 1 << PARTITION_BITS;
+
+    /**
+     * The number of points of each node on the ring, which spreads the partitions evenly over the nodes.
+     */
+    static final int VIRTUAL_NODES = 128;
+
+    private final List<String> nodes;
+
+    /**
+     * The index of the node owning each partition.
+     */
+    private final int[] owners = new int[PARTITION_COUNT];
+
+    /**
+     * @param nodes The names of the nodes, e.g. their addresses. A node keeps the same partitions as long as its
+     *              name does not change.
+     * @throws IllegalArgumentException If there is no node, or a node appears twice.
+     */
+    public PartitionRing(List<String> nodes) {
+        if (nodes.isEmpty())
+            throw new IllegalArgumentException("A partitioned deployment needs at least one node");
+        if (nodes.stream().distinct().count() != nodes.size())
+            throw new IllegalArgumentException("The nodes must be distinct: " + nodes);
+        this.nodes = List.copyOf(nodes);
+
+        // Each point holds its position on the ring in the high bits, and its node in the low bits. The positions are
+        // offset by the sign bit, so the points sort in the order of the unsigned hashes around the ring.
+        long[] points = new long[nodes.size() * VIRTUAL_NODES];
+        for (int node = 0; node < nodes.size(); node++) {
+            int nodeHash = mix(nodes.get(node).hashCode());
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                int position = mix(nodeHash + i) ^ Integer.MIN_VALUE;
+                points[node * VIRTUAL_NODES + i] = (long) position << Integer.SIZE | node;
+            }
+        }
+        Arrays.sort(points);
+
+        // The owner of a partition is the node of the first point at or after its start, wrapping around the ring
+        int point = 0;
+        for (int partition = 0; partition < PARTITION_COUNT; partition++) {
+            int start = partition << (Integer.SIZE - PARTITION_BITS) ^ Integer.MIN_VALUE;
+            while (point < points.length && (int) (points[point] >> Integer.SIZE) < start) {
+                point++;
+            }
+            owners[partition] = (int) points[point == points.length ? 0 : point];
+        }
+    }
+
+    /**
+     * The finalizer of MurmurHash3. Unlike {@link IntIntHashMap#hash(int)}, each bit of the input affects all the bits
+     * of the output, so the points of the nodes do not repeat the same pattern shifted around the ring.
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ h >>> 16;
+    }
+
+    /**
+     * @return The partition of the account.
+     */
+    static int partitionOf(int accountId) {
+        return IntIntHashMap.hash(accountId) >>> (Integer.SIZE - PARTITION_BITS);
+    }
+
+    /**
+     * @return The index of the node owning the partition, in {@link #getNodes()}.
+     */
+    public int ownerOf(int partition) {
+        return owners[partition];
+    }
+
+    /**
+     * @return The index of the node owning the account, in {@link #getNodes()}.
+     */
+    public int nodeOf(int accountId) {
+        return owners[partitionOf(accountId)];
+    }
+
+    /**
+     * @return The names of the nodes.
+     */
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return The number of partitions owned by each node.
+     */
+    public int[] getPartitionCounts() {
+        int[] counts = new int[nodes.size()];
+        for (int owner : owners) {
+            counts[owner]++;
+        }
+        return counts;
+    }
+}
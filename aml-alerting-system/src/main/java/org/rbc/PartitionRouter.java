@@ -0,0 +1,565 @@
+package org.rbc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link TransactionEngine} spreading the accounts over several {@link PartitionNode nodes}, e.g. several processes
+ * each with its own cores and heap, instead of processing them itself.
+ * <p>
+ * The accounts are assigned to the nodes by a {@link PartitionRing}, so all the transactions of an account are
+ * processed by the same node, in input order, like the shards of a {@link ShardedTransactionEngine}. The router keeps
+ * a connection to each node, forwards each transaction to the node owning its account, and reads the results of each
+ * node on its own thread. A node answers in the order it received the transactions, so the router knows which
+ * transaction each result belongs to, and the results go through a {@link TransactionReorderBuffer} so the listener
+ * receives them in input order. The alerts are thus the same as those of a single node.
+ * <p>
+ * The messages to a node are buffered, and written out when the buffer is full and every
+ * {@link #FLUSH_INTERVAL_MILLIS} by a background thread, so a slow stream does not wait for the buffer to fill.
+ * <p>
+ * The set of nodes can change while the transactions are processed, see {@link #moveTo(List)}: the partitions changing
+ * owner are released by their previous node once it has processed the transactions forwarded before, and their
+ * windows are restored on their new node before any following transaction of their accounts. The move runs on the
+ * thread submitting the transactions, which waits for the windows of all the partitions moving: the whole input pauses
+ * during the handoff, mostly for the transactions already forwarded to the previous owners, and the alerts are still
+ * the same as those of a single node.
+ */
+class PartitionRouter implements TransactionEngine {
+
+    public static final Logger logger = Logger.getLogger(PartitionRouter.class.getName());
+
+    /**
+     * The default maximum number of transactions forwarded and not delivered yet, over all the nodes.
+     */
+    static final int DEFAULT_IN_FLIGHT = 64 * 1024;
+
+    static final long FLUSH_INTERVAL_MILLIS = 1;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * How often a thread waiting for the nodes checks whether one of them failed.
+     */
+    private static final long FAILURE_CHECK_MILLIS = 100;
+
+    private final long windowLayoutHash;
+    private final int inFlight;
+    private final TransactionReorderBuffer reorderBuffer;
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    /**
+     * The connections to the nodes, by name, only used by the thread submitting the transactions.
+     */
+    private final Map<String, NodeConnection> connections = new LinkedHashMap<>();
+
+    /**
+     * The connections flushed by the background thread.
+     */
+    private volatile List<NodeConnection> flushedConnections;
+
+    private PartitionRing ring;
+
+    /**
+     * The connection to each node of the ring, by index.
+     */
+    private NodeConnection[] owners;
+
+    /**
+     * The nodes to move to before the next transaction, or {@code null}.
+     */
+    private final AtomicReference<List<String>> pendingNodes = new AtomicReference<>();
+
+    private final Thread flusher;
+    private Thread watcher;
+    private volatile boolean closed;
+
+    /**
+     * Connects to the nodes.
+     *
+     * @param nodes            The nodes, as {@code [host:]port}, see {@link #addressOf(String)}.
+     * @param windowLayoutHash The layout of the windows of the rules, see {@link AlertRuleSet#windowLayoutHash()},
+     *                         which the nodes must have too.
+     * @param inFlight         The maximum number of transactions forwarded and not delivered yet, over all the nodes.
+     * @param listener         The listener receiving the results, in input order.
+     * @throws IOException If a node cannot be connected, or runs other rules.
+     */
+    public PartitionRouter(List<String> nodes, long windowLayoutHash, int inFlight, TransactionResultListener listener)
+            throws IOException {
+        this.windowLayoutHash = windowLayoutHash;
+        this.inFlight = Integer.highestOneBit(Math.max(inFlight, 2) - 1) << 1;
+        this.reorderBuffer = new TransactionReorderBuffer(this.inFlight, listener);
+        PartitionRing initial = new PartitionRing(nodes);
+        try {
+            for (String node : initial.getNodes()) {
+                connections.put(node, connect(node));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (NodeConnection connection : connections.values()) {
+                connection.abort();
+            }
+            throw e;
+        }
+        useRing(initial);
+        this.flusher = new Thread(this::flushPeriodically, "aml-router-flush");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * @return The address of a node given as {@code host:port}, or as {@code port} on the loopback interface.
+     * @throws IllegalArgumentException If the node is not a valid address.
+     */
+    static InetSocketAddress addressOf(String node) {
+        int separator = node.lastIndexOf(':');
+        try {
+            int port = Integer.parseInt(node.substring(separator + 1).trim());
+            if (port < 1 || port > 65535)
+                throw new NumberFormatException();
+            return separator < 0 ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port)
+                    : new InetSocketAddress(node.substring(0, separator).trim(), port);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("A node must be given as [host:]port: " + node);
+        }
+    }
+
+    /**
+     * Reads the nodes listed in a file, one per line. The blank lines and the lines starting with {@code #} are
+     * ignored.
+     *
+     * @throws IOException              If the file cannot be read.
+     * @throws IllegalArgumentException If the file lists no node, or an invalid one.
+     */
+    static List<String> readNodes(Path path) throws IOException {
+        List<String> nodes = new ArrayList<>();
+        for (String line : Files.readAllLines(path)) {
+            String node = line.trim();
+            if (node.isEmpty() || node.startsWith("#"))
+                continue;
+            addressOf(node);
+            nodes.add(node);
+        }
+        if (nodes.isEmpty())
+            throw new IllegalArgumentException("The nodes file lists no node: " + path);
+        return nodes;
+    }
+
+    private NodeConnection connect(String node) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(addressOf(node), CONNECT_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            NodeConnection connection = new NodeConnection(node, socket);
+            connection.start();
+            logger.info("Connected to the node " + node);
+            return connection;
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private void useRing(PartitionRing ring) {
+        this.ring = ring;
+        NodeConnection[] owners = new NodeConnection[ring.getNodes().size()];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = connections.get(ring.getNodes().get(i));
+        }
+        this.owners = owners;
+        this.flushedConnections = List.copyOf(connections.values());
+    }
+
+    @Override
+    public void accept(long timestamp, int amount, int accountId) {
+        checkFailure();
+        if (closed)
+            throw new IllegalStateException("The router is closed");
+        if (pendingNodes.get() != null)
+            moveTo(pendingNodes.getAndSet(null));
+        try {
+            long sequence;
+            while ((sequence = reorderBuffer.tryReserve(FAILURE_CHECK_MILLIS)) < 0) {
+                checkFailure();
+            }
+            owners[ring.nodeOf(accountId)].send(sequence, timestamp, amount, accountId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while submitting a transaction", e);
+        }
+    }
+
+    /**
+     * Moves the partitions to a new set of nodes, e.g. with a node joining or leaving. The nodes joining are connected,
+     * the windows of the partitions changing owner are handed over, and the nodes leaving are disconnected once they
+     * have processed all their transactions. Must be called from the thread submitting the transactions, which waits
+     * until the windows are handed over.
+     *
+     * @param nodes The new nodes, as {@code [host:]port}.
+     * @throws IllegalStateException If a node cannot be connected, or if a node failed while handing over its
+     *                               partitions.
+     */
+    public void moveTo(List<String> nodes) {
+        checkFailure();
+        long start = System.nanoTime();
+        PartitionRing next = new PartitionRing(nodes);
+        try {
+            for (String node : next.getNodes()) {
+                if (!connections.containsKey(node))
+                    connections.put(node, connect(node));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot connect to the new nodes " + nodes, e);
+        }
+        flushedConnections = List.copyOf(connections.values());
+
+        // Each node releases the partitions it loses to each new owner, which restores them before their transactions
+        int movedPartitions = 0;
+        int movedAccounts = 0;
+        for (int from = 0; from < ring.getNodes().size(); from++) {
+            for (int to = 0; to < next.getNodes().size(); to++) {
+                if (ring.getNodes().get(from).equals(next.getNodes().get(to)))
+                    continue;
+                List<Integer> partitions = new ArrayList<>();
+                for (int partition = 0; partition < PartitionRing.PARTITION_COUNT; partition++) {
+                    if (ring.ownerOf(partition) == from && next.ownerOf(partition) == to)
+                        partitions.add(partition);
+                }
+                if (partitions.isEmpty())
+                    continue;
+                Checkpoint state = owners[from].release(partitions);
+                connections.get(next.getNodes().get(to)).restore(state);
+                movedPartitions += partitions.size();
+                movedAccounts += state.getAccountCount();
+            }
+        }
+
+        List<NodeConnection> leaving = new ArrayList<>();
+        for (String node : ring.getNodes()) {
+            if (!next.getNodes().contains(node))
+                leaving.add(connections.remove(node));
+        }
+        useRing(next);
+        for (NodeConnection connection : leaving) {
+            connection.disconnect();
+        }
+        logger.info("Moved " + movedPartitions + " partitions holding " + movedAccounts + " accounts to the nodes "
+                + nodes + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    /**
+     * Moves to a new set of nodes before the next transaction, see {@link #moveTo(List)}. Can be called from any
+     * thread.
+     */
+    public void requestMove(List<String> nodes) {
+        new PartitionRing(nodes);
+        pendingNodes.set(List.copyOf(nodes));
+    }
+
+    /**
+     * Starts a thread reading the nodes file again whenever its modification time changes, and moving the partitions
+     * to the nodes it lists before the next transaction. A file which cannot be read is logged and ignored.
+     *
+     * @param path           The file listing the nodes, see {@link #readNodes(Path)}.
+     * @param intervalMillis The interval between two checks of the file.
+     * @param threads        Creates the thread watching the file.
+     */
+    public synchronized void watchNodes(Path path, long intervalMillis, IoThreads threads) throws IOException {
+        if (watcher != null)
+            throw new IllegalStateException("The nodes file is already watched");
+        FileTime[] lastModified = {Files.getLastModifiedTime(path)};
+        watcher = threads.newThread("aml-nodes-watcher", () -> {
+            while (!closed) {
+                try {
+                    Thread.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    FileTime modified = Files.getLastModifiedTime(path);
+                    if (modified.equals(lastModified[0]))
+                        continue;
+                    // Recorded first, so an invalid file is only reported once
+                    lastModified[0] = modified;
+                    List<String> nodes = readNodes(path);
+                    requestMove(nodes);
+                    logger.info("Moving to the nodes " + nodes + " listed in " + path);
+                } catch (IOException | RuntimeException e) {
+                    logger.log(Level.WARNING, "Cannot read the nodes, keeping the previous ones", e);
+                }
+            }
+        });
+        watcher.start();
+    }
+
+    /**
+     * @return The nodes the accounts are currently spread over.
+     */
+    public PartitionRing getRing() {
+        return ring;
+    }
+
+    @Override
+    public long pendingTransactions() {
+        return reorderBuffer.pending();
+    }
+
+    private void flushPeriodically() {
+        while (!closed) {
+            try {
+                Thread.sleep(FLUSH_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (NodeConnection connection : flushedConnections) {
+                connection.flush();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting transactions, and disconnects from the nodes once they have sent all their results.
+     *
+     * @throws IllegalStateException If a node failed.
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        Thread watcher;
+        synchronized (this) {
+            watcher = this.watcher;
+        }
+        for (Thread thread : watcher == null ? List.of(flusher) : List.of(flusher, watcher)) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (NodeConnection connection : connections.values()) {
+            connection.disconnect();
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() {
+        if (failure.get() != null)
+            throw new IllegalStateException("The processing of a transaction failed", failure.get());
+    }
+
+    private void recordFailure(RuntimeException e) {
+        if (failure.compareAndSet(null, e))
+            logger.log(Level.SEVERE, "A node failed", e);
+    }
+
+    /**
+     * The connection to a node, with the transactions forwarded to it and waiting for their results. The transactions
+     * are written by the thread submitting them, and the results read by the thread of the connection.
+     */
+    private class NodeConnection {
+        private final String node;
+        private final Socket socket;
+        private final DataInputStream in;
+
+        /**
+         * The messages to the node, guarded by the connection, since the flushing thread writes them out too.
+         */
+        private final DataOutputStream out;
+        private boolean outputClosed;
+
+        /**
+         * The transactions waiting for their result, in the order they were sent, in a ring of {@link #inFlight}
+         * slots: there cannot be more, since the reorder buffer holds them too.
+         */
+        private final long[] sequences = new long[inFlight];
+        private final long[] timestamps = new long[inFlight];
+        private final int[] amounts = new int[inFlight];
+        private final int[] accountIds = new int[inFlight];
+
+        /**
+         * The number of transactions sent. Its volatile write publishes the slots to the thread reading the results.
+         */
+        private volatile long sent;
+        private long received;
+
+        private final BlockingQueue<Checkpoint> states = new LinkedBlockingQueue<>();
+        private final Thread reader;
+
+        NodeConnection(String node, Socket socket) throws IOException {
+            this.node = node;
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), PartitionNode.BUFFER_SIZE));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(),
+                    PartitionNode.BUFFER_SIZE));
+            if (in.readInt() != PartitionNode.MAGIC)
+                throw new IOException("Not a node: " + node);
+            int version = in.readInt();
+            if (version != PartitionNode.VERSION)
+                throw new IOException("Unsupported version " + version + " of the node " + node);
+            if (in.readLong() != windowLayoutHash)
+                throw new IOException("The node " + node + " evaluates other rules than the router");
+            this.reader = new Thread(this::readResults, "aml-node-" + node);
+            reader.setDaemon(true);
+        }
+
+        void start() {
+            reader.start();
+        }
+
+        void send(long sequence, long timestamp, int amount, int accountId) {
+            long count = sent;
+            int slot = (int) count & (inFlight - 1);
+            sequences[slot] = sequence;
+            timestamps[slot] = timestamp;
+            amounts[slot] = amount;
+            accountIds[slot] = accountId;
+            // Counted before being written, since the flushing thread may send it right away
+            sent = count + 1;
+            synchronized (this) {
+                try {
+                    out.writeByte(PartitionNode.TRANSACTION);
+                    out.writeLong(timestamp);
+                    out.writeInt(amount);
+                    out.writeInt(accountId);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Cannot send a transaction to the node " + node, e);
+                }
+            }
+        }
+
+        /**
+         * Asks the node to release the accounts of the partitions, and waits for their state.
+         */
+        Checkpoint release(List<Integer> partitions) {
+            synchronized (this) {
+                try {
+                    out.writeByte(PartitionNode.RELEASE);
+                    out.writeInt(partitions.size());
+                    for (int partition : partitions) {
+                        out.writeInt(partition);
+                    }
+                    out.flush();
+                } catch (IOException e) {
+                    throw new IllegalStateException("Cannot release partitions of the node " + node, e);
+                }
+            }
+            try {
+                Checkpoint state;
+                while ((state = states.poll(FAILURE_CHECK_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                    checkFailure();
+                }
+                return state;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while releasing partitions of the node " + node, e);
+            }
+        }
+
+        /**
+         * Sends the state of the accounts moving to the node, ahead of their following transactions.
+         */
+        synchronized void restore(Checkpoint state) {
+            try {
+                out.writeByte(PartitionNode.RESTORE);
+                state.writeTo(out);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot restore accounts on the node " + node, e);
+            }
+        }
+
+        synchronized void flush() {
+            if (outputClosed)
+                return;
+            try {
+                out.flush();
+            } catch (IOException e) {
+                outputClosed = true;
+                recordFailure(new IllegalStateException("Cannot send the transactions to the node " + node, e));
+            }
+        }
+
+        /**
+         * Tells the node there are no more transactions, and waits for the results of those already sent.
+         */
+        void disconnect() {
+            synchronized (this) {
+                if (!outputClosed) {
+                    outputClosed = true;
+                    try {
+                        out.flush();
+                        socket.shutdownOutput();
+                    } catch (IOException e) {
+                        recordFailure(new IllegalStateException("Cannot disconnect from the node " + node, e));
+                    }
+                }
+            }
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            abort();
+        }
+
+        void abort() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Cannot close the connection to the node " + node, e);
+            }
+        }
+
+        /**
+         * The loop of the thread of the connection, until the node closes it.
+         */
+        private void readResults() {
+            try {
+                int type;
+                while ((type = in.read()) >= 0) {
+                    switch (type) {
+                        case PartitionNode.RESULT -> {
+                            long firedRules = in.readLong();
+                            if (received == sent)
+                                throw new IOException("Unexpected result from the node " + node);
+                            int slot = (int) received++ & (inFlight - 1);
+                            reorderBuffer.complete(sequences[slot], timestamps[slot], amounts[slot],
+                                    accountIds[slot], firedRules);
+                        }
+                        case PartitionNode.STATE -> states.add(Checkpoint.readFrom(in));
+                        default -> throw new IOException("Unknown message " + type + " from the node " + node);
+                    }
+                }
+                boolean disconnected;
+                synchronized (this) {
+                    disconnected = outputClosed;
+                }
+                // The transactions sent afterwards would be lost, even if there is none in flight yet
+                if (!disconnected || received != sent)
+                    throw new IOException("The node " + node + " closed the connection with " + (sent - received)
+                            + " transactions in flight");
+            } catch (IOException | RuntimeException e) {
+                recordFailure(new IllegalStateException("The connection to the node " + node + " failed", e));
+            }
+        }
+    }
+}
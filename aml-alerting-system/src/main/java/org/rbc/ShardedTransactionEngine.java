@@ -0,0 +1,264 @@
+package org.rbc;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * A {@link TransactionEngine} spreading the processing of the transactions over several threads.
+ * <p>
+ * Accounts do not depend on each other, so each account is assigned to one of N shards by hashing its id. Each shard
+ * has its own thread, its own queue and its own {@link AMLTransactionProcessor} holding the state of its slice of
+ * the accounts. All the transactions of an account are thus processed by the same thread, in input order, while
+ * different accounts are processed in parallel. Each shard thread is the single writer of its accounts, so their
+ * updates do not acquire any lock. The results go through a {@link TransactionReorderBuffer} so the
+ * listener still receives them in input order.
+ * <p>
+ * The windows of the groups of accounts, if any, are shared by the shards: each transaction of a group reserves its
+ * place in the sequence of the group when it is dispatched, so the shards add the transactions of a group to its
+ * window in input order, see {@link GroupWindowTable}.
+ */
+class ShardedTransactionEngine implements StatefulEngine {
+
+    static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    /**
+     * The task telling a shard thread to stop.
+     */
+    private static final ShardTask STOP = new ShardTask(-1, 0, 0, 0, 0, null);
+
+    private final Shard[] shards;
+
+    /**
+     * The windows of the groups shared by the processors of the shards, or {@code null}.
+     */
+    private final GroupWindowTable groupWindows;
+    private final TransactionReorderBuffer reorderBuffer;
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    private boolean closed;
+
+    /**
+     * @param shardCount The number of shards, hence of processing threads.
+     * @param listener   The listener receiving the results, in input order.
+     */
+    public ShardedTransactionEngine(int shardCount, TransactionResultListener listener) {
+        this(shardCount, DEFAULT_QUEUE_CAPACITY, listener);
+    }
+
+    /**
+     * @param shardCount    The number of shards, hence of processing threads.
+     * @param queueCapacity The maximum number of transactions waiting to be processed by a shard.
+     * @param listener      The listener receiving the results, in input order.
+     */
+    public ShardedTransactionEngine(int shardCount, int queueCapacity, TransactionResultListener listener) {
+        this(shardCount, queueCapacity,
+                () -> new AMLTransactionProcessor(AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER), listener);
+    }
+
+    /**
+     * @param shardCount       The number of shards, hence of processing threads.
+     * @param queueCapacity    The maximum number of transactions waiting to be processed by a shard.
+     * @param processorFactory Creates the processor holding the accounts of a shard, once per shard. The processors
+     *                         share the same {@link GroupWindowTable}, if any.
+     * @param listener         The listener receiving the results, in input order.
+     */
+    public ShardedTransactionEngine(int shardCount, int queueCapacity,
+                                    Supplier<AMLTransactionProcessor> processorFactory,
+                                    TransactionResultListener listener) {
+        if (shardCount < 1 || queueCapacity < 1)
+            throw new IllegalArgumentException("The number of shards and the queue capacity must be positive");
+        this.reorderBuffer = new TransactionReorderBuffer(shardCount * queueCapacity, listener);
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, queueCapacity, processorFactory.get());
+            shards[i].start();
+        }
+        this.groupWindows = shards[0].processor.getGroupWindows();
+    }
+
+    /**
+     * @return The index of the shard owning the account.
+     */
+    static int shardOf(int accountId, int shardCount) {
+        return Math.floorMod(IntIntHashMap.hash(accountId), shardCount);
+    }
+
+    @Override
+    public void accept(long timestamp, int amount, int accountId) {
+        checkFailure();
+        if (closed)
+            throw new IllegalStateException("The engine is closed");
+        try {
+            long sequence = reorderBuffer.reserve();
+            long groupTicket = groupWindows == null ? GroupWindowTable.NO_GROUP_TICKET
+                    : groupWindows.reserve(accountId);
+            shards[shardOf(accountId, shards.length)].queue.put(
+                    new ShardTask(sequence, timestamp, amount, accountId, groupTicket, null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while submitting a transaction", e);
+        }
+    }
+
+    /**
+     * Queues a barrier behind the transactions of each shard: each shard copies its accounts into its section of the
+     * checkpoint when it reaches it, while the other shards go on processing.
+     */
+    @Override
+    public void checkpoint(long inputOffset, long rowCount, Consumer<Checkpoint> onComplete) {
+        Checkpoint checkpoint = new Checkpoint(shards[0].processor.getRuleSet().windowLayoutHash(), inputOffset,
+                rowCount, shards.length);
+        forEachShard(shard -> {
+            if (checkpoint.setSection(shard.index, shard.processor.saveAccounts()))
+                onComplete.accept(checkpoint);
+        });
+    }
+
+    /**
+     * Each shard restores the accounts it owns, whatever the number of shards when the checkpoint was taken.
+     */
+    @Override
+    public void restore(Checkpoint checkpoint) {
+        forEachShard(shard -> shard.processor.restoreAccounts(checkpoint,
+                accountId -> shardOf(accountId, shards.length) == shard.index));
+    }
+
+    /**
+     * Queues a barrier behind the transactions of each shard, like {@link #checkpoint}: each shard releases the
+     * selected accounts it owns into its section of the checkpoint.
+     */
+    @Override
+    public void release(IntPredicate accounts, Consumer<Checkpoint> onComplete) {
+        Checkpoint checkpoint = new Checkpoint(shards[0].processor.getRuleSet().windowLayoutHash(), 0, 0,
+                shards.length);
+        forEachShard(shard -> {
+            if (checkpoint.setSection(shard.index, shard.processor.releaseAccounts(accounts)))
+                onComplete.accept(checkpoint);
+        });
+    }
+
+    /**
+     * Reads the window from the processor of the shard owning the account.
+     */
+    @Override
+    public WindowSummary queryWindow(int accountId) {
+        return shards[shardOf(accountId, shards.length)].processor.queryWindow(accountId);
+    }
+
+    /**
+     * Queues a command behind the transactions of each shard, run by the shard thread.
+     */
+    private void forEachShard(Consumer<Shard> command) {
+        checkFailure();
+        if (closed)
+            throw new IllegalStateException("The engine is closed");
+        try {
+            for (Shard shard : shards) {
+                shard.queue.put(new ShardTask(-1, 0, 0, 0, 0, command));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while submitting a command", e);
+        }
+    }
+
+    @Override
+    public long pendingTransactions() {
+        return reorderBuffer.pending();
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            for (Shard shard : shards) {
+                shard.queue.put(STOP);
+            }
+            for (Shard shard : shards) {
+                shard.join();
+            }
+        } catch (InterruptedException e) {
+            for (Shard shard : shards) {
+                shard.interrupt();
+            }
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() {
+        if (failure.get() != null)
+            throw new IllegalStateException("The processing of a transaction failed", failure.get());
+    }
+
+    /**
+     * A transaction, with its ticket in the sequence of its group, or a command run by the shard thread if
+     * {@code command} is not {@code null}.
+     */
+    private record ShardTask(long sequence, long timestamp, int amount, int accountId, long groupTicket,
+                             Consumer<Shard> command) {
+    }
+
+    /**
+     * The thread processing the transactions of one slice of the accounts.
+     */
+    private class Shard extends Thread {
+        private final int index;
+        private final BlockingQueue<ShardTask> queue;
+        private final AMLTransactionProcessor processor;
+
+        Shard(int index, int queueCapacity, AMLTransactionProcessor processor) {
+            super("aml-shard-" + index);
+            setDaemon(true);
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.processor = processor;
+        }
+
+        @Override
+        public void run() {
+            try {
+                ShardTask task;
+                while ((task = queue.take()) != STOP) {
+                    if (task.command() != null) {
+                        try {
+                            task.command().accept(this);
+                        } catch (RuntimeException e) {
+                            recordFailure(e);
+                        }
+                        continue;
+                    }
+                    long firedRules = 0;
+                    try {
+                        firedRules = groupWindows == null
+                                ? processor.evaluateTransaction(task.timestamp(), task.amount(), task.accountId())
+                                : processor.evaluateTransaction(task.timestamp(), task.amount(), task.accountId(),
+                                task.groupTicket());
+                    } catch (RuntimeException e) {
+                        recordFailure(e);
+                    }
+                    try {
+                        // Always complete the transaction, so the following ones are not blocked behind it
+                        reorderBuffer.complete(task.sequence(), task.timestamp(), task.amount(), task.accountId(),
+                                firedRules);
+                    } catch (RuntimeException e) {
+                        recordFailure(e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void recordFailure(RuntimeException e) {
+            if (failure.compareAndSet(null, e))
+                AMLAlertingSystem.logger.log(Level.SEVERE, "The processing of a transaction failed", e);
+        }
+    }
+}
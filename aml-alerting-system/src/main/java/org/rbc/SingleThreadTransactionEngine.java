@@ -0,0 +1,179 @@
+package org.rbc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+/**
+ * A {@link TransactionEngine} processing all the transactions on a single thread.
+ * The transactions are handed over to the processing thread through a {@link TransactionRingBuffer}, which decouples
+ * input reading from transaction processing while still ensuring that the input order is maintained in the output.
+ * The processing thread is the single writer of the accounts, so their updates do not acquire any lock.
+ * <p>
+ * The ring buffer is bounded and preallocated: submitting a transaction copies its fields into the next slot without
+ * allocating anything, and the processing thread takes the transactions in batches. When the processing falls behind,
+ * {@link #accept} either blocks until there is room, which applies backpressure to the input instead of buffering an
+ * unbounded stream in memory, or sheds the transaction, depending on the {@link TransactionRingBuffer.OverflowPolicy}.
+ */
+class SingleThreadTransactionEngine implements StatefulEngine {
+
+    static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    private final AMLTransactionProcessor processor;
+    private final TransactionRingBuffer ring;
+    private final Thread thread;
+    private final TransactionResultListener listener;
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    public SingleThreadTransactionEngine(TransactionResultListener listener) {
+        this(() -> new AMLTransactionProcessor(AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER), listener);
+    }
+
+    /**
+     * @param processorFactory Creates the processor holding the accounts.
+     * @param listener         The listener receiving the results, in input order.
+     */
+    public SingleThreadTransactionEngine(Supplier<AMLTransactionProcessor> processorFactory,
+                                         TransactionResultListener listener) {
+        this(DEFAULT_QUEUE_CAPACITY, processorFactory, listener);
+    }
+
+    /**
+     * @param queueCapacity    The maximum number of transactions waiting to be processed.
+     * @param processorFactory Creates the processor holding the accounts.
+     * @param listener         The listener receiving the results, in input order.
+     */
+    public SingleThreadTransactionEngine(int queueCapacity, Supplier<AMLTransactionProcessor> processorFactory,
+                                         TransactionResultListener listener) {
+        this(queueCapacity, TransactionRingBuffer.OverflowPolicy.BLOCK, processorFactory, listener);
+    }
+
+    /**
+     * @param queueCapacity    The maximum number of transactions waiting to be processed.
+     * @param overflowPolicy   What happens to a transaction submitted when the queue is full.
+     * @param processorFactory Creates the processor holding the accounts.
+     * @param listener         The listener receiving the results, in input order.
+     */
+    public SingleThreadTransactionEngine(int queueCapacity, TransactionRingBuffer.OverflowPolicy overflowPolicy,
+                                         Supplier<AMLTransactionProcessor> processorFactory,
+                                         TransactionResultListener listener) {
+        this.processor = processorFactory.get();
+        this.listener = listener;
+        this.ring = new TransactionRingBuffer(queueCapacity, overflowPolicy);
+        this.thread = new Thread(this::processTransactions, "aml-engine");
+        thread.start();
+    }
+
+    @Override
+    public void accept(long timestamp, int amount, int accountId) {
+        checkFailure();
+        if (!ring.offer(timestamp, amount, accountId) && ring.getShedCount() == 1)
+            AMLAlertingSystem.logger.warning("The processing falls behind the input: shedding the transactions"
+                    + " submitted while the queue is full");
+    }
+
+    /**
+     * The loop of the processing thread, until the engine is closed and all the transactions are processed.
+     */
+    private void processTransactions() {
+        while (!ring.isDrained()) {
+            if (ring.poll(this::process) == 0) {
+                ring.awaitPublished();
+            } else if (ring.isEmpty()) {
+                listener.onIdle();
+            }
+        }
+    }
+
+    private void process(long timestamp, int amount, int accountId) {
+        try {
+            long firedRules = processor.evaluateTransaction(timestamp, amount, accountId);
+            listener.onResult(timestamp, amount, accountId, firedRules);
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    @Override
+    public void checkpoint(long inputOffset, long rowCount, Consumer<Checkpoint> onComplete) {
+        checkFailure();
+        Checkpoint checkpoint = new Checkpoint(processor.getRuleSet().windowLayoutHash(), inputOffset, rowCount, 1);
+        ring.offer(() -> {
+            try {
+                checkpoint.setSection(0, processor.saveAccounts());
+                onComplete.accept(checkpoint);
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+    }
+
+    @Override
+    public void restore(Checkpoint checkpoint) {
+        checkFailure();
+        ring.offer(() -> {
+            try {
+                processor.restoreAccounts(checkpoint, accountId -> true);
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+    }
+
+    @Override
+    public void release(IntPredicate accounts, Consumer<Checkpoint> onComplete) {
+        checkFailure();
+        Checkpoint checkpoint = new Checkpoint(processor.getRuleSet().windowLayoutHash(), 0, 0, 1);
+        ring.offer(() -> {
+            try {
+                checkpoint.setSection(0, processor.releaseAccounts(accounts));
+                onComplete.accept(checkpoint);
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+    }
+
+    @Override
+    public WindowSummary queryWindow(int accountId) {
+        return processor.queryWindow(accountId);
+    }
+
+    @Override
+    public long pendingTransactions() {
+        return ring.size();
+    }
+
+    /**
+     * @return The number of transactions shed because the queue was full. Must be called from the thread submitting
+     * the transactions.
+     */
+    public long getShedCount() {
+        return ring.getShedCount();
+    }
+
+    @Override
+    public void close() {
+        ring.close();
+        try {
+            thread.join(TimeUnit.MINUTES.toMillis(1));
+            while (thread.isAlive()) {
+                AMLAlertingSystem.logger.info("Waiting for the transactions to be processed");
+                thread.join(TimeUnit.MINUTES.toMillis(1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (ring.getShedCount() > 0)
+            AMLAlertingSystem.logger.warning(ring.getShedCount() + " transactions were shed because the processing"
+                    + " fell behind the input");
+        checkFailure();
+    }
+
+    private void checkFailure() {
+        if (failure.get() != null)
+            throw new IllegalStateException("The processing of a transaction failed", failure.get());
+    }
+}
@@ -0,0 +1,142 @@
+package org.rbc;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link TransactionSource} receiving CSV rows over TCP connections on the loopback interface.
+ * <p>
+ * Each connection sends a CSV stream whose first line is a header, and is read by its own thread, so several feeds
+ * can be connected at the same time. With virtual threads, see {@link IoThreads}, a large number of mostly idle feeds
+ * does not cost a platform thread each. The transactions of a connection reach the sink in the order they were sent,
+ * and the sink is called by one connection at a time. A connection sending an invalid row is closed without stopping
+ * the others, while a failure of the sink stops the whole source. The source runs until it is closed.
+ */
+class SocketTransactionSource implements TransactionSource {
+
+    public static final Logger logger = Logger.getLogger(SocketTransactionSource.class.getName());
+
+    private final ServerSocketChannel server;
+    private final IoThreads threads;
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+    private volatile IllegalStateException failure;
+
+    /**
+     * Starts listening on the loopback interface.
+     *
+     * @param port The port to listen on, or 0 to use any free port.
+     * @throws IOException If the port cannot be bound.
+     */
+    public SocketTransactionSource(int port) throws IOException {
+        this(port, IoThreads.PLATFORM);
+    }
+
+    /**
+     * Starts listening on the loopback interface.
+     *
+     * @param port    The port to listen on, or 0 to use any free port.
+     * @param threads Creates the threads reading the connections.
+     * @throws IOException If the port cannot be bound.
+     */
+    public SocketTransactionSource(int port, IoThreads threads) throws IOException {
+        this.threads = threads;
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * @return The port the source listens on.
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Accepts connections until the source is closed, then waits for the connections to be closed.
+     */
+    @Override
+    public void forEachTransaction(TransactionSink sink) throws IOException {
+        Object sinkLock = new Object();
+        TransactionSink serializedSink = (timestamp, amount, accountId) -> {
+            synchronized (sinkLock) {
+                sink.accept(timestamp, amount, accountId);
+            }
+        };
+
+        List<Thread> readers = new ArrayList<>();
+        try {
+            while (true) {
+                SocketChannel connection = server.accept();
+                connections.add(connection);
+                if (closed) {
+                    connection.close();
+                    break;
+                }
+                Thread reader = threads.newThread("aml-connection-" + connection.getRemoteAddress(),
+                        () -> read(connection, serializedSink));
+                readers.add(reader);
+                reader.start();
+            }
+        } catch (ClosedChannelException e) {
+            // Closing the source ends the stream
+            if (!closed)
+                throw e;
+        } finally {
+            for (Thread reader : readers) {
+                try {
+                    reader.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    private void read(SocketChannel connection, TransactionSink sink) {
+        try (connection) {
+            long rows = new AMLCSVByteParser().parse(connection, true, sink);
+            logger.info("Connection " + connection.getRemoteAddress() + " closed after " + rows + " transactions");
+        } catch (ClosedChannelException e) {
+            // The source was closed
+        } catch (IllegalStateException e) {
+            // The processing failed: stop the whole source
+            failure = e;
+            logger.log(Level.SEVERE, "Stopping the source after a processing failure: " + e);
+            try {
+                close();
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Closing the connection after an error: " + e);
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        for (SocketChannel connection : connections) {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.rbc;
+
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+/**
+ * A {@link TransactionEngine} holding the state of the accounts in this process, which can therefore be checkpointed,
+ * handed over to another engine, and queried.
+ */
+interface StatefulEngine extends TransactionEngine {
+
+    /**
+     * Takes a {@link Checkpoint} of the accounts as they are after the transactions submitted so far, without waiting
+     * for it. Must be called from the thread submitting the transactions.
+     *
+     * @param inputOffset The position in the input following the last transaction submitted.
+     * @param rowCount    The number of transactions submitted since the start of the input.
+     * @param onComplete  Receives the checkpoint once the state of all the accounts is copied, on a processing thread.
+     */
+    void checkpoint(long inputOffset, long rowCount, Consumer<Checkpoint> onComplete);
+
+    /**
+     * Restores the accounts saved in a checkpoint. Must be called before any transaction of the restored accounts is
+     * submitted.
+     */
+    void restore(Checkpoint checkpoint);
+
+    /**
+     * Hands the selected accounts over to another engine, as they are after the transactions submitted so far, without
+     * waiting for it: their state is copied into a {@link Checkpoint}, to be given to {@link #restore} of the other
+     * engine, and they are removed from this one. Must be called from the thread submitting the transactions.
+     *
+     * @param accounts   Selects the accounts to hand over.
+     * @param onComplete Receives the checkpoint once the state of the accounts is copied, on a processing thread.
+     */
+    void release(IntPredicate accounts, Consumer<Checkpoint> onComplete);
+
+    /**
+     * Reads the window of an account as of its latest transaction processed, see
+     * {@link AMLTransactionProcessor#queryWindow(int)}. Can be called from any thread, and never blocks the
+     * processing.
+     */
+    WindowSummary queryWindow(int accountId);
+}
@@ -0,0 +1,82 @@
+package org.rbc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file which keeps growing, like {@code tail -f}: at the end of the file, a read waits for more data to be
+ * appended instead of reporting the end of the input. The end of the input is only reported once the channel is
+ * closed, so the source reading it stops.
+ * <p>
+ * The file is expected to only be appended to. A line being written when the channel is closed may be read partially:
+ * {@link ChannelTransactionSource} then drops it.
+ */
+class TailingFileChannel implements ReadableByteChannel {
+
+    static final long DEFAULT_POLL_INTERVAL_MILLIS = 50;
+
+    private final FileChannel file;
+    private final long pollIntervalMillis;
+    private volatile boolean open = true;
+
+    /**
+     * @param path               The file to read, from its beginning.
+     * @param pollIntervalMillis The time to wait before checking again whether data was appended to the file.
+     * @throws IOException If the file cannot be opened.
+     */
+    public TailingFileChannel(Path path, long pollIntervalMillis) throws IOException {
+        this(path, 0, pollIntervalMillis);
+    }
+
+    /**
+     * @param path               The file to read.
+     * @param position           The position in the file to start reading from.
+     * @param pollIntervalMillis The time to wait before checking again whether data was appended to the file.
+     * @throws IOException If the file cannot be opened.
+     */
+    public TailingFileChannel(Path path, long position, long pollIntervalMillis) throws IOException {
+        this.file = FileChannel.open(path, StandardOpenOption.READ);
+        this.pollIntervalMillis = pollIntervalMillis;
+        file.position(position);
+    }
+
+    /**
+     * Reads the bytes available in the file, waiting for some to be appended if there are none yet.
+     *
+     * @return The number of bytes read, or -1 once the channel is closed.
+     */
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        while (open) {
+            int read = file.read(dst);
+            if (read > 0 || !dst.hasRemaining())
+                return Math.max(read, 0);
+            try {
+                Thread.sleep(pollIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the file to grow");
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Closes the file. A read waiting for data returns -1 within the poll interval.
+     */
+    @Override
+    public void close() throws IOException {
+        open = false;
+        file.close();
+    }
+}
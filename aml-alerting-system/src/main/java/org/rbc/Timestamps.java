@@ -0,0 +1,85 @@
+package org.rbc;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The timestamps of the transactions: numbers of seconds since 1970-01-01T00:00:00, in a primitive {@code long}, so
+ * the windows are computed by integer subtraction and span midnight and several days.
+ * <p>
+ * A time given without a date, such as {@code 10:00:00}, is placed on the first day, then on the following days as
+ * the input crosses midnight, see {@link DayRolloverSink}. The timestamps of the first year are thus taken as times
+ * of day without a date: dates must be from {@value #DATED_FROM_YEAR} on.
+ */
+final class Timestamps {
+
+    static final int SECONDS_PER_DAY = 24 * 3600;
+
+    static final int DATED_FROM_YEAR = 1971;
+
+    /**
+     * The first timestamp of {@value #DATED_FROM_YEAR}. The timestamps before it are times of day without a date.
+     */
+    static final long DATED_FROM = 365L * SECONDS_PER_DAY;
+
+    private Timestamps() {
+    }
+
+    /**
+     * @return Whether the timestamp comes from a time of day given without a date.
+     */
+    static boolean isTimeOfDay(long timestamp) {
+        return timestamp < DATED_FROM;
+    }
+
+    /**
+     * @return The number of seconds since midnight.
+     */
+    static int secondOfDay(long timestamp) {
+        return Math.floorMod(timestamp, SECONDS_PER_DAY);
+    }
+
+    /**
+     * @return The number of days since 1970-01-01.
+     */
+    static long epochDay(long timestamp) {
+        return Math.floorDiv(timestamp, SECONDS_PER_DAY);
+    }
+
+    /**
+     * Computes the number of days since 1970-01-01 of a date of the proleptic Gregorian calendar, without creating a
+     * {@link java.time.LocalDate}.
+     *
+     * @param month From 1 to 12.
+     * @param day   From 1 to the length of the month, which is not checked.
+     */
+    static long epochDay(int year, int month, int day) {
+        // Count the years from March, so the leap day is the last day of the year
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * @return The number of days of the month.
+     */
+    static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    /**
+     * @return The timestamp formatted as {@link java.time.LocalTime#toString()} for a time of day, or as
+     * {@link java.time.LocalDateTime#toString()} otherwise.
+     */
+    static String format(long timestamp) {
+        byte[] bytes = new byte[ChannelOutputSink.MAX_TIMESTAMP_LENGTH];
+        return new String(bytes, 0, ChannelOutputSink.encodeTimestamp(bytes, 0, timestamp),
+                StandardCharsets.US_ASCII);
+    }
+}
@@ -6,9 +6,16 @@ import java.time.LocalTime;
 /**
  * Represents a financial transaction.
  *
- * @param timestamp The time when the transaction occurred.
+ * @param timestamp The time when the transaction occurred, as a number of seconds, see {@link Timestamps}.
  * @param amount    The amount of money involved in the transaction.
  * @param accountId The unique identifier of the account involved in the transaction.
  */
-record Transaction(LocalTime timestamp, int amount, int accountId) {
-}
\ No newline at end of file
+record Transaction(long timestamp, int amount, int accountId) {
+
+    /**
+     * Creates a transaction occurring at a time of day, with no date.
+     */
+    Transaction(LocalTime time, int amount, int accountId) {
+        this(time.toSecondOfDay(), amount, accountId);
+    }
+}
@@ -0,0 +1,72 @@
+package org.rbc;
+
+import java.util.Arrays;
+
+/**
+ * A growable batch of transactions stored column by column in primitive arrays.
+ * Adding a transaction does not allocate any object, except when the arrays have to grow.
+ * This class is not thread-safe.
+ */
+class TransactionBatch implements TransactionSink {
+
+    private long[] timestamps;
+    private int[] amounts;
+    private int[] accountIds;
+    private int size;
+
+    public TransactionBatch(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        this.timestamps = new long[capacity];
+        this.amounts = new int[capacity];
+        this.accountIds = new int[capacity];
+    }
+
+    /**
+     * Appends a transaction at the end of the batch.
+     */
+    @Override
+    public void accept(long timestamp, int amount, int accountId) {
+        if (size == timestamps.length) {
+            int capacity = size * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+            accountIds = Arrays.copyOf(accountIds, capacity);
+        }
+        timestamps[size] = timestamp;
+        amounts[size] = amount;
+        accountIds[size] = accountId;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long timestamp(int index) {
+        return timestamps[index];
+    }
+
+    public int amount(int index) {
+        return amounts[index];
+    }
+
+    public int accountId(int index) {
+        return accountIds[index];
+    }
+
+    /**
+     * Hands all the transactions of the batch to the sink, in insertion order.
+     */
+    public void forEach(TransactionSink sink) {
+        for (int i = 0; i < size; i++) {
+            sink.accept(timestamps[i], amounts[i], accountIds[i]);
+        }
+    }
+
+    /**
+     * Removes all the transactions, keeping the allocated capacity.
+     */
+    public void clear() {
+        size = 0;
+    }
+}
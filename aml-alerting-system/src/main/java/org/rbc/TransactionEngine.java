@@ -0,0 +1,25 @@
+package org.rbc;
+
+/**
+ * Processes a stream of transactions asynchronously and reports their results, in input order, to a
+ * {@link TransactionResultListener}.
+ * Transactions are submitted through {@link #accept(long, int, int)}, which must always be called from the same thread.
+ * The engines holding the accounts themselves are {@link StatefulEngine}s.
+ */
+interface TransactionEngine extends TransactionSink, AutoCloseable {
+
+    /**
+     * Stops accepting transactions and waits until all the submitted transactions have been processed and their
+     * results delivered to the listener.
+     *
+     * @throws IllegalStateException If the processing of a transaction failed.
+     */
+    @Override
+    void close();
+
+    /**
+     * @return The number of transactions submitted and not processed yet. It is an estimate while transactions are
+     * being submitted, and can be called from any thread.
+     */
+    long pendingTransactions();
+}
@@ -0,0 +1,10 @@
+package org.rbc;
+
+import java.io.Closeable;
+
+/**
+ * A destination for the results of the processing of the transactions.
+ * Closing the sink flushes the results it still buffers.
+ */
+interface TransactionOutputSink extends TransactionResultListener, Closeable {
+}
@@ -0,0 +1,137 @@
+package org.rbc;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Restores the input order of transactions processed concurrently.
+ * <p>
+ * Each transaction gets a sequence number when it is submitted ({@link #reserve()}). Processing threads then
+ * complete the transactions in any order ({@link #complete}), and the results are delivered to the listener by
+ * increasing sequence number. There is no dedicated thread: the thread completing the next expected sequence number
+ * delivers it, along with the following ones that were already completed.
+ * <p>
+ * At most {@code capacity} transactions can be in flight, so {@link #reserve()} blocks when the oldest transaction
+ * is lagging behind, which bounds the memory used.
+ */
+class TransactionReorderBuffer {
+
+    private static final long EMPTY = -1;
+
+    private final TransactionResultListener listener;
+    private final int mask;
+    private final Semaphore freeSlots;
+    private final ReentrantLock deliveryLock = new ReentrantLock();
+
+    /**
+     * The sequence number held by each slot once it is completed. Its volatile accesses publish the other arrays.
+     */
+    private final AtomicLongArray completedSequences;
+    private final long[] timestamps;
+    private final int[] amounts;
+    private final int[] accountIds;
+    private final long[] firedRules;
+
+    private long nextReserved;
+    private volatile long nextDelivered;
+
+    /**
+     * @param capacity The maximum number of transactions in flight. It is rounded up to a power of two.
+     * @param listener The listener receiving the results in input order.
+     */
+    public TransactionReorderBuffer(int capacity, TransactionResultListener listener) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.listener = listener;
+        this.mask = size - 1;
+        this.freeSlots = new Semaphore(size);
+        this.completedSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            completedSequences.set(i, EMPTY);
+        }
+        this.timestamps = new long[size];
+        this.amounts = new int[size];
+        this.accountIds = new int[size];
+        this.firedRules = new long[size];
+    }
+
+    /**
+     * Assigns the next sequence number to a transaction, waiting for a free slot if needed.
+     * This method must always be called from the same thread.
+     *
+     * @return The sequence number of the transaction.
+     * @throws InterruptedException If the thread is interrupted while waiting for a free slot.
+     */
+    public long reserve() throws InterruptedException {
+        freeSlots.acquire();
+        return nextReserved++;
+    }
+
+    /**
+     * Like {@link #reserve()}, but gives up waiting for a free slot after the timeout, so the caller can check whether
+     * the transactions in flight can still complete.
+     *
+     * @return The sequence number of the transaction, or -1 if no slot was freed in time.
+     * @throws InterruptedException If the thread is interrupted while waiting for a free slot.
+     */
+    public long tryReserve(long timeoutMillis) throws InterruptedException {
+        if (!freeSlots.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS))
+            return -1;
+        return nextReserved++;
+    }
+
+    /**
+     * Records the result of a transaction and delivers all the results which are now in order.
+     *
+     * @param sequence The sequence number returned by {@link #reserve()} for this transaction.
+     */
+    public void complete(long sequence, long timestamp, int amount, int accountId, long firedRules) {
+        int slot = (int) sequence & mask;
+        timestamps[slot] = timestamp;
+        amounts[slot] = amount;
+        accountIds[slot] = accountId;
+        this.firedRules[slot] = firedRules;
+        completedSequences.set(slot, sequence);
+        deliver();
+    }
+
+    /**
+     * @return The number of transactions reserved and not delivered yet.
+     */
+    public long pending() {
+        // Read from the permits, so any thread can call it
+        return completedSequences.length() - freeSlots.availablePermits();
+    }
+
+    private void deliver() {
+        // Another thread may complete the next expected transaction while this one holds the lock. As it does not
+        // get the lock, that thread relies on this one to check again once it has released it.
+        while (isNextCompleted() && deliveryLock.tryLock()) {
+            try {
+                long next = nextDelivered;
+                int slot = (int) next & mask;
+                while (completedSequences.get(slot) == next) {
+                    try {
+                        listener.onResult(timestamps[slot], amounts[slot], accountIds[slot], firedRules[slot]);
+                    } finally {
+                        completedSequences.set(slot, EMPTY);
+                        nextDelivered = ++next;
+                        freeSlots.release();
+                    }
+                    slot = (int) next & mask;
+                }
+                // Every slot is free once all the reserved transactions have been delivered
+                if (freeSlots.availablePermits() == completedSequences.length())
+                    listener.onIdle();
+            } finally {
+                deliveryLock.unlock();
+            }
+        }
+    }
+
+    private boolean isNextCompleted() {
+        long next = nextDelivered;
+        return completedSequences.get((int) next & mask) == next;
+    }
+}
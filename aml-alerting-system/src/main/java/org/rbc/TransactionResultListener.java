@@ -0,0 +1,27 @@
+package org.rbc;
+
+/**
+ * Receives the result of the processing of each transaction.
+ * The results are delivered in input order, and never by more than one thread at a time.
+ */
+@FunctionalInterface
+interface TransactionResultListener {
+
+    /**
+     * Called once a transaction has been processed.
+     *
+     * @param timestamp   The time of the transaction, see {@link Timestamps}.
+     * @param amount      The amount of money involved in the transaction.
+     * @param accountId   The unique identifier of the account involved in the transaction.
+     * @param firedRules  The mask of the rules fired by the transaction, see {@link AlertRuleSet#ruleIds(long)}.
+     *                    It is not 0 if the transaction raised an AML violation alert.
+     */
+    void onResult(long timestamp, int amount, int accountId, long firedRules);
+
+    /**
+     * Called when all the transactions submitted so far have been processed, so the listener can write out the
+     * results it buffers instead of holding them until more transactions come in.
+     */
+    default void onIdle() {
+    }
+}
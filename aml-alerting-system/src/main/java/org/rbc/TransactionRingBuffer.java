@@ -0,0 +1,284 @@
+package org.rbc;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded ring buffer handing the transactions over from the thread reading the input to the thread processing
+ * them, with a single producer and a single consumer.
+ * <p>
+ * The slots are preallocated as parallel primitive arrays, so a transaction is copied into the next slot without
+ * allocating any task or queue node. The producer publishes each slot by advancing the tail, and the consumer takes
+ * all the published slots at once, up to a quarter of the capacity, then frees them by advancing the head once per
+ * batch. Each side caches the position of the other one and only reads it again when it seems to have caught up, so
+ * the two threads touch the shared positions a few times per batch rather than per transaction. The two shared
+ * positions, the fields of the producer and the fields of the consumer are each padded to their own cache lines, so a
+ * thread writing its own fields never invalidates the lines read by the other one.
+ * <p>
+ * When the ring is full, the producer either waits for the consumer, which applies backpressure to the input, or sheds
+ * the transaction, depending on the {@link OverflowPolicy}. A thread waiting spins briefly, then parks until the other
+ * thread wakes it up.
+ * <p>
+ * A slot may also hold a command, such as taking a checkpoint, run by the consumer in order with the transactions.
+ * Commands are never shed.
+ */
+class TransactionRingBuffer {
+
+    /**
+     * What the producer does with a transaction when the ring is full.
+     */
+    enum OverflowPolicy {
+        /**
+         * Wait for the consumer to free a slot: no transaction is lost.
+         */
+        BLOCK,
+        /**
+         * Drop the transaction, so the input is never slowed down by the processing.
+         */
+        SHED
+    }
+
+    private static final int SPIN_TRIES = 200;
+
+    /**
+     * The indices of the tail and of the head in {@link #positions}, 128 bytes apart.
+     */
+    private static final int TAIL = 16;
+    private static final int HEAD = 32;
+
+    private final long[] timestamps;
+    private final int[] amounts;
+    private final int[] accountIds;
+    private final Runnable[] commands;
+    private final int mask;
+    private final int maxBatch;
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * The tail, the position following the last published slot, and the head, the position of the first slot not
+     * consumed yet.
+     */
+    private final AtomicLongArray positions = new AtomicLongArray(HEAD + 16);
+
+    private final Producer producer = new Producer();
+    private final Consumer consumer = new Consumer();
+
+    private volatile boolean closed;
+
+    /**
+     * Keeps the fields of a side 128 bytes away from the object allocated before it. The fields of a superclass are
+     * laid out before those of its subclasses.
+     */
+    private abstract static class LeftPadding {
+        long p00, p01, p02, p03, p04, p05, p06, p07, p08, p09, p10, p11, p12, p13, p14, p15;
+    }
+
+    private abstract static class ProducerFields extends LeftPadding {
+        long tail;
+        long cachedHead;
+        long shedCount;
+        volatile Thread waiting;
+    }
+
+    /**
+     * The fields written by the producer, 128 bytes away from the object allocated after it.
+     */
+    private static final class Producer extends ProducerFields {
+        long q00, q01, q02, q03, q04, q05, q06, q07, q08, q09, q10, q11, q12, q13, q14, q15;
+    }
+
+    private abstract static class ConsumerFields extends LeftPadding {
+        long head;
+        long cachedTail;
+        volatile Thread waiting;
+    }
+
+    /**
+     * The fields written by the consumer, 128 bytes away from the object allocated after it.
+     */
+    private static final class Consumer extends ConsumerFields {
+        long q00, q01, q02, q03, q04, q05, q06, q07, q08, q09, q10, q11, q12, q13, q14, q15;
+    }
+
+    /**
+     * @param capacity       The number of slots. It is rounded up to a power of two.
+     * @param overflowPolicy What the producer does with a transaction when the ring is full.
+     */
+    public TransactionRingBuffer(int capacity, OverflowPolicy overflowPolicy) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.timestamps = new long[size];
+        this.amounts = new int[size];
+        this.accountIds = new int[size];
+        this.commands = new Runnable[size];
+        this.mask = size - 1;
+        this.maxBatch = Math.max(size / 4, 1);
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Publishes a transaction. Must always be called from the same thread.
+     *
+     * @return {@code false} if the transaction was shed because the ring is full.
+     * @throws IllegalStateException If the ring is closed, or if the thread is interrupted while waiting.
+     */
+    public boolean offer(long timestamp, int amount, int accountId) {
+        if (!claim(overflowPolicy)) {
+            producer.shedCount++;
+            return false;
+        }
+        int slot = (int) producer.tail & mask;
+        timestamps[slot] = timestamp;
+        amounts[slot] = amount;
+        accountIds[slot] = accountId;
+        publish();
+        return true;
+    }
+
+    /**
+     * Publishes a command, waiting for a free slot if the ring is full. Must be called from the thread publishing the
+     * transactions.
+     *
+     * @throws IllegalStateException If the ring is closed, or if the thread is interrupted while waiting.
+     */
+    public void offer(Runnable command) {
+        claim(OverflowPolicy.BLOCK);
+        commands[(int) producer.tail & mask] = command;
+        publish();
+    }
+
+    /**
+     * Waits for the next slot to be free, unless the policy is to shed.
+     *
+     * @return Whether the slot of the tail is free.
+     */
+    private boolean claim(OverflowPolicy policy) {
+        if (closed)
+            throw new IllegalStateException("The ring buffer is closed");
+        if (producer.tail - producer.cachedHead <= mask)
+            return true;
+        producer.cachedHead = positions.get(HEAD);
+        if (producer.tail - producer.cachedHead <= mask)
+            return true;
+        if (policy == OverflowPolicy.SHED)
+            return false;
+
+        for (int spins = 0; producer.tail - producer.cachedHead > mask; spins++) {
+            if (spins < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                // The consumer checks the waiting thread after freeing slots, and this thread checks the head after
+                // registering: one of them sees the other, so the wake-up cannot be lost
+                producer.waiting = Thread.currentThread();
+                if (producer.tail - positions.get(HEAD) > mask)
+                    LockSupport.park(this);
+                producer.waiting = null;
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while submitting a transaction");
+                }
+            }
+            producer.cachedHead = positions.get(HEAD);
+        }
+        return true;
+    }
+
+    private void publish() {
+        positions.set(TAIL, ++producer.tail);
+        Thread waiting = consumer.waiting;
+        if (waiting != null)
+            LockSupport.unpark(waiting);
+    }
+
+    /**
+     * Hands the next batch of published slots to the handler, in order: the transactions to the sink and the commands
+     * are run. Must always be called from the same thread.
+     *
+     * @return The number of slots consumed, 0 if none was published.
+     */
+    public int poll(TransactionSink handler) {
+        if (consumer.head == consumer.cachedTail) {
+            consumer.cachedTail = positions.get(TAIL);
+            if (consumer.head == consumer.cachedTail)
+                return 0;
+        }
+        long end = Math.min(consumer.cachedTail, consumer.head + maxBatch);
+        int count = (int) (end - consumer.head);
+        for (long position = consumer.head; position < end; position++) {
+            int slot = (int) position & mask;
+            Runnable command = commands[slot];
+            if (command == null) {
+                handler.accept(timestamps[slot], amounts[slot], accountIds[slot]);
+            } else {
+                commands[slot] = null;
+                command.run();
+            }
+        }
+        consumer.head = end;
+        positions.set(HEAD, end);
+        Thread waiting = producer.waiting;
+        if (waiting != null)
+            LockSupport.unpark(waiting);
+        return count;
+    }
+
+    /**
+     * Waits until a slot is published or the ring is closed. Must be called from the consumer thread.
+     */
+    public void awaitPublished() {
+        for (int spins = 0; consumer.head == positions.get(TAIL) && !closed; spins++) {
+            if (spins < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                consumer.waiting = Thread.currentThread();
+                if (consumer.head == positions.get(TAIL) && !closed)
+                    LockSupport.park(this);
+                consumer.waiting = null;
+                // The consumer is only stopped by closing the ring
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting slots. The slots already published can still be consumed.
+     */
+    public void close() {
+        closed = true;
+        Thread waiting = consumer.waiting;
+        if (waiting != null)
+            LockSupport.unpark(waiting);
+    }
+
+    /**
+     * @return Whether the ring is closed and all its slots are consumed. Must be called from the consumer thread.
+     */
+    public boolean isDrained() {
+        return closed && consumer.head == positions.get(TAIL);
+    }
+
+    /**
+     * @return Whether all the slots published so far are consumed. Must be called from the consumer thread.
+     */
+    public boolean isEmpty() {
+        return consumer.head == positions.get(TAIL);
+    }
+
+    /**
+     * @return The number of slots published and not consumed yet. It is an estimate, and can be called from any
+     * thread.
+     */
+    public long size() {
+        return Math.max(positions.get(TAIL) - positions.get(HEAD), 0);
+    }
+
+    /**
+     * @return The number of transactions shed because the ring was full. Must be called from the producer thread.
+     */
+    public long getShedCount() {
+        return producer.shedCount;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+}
@@ -0,0 +1,18 @@
+package org.rbc;
+
+/**
+ * Receives the fields of a transaction as primitives, as they are decoded from the input.
+ * Unlike a {@code Consumer<Transaction>}, this does not require allocating a {@link Transaction} per row.
+ */
+@FunctionalInterface
+interface TransactionSink {
+
+    /**
+     * Accepts a single transaction.
+     *
+     * @param timestamp   The time of the transaction, see {@link Timestamps}.
+     * @param amount      The amount of money involved in the transaction.
+     * @param accountId   The unique identifier of the account involved in the transaction.
+     */
+    void accept(long timestamp, int amount, int accountId);
+}
@@ -0,0 +1,22 @@
+package org.rbc;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * An unbounded stream of transactions, read until its end or until it is closed.
+ * <p>
+ * Closing a source from another thread, e.g. from a shutdown hook, stops {@link #forEachTransaction} without an
+ * error once the transactions already read have been handed to the sink.
+ */
+interface TransactionSource extends Closeable {
+
+    /**
+     * Reads the transactions and hands each of them to the sink as soon as its row is received.
+     * The sink is never called by more than one thread at a time.
+     *
+     * @param sink The sink receiving the transactions, in input order.
+     * @throws IOException If an error occurs while reading the stream.
+     */
+    void forEachTransaction(TransactionSink sink) throws IOException;
+}
@@ -0,0 +1,205 @@
+package org.rbc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The sliding windows of the transactions of an account, keeping each transaction, so the totals are exact.
+ * <p>
+ * The transactions are kept in a growable circular buffer made of two parallel primitive arrays, one for the times
+ * and one for the amounts. Appending a transaction and evicting the ones which left the window only move the head and
+ * the tail of the buffer: no object is allocated, except when the buffer has to grow. Transactions must be added in
+ * chronological order. This class is not thread-safe.
+ * <p>
+ * Several windows of different durations can be tracked at once. They are nested, since they all end at the latest
+ * transaction, so they share the buffer sized for the longest one: each window only keeps the position of its oldest
+ * transaction and its running total. Transactions are addressed by their sequence number since the creation of the
+ * window, whose low bits give their slot in the buffer.
+ * <p>
+ * The memory used grows with the number of transactions in the longest window. For long windows, a
+ * {@link BucketedWindow} bounds it by the duration of the window instead.
+ */
+class TransactionWindow implements AmountWindow {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * The durations of the windows, in ascending order. The last one is the longest.
+     */
+    private final int[] windowSeconds;
+
+    /**
+     * The sequence number of the oldest transaction of each window.
+     */
+    private final long[] starts;
+    private final long[] totals;
+    private final int longest;
+
+    private long[] timestamps;
+    private long[] amounts;
+    private int mask;
+
+    /**
+     * The sequence number following the newest transaction.
+     */
+    private long end;
+
+    /**
+     * @param windowSeconds The duration of the window, in seconds.
+     */
+    public TransactionWindow(int windowSeconds) {
+        this(new int[]{windowSeconds});
+    }
+
+    /**
+     * @param windowSeconds The durations of the windows, in seconds and in ascending order. There may be none, in
+     *                      which case no transaction is kept.
+     */
+    public TransactionWindow(int[] windowSeconds) {
+        for (int i = 1; i < windowSeconds.length; i++) {
+            if (windowSeconds[i] < windowSeconds[i - 1])
+                throw new IllegalArgumentException("The window durations must be in ascending order");
+        }
+        this.windowSeconds = windowSeconds.clone();
+        this.starts = new long[windowSeconds.length];
+        this.totals = new long[windowSeconds.length];
+        this.longest = windowSeconds.length - 1;
+        this.timestamps = new long[INITIAL_CAPACITY];
+        this.amounts = new long[INITIAL_CAPACITY];
+        this.mask = INITIAL_CAPACITY - 1;
+    }
+
+    /**
+     * Evicts the transactions which occurred more than the duration of each window before the new transaction, then
+     * adds the new transaction to all the windows.
+     *
+     * @param timestamp The time of the transaction, see {@link Timestamps}.
+     * @param amount    The amount of the transaction.
+     * @return The total amount of the transactions in the longest window, including the new one.
+     */
+    @Override
+    public long add(long timestamp, int amount) {
+        if (longest < 0)
+            return amount;
+
+        for (int w = 0; w <= longest; w++) {
+            long cutOff = timestamp - windowSeconds[w];
+            long start = starts[w];
+            long total = totals[w];
+            while (start < end && timestamps[(int) start & mask] < cutOff) {
+                total -= amounts[(int) start & mask];
+                start++;
+            }
+            starts[w] = start;
+            totals[w] = total + amount;
+        }
+
+        if (end - starts[longest] == timestamps.length)
+            grow();
+        int tail = (int) end & mask;
+        timestamps[tail] = timestamp;
+        amounts[tail] = amount;
+        end++;
+        return totals[longest];
+    }
+
+    @Override
+    public long total() {
+        return longest < 0 ? 0 : totals[longest];
+    }
+
+    @Override
+    public long total(int window) {
+        return totals[window];
+    }
+
+    @Override
+    public int size() {
+        return longest < 0 ? 0 : (int) (end - starts[longest]);
+    }
+
+    @Override
+    public long oldestTimestamp() {
+        return size() == 0 ? WindowSummary.NO_TIMESTAMP : timestamps[(int) starts[longest] & mask];
+    }
+
+    @Override
+    public long newestTimestamp() {
+        return size() == 0 ? WindowSummary.NO_TIMESTAMP : timestamps[(int) (end - 1) & mask];
+    }
+
+    /**
+     * Tells whether all the transactions of the window will have left it when a transaction occurs at the given time
+     * or later. The window then behaves as an empty one, and can be discarded without changing any result.
+     *
+     * @param timestamp The time of the latest transaction of the stream, see {@link Timestamps}.
+     * @return {@code true} if the window is empty or if its newest transaction is older than the window duration.
+     */
+    @Override
+    public boolean isExpiredAt(long timestamp) {
+        if (size() == 0)
+            return true;
+        long newest = timestamps[(int) (end - 1) & mask];
+        // A newest transaction later than the given time belongs to the previous day of a time-of-day input
+        return newest <= timestamp && newest < timestamp - windowSeconds[longest];
+    }
+
+    /**
+     * The state is the number of transactions and the total of each window, followed by the transactions of the
+     * longest window, oldest first.
+     */
+    @Override
+    public int stateSize() {
+        return Integer.BYTES + windowSeconds.length * (Integer.BYTES + Long.BYTES)
+                + size() * (Long.BYTES + Integer.BYTES);
+    }
+
+    @Override
+    public void saveState(ByteBuffer out) {
+        int size = size();
+        out.putInt(size);
+        for (int w = 0; w <= longest; w++) {
+            out.putInt((int) (end - starts[w]));
+            out.putLong(totals[w]);
+        }
+        for (long sequence = end - size; sequence < end; sequence++) {
+            out.putLong(timestamps[(int) sequence & mask]);
+            out.putInt((int) amounts[(int) sequence & mask]);
+        }
+    }
+
+    @Override
+    public void restoreState(ByteBuffer in) {
+        int size = in.getInt();
+        int capacity = Math.max(Integer.highestOneBit(Math.max(size, 1) - 1) << 1, INITIAL_CAPACITY);
+        timestamps = new long[capacity];
+        amounts = new long[capacity];
+        mask = capacity - 1;
+        end = size;
+        for (int w = 0; w <= longest; w++) {
+            starts[w] = end - in.getInt();
+            totals[w] = in.getLong();
+        }
+        for (int sequence = 0; sequence < size; sequence++) {
+            timestamps[sequence] = in.getLong();
+            amounts[sequence] = in.getInt();
+        }
+    }
+
+    /**
+     * Doubles the capacity of the buffer. Each transaction moves to the slot given by its sequence number in the new
+     * buffer.
+     */
+    private void grow() {
+        int capacity = timestamps.length * 2;
+        int newMask = capacity - 1;
+        long[] newTimestamps = new long[capacity];
+        long[] newAmounts = new long[capacity];
+        for (long sequence = starts[longest]; sequence < end; sequence++) {
+            newTimestamps[(int) sequence & newMask] = timestamps[(int) sequence & mask];
+            newAmounts[(int) sequence & newMask] = amounts[(int) sequence & mask];
+        }
+        timestamps = newTimestamps;
+        amounts = newAmounts;
+        mask = newMask;
+    }
+}
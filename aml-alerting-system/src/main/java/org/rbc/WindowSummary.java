@@ -0,0 +1,34 @@
+package org.rbc;
+
+/**
+ * The state of the longest alert window of an account, as read while the transactions are processed, see
+ * {@link AMLTransactionProcessor#queryWindow(int)}.
+ * <p>
+ * The window is as of the latest transaction of the account: the transactions leave it when the following transaction
+ * of the account is added, so a window whose newest transaction is older than its duration relative to the time of
+ * the stream is in fact expired.
+ *
+ * @param accountId       The account.
+ * @param total           The total amount of the transactions in the window.
+ * @param count           The number of transactions in the window, 0 if the account is not tracked.
+ * @param oldestTimestamp The time of the oldest transaction in the window, see {@link Timestamps}, or
+ *                        {@link #NO_TIMESTAMP} if the window is empty. With a {@link BucketedWindow}, it is the start
+ *                        of the bucket of the transaction.
+ * @param newestTimestamp The time of the latest transaction of the account, or {@link #NO_TIMESTAMP} if there is
+ *                        none.
+ */
+record WindowSummary(int accountId, long total, int count, long oldestTimestamp, long newestTimestamp) {
+
+    /**
+     * The time of the transactions of an empty window.
+     */
+    static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    /**
+     * @return The summary of an account which is not tracked, e.g. because it has no transaction yet or was evicted.
+     * It behaves as a new account.
+     */
+    static WindowSummary empty(int accountId) {
+        return new WindowSummary(accountId, 0, 0, NO_TIMESTAMP, NO_TIMESTAMP);
+    }
+}
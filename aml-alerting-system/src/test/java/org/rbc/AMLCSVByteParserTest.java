@@ -0,0 +1,142 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AMLCSVByteParserTest {
+
+    private final List<int[]> rows = new ArrayList<>();
+
+    private final TransactionSink sink = (secondOfDay, amount, accountId) ->
+            rows.add(new int[]{(int) secondOfDay, amount, accountId});
+
+    private long parse(String csvContent, int bufferSize) throws IOException {
+        byte[] bytes = csvContent.getBytes(StandardCharsets.UTF_8);
+        return new AMLCSVByteParser(bufferSize)
+                .parse(Channels.newChannel(new ByteArrayInputStream(bytes)), true, sink);
+    }
+
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testParse_SkipsHeaderAndDecodesRows() throws IOException {
+        long count = parse("Time,Amount,AccountId\n10:00:00,1000,1\n23:59:59,2000,22\n", 1024);
+
+        assertEquals(2, count);
+        assertEquals(List.of(36000, 1000, 1), List.of(rows.get(0)[0], rows.get(0)[1], rows.get(0)[2]));
+        assertEquals(List.of(86399, 2000, 22), List.of(rows.get(1)[0], rows.get(1)[1], rows.get(1)[2]));
+    }
+
+    @Test
+    void testParse_LinesSpanningBufferBoundaries() throws IOException {
+        StringBuilder csvContent = new StringBuilder("Time,Amount,AccountId\r\n");
+        for (int i = 0; i < 1000; i++) {
+            csvContent.append(String.format("10:%02d:%02d,%d,%d\r\n", i / 60 % 60, i % 60, i * 7, i % 13));
+        }
+
+        // The header does not even fit in the initial buffer, which must grow
+        long count = parse(csvContent.toString(), 8);
+
+        assertEquals(1000, count);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(36000 + i / 60 % 60 * 60 + i % 60, rows.get(i)[0]);
+            assertEquals(i * 7, rows.get(i)[1]);
+            assertEquals(i % 13, rows.get(i)[2]);
+        }
+    }
+
+    @Test
+    void testParse_LastLineWithoutNewLine() throws IOException {
+        long count = parse("Time,Amount,AccountId\n10:00:00,1000,1\n10:00:01,5,2", 16);
+
+        assertEquals(2, count);
+        assertEquals(2, rows.get(1)[2]);
+    }
+
+    @Test
+    void testParse_LineEndOfEachRow() throws IOException {
+        String csv = "Time,Amount,AccountId\n10:00:00,1000,1\nbad\n10:00:01,5,2\n";
+        byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+        AMLCSVByteParser parser = new AMLCSVByteParser(16);
+        List<Long> lineEnds = new ArrayList<>();
+
+        parser.parse(Channels.newChannel(new ByteArrayInputStream(bytes)), true,
+                (secondOfDay, amount, accountId) -> lineEnds.add(parser.getLineEnd()));
+
+        assertEquals(List.of((long) csv.indexOf("bad"), (long) csv.length()), lineEnds);
+    }
+
+    @Test
+    void testParse_CutOffInputDropsLastLineWithoutNewLine() throws IOException {
+        byte[] bytes = "Time,Amount,AccountId\n10:00:00,1000,1\n10:00:01,5,2".getBytes(StandardCharsets.UTF_8);
+        AMLCSVByteParser parser = new AMLCSVByteParser(16);
+        parser.cutOff();
+
+        assertEquals(1, parser.parse(Channels.newChannel(new ByteArrayInputStream(bytes)), true, sink));
+        assertEquals(bytes.length - "10:00:01,5,2".length(), parser.getLineEnd());
+    }
+
+    @Test
+    void testParse_HeaderOnly() throws IOException {
+        assertEquals(0, parse("Time,Amount,AccountId", 1024));
+        assertEquals(0, parse("", 1024));
+    }
+
+    @Test
+    void testParseRow_IgnoresRowsWithoutThreeFields() {
+        assertFalse(AMLCSVByteParser.parseRow(bytes("InvalidLine"), 0, 11, sink));
+        assertFalse(AMLCSVByteParser.parseRow(bytes("10:00:00,1000"), 0, 13, sink));
+        assertFalse(AMLCSVByteParser.parseRow(bytes("10:00:00,1000,1,2"), 0, 17, sink));
+        assertFalse(AMLCSVByteParser.parseRow(bytes(""), 0, 0, sink));
+        assertEquals(0, rows.size());
+    }
+
+    @Test
+    void testParseRow_TrailingEmptyFieldsAreIgnored() {
+        AMLCSVByteParser.parseRow(bytes("10:00:00,1000,1,,"), 0, 17, sink);
+
+        assertEquals(1, rows.size());
+        assertEquals(1, rows.get(0)[2]);
+    }
+
+    @Test
+    void testParseSecondOfDay_AcceptedFormats() {
+        assertEquals(36000, AMLCSVByteParser.parseSecondOfDay(bytes("10:00"), 0, 5));
+        assertEquals(36001, AMLCSVByteParser.parseSecondOfDay(bytes("10:00:01"), 0, 8));
+        assertEquals(36001, AMLCSVByteParser.parseSecondOfDay(bytes("10:00:01.999"), 0, 12));
+    }
+
+    @Test
+    void testParseSecondOfDay_InvalidTimes() {
+        for (String time : new String[]{"1:00:00", "24:00:00", "10:60:00", "10:00:60", "10-00-00", "10:00:0a",
+                "10:00:00.", "10:00:00.1x", "InvalidTime"}) {
+            assertThrows(DateTimeParseException.class,
+                    () -> AMLCSVByteParser.parseSecondOfDay(bytes(time), 0, time.length()), time);
+        }
+    }
+
+    @Test
+    void testParseInt_SameRulesAsIntegerParseInt() {
+        for (String number : new String[]{"0", "-12", "+12", "2147483647", "-2147483648"}) {
+            assertEquals(Integer.parseInt(number), AMLCSVByteParser.parseInt(bytes(number), 0, number.length()));
+        }
+        for (String number : new String[]{"", "-", "12a", " 12", "2147483648", "-2147483649", "1.5"}) {
+            assertThrows(NumberFormatException.class,
+                    () -> AMLCSVByteParser.parseInt(bytes(number), 0, number.length()), number);
+        }
+    }
+}
@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -142,5 +143,34 @@ class AMLCSVReaderTest {
 
     }
 
+    @Test
+    void testReadTransactions_Streaming_ConsumesRowsInFileOrder() throws IOException {
+        String csvContent =
+                "Time,Amount,Account\n" +
+                        "10:00:00,1000,1\n" +
+                        "InvalidLine\n" +
+                        "10:00:01,2000,2\n" +
+                        "10:00:02,3000,1";
+        Files.writeString(csvFile, csvContent);
 
-}
\ No newline at end of file
+        List<Transaction> transactions = new ArrayList<>();
+        AMLCSVReader.readTransactions(csvFile.toString(), transactions::add);
+
+        assertEquals(List.of(
+                new Transaction(LocalTime.of(10, 0, 0), 1000, 1),
+                new Transaction(LocalTime.of(10, 0, 1), 2000, 2),
+                new Transaction(LocalTime.of(10, 0, 2), 3000, 1)), transactions);
+    }
+
+    @Test
+    void testReadTransactions_Streaming_TooManyTransactionsPerAccount_FailsAtFirstRowOverLimit() {
+        List<Transaction> transactions = new ArrayList<>();
+
+        assertThrows(IllegalArgumentException.class, () -> AMLCSVReader.readTransactions(
+                "src/test/resources/too-many-transactions-per-account.csv", transactions::add));
+
+        long account1Count = transactions.stream().filter(t -> t.accountId() == 1).count();
+        long account2Count = transactions.stream().filter(t -> t.accountId() == 2).count();
+        assertEquals(MAX_TRANSACTIONS_PER_ACCOUNT, Math.max(account1Count, account2Count));
+    }
+}
@@ -0,0 +1,84 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AMLMetricsTest {
+
+    @Test
+    void testProcessorUpdatesMetrics() {
+        AMLMetrics metrics = new AMLMetrics(1);
+        AMLTransactionProcessor processor = new AMLTransactionProcessor(
+                AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER, false, 0, AlertRuleSet.DEFAULT, metrics);
+
+        processor.processTransaction(0, 10000, 1);
+        processor.processTransaction(1, 10000, 2);
+        processor.processTransaction(2, 50000, 1);
+        processor.processTransaction(3, 10000, 1);
+
+        assertEquals(4, metrics.getTransactionsProcessed());
+        assertEquals(2, metrics.getAlerts());
+        assertEquals(2, metrics.getAccountsTracked());
+        assertEquals(4, metrics.processingLatency.count());
+        assertEquals(3, metrics.getWindowDepthMax());
+        assertEquals(0, metrics.lockWait.count());
+    }
+
+    @Test
+    void testLockedProcessorTimesLockWait() {
+        AMLMetrics metrics = new AMLMetrics(2);
+        AMLTransactionProcessor processor = new AMLTransactionProcessor(
+                AMLTransactionProcessor.ConcurrencyMode.LOCKED, false, 0, AlertRuleSet.DEFAULT, metrics);
+
+        for (int i = 0; i < 10; i++) {
+            processor.processTransaction(i, 100, 1);
+        }
+
+        assertEquals(10, metrics.getTransactionsProcessed());
+        assertEquals(5, metrics.lockWait.count());
+        assertEquals(5, metrics.processingLatency.count());
+    }
+
+    @Test
+    void testEvictionUpdatesAccountsTracked() {
+        AMLMetrics metrics = new AMLMetrics();
+        AMLTransactionProcessor processor = new AMLTransactionProcessor(
+                AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER, true, 0, AlertRuleSet.DEFAULT, metrics);
+
+        processor.processTransaction(0, 100, 1);
+        processor.processTransaction(1, 100, 2);
+        processor.processTransaction(10_000, 100, 3);
+        processor.evictIdleAccounts();
+
+        assertEquals(1, metrics.getAccountsTracked());
+    }
+
+    @Test
+    void testMBeanRegistration() throws Exception {
+        AMLMetrics metrics = new AMLMetrics();
+        metrics.rowsParsed.add(7);
+        metrics.setQueueDepth(() -> 3);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(AMLMetrics.OBJECT_NAME);
+
+        metrics.registerMBean();
+        try {
+            assertEquals(7L, server.getAttribute(name, "RowsParsed"));
+            assertEquals(3L, server.getAttribute(name, "QueueDepth"));
+            assertTrue(((String) server.invoke(name, "dump", null, null)).contains("rows parsed:            7"));
+            // The dump of the MBean has no rates, so it does not change those of the periodic dump
+            assertEquals(metrics.dump(), server.invoke(name, "dump", null, null));
+            assertFalse(metrics.dump().contains("/s)"));
+        } finally {
+            metrics.unregisterMBean();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+}
@@ -0,0 +1,114 @@
+package org.rbc;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.rbc.AMLAlertingConfiguration.MAX_ACCOUNTS;
+import static org.rbc.AMLAlertingConfiguration.MAX_TRANSACTIONS_PER_ACCOUNT;
+
+class AMLParallelCSVReaderTest {
+
+    private Path csvFile;
+
+    @BeforeEach
+    void setUp(@TempDir Path tempDir) {
+        csvFile = tempDir.resolve("test.csv");
+    }
+
+    private static TransactionBatch readSequentially(String filePath) throws IOException {
+        TransactionBatch batch = new TransactionBatch(16);
+        AMLCSVReader.forEachTransaction(filePath, batch);
+        return batch;
+    }
+
+    private static void assertSameTransactions(TransactionBatch expected, TransactionBatch actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.timestamp(i), actual.timestamp(i), "row " + i);
+            assertEquals(expected.amount(i), actual.amount(i), "row " + i);
+            assertEquals(expected.accountId(i), actual.accountId(i), "row " + i);
+        }
+    }
+
+    @Test
+    void testForEachTransaction_SameOrderAsSequentialRead() throws IOException {
+        StringBuilder csvContent = new StringBuilder("Time,Amount,AccountId\n");
+        Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            csvContent.append(String.format("%02d:%02d:%02d,%d,%d%s", i / 3600 % 24, i / 60 % 60, i % 60,
+                    random.nextInt(100_000), random.nextInt(50), i % 10 == 0 ? "\r\n" : "\n"));
+            if (i % 100 == 0)
+                csvContent.append("InvalidLine\n");
+        }
+        Files.writeString(csvFile, csvContent.toString());
+
+        TransactionBatch actual = new TransactionBatch(16);
+        // Small chunks to have many chunk boundaries, which do not match line boundaries
+        new AMLParallelCSVReader(4, 97).forEachTransaction(csvFile.toString(), actual);
+
+        assertSameTransactions(readSequentially(csvFile.toString()), actual);
+        assertEquals(5000, actual.size());
+    }
+
+    @Test
+    void testForEachTransaction_TestResourceFile() throws IOException {
+        String filePath = "src/test/resources/test-transactions-csv.txt";
+        TransactionBatch actual = new TransactionBatch(16);
+
+        new AMLParallelCSVReader(3, 20).forEachTransaction(filePath, actual);
+
+        assertSameTransactions(readSequentially(filePath), actual);
+    }
+
+    @Test
+    void testForEachTransaction_HeaderOnlyAndNoTrailingNewLine() throws IOException {
+        Files.writeString(csvFile, "Time,Amount,AccountId");
+        TransactionBatch actual = new TransactionBatch(16);
+        new AMLParallelCSVReader(2, 4).forEachTransaction(csvFile.toString(), actual);
+        assertEquals(0, actual.size());
+
+        Files.writeString(csvFile, "Time,Amount,AccountId\n10:00:00,1000,1\n10:00:01,2000,2");
+        new AMLParallelCSVReader(2, 4).forEachTransaction(csvFile.toString(), actual);
+        assertEquals(2, actual.size());
+        assertEquals(2, actual.accountId(1));
+    }
+
+    @Test
+    void testForEachTransaction_MalformedTime() throws IOException {
+        Files.writeString(csvFile, "Time,Amount,AccountId\n10:00:00,1000,1\n10:0x:01,2000,2\n");
+
+        assertThrows(DateTimeParseException.class,
+                () -> new AMLParallelCSVReader(2, 8).forEachTransaction(csvFile.toString(), new TransactionBatch(16)));
+    }
+
+    @Test
+    void testForEachTransaction_LimitsAreValidated() {
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> new AMLParallelCSVReader(4, 4096)
+                .forEachTransaction("src/test/resources/too-many-accounts.csv", new TransactionBatch(16)));
+        assertTrue(exception.getMessage().contains(
+                "The maximum number of accounts allowed in the input file is: " + MAX_ACCOUNTS));
+
+        exception = assertThrows(IllegalArgumentException.class, () -> new AMLParallelCSVReader(4, 4096)
+                .forEachTransaction("src/test/resources/too-many-transactions-per-account.csv",
+                        new TransactionBatch(16)));
+        assertTrue(exception.getMessage().contains(
+                "The maximum number of transactions allowed per account is: " + MAX_TRANSACTIONS_PER_ACCOUNT));
+    }
+
+    @Test
+    void testForEachTransaction_FileNotPresent() {
+        assertThrows(FileNotFoundException.class, () -> new AMLParallelCSVReader(2)
+                .forEachTransaction("non_existent_file.csv", new TransactionBatch(16)));
+    }
+}
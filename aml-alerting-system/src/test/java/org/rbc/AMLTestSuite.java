@@ -5,7 +5,16 @@ import org.junit.platform.suite.api.Suite;
 
 
 @Suite
-@SelectClasses({AccountTest.class, AMLCSVReaderTest.class, AMLTransactionProcessorTest.class})
+@SelectClasses({AccountTest.class, AMLCSVReaderTest.class, AMLTransactionProcessorTest.class,
+        AMLCSVByteParserTest.class, IntIntHashMapTest.class, AMLParallelCSVReaderTest.class,
+        ShardedTransactionEngineTest.class, TransactionWindowTest.class,
+        AccountTableTest.class, ChannelOutputSinkTest.class, TransactionSourceTest.class,
+        AlertRuleSetTest.class, BucketedWindowTest.class, LogLinearHistogramTest.class, AMLMetricsTest.class,
+        CheckpointTest.class, EventTimeReordererTest.class, TimestampsTest.class, DayRolloverSinkTest.class,
+        IoThreadsTest.class, TransactionRingBufferTest.class, ColumnarTransactionFileTest.class,
+        BacktestSweepTest.class, AlertEpisodeTrackerTest.class, AlertJournalTest.class, AccountGroupsTest.class,
+        GroupWindowTableTest.class, PartitionRingTest.class, PartitionRouterTest.class,
+        AccountQueryServerTest.class})
 
 public class AMLTestSuite {
 }
@@ -3,8 +3,19 @@ package org.rbc;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class AMLTransactionProcessorTest {
@@ -45,4 +56,156 @@ public class AMLTransactionProcessorTest {
 
         assertFalse(result);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void ProcessTransaction_SingleWriter_SameResultsAsLocked() {
+        AMLTransactionProcessor locked = MakeAMLTransactionProcessor();
+        AMLTransactionProcessor singleWriter =
+                new AMLTransactionProcessor(AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER);
+        Random random = new Random(5);
+
+        for (int i = 0; i < 10_000; i++) {
+            int secondOfDay = i / 3;
+            int amount = random.nextInt(20_000);
+            int accountId = random.nextInt(20);
+            assertEquals(locked.processTransaction(secondOfDay, amount, accountId),
+                    singleWriter.processTransaction(secondOfDay, amount, accountId));
+        }
+        assertEquals(20, singleWriter.getAccountCount());
+    }
+
+    @Test
+    public void ProcessTransaction_SingleWriter_OtherThreadFails() throws Exception {
+        AMLTransactionProcessor processor =
+                new AMLTransactionProcessor(AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER);
+        processor.processTransaction(0, 500, 1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Boolean> result = executor.submit(() -> processor.processTransaction(1, 500, 2));
+        executor.shutdown();
+
+        ExecutionException exception = assertThrows(ExecutionException.class, result::get);
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+    }
+
+    @Test
+    public void ProcessTransaction_Locked_ConcurrentUpdatesOfSameAccount() throws Exception {
+        AMLTransactionProcessor processor = MakeAMLTransactionProcessor();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    processor.processTransaction(0, 1, 1);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // No update was lost: the window total is 40000, so 10000 more reach the threshold and 1 more exceeds it
+        assertFalse(processor.processTransaction(0, 10_000, 1));
+        assertTrue(processor.processTransaction(0, 1, 1));
+    }
+
+    @Test
+    public void EvictIdleAccounts_SameResultsAsWithoutEviction() {
+        AMLTransactionProcessor reference = MakeAMLTransactionProcessor();
+        AMLTransactionProcessor evicting = new AMLTransactionProcessor(
+                AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER, true, 50);
+        Random random = new Random(9);
+
+        for (int i = 0; i < 200_000; i++) {
+            int secondOfDay = i / 4;
+            int amount = random.nextInt(20_000);
+            // Few accounts are active at a time, while many accounts appear over the day
+            int accountId = i / 1000 * 10 + random.nextInt(10) + (random.nextInt(100) == 0 ? random.nextInt(500) : 0);
+            assertEquals(reference.processTransaction(secondOfDay, amount, accountId),
+                    evicting.processTransaction(secondOfDay, amount, accountId), "transaction " + i);
+            assertTrue(evicting.getAccountCount() <= 80, "Too many accounts: " + evicting.getAccountCount());
+        }
+        assertTrue(evicting.getEvictedAccountCount() > 0);
+    }
+
+    @Test
+    public void EvictIdleAccounts_KeepsLiveAccounts() {
+        AMLTransactionProcessor processor = new AMLTransactionProcessor(
+                AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER);
+        processor.processTransaction(0, 30_000, 1);
+        processor.processTransaction(30, 30_000, 2);
+        processor.processTransaction(61, 100, 3);
+
+        assertEquals(1, processor.evictIdleAccounts());
+        assertEquals(2, processor.getAccountCount());
+        // Account 2 kept its window
+        assertTrue(processor.processTransaction(90, 20_001, 2));
+    }
+
+    @Test
+    public void EvictIdleAccounts_RequiresSingleWriter() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AMLTransactionProcessor(AMLTransactionProcessor.ConcurrencyMode.LOCKED, true, 0));
+        assertThrows(IllegalStateException.class, () -> MakeAMLTransactionProcessor().evictIdleAccounts());
+    }
+
+    @Test
+    public void QueryWindow_SummarizesLongestWindow() {
+        AMLTransactionProcessor processor = MakeAMLTransactionProcessor();
+        processor.processTransaction(0, 100, 1);
+        processor.processTransaction(30, 200, 1);
+        processor.processTransaction(70, 400, 1);
+        processor.processTransaction(50, 1000, 2);
+
+        assertEquals(new WindowSummary(1, 600, 2, 30, 70), processor.queryWindow(1));
+        assertEquals(WindowSummary.empty(3), processor.queryWindow(3));
+        assertArrayEquals(new WindowSummary[]{processor.queryWindow(2), WindowSummary.empty(3),
+                processor.queryWindow(1)}, processor.queryWindows(new int[]{2, 3, 1}));
+    }
+
+    @Test
+    public void QueryWindow_RestoredAccounts() {
+        AMLTransactionProcessor processor = new AMLTransactionProcessor(
+                AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER);
+        processor.processTransaction(10, 100, 1);
+        processor.processTransaction(20, 200, 1);
+        Checkpoint checkpoint = new Checkpoint(AlertRuleSet.DEFAULT.windowLayoutHash(), 0, 0, 1);
+        checkpoint.setSection(0, processor.saveAccounts());
+
+        AMLTransactionProcessor restored = new AMLTransactionProcessor(
+                AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER);
+        restored.restoreAccounts(checkpoint, accountId -> true);
+
+        assertEquals(processor.queryWindow(1), restored.queryWindow(1));
+    }
+
+    @Test
+    public void QueryWindow_ConcurrentWithWriter_NeverTorn() throws Exception {
+        AMLTransactionProcessor processor = new AMLTransactionProcessor(
+                AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Each transaction of 1 at its own second: a consistent window has a total equal to its count, and spans
+            // exactly its count
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < 500_000; i++) {
+                    processor.processTransaction(i, 1, 1);
+                }
+            });
+            int reads = 0;
+            while (!writer.isDone() || reads == 0) {
+                WindowSummary window = processor.queryWindow(1);
+                if (window.count() > 0) {
+                    assertEquals(window.count(), window.total());
+                    assertEquals(window.count() - 1, window.newestTimestamp() - window.oldestTimestamp());
+                }
+                reads++;
+            }
+            writer.get();
+            assertEquals(new WindowSummary(1, 61, 61, 499_939, 499_999), processor.queryWindow(1));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AccountGroupsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path writeGroups(String content) throws IOException {
+        Path file = tempDir.resolve("groups.csv");
+        Files.writeString(file, content);
+        return file;
+    }
+
+    @Test
+    void testLoad() throws IOException {
+        AccountGroups groups = AccountGroups.load(writeGroups("AccountId,GroupId\n1,100\n2,100\n\n3,-7\n"));
+
+        assertEquals(3, groups.size());
+        assertEquals(100, groups.groupOf(1));
+        assertEquals(100, groups.groupOf(2));
+        assertEquals(-7, groups.groupOf(3));
+        assertEquals(AccountGroups.NO_GROUP, groups.groupOf(4));
+    }
+
+    @Test
+    void testLoad_InvalidFiles() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> AccountGroups.load(writeGroups("")));
+        assertThrows(IllegalArgumentException.class, () -> AccountGroups.load(writeGroups("1,100\n")));
+        assertThrows(IllegalArgumentException.class, () -> AccountGroups.load(writeGroups(
+                "AccountId,GroupId\n1\n")));
+        assertThrows(IllegalArgumentException.class, () -> AccountGroups.load(writeGroups(
+                "AccountId,GroupId\n1,abc\n")));
+        assertThrows(IllegalArgumentException.class, () -> AccountGroups.load(writeGroups(
+                "AccountId,GroupId\n1," + AccountGroups.NO_GROUP + "\n")));
+    }
+
+    @Test
+    void testReload_InvalidFile_KeepsThePreviousMapping() throws IOException {
+        Path file = writeGroups("AccountId,GroupId\n1,100\n");
+        AccountGroups groups = AccountGroups.load(file);
+
+        Files.writeString(file, "AccountId,GroupId\n1,200\n2,200\n");
+        groups.reload();
+        assertEquals(200, groups.groupOf(1));
+        assertEquals(2, groups.size());
+
+        Files.writeString(file, "AccountId,GroupId\n1,x\n");
+        assertThrows(IllegalArgumentException.class, groups::reload);
+        assertEquals(200, groups.groupOf(1));
+    }
+
+    @Test
+    void testWatch_ReloadsWhenTheFileChanges() throws IOException, InterruptedException {
+        Path file = writeGroups("AccountId,GroupId\n1,100\n");
+        try (AccountGroups groups = AccountGroups.load(file)) {
+            groups.watch(10, IoThreads.PLATFORM);
+
+            Files.writeString(file, "AccountId,GroupId\n1,300\n");
+            // The modification time may have the resolution of a second
+            Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 5000));
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (groups.groupOf(1) != 300 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(300, groups.groupOf(1));
+        }
+    }
+}
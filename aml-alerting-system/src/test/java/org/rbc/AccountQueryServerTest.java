@@ -0,0 +1,76 @@
+package org.rbc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AccountQueryServerTest {
+
+    private final AMLTransactionProcessor processor = new AMLTransactionProcessor();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private AccountQueryServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        processor.processTransaction(30, 200, 1);
+        processor.processTransaction(70, 400, 1);
+        server = new AccountQueryServer(0, 2, processor::queryWindow, IoThreads.PLATFORM);
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testGet_OneAccount() throws Exception {
+        HttpResponse<String> response = get("/accounts/1");
+
+        assertEquals(200, response.statusCode());
+        assertEquals("application/json", response.headers().firstValue("Content-Type").orElse(null));
+        assertEquals("{\"accountId\":1,\"total\":600,\"count\":2,\"oldestTimestamp\":30,\"newestTimestamp\":70}\n",
+                response.body());
+    }
+
+    @Test
+    void testGet_SeveralAccounts_InOrderOfIds() throws Exception {
+        HttpResponse<String> response = get("/accounts?ids=2,1");
+
+        assertEquals(200, response.statusCode());
+        assertEquals("[{\"accountId\":2,\"total\":0,\"count\":0,\"oldestTimestamp\":null,\"newestTimestamp\":null},"
+                + "{\"accountId\":1,\"total\":600,\"count\":2,\"oldestTimestamp\":30,\"newestTimestamp\":70}]\n",
+                response.body());
+    }
+
+    @Test
+    void testGet_InvalidRequests() throws Exception {
+        assertEquals(400, get("/accounts/abc").statusCode());
+        assertEquals(400, get("/accounts?ids=1,,2").statusCode());
+        assertEquals(400, get("/accounts").statusCode());
+        assertEquals(404, get("/accounts/1/transactions").statusCode());
+        assertEquals(405, client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort()
+                        + "/accounts/1")).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @Test
+    void testParseAccountIds() {
+        assertEquals(3, AccountQueryServer.parseAccountIds("ids=1%2C2,-3").length);
+        assertThrows(IllegalArgumentException.class, () -> AccountQueryServer.parseAccountIds("ids="
+                + "1,".repeat(AccountQueryServer.MAX_ACCOUNTS_PER_REQUEST) + "1"));
+    }
+}
@@ -0,0 +1,119 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class AccountTableTest {
+
+    @Test
+    void testComputeIfAbsent_ReturnsSameAccount() {
+        AccountTable table = new AccountTable(4);
+        Account account = table.computeIfAbsent(42, Account::new);
+
+        assertSame(account, table.computeIfAbsent(42, Account::new));
+        assertSame(account, table.get(42));
+        assertEquals(42, account.getId());
+        assertNull(table.get(43));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void testComputeIfAbsent_ZeroAndNegativeIds() {
+        AccountTable table = new AccountTable(4);
+        Account zero = table.computeIfAbsent(0, Account::new);
+        Account negative = table.computeIfAbsent(-1, Account::new);
+
+        assertSame(zero, table.get(0));
+        assertSame(negative, table.get(-1));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    void testGrowth_AllAccountsVisited() {
+        AccountTable table = new AccountTable(4);
+        for (int id = 0; id < 100_000; id++) {
+            table.computeIfAbsent(id * 31, Account::new);
+        }
+
+        assertEquals(100_000, table.size());
+        for (int id = 0; id < 100_000; id++) {
+            assertEquals(id * 31, table.get(id * 31).getId());
+        }
+        Set<Integer> visited = new HashSet<>();
+        table.forEach(account -> visited.add(account.getId()));
+        assertEquals(100_000, visited.size());
+    }
+
+    @Test
+    void testConcurrentComputeIfAbsent_OneAccountPerId() throws Exception {
+        AccountTable table = new AccountTable(4);
+        AtomicInteger created = new AtomicInteger();
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Account[]>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                Account[] accounts = new Account[20_000];
+                for (int id = 0; id < accounts.length; id++) {
+                    accounts[id] = table.computeIfAbsent(id, i -> {
+                        created.incrementAndGet();
+                        return new Account(i);
+                    });
+                }
+                return accounts;
+            }));
+        }
+        start.countDown();
+
+        Account[] first = futures.get(0).get();
+        for (Future<Account[]> future : futures) {
+            Account[] accounts = future.get();
+            for (int id = 0; id < accounts.length; id++) {
+                assertSame(first[id], accounts[id]);
+            }
+        }
+        executor.shutdown();
+        assertEquals(20_000, created.get());
+        assertEquals(20_000, table.size());
+    }
+
+    @Test
+    void testRemoveIf_RemovedAccountsAreReplaced() {
+        AccountTable table = new AccountTable(4);
+        for (int id = 0; id < 1000; id++) {
+            table.computeIfAbsent(id, Account::new);
+        }
+
+        assertEquals(500, table.removeIf(account -> account.getId() % 2 == 0));
+        assertEquals(500, table.size());
+        for (int id = 0; id < 1000; id++) {
+            if (id % 2 == 0)
+                assertNull(table.get(id));
+            else
+                assertEquals(id, table.get(id).getId());
+        }
+
+        Account recreated = table.computeIfAbsent(10, Account::new);
+        assertSame(recreated, table.get(10));
+        assertEquals(501, table.size());
+
+        assertEquals(501, table.removeIf(account -> true));
+        assertEquals(0, table.size());
+        assertNull(table.get(11));
+    }
+}
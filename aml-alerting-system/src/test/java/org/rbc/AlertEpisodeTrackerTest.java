@@ -0,0 +1,147 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AlertEpisodeTrackerTest {
+
+    /**
+     * Records the episodes as "OPEN time account" and "CLOSE time account" lines.
+     */
+    static class EpisodeRecorder implements AlertEpisodeListener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onEpisodeOpened(long timestamp, int accountId, long firedRules) {
+            events.add("OPEN " + timestamp + " " + accountId);
+        }
+
+        @Override
+        public void onEpisodeClosed(long timestamp, int accountId) {
+            events.add("CLOSE " + timestamp + " " + accountId);
+        }
+    }
+
+    @Test
+    void testBurst_OneEpisode() {
+        EpisodeRecorder recorder = new EpisodeRecorder();
+        AlertEpisodeTracker tracker = new AlertEpisodeTracker(60, recorder, null);
+
+        tracker.onResult(0, 100, 1, 0);
+        tracker.onResult(10, 100, 1, 1);
+        tracker.onResult(11, 100, 1, 1);
+        tracker.onResult(12, 100, 1, 1);
+        tracker.onResult(20, 100, 1, 0);
+
+        assertEquals(List.of("OPEN 10 1", "CLOSE 20 1"), recorder.events);
+        assertEquals(0, tracker.getOpenEpisodeCount());
+    }
+
+    @Test
+    void testAccounts_IndependentEpisodes() {
+        EpisodeRecorder recorder = new EpisodeRecorder();
+        AlertEpisodeTracker tracker = new AlertEpisodeTracker(60, recorder, null);
+
+        tracker.onResult(0, 100, 1, 1);
+        tracker.onResult(1, 100, 2, 1);
+        tracker.onResult(2, 100, 3, 1);
+        tracker.onResult(3, 100, 2, 0);
+        tracker.onResult(4, 100, 1, 1);
+        tracker.onResult(5, 100, 2, 1);
+
+        assertEquals(List.of("OPEN 0 1", "OPEN 1 2", "OPEN 2 3", "CLOSE 3 2", "OPEN 5 2"), recorder.events);
+        assertEquals(3, tracker.getOpenEpisodeCount());
+    }
+
+    @Test
+    void testIdleAccount_ClosedWhenItsWindowDrains() {
+        EpisodeRecorder recorder = new EpisodeRecorder();
+        AlertEpisodeTracker tracker = new AlertEpisodeTracker(60, recorder, null);
+
+        tracker.onResult(0, 100, 1, 1);
+        tracker.onResult(30, 100, 2, 1);
+        tracker.onResult(60, 100, 3, 0);
+        tracker.onResult(61, 100, 3, 0);
+        tracker.onResult(100, 100, 3, 0);
+
+        assertEquals(List.of("OPEN 0 1", "OPEN 30 2", "CLOSE 61 1", "CLOSE 91 2"), recorder.events);
+    }
+
+    @Test
+    void testDrainedAccount_OpensANewEpisode() {
+        EpisodeRecorder recorder = new EpisodeRecorder();
+        AlertEpisodeTracker tracker = new AlertEpisodeTracker(60, recorder, null);
+
+        tracker.onResult(0, 100, 1, 1);
+        tracker.onResult(200, 100, 1, 1);
+
+        assertEquals(List.of("OPEN 0 1", "CLOSE 61 1", "OPEN 200 1"), recorder.events);
+    }
+
+    @Test
+    void testRestoredEpisode_NotOpenedAgain() {
+        EpisodeRecorder recorder = new EpisodeRecorder();
+        AlertEpisodeTracker tracker = new AlertEpisodeTracker(60, recorder, null);
+        tracker.restoreOpenEpisode(1, 100);
+
+        tracker.onResult(110, 100, 1, 1);
+        tracker.onResult(120, 100, 1, 0);
+
+        assertEquals(List.of("CLOSE 120 1"), recorder.events);
+    }
+
+    @Test
+    void testResults_ForwardedToNextListener() {
+        List<String> results = new ArrayList<>();
+        List<String> idle = new ArrayList<>();
+        TransactionResultListener next = new TransactionResultListener() {
+            @Override
+            public void onResult(long timestamp, int amount, int accountId, long firedRules) {
+                results.add(timestamp + " " + amount + " " + accountId + " " + firedRules);
+            }
+
+            @Override
+            public void onIdle() {
+                idle.add("idle");
+            }
+        };
+        AlertEpisodeTracker tracker = new AlertEpisodeTracker(60, new EpisodeRecorder(), next);
+
+        tracker.onResult(5, 100, 1, 0);
+        tracker.onResult(6, 60000, 1, 1);
+        tracker.onIdle();
+
+        assertEquals(List.of("5 100 1 0", "6 60000 1 1"), results);
+        assertEquals(List.of("idle"), idle);
+    }
+
+    @Test
+    void testManyAccounts_SlotsGrow() {
+        EpisodeRecorder recorder = new EpisodeRecorder();
+        AlertEpisodeTracker tracker = new AlertEpisodeTracker(60, recorder, null);
+
+        for (int account = 0; account < 1000; account++) {
+            tracker.onResult(0, 100, account, 1);
+        }
+        assertEquals(1000, tracker.getOpenEpisodeCount());
+        for (int account = 0; account < 1000; account += 2) {
+            tracker.onResult(1, 100, account, 0);
+        }
+        assertEquals(500, tracker.getOpenEpisodeCount());
+        tracker.onResult(1000, 100, -1, 0);
+        assertEquals(0, tracker.getOpenEpisodeCount());
+        assertEquals(2000, recorder.events.size());
+    }
+
+    @Test
+    void testLongestWindowSeconds() {
+        AlertRuleSet ruleSet = new AlertRuleSet(List.of(new AlertRule(1, 50_000, 60), new AlertRule(2, 200_000, 3600),
+                new AlertRule(3, 10_000, 10)));
+
+        assertEquals(3600, AlertEpisodeTracker.longestWindowSeconds(ruleSet));
+    }
+}
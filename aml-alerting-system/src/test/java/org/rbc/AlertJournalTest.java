@@ -0,0 +1,145 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AlertJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static List<String> readAll(Path path) throws IOException {
+        AlertEpisodeTrackerTest.EpisodeRecorder recorder = new AlertEpisodeTrackerTest.EpisodeRecorder();
+        AlertJournal.read(path, AlertJournal.HEADER_SIZE, recorder);
+        return recorder.events;
+    }
+
+    @Test
+    void testAppend_ReadBack() throws IOException {
+        Path path = tempDir.resolve("alerts.amlj");
+        try (AlertJournal journal = AlertJournal.open(path, false)) {
+            journal.onEpisodeOpened(36_000, 1, 1);
+            journal.onEpisodeOpened(36_005, 2, 3);
+            journal.onEpisodeClosed(36_010, 1);
+            assertEquals(3, journal.getAppendedCount());
+        }
+
+        assertEquals(List.of("OPEN 36000 1", "OPEN 36005 2", "CLOSE 36010 1"), readAll(path));
+        // The file is truncated after the last record when closed
+        assertEquals(AlertJournal.HEADER_SIZE + 3 * AlertJournal.RECORD_SIZE, Files.size(path));
+    }
+
+    @Test
+    void testRead_WhileOpen_StopsAtTheLastRecord() throws IOException {
+        Path path = tempDir.resolve("alerts.amlj");
+        try (AlertJournal journal = AlertJournal.open(path, false)) {
+            journal.onEpisodeOpened(100, 7, 1);
+            AlertEpisodeTrackerTest.EpisodeRecorder recorder = new AlertEpisodeTrackerTest.EpisodeRecorder();
+            long position = AlertJournal.read(path, AlertJournal.HEADER_SIZE, recorder);
+            assertEquals(List.of("OPEN 100 7"), recorder.events);
+
+            // A reader tailing the journal goes on from the position returned
+            journal.onEpisodeClosed(130, 7);
+            position = AlertJournal.read(path, position, recorder);
+            assertEquals(List.of("OPEN 100 7", "CLOSE 130 7"), recorder.events);
+            assertEquals(AlertJournal.HEADER_SIZE + 2 * AlertJournal.RECORD_SIZE, position);
+        }
+    }
+
+    @Test
+    void testAppend_AcrossRegions() throws IOException {
+        Path path = tempDir.resolve("alerts.amlj");
+        int count = 200_000;
+        try (AlertJournal journal = AlertJournal.open(path, false)) {
+            for (int i = 0; i < count; i++) {
+                journal.onEpisodeOpened(i, i, 1);
+            }
+        }
+
+        List<String> events = readAll(path);
+        assertEquals(count, events.size());
+        assertEquals("OPEN 199999 199999", events.get(count - 1));
+    }
+
+    @Test
+    void testOpen_Append_RestoresOpenEpisodes() throws IOException {
+        Path path = tempDir.resolve("alerts.amlj");
+        try (AlertJournal journal = AlertJournal.open(path, false)) {
+            journal.onEpisodeOpened(100, 1, 1);
+            journal.onEpisodeOpened(110, 2, 1);
+            journal.onEpisodeClosed(120, 1);
+            journal.onEpisodeOpened(130, 3, 1);
+        }
+
+        try (AlertJournal journal = AlertJournal.open(path, true)) {
+            assertEquals(Map.of(2, 130L, 3, 130L), journal.getOpenEpisodes());
+            journal.onEpisodeClosed(140, 2);
+        }
+        assertEquals(5, readAll(path).size());
+
+        try (AlertJournal journal = AlertJournal.open(path, false)) {
+            assertEquals(Map.of(), journal.getOpenEpisodes());
+        }
+        assertEquals(List.of(), readAll(path));
+    }
+
+    @Test
+    void testOpen_Append_AfterCrash_StopsAtTheUnwrittenRecords() throws IOException {
+        Path path = tempDir.resolve("alerts.amlj");
+        try (AlertJournal journal = AlertJournal.open(path, false)) {
+            journal.onEpisodeOpened(100, 1, 1);
+        }
+        // The zeros of a mapped region a crashed process did not fill
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(10 * AlertJournal.RECORD_SIZE));
+        }
+
+        try (AlertJournal journal = AlertJournal.open(path, true)) {
+            journal.onEpisodeClosed(150, 1);
+        }
+        assertEquals(List.of("OPEN 100 1", "CLOSE 150 1"), readAll(path));
+    }
+
+    @Test
+    void testOpen_NotAJournal() throws IOException {
+        Path path = tempDir.resolve("transactions.csv");
+        Files.writeString(path, "Timestamp,Amount,AccountId\n10:00:00,100,1\n");
+
+        assertThrows(IOException.class, () -> AlertJournal.open(path, true));
+    }
+
+    @Test
+    void testClosedJournal_RejectsEvents() throws IOException {
+        AlertJournal journal = AlertJournal.open(tempDir.resolve("alerts.amlj"), false);
+        journal.close();
+
+        assertThrows(IllegalStateException.class, () -> journal.onEpisodeOpened(100, 1, 1));
+    }
+
+    @Test
+    void testEpisodes_FromTheProcessing() throws IOException {
+        Path path = tempDir.resolve("alerts.amlj");
+        try (AlertJournal journal = AlertJournal.open(path, false)) {
+            AlertEpisodeTracker tracker = new AlertEpisodeTracker(60, journal, null);
+            AMLTransactionProcessor processor = new AMLTransactionProcessor();
+            AMLCSVReader.forEachTransaction("src/test/resources/test-transactions-csv.txt",
+                    (timestamp, amount, accountId) -> tracker.onResult(timestamp, amount, accountId,
+                            processor.processTransaction(timestamp, amount, accountId) ? 1 : 0));
+        }
+
+        // Account 1 alerts from 10:00:20 and account 2 from 10:02:10, until the end of the input
+        assertEquals(List.of("OPEN 36020 1", "OPEN 36130 2"), readAll(path));
+    }
+}
@@ -0,0 +1,131 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlertRuleSetTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path writeRules(String content) throws IOException {
+        Path file = tempDir.resolve("rules.properties");
+        Files.writeString(file, content);
+        return file;
+    }
+
+    @Test
+    void testLoad() throws IOException {
+        AlertRuleSet ruleSet = AlertRuleSet.load(writeRules("""
+                rule.1.threshold=50000
+                rule.1.window=60
+                rule.7.threshold=200000
+                rule.7.window=3600
+                # Only for a segment
+                rule.3.threshold=20000
+                rule.3.window=60
+                rule.3.accounts=1000-1999
+                """));
+
+        assertEquals(3, ruleSet.size());
+        assertEquals(new AlertRule(1, 50000, 60), ruleSet.rule(0));
+        assertEquals(new AlertRule(3, 20000, 60, 1000, 1999), ruleSet.rule(1));
+        assertEquals(new AlertRule(7, 200000, 3600), ruleSet.rule(2));
+        assertArrayEquals(new int[]{1, 7}, ruleSet.ruleIds(0b101));
+    }
+
+    @Test
+    void testLoad_InvalidFiles() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> AlertRuleSet.load(writeRules("")));
+        assertThrows(IllegalArgumentException.class, () -> AlertRuleSet.load(writeRules("rule.1.threshold=5\n")));
+        assertThrows(IllegalArgumentException.class, () -> AlertRuleSet.load(writeRules(
+                "rule.1.threshold=5\nrule.1.window=60\nrule.1.color=red\n")));
+        assertThrows(IllegalArgumentException.class, () -> AlertRuleSet.load(writeRules(
+                "rule.1.threshold=abc\nrule.1.window=60\n")));
+        assertThrows(IllegalArgumentException.class, () -> AlertRuleSet.load(writeRules(
+                "rule.1.threshold=5\nrule.1.window=60\nrule.1.accounts=10\n")));
+        assertThrows(IllegalArgumentException.class, () -> AlertRuleSet.load(writeRules("threshold=5\n")));
+    }
+
+    @Test
+    void testLoad_GroupScope() throws IOException {
+        AlertRuleSet ruleSet = AlertRuleSet.load(writeRules("""
+                rule.1.threshold=50000
+                rule.1.window=60
+                rule.2.threshold=80000
+                rule.2.window=60
+                rule.2.scope=group
+                """));
+
+        assertEquals(new AlertRule(2, 80000, 60, AlertRule.Scope.GROUP), ruleSet.rule(1));
+        assertNotNull(ruleSet.groupRules());
+        // The group rules are not evaluated against the windows of the accounts
+        assertArrayEquals(new int[]{60}, ruleSet.rulesFor(1).windowSeconds());
+        assertThrows(IllegalArgumentException.class, () -> AlertRuleSet.load(writeRules(
+                "rule.1.threshold=5\nrule.1.window=60\nrule.1.scope=household\n")));
+        assertThrows(IllegalArgumentException.class, () -> AlertRuleSet.load(writeRules(
+                "rule.1.threshold=5\nrule.1.window=60\nrule.1.scope=group\nrule.1.accounts=1-9\n")));
+    }
+
+    @Test
+    void testDuplicateIds() {
+        assertThrows(IllegalArgumentException.class, () -> new AlertRuleSet(List.of(new AlertRule(1, 10, 60),
+                new AlertRule(1, 20, 60))));
+    }
+
+    @Test
+    void testRulesFor_SharedBySegment() {
+        AlertRuleSet ruleSet = new AlertRuleSet(List.of(new AlertRule(1, 100, 60),
+                new AlertRule(2, 10, 30, 0, 9)));
+
+        assertSame(ruleSet.rulesFor(1), ruleSet.rulesFor(2));
+        assertArrayEquals(new int[]{30, 60}, ruleSet.rulesFor(1).windowSeconds());
+        assertArrayEquals(new int[]{60}, ruleSet.rulesFor(10).windowSeconds());
+    }
+
+    @Test
+    void testProcessor_SameAsOneProcessorPerRule() {
+        List<AlertRule> rules = List.of(new AlertRule(1, 50_000, 60), new AlertRule(2, 200_000, 600),
+                new AlertRule(3, 20_000, 60, 0, 49), new AlertRule(4, 5_000, 0));
+        AlertRuleSet ruleSet = new AlertRuleSet(rules);
+        AMLTransactionProcessor processor = new AMLTransactionProcessor(
+                AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER, false, 0, ruleSet);
+        List<AMLTransactionProcessor> singleRuleProcessors = new ArrayList<>();
+        for (AlertRule rule : rules) {
+            singleRuleProcessors.add(new AMLTransactionProcessor(AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER,
+                    false, 0, new AlertRuleSet(List.of(rule))));
+        }
+
+        Random random = new Random(11);
+        boolean[] ruleFired = new boolean[rules.size()];
+        for (int i = 0; i < 50_000; i++) {
+            int secondOfDay = i / 20;
+            int amount = random.nextInt(6000);
+            int accountId = random.nextInt(100);
+
+            long fired = processor.evaluateTransaction(secondOfDay, amount, accountId);
+            for (int r = 0; r < rules.size(); r++) {
+                boolean expected = singleRuleProcessors.get(r).processTransaction(secondOfDay, amount, accountId);
+                assertEquals(expected, (fired & 1L << r) != 0);
+                ruleFired[r] |= expected;
+            }
+        }
+        for (boolean fired : ruleFired) {
+            assertTrue(fired);
+        }
+    }
+}
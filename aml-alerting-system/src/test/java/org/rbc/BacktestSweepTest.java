@@ -0,0 +1,160 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BacktestSweepTest {
+
+    private static final long[] THRESHOLDS = {30_000, 5_000, 50_000, 100_000, 10_000};
+    private static final int[] WINDOWS = {3600, 10, 60, 300};
+    private static final AlertRule BASELINE = new AlertRule(1, 50_000, 60);
+
+    @Test
+    void testSweep_SameAsOneRunPerConfiguration() {
+        List<long[]> transactions = randomTransactions(20_000);
+        BacktestSweep sweep = new BacktestSweep(THRESHOLDS, WINDOWS, BASELINE);
+        for (long[] transaction : transactions) {
+            sweep.accept(transaction[0], (int) transaction[1], (int) transaction[2]);
+        }
+
+        boolean[] baselineAlerts = run(transactions, BASELINE);
+        long baselineAlertCount = count(baselineAlerts, baselineAlerts, true, true);
+        assertEquals(baselineAlertCount, sweep.getBaselineAlertCount());
+        assertEquals(transactions.size(), sweep.getTransactionCount());
+
+        long[] thresholds = sweep.getThresholds();
+        int[] windows = sweep.getWindowSeconds();
+        for (int w = 0; w < windows.length; w++) {
+            for (int t = 0; t < thresholds.length; t++) {
+                boolean[] alerts = run(transactions, new AlertRule(1, thresholds[t], windows[w]));
+                String configuration = thresholds[t] + " over " + windows[w] + "s";
+                assertEquals(count(alerts, baselineAlerts, true, false) + count(alerts, baselineAlerts, true, true),
+                        sweep.getAlertCount(t, w), configuration);
+                assertEquals(count(alerts, baselineAlerts, true, false), sweep.getAddedCount(t, w), configuration);
+                assertEquals(count(alerts, baselineAlerts, false, true), sweep.getRemovedCount(t, w), configuration);
+            }
+        }
+    }
+
+    @Test
+    void testSweep_BaselineConfigurationHasNoDifference() {
+        List<long[]> transactions = randomTransactions(5_000);
+        BacktestSweep sweep = new BacktestSweep(new long[]{50_000}, new int[]{60}, BASELINE);
+        for (long[] transaction : transactions) {
+            sweep.accept(transaction[0], (int) transaction[1], (int) transaction[2]);
+        }
+
+        assertEquals(sweep.getBaselineAlertCount(), sweep.getAlertCount(0, 0));
+        assertEquals(0, sweep.getAddedCount(0, 0));
+        assertEquals(0, sweep.getRemovedCount(0, 0));
+    }
+
+    @Test
+    void testSweep_SortsTheGrid() {
+        BacktestSweep sweep = new BacktestSweep(THRESHOLDS, WINDOWS, BASELINE);
+
+        assertArrayEquals(new long[]{5_000, 10_000, 30_000, 50_000, 100_000}, sweep.getThresholds());
+        assertArrayEquals(new int[]{10, 60, 300, 3600}, sweep.getWindowSeconds());
+    }
+
+    @Test
+    void testWriteReport() throws IOException {
+        BacktestSweep sweep = new BacktestSweep(new long[]{50_000, 20_000}, new int[]{60}, BASELINE);
+        sweep.accept(36_000, 10_000, 1);
+        sweep.accept(36_010, 20_000, 1);
+        sweep.accept(36_020, 30_000, 1);
+        sweep.accept(36_200, 60_000, 2);
+
+        StringBuilder report = new StringBuilder();
+        sweep.writeReport(report);
+
+        assertEquals("""
+                Threshold,WindowSeconds,Alerts,Added,Removed
+                20000,60,3,1,0
+                50000,60,2,0,0
+                """, report.toString());
+    }
+
+    @Test
+    void testInvalidGrid() {
+        assertThrows(IllegalArgumentException.class, () -> new BacktestSweep(new long[0], WINDOWS, BASELINE));
+        assertThrows(IllegalArgumentException.class,
+                () -> new BacktestSweep(new long[]{10, 10}, WINDOWS, BASELINE));
+        assertThrows(IllegalArgumentException.class,
+                () -> new BacktestSweep(THRESHOLDS, WINDOWS, new AlertRule(1, 50_000, 60, 0, 999)));
+    }
+
+    @Test
+    void testBacktest_FromOptions() throws IOException {
+        AMLAlertingOptions options = AMLAlertingOptions.parse(new String[]{"--sweep-thresholds=20000,50000",
+                "src/test/resources/test-transactions-csv.txt"});
+        BacktestSweep sweep = AMLAlertingSystem.backtest(options, AlertRuleSet.DEFAULT);
+
+        assertArrayEquals(new int[]{AMLAlertingConfiguration.ALERT_WINDOW_SECONDS}, sweep.getWindowSeconds());
+        int baseline = 1;
+        assertEquals(sweep.getBaselineAlertCount(), sweep.getAlertCount(baseline, 0));
+        assertEquals(0, sweep.getRemovedCount(0, 0));
+    }
+
+    @Test
+    void testBacktestOptions_Invalid() {
+        assertThrows(IllegalArgumentException.class, () -> AMLAlertingOptions.parse(new String[]{
+                "--sweep-windows=60,x", "transactions.csv"}));
+        assertThrows(IllegalArgumentException.class, () -> AMLAlertingOptions.parse(new String[]{
+                "--sweep-windows=60", "--follow", "transactions.csv"}));
+        assertThrows(IllegalArgumentException.class, () -> AMLAlertingOptions.parse(new String[]{
+                "--sweep-thresholds=10000", "--bucket-seconds=10", "transactions.csv"}));
+    }
+
+    /**
+     * @return Transactions as (time, amount, account) in chronological order, in bursts so the windows fill up.
+     */
+    private static List<long[]> randomTransactions(int count) {
+        Random random = new Random(21);
+        List<long[]> transactions = new ArrayList<>(count);
+        long timestamp = 0;
+        for (int i = 0; i < count; i++) {
+            timestamp += random.nextInt(10) < 8 ? random.nextInt(3) : random.nextInt(600);
+            transactions.add(new long[]{timestamp, random.nextInt(40_000), random.nextInt(50)});
+        }
+        return transactions;
+    }
+
+    /**
+     * @return Whether each transaction raises an alert, when processed against the single rule.
+     */
+    private static boolean[] run(List<long[]> transactions, AlertRule rule) {
+        AlertRuleSet ruleSet = new AlertRuleSet(List.of(rule));
+        Map<Integer, Account> accounts = new HashMap<>();
+        boolean[] alerts = new boolean[transactions.size()];
+        for (int i = 0; i < alerts.length; i++) {
+            long[] transaction = transactions.get(i);
+            Account account = accounts.computeIfAbsent((int) transaction[2],
+                    id -> new Account(id, ruleSet.rulesFor(id)));
+            alerts[i] = account.addTransaction(transaction[0], (int) transaction[1]);
+        }
+        return alerts;
+    }
+
+    /**
+     * @return The number of transactions with the given alert and baseline alert.
+     */
+    private static long count(boolean[] alerts, boolean[] baselineAlerts, boolean alert, boolean baselineAlert) {
+        long count = 0;
+        for (int i = 0; i < alerts.length; i++) {
+            if (alerts[i] == alert && baselineAlerts[i] == baselineAlert)
+                count++;
+        }
+        return count;
+    }
+}
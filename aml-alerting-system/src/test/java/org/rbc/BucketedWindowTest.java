@@ -0,0 +1,118 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BucketedWindowTest {
+
+    private static final int[] DURATIONS = {0, 10, 60, 3600};
+
+    /**
+     * Bursts of transactions in the same second, with pauses which sometimes exceed the longest window.
+     */
+    private static int nextSecondOfDay(Random random, int secondOfDay) {
+        int step = random.nextInt(1000);
+        if (step < 900)
+            return secondOfDay;
+        return secondOfDay + (step < 998 ? random.nextInt(40) : 5000);
+    }
+
+    @Test
+    void testExactMode_SameAsTransactionWindow() {
+        BucketedWindow bucketed = new BucketedWindow(DURATIONS, BucketedWindow.EXACT_BUCKET_SECONDS);
+        TransactionWindow exact = new TransactionWindow(DURATIONS);
+        Random random = new Random(5);
+        int secondOfDay = 0;
+
+        for (int i = 0; i < 100_000 && secondOfDay < 86_400; i++) {
+            secondOfDay = nextSecondOfDay(random, secondOfDay);
+            int amount = random.nextInt(1000);
+            assertEquals(exact.add(secondOfDay, amount), bucketed.add(secondOfDay, amount));
+            for (int w = 0; w < DURATIONS.length; w++) {
+                assertEquals(exact.total(w), bucketed.total(w));
+            }
+            assertEquals(exact.size(), bucketed.size());
+            assertEquals(exact.oldestTimestamp(), bucketed.oldestTimestamp());
+            assertEquals(exact.newestTimestamp(), bucketed.newestTimestamp());
+            assertEquals(exact.isExpiredAt(secondOfDay + 3600), bucketed.isExpiredAt(secondOfDay + 3600));
+            assertEquals(exact.isExpiredAt(secondOfDay + 3601), bucketed.isExpiredAt(secondOfDay + 3601));
+        }
+    }
+
+    @Test
+    void testApproximateMode_NeverUnderestimates() {
+        int bucketSeconds = 60;
+        BucketedWindow bucketed = new BucketedWindow(DURATIONS, bucketSeconds);
+        TransactionWindow[] lowerBounds = new TransactionWindow[DURATIONS.length];
+        TransactionWindow[] upperBounds = new TransactionWindow[DURATIONS.length];
+        for (int w = 0; w < DURATIONS.length; w++) {
+            lowerBounds[w] = new TransactionWindow(DURATIONS[w]);
+            upperBounds[w] = new TransactionWindow(DURATIONS[w] + bucketSeconds - 1);
+        }
+        Random random = new Random(6);
+        int secondOfDay = 0;
+
+        for (int i = 0; i < 100_000 && secondOfDay < 86_400; i++) {
+            secondOfDay = nextSecondOfDay(random, secondOfDay);
+            int amount = random.nextInt(1000);
+            bucketed.add(secondOfDay, amount);
+            for (int w = 0; w < DURATIONS.length; w++) {
+                long lower = lowerBounds[w].add(secondOfDay, amount);
+                long upper = upperBounds[w].add(secondOfDay, amount);
+                assertTrue(lower <= bucketed.total(w) && bucketed.total(w) <= upper);
+            }
+        }
+    }
+
+    @Test
+    void testApproximateMode_KeepsPartialOldestBucket() {
+        BucketedWindow window = new BucketedWindow(new int[]{60}, 60);
+
+        window.add(0, 100);
+        window.add(59, 200);
+        // The first bucket is kept, as the window [60, 120] still covers a part of it
+        assertEquals(350, window.add(119, 50));
+        // The window [61, 121] no longer covers it
+        assertEquals(60, window.add(121, 10));
+        assertEquals(2, window.size());
+    }
+
+    @Test
+    void testApproximateMode_TimestampsOfBuckets() {
+        BucketedWindow window = new BucketedWindow(new int[]{60}, 10);
+        assertEquals(WindowSummary.NO_TIMESTAMP, window.oldestTimestamp());
+
+        window.add(15, 100);
+        window.add(47, 200);
+        assertEquals(10, window.oldestTimestamp());
+        assertEquals(40, window.newestTimestamp());
+        // The bucket [10, 20) left the window [20, 80], the buckets between are empty
+        window.add(80, 50);
+        assertEquals(40, window.oldestTimestamp());
+        assertEquals(80, window.newestTimestamp());
+    }
+
+    @Test
+    void testIsExpiredAt() {
+        BucketedWindow window = new BucketedWindow(new int[]{60}, 10);
+        assertTrue(window.isExpiredAt(0));
+
+        window.add(100, 1);
+        assertFalse(window.isExpiredAt(160));
+        assertFalse(window.isExpiredAt(169));
+        assertTrue(window.isExpiredAt(170));
+        // The window belongs to the previous day
+        assertFalse(window.isExpiredAt(50));
+    }
+
+    @Test
+    void testInvalidResolution() {
+        assertThrows(IllegalArgumentException.class, () -> new BucketedWindow(new int[]{60}, 0));
+    }
+}
@@ -0,0 +1,92 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChannelOutputSinkTest {
+
+    private static String expectedLine(int secondOfDay, int amount, int accountId, boolean alert) {
+        return String.format("%s %d %d %s%n", LocalTime.ofSecondOfDay(secondOfDay), amount, accountId,
+                alert ? "Y" : "N").replace(System.lineSeparator(), "\n");
+    }
+
+    @Test
+    void testLinesMatchFormattedOutput() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StringBuilder expected = new StringBuilder();
+        int[] edgeValues = {0, 1, -1, 9, 10, 99, 100, 999999999, 1000000000, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        Random random = new Random(42);
+
+        // A small buffer so the lines span many buffers
+        try (ChannelOutputSink sink = new ChannelOutputSink(Channels.newChannel(out), 0, 64)) {
+            for (int i = 0; i < 10_000; i++) {
+                int secondOfDay = i < 3 ? new int[]{0, 60, 86399}[i] : random.nextInt(86400);
+                int amount = edgeValues[i % edgeValues.length];
+                int accountId = random.nextInt();
+                boolean alert = i % 3 == 0;
+                sink.onResult(secondOfDay, amount, accountId, alert ? 1 : 0);
+                expected.append(expectedLine(secondOfDay, amount, accountId, alert));
+            }
+        }
+
+        assertEquals(expected.toString(), out.toString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void testRuleIdsWrittenWithAlerts() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AlertRuleSet ruleSet = new AlertRuleSet(List.of(new AlertRule(5, 100, 60), new AlertRule(12, 1000, 600)));
+
+        try (ChannelOutputSink sink = new ChannelOutputSink(Channels.newChannel(out), 0, ruleSet, 1024)) {
+            sink.onResult(36000, 150, 1, 0b01);
+            sink.onResult(36001, 2000, 1, 0b11);
+            sink.onResult(36002, 10, 2, 0);
+        }
+
+        assertEquals("10:00 150 1 Y 5\n10:00:01 2000 1 Y 5,12\n10:00:02 10 2 N\n",
+                out.toString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void testCloseWithoutResults() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ChannelOutputSink(Channels.newChannel(out), 1).close();
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    void testWriteFailureIsReported() {
+        WritableByteChannel failingChannel = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                throw new IOException("Disk full");
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        ChannelOutputSink sink = new ChannelOutputSink(failingChannel, 0, 64);
+        sink.onResult(60, 100, 1, 0);
+        IOException exception = assertThrows(IOException.class, sink::close);
+        assertEquals("Disk full", exception.getMessage());
+    }
+}
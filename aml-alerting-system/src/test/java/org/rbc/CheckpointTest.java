@@ -0,0 +1,205 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utilities.LargeCSVGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CheckpointTest {
+
+    private static final int[] DURATIONS = {10, 60, 3600};
+
+    @TempDir
+    Path tempDir;
+
+    private static void assertSameWindows(AmountWindow expected, AmountWindow actual) {
+        for (int w = 0; w < DURATIONS.length; w++) {
+            assertEquals(expected.total(w), actual.total(w));
+        }
+        assertEquals(expected.size(), actual.size());
+    }
+
+    private static void assertRestoredWindowBehavesLikeOriginal(Supplier<AmountWindow> windowFactory) {
+        AmountWindow original = windowFactory.get();
+        Random random = new Random(11);
+        int secondOfDay = 0;
+        for (int i = 0; i < 5000; i++) {
+            secondOfDay += random.nextInt(5);
+            original.add(secondOfDay, random.nextInt(1000));
+        }
+
+        ByteBuffer state = ByteBuffer.allocate(original.stateSize());
+        original.saveState(state);
+        assertEquals(0, state.remaining());
+        AmountWindow restored = windowFactory.get();
+        restored.restoreState(state.flip());
+        assertSameWindows(original, restored);
+
+        for (int i = 0; i < 5000; i++) {
+            secondOfDay += random.nextInt(5);
+            int amount = random.nextInt(1000);
+            assertEquals(original.add(secondOfDay, amount), restored.add(secondOfDay, amount));
+            assertSameWindows(original, restored);
+        }
+    }
+
+    @Test
+    void testTransactionWindowState() {
+        assertRestoredWindowBehavesLikeOriginal(() -> new TransactionWindow(DURATIONS));
+    }
+
+    @Test
+    void testBucketedWindowState() {
+        assertRestoredWindowBehavesLikeOriginal(() -> new BucketedWindow(DURATIONS, 1));
+        assertRestoredWindowBehavesLikeOriginal(() -> new BucketedWindow(DURATIONS, 60));
+    }
+
+    /**
+     * Processes the transactions, taking a checkpoint after them.
+     *
+     * @return The checkpoint.
+     */
+    private static Checkpoint process(StatefulEngine engine, List<int[]> transactions) throws Exception {
+        CompletableFuture<Checkpoint> checkpoint = new CompletableFuture<>();
+        try (engine) {
+            for (int[] transaction : transactions) {
+                engine.accept(transaction[0], transaction[1], transaction[2]);
+            }
+            engine.checkpoint(42, transactions.size(), checkpoint::complete);
+        }
+        return checkpoint.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testResumeFromCheckpoint_SameResultsAsUninterruptedRun() throws Exception {
+        List<int[]> transactions = new ArrayList<>();
+        new LargeCSVGenerator(200, 20, LargeCSVGenerator.AccountDistribution.UNIFORM,
+                LargeCSVGenerator.AmountDistribution.UNIFORM, 3)
+                .generate(20_000, (secondOfDay, amount, accountId) ->
+                        transactions.add(new int[]{secondOfDay, amount, accountId}));
+        List<int[]> firstHalf = transactions.subList(0, 10_000);
+        List<int[]> secondHalf = transactions.subList(10_000, 20_000);
+
+        List<Long> expected = new ArrayList<>();
+        process(new SingleThreadTransactionEngine((secondOfDay, amount, accountId, firedRules) ->
+                expected.add(firedRules)), transactions);
+
+        // Take the checkpoint with 3 shards and resume on a single thread
+        Checkpoint checkpoint = process(new ShardedTransactionEngine(3,
+                (secondOfDay, amount, accountId, firedRules) -> { }), firstHalf);
+        Path file = tempDir.resolve("state.ckpt");
+        checkpoint.write(file);
+        Checkpoint read = Checkpoint.read(file);
+        assertEquals(42, read.getInputOffset());
+        assertEquals(10_000, read.getRowCount());
+
+        List<Long> actual = new ArrayList<>();
+        StatefulEngine engine = new SingleThreadTransactionEngine((secondOfDay, amount, accountId, firedRules) ->
+                actual.add(firedRules));
+        engine.restore(read);
+        process(engine, secondHalf);
+
+        assertEquals(expected.subList(10_000, 20_000), actual);
+        assertTrue(actual.stream().anyMatch(firedRules -> firedRules != 0));
+    }
+
+    private static void awaitResults(List<Long> results, int count) {
+        while (results.size() < count) {
+            Thread.onSpinWait();
+        }
+    }
+
+    @Test
+    void testRelease_AccountsHandedOverToAnotherEngine() throws Exception {
+        List<int[]> transactions = new ArrayList<>();
+        new LargeCSVGenerator(200, 20, LargeCSVGenerator.AccountDistribution.UNIFORM,
+                LargeCSVGenerator.AmountDistribution.UNIFORM, 5)
+                .generate(20_000, (secondOfDay, amount, accountId) ->
+                        transactions.add(new int[]{secondOfDay, amount, accountId}));
+        List<Long> expected = new ArrayList<>();
+        process(new SingleThreadTransactionEngine((secondOfDay, amount, accountId, firedRules) ->
+                expected.add(firedRules)), transactions);
+
+        // The odd accounts move from the first engine to the second one halfway, through a stream
+        List<Long> actual = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Checkpoint> released = new CompletableFuture<>();
+        try (StatefulEngine first = new ShardedTransactionEngine(3, 16,
+                (secondOfDay, amount, accountId, firedRules) -> actual.add(firedRules));
+             StatefulEngine second = new SingleThreadTransactionEngine((secondOfDay, amount, accountId,
+                                                                           firedRules) -> actual.add(firedRules))) {
+            for (int[] transaction : transactions.subList(0, 10_000)) {
+                first.accept(transaction[0], transaction[1], transaction[2]);
+            }
+            first.release(accountId -> accountId % 2 == 1, released::complete);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            released.get(10, TimeUnit.SECONDS).writeTo(new DataOutputStream(bytes));
+            second.restore(Checkpoint.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+            assertTrue(released.get().getAccountCount() > 0);
+
+            // One transaction at a time, so the results of the two engines stay in input order
+            awaitResults(actual, 10_000);
+            for (int i = 10_000; i < 20_000; i++) {
+                int[] transaction = transactions.get(i);
+                TransactionEngine owner = transaction[2] % 2 == 1 ? second : first;
+                owner.accept(transaction[0], transaction[1], transaction[2]);
+                awaitResults(actual, i + 1);
+            }
+        }
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testRestore_OtherWindowLayoutRejected() {
+        Checkpoint checkpoint = new Checkpoint(AlertRuleSet.DEFAULT.windowLayoutHash(), 0, 0, 0);
+        AlertRuleSet bucketed = AlertRuleSet.DEFAULT.withBucketSeconds(60);
+
+        assertThrows(IllegalArgumentException.class, () -> checkpoint.checkWindowLayout(bucketed));
+        assertThrows(IllegalArgumentException.class, () -> new AMLTransactionProcessor(
+                AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER, false, 0, bucketed)
+                .restoreAccounts(checkpoint, accountId -> true));
+    }
+
+    @Test
+    void testRead_NotACheckpoint() throws IOException {
+        Path file = tempDir.resolve("state.ckpt");
+        Files.writeString(file, "Time,Amount,AccountId\n10:00:00,100,1\n");
+
+        assertThrows(IOException.class, () -> Checkpoint.read(file));
+    }
+
+    @Test
+    void testWriter_WritesLatestCheckpointBeforeClosing() throws IOException {
+        Path file = tempDir.resolve("state.ckpt");
+        CheckpointWriter writer = new CheckpointWriter(file);
+        Checkpoint checkpoint = new Checkpoint(1, 100, 10, 1);
+        checkpoint.setSection(0, new AMLTransactionProcessor(AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER)
+                .saveAccounts());
+
+        writer.submit(checkpoint);
+        writer.close();
+
+        assertTrue(writer.getWrittenCount() >= 1);
+        assertEquals(100, Checkpoint.read(file).getInputOffset());
+        assertThrows(IllegalStateException.class, () -> writer.submit(checkpoint));
+    }
+}
@@ -0,0 +1,107 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utilities.LargeCSVGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnarTransactionFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static void assertSameTransactions(TransactionBatch expected, TransactionBatch actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.timestamp(i), actual.timestamp(i), "row " + i);
+            assertEquals(expected.amount(i), actual.amount(i), "row " + i);
+            assertEquals(expected.accountId(i), actual.accountId(i), "row " + i);
+        }
+    }
+
+    private Path convert(Path csvFile) throws IOException {
+        Path columnarFile = tempDir.resolve("transactions.amlt");
+        ColumnarTransactionFile.convert(csvFile, columnarFile);
+        return columnarFile;
+    }
+
+    @Test
+    void testConvert_SameTransactionsAsCsv() throws IOException {
+        Path csvFile = tempDir.resolve("transactions.csv");
+        new LargeCSVGenerator(300, 10, LargeCSVGenerator.AccountDistribution.SKEWED,
+                LargeCSVGenerator.AmountDistribution.HEAVY_TAILED, 5).writeCsv(csvFile, 20_000);
+        TransactionBatch expected = new TransactionBatch(16);
+        AMLCSVReader.forEachTransaction(csvFile.toString(), expected);
+
+        Path columnarFile = convert(csvFile);
+        assertTrue(ColumnarTransactionFile.isColumnar(columnarFile));
+        assertFalse(ColumnarTransactionFile.isColumnar(csvFile));
+        TransactionBatch actual = new TransactionBatch(16);
+        try (ColumnarTransactionFile file = ColumnarTransactionFile.open(columnarFile)) {
+            assertEquals(20_000, file.getRowCount());
+            file.forEachTransaction(actual);
+        }
+        assertSameTransactions(expected, actual);
+
+        // The reader of CSV files also accepts a columnar file
+        TransactionBatch read = new TransactionBatch(16);
+        AMLCSVReader.forEachTransaction(columnarFile.toString(), read);
+        assertSameTransactions(expected, read);
+    }
+
+    @Test
+    void testHeader_AccountStatistics() throws IOException {
+        Path csvFile = tempDir.resolve("transactions.csv");
+        Files.writeString(csvFile, "Time,Amount,AccountId\n2024-03-01T23:59:50,100,7\n2024-03-02T00:00:10,200,3\n"
+                + "2024-03-02T00:01:00,300,7\n");
+
+        try (ColumnarTransactionFile file = ColumnarTransactionFile.open(convert(csvFile))) {
+            assertEquals(3, file.getRowCount());
+            assertEquals(2, file.getAccountCount());
+            assertEquals(2, file.getMaxTransactionsPerAccount());
+            assertEquals(2, file.getTransactionCount(7));
+            assertEquals(1, file.getTransactionCount(3));
+            assertEquals(0, file.getTransactionCount(5));
+            assertEquals(Timestamps.epochDay(2024, 3, 2) * Timestamps.SECONDS_PER_DAY + 60, file.getTimestamp(2));
+            assertEquals(200, file.getAmount(1));
+            assertEquals(3, file.getAccountId(1));
+        }
+    }
+
+    @Test
+    void testLimits_CheckedBeforeTheFirstRow() throws IOException {
+        for (String csvFile : List.of("src/test/resources/too-many-accounts.csv",
+                "src/test/resources/too-many-transactions-per-account.csv")) {
+            List<Integer> accountIds = new ArrayList<>();
+            try (ColumnarTransactionFile file = ColumnarTransactionFile.open(convert(Path.of(csvFile)))) {
+                assertThrows(IllegalArgumentException.class,
+                        () -> file.forEachTransaction((timestamp, amount, accountId) -> accountIds.add(accountId)));
+            }
+            assertEquals(List.of(), accountIds);
+        }
+    }
+
+    @Test
+    void testOpen_InvalidFiles() throws IOException {
+        Path csvFile = tempDir.resolve("transactions.csv");
+        Files.writeString(csvFile, "Time,Amount,AccountId\n10:00:00,100,1\n10:00:01,200,2\n");
+        assertThrows(IOException.class, () -> ColumnarTransactionFile.open(csvFile));
+
+        Path columnarFile = convert(csvFile);
+        byte[] bytes = Files.readAllBytes(columnarFile);
+        Path truncated = tempDir.resolve("truncated.amlt");
+        Files.write(truncated, java.util.Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> ColumnarTransactionFile.open(truncated));
+    }
+}
@@ -0,0 +1,99 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DayRolloverSinkTest {
+
+    private static final int DAY = Timestamps.SECONDS_PER_DAY;
+
+    private final List<Long> timestamps = new ArrayList<>();
+
+    private final DayRolloverSink rollover = new DayRolloverSink((timestamp, amount, accountId) ->
+            timestamps.add(timestamp));
+
+    @Test
+    void testCrossingMidnight_MovesToNextDay() {
+        rollover.accept(86370, 1, 1);
+        rollover.accept(10, 1, 1);
+        rollover.accept(40000, 1, 1);
+        rollover.accept(80000, 1, 1);
+        rollover.accept(86370, 1, 1);
+        rollover.accept(5, 1, 1);
+
+        assertEquals(List.of(86370L, DAY + 10L, DAY + 40000L, DAY + 80000L, DAY + 86370L, 2L * DAY + 5), timestamps);
+    }
+
+    @Test
+    void testLateTransactionOfPreviousDay_StaysOnPreviousDay() {
+        rollover.accept(86395, 1, 1);
+        rollover.accept(5, 1, 1);
+        rollover.accept(86398, 1, 1);
+        rollover.accept(20, 1, 1);
+
+        assertEquals(List.of(86395L, DAY + 5L, 86398L, DAY + 20L), timestamps);
+    }
+
+    @Test
+    void testGapOfMoreThanHalfADay_StaysOnSameDay() {
+        rollover.accept(300, 40000, 1);
+        rollover.accept(43800, 20000, 1);
+        rollover.accept(43830, 100, 1);
+        // On a later day too, once past the lateness allowed after midnight
+        rollover.accept(100, 1, 1);
+        rollover.accept(4000, 1, 1);
+        rollover.accept(86000, 1, 1);
+
+        assertEquals(List.of(300L, 43800L, 43830L, DAY + 100L, DAY + 4000L, DAY + 86000L), timestamps);
+    }
+
+    @Test
+    void testDatedTimestamps_Unchanged() {
+        long dated = Timestamps.epochDay(2024, 3, 1) * DAY + 36000;
+        rollover.accept(dated, 1, 1);
+        rollover.accept(dated - 7200, 1, 1);
+
+        assertEquals(List.of(dated, dated - 7200), timestamps);
+    }
+
+    @Test
+    void testResumeAfter_ContinuesOnSameDay() {
+        rollover.resumeAfter(2L * DAY + 86000);
+        rollover.accept(86100, 1, 1);
+        rollover.accept(100, 1, 1);
+
+        assertEquals(List.of(2L * DAY + 86100, 3L * DAY + 100), timestamps);
+    }
+
+    @Test
+    void testLastDayWithoutDate_FailsToRollOver() {
+        rollover.resumeAfter(Timestamps.DATED_FROM - 400);
+        rollover.accept(86300, 1, 1);
+
+        assertThrows(IllegalStateException.class, () -> rollover.accept(100, 1, 1));
+        assertEquals(List.of(Timestamps.DATED_FROM - 100), timestamps);
+    }
+
+    @Test
+    void testWindowSpansMidnight() {
+        AMLTransactionProcessor processor = new AMLTransactionProcessor();
+        List<Boolean> alerts = new ArrayList<>();
+        DayRolloverSink sink = new DayRolloverSink((timestamp, amount, accountId) ->
+                alerts.add(processor.processTransaction(timestamp, amount, accountId)));
+
+        // 40 seconds apart, across midnight: both are in the same window
+        sink.accept(86370, 30000, 1);
+        sink.accept(10, 30000, 1);
+        // Two hours later, the window only holds the new transaction
+        sink.accept(7210, 30000, 1);
+
+        assertEquals(List.of(false, true, false), alerts);
+        assertTrue(Timestamps.isTimeOfDay(DAY + 7210));
+    }
+}
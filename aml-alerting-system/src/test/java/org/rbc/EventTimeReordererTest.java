@@ -0,0 +1,131 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EventTimeReordererTest {
+
+    private final List<int[]> released = new ArrayList<>();
+
+    private final TransactionSink sink = (secondOfDay, amount, accountId) ->
+            released.add(new int[]{(int) secondOfDay, amount, accountId});
+
+    private static void assertSameTransactions(List<int[]> expected, List<int[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(List.of(expected.get(i)[0], expected.get(i)[1], expected.get(i)[2]),
+                    List.of(actual.get(i)[0], actual.get(i)[1], actual.get(i)[2]), "Transaction " + i);
+        }
+    }
+
+    @Test
+    void testLateTransactionsWithinBound_ReleasedInTimeOrder() {
+        EventTimeReorderer reorderer = new EventTimeReorderer(sink, 10);
+        reorderer.accept(100, 1, 1);
+        reorderer.accept(105, 2, 1);
+        reorderer.accept(95, 3, 2);
+        reorderer.accept(100, 4, 2);
+        assertEquals(0, released.size());
+
+        // The watermark moves to 101: the transactions up to 100 are final
+        reorderer.accept(111, 5, 1);
+        assertSameTransactions(List.of(new int[]{95, 3, 2}, new int[]{100, 1, 1}, new int[]{100, 4, 2}), released);
+
+        reorderer.flush();
+        assertEquals(5, released.size());
+        assertEquals(0, reorderer.getDroppedCount());
+    }
+
+    @Test
+    void testTransactionLaterThanBound_Dropped() {
+        EventTimeReorderer reorderer = new EventTimeReorderer(sink, 5);
+        reorderer.accept(100, 1, 1);
+        reorderer.accept(94, 2, 1);
+        reorderer.accept(95, 3, 1);
+        reorderer.accept(200, 4, 1);
+        reorderer.accept(194, 5, 1);
+        reorderer.flush();
+
+        assertSameTransactions(List.of(new int[]{95, 3, 1}, new int[]{100, 1, 1}, new int[]{200, 4, 1}), released);
+        assertEquals(2, reorderer.getDroppedCount());
+    }
+
+    @Test
+    void testZeroLateness_OnlyDropsOutOfOrderTransactions() {
+        EventTimeReorderer reorderer = new EventTimeReorderer(sink, 0);
+        reorderer.accept(10, 1, 1);
+        reorderer.accept(10, 2, 1);
+        reorderer.accept(9, 3, 1);
+        reorderer.accept(11, 4, 1);
+        reorderer.flush();
+
+        assertSameTransactions(List.of(new int[]{10, 1, 1}, new int[]{10, 2, 1}, new int[]{11, 4, 1}), released);
+        assertEquals(1, reorderer.getDroppedCount());
+    }
+
+    @Test
+    void testShuffledWithinBound_SameAsStableSortByTime() {
+        Random random = new Random(8);
+        List<int[]> arrivals = new ArrayList<>();
+        List<Integer> arrivalTimes = new ArrayList<>();
+        int secondOfDay = 0;
+        for (int i = 0; i < 50_000; i++) {
+            secondOfDay += random.nextInt(3) == 0 ? 1 : 0;
+            arrivals.add(new int[]{secondOfDay, i, random.nextInt(100)});
+            // Each transaction is delayed by up to 29 seconds
+            arrivalTimes.add(secondOfDay + random.nextInt(30));
+        }
+        arrivals.sort(Comparator.comparingInt(transaction -> arrivalTimes.get(transaction[1])));
+        List<int[]> expected = new ArrayList<>(arrivals);
+        expected.sort(Comparator.comparingInt(transaction -> transaction[0]));
+
+        EventTimeReorderer reorderer = new EventTimeReorderer(sink, 30);
+        for (int[] transaction : arrivals) {
+            reorderer.accept(transaction[0], transaction[1], transaction[2]);
+        }
+        reorderer.flush();
+
+        assertEquals(0, reorderer.getDroppedCount());
+        assertSameTransactions(expected, released);
+    }
+
+    @Test
+    void testSparseAcrossWheel_SameAsStableSortByTime() {
+        Random random = new Random(9);
+        List<int[]> arrivals = new ArrayList<>();
+        List<Integer> arrivalTimes = new ArrayList<>();
+        int secondOfDay = 0;
+        for (int i = 0; i < 2_000; i++) {
+            // Gaps of up to 15 minutes, so the transactions wrap around the wheel and its bitmap
+            secondOfDay += random.nextInt(4) == 0 ? 0 : random.nextInt(900);
+            arrivals.add(new int[]{secondOfDay, i, random.nextInt(100)});
+            arrivalTimes.add(secondOfDay + random.nextInt(3600));
+        }
+        arrivals.sort(Comparator.comparingInt(transaction -> arrivalTimes.get(transaction[1])));
+        List<int[]> expected = new ArrayList<>(arrivals);
+        expected.sort(Comparator.comparingInt(transaction -> transaction[0]));
+
+        EventTimeReorderer reorderer = new EventTimeReorderer(sink, 3600);
+        for (int[] transaction : arrivals) {
+            reorderer.accept(transaction[0], transaction[1], transaction[2]);
+        }
+        reorderer.flush();
+
+        assertEquals(0, reorderer.getDroppedCount());
+        assertSameTransactions(expected, released);
+    }
+
+    @Test
+    void testInvalidBound() {
+        assertThrows(IllegalArgumentException.class, () -> new EventTimeReorderer(sink, -1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new EventTimeReorderer(sink, EventTimeReorderer.MAX_LATENESS_SECONDS + 1));
+    }
+}
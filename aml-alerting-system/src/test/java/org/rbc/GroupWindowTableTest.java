@@ -0,0 +1,105 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GroupWindowTableTest {
+
+    private static final AlertRuleSet RULES = new AlertRuleSet(List.of(new AlertRule(1, 1000, 60),
+            new AlertRule(2, 1500, 60, AlertRule.Scope.GROUP)));
+
+    private static AccountGroups groups(int... accountsAndGroups) {
+        IntIntHashMap map = new IntIntHashMap();
+        for (int i = 0; i < accountsAndGroups.length; i += 2) {
+            map.put(accountsAndGroups[i], accountsAndGroups[i + 1]);
+        }
+        return AccountGroups.of(map);
+    }
+
+    @Test
+    void testGroupTotal_AcrossAccounts() {
+        GroupWindowTable table = new GroupWindowTable(groups(1, 10, 2, 10), RULES, 4);
+
+        assertEquals(0, table.evaluate(0, 800, 1));
+        assertEquals(0, table.evaluate(10, 600, 2));
+        // 800 + 600 + 200 exceed the group threshold, while neither account exceeds its own
+        assertEquals(0b10, table.evaluate(20, 200, 1));
+        // The first transaction left the window
+        assertEquals(0, table.evaluate(61, 100, 2));
+        assertEquals(0, table.evaluate(62, 100, 3));
+        assertEquals(1, table.getGroupCount());
+        assertArrayEquals(new int[]{2}, RULES.ruleIds(0b10));
+    }
+
+    @Test
+    void testNoGroupRule() {
+        assertThrows(IllegalArgumentException.class, () -> new GroupWindowTable(groups(1, 10),
+                AlertRuleSet.DEFAULT, 4));
+    }
+
+    @Test
+    void testTickets_SameAsSingleThread() throws Exception {
+        IntIntHashMap map = new IntIntHashMap();
+        for (int accountId = 0; accountId < 200; accountId += 2) {
+            map.put(accountId, accountId % 10);
+        }
+        int count = 20_000;
+        long[] timestamps = new long[count];
+        int[] amounts = new int[count];
+        int[] accountIds = new int[count];
+        Random random = new Random(5);
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = i / 10;
+            amounts[i] = random.nextInt(100);
+            accountIds[i] = random.nextInt(200);
+        }
+
+        GroupWindowTable expectedTable = new GroupWindowTable(AccountGroups.of(map), RULES, 4);
+        long[] expected = new long[count];
+        for (int i = 0; i < count; i++) {
+            expected[i] = expectedTable.evaluate(timestamps[i], amounts[i], accountIds[i]);
+        }
+
+        // The transactions are spread over threads by account, which evaluate them at their own pace
+        GroupWindowTable table = new GroupWindowTable(AccountGroups.of(map), RULES, 4);
+        long[] tickets = new long[count];
+        for (int i = 0; i < count; i++) {
+            tickets[i] = table.reserve(accountIds[i]);
+        }
+        int threadCount = 4;
+        long[] results = new long[count];
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < count; i++) {
+                        if (ShardedTransactionEngine.shardOf(accountIds[i], threadCount) == thread)
+                            results[i] = table.evaluate(tickets[i], timestamps[i], amounts[i]);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertArrayEquals(expected, results);
+        assertTrue(Arrays.stream(expected).anyMatch(fired -> fired != 0));
+    }
+}
@@ -0,0 +1,71 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntIntHashMapTest {
+
+    @Test
+    void testPutAndGet() {
+        IntIntHashMap map = new IntIntHashMap();
+        map.put(1, 10);
+        map.put(-5, 20);
+        map.put(0, 30);
+        map.put(1, 11);
+
+        assertEquals(3, map.size());
+        assertEquals(11, map.get(1, -1));
+        assertEquals(20, map.get(-5, -1));
+        assertEquals(30, map.get(0, -1));
+        assertEquals(-1, map.get(2, -1));
+        assertTrue(map.containsKey(0));
+        assertFalse(map.containsKey(2));
+    }
+
+    @Test
+    void testAddTo_MatchesHashMapAcrossResizes() {
+        IntIntHashMap map = new IntIntHashMap(2);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(20_000) - 10_000;
+            assertEquals((int) expected.merge(key, 1, Integer::sum), map.addTo(key, 1));
+        }
+
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals((int) value, map.get(key, 0)));
+    }
+
+    @Test
+    void testKeys_IncludingTheFreeKey() {
+        IntIntHashMap map = new IntIntHashMap(2);
+        for (int key = -5; key <= 5; key++) {
+            map.put(key, key * 10);
+        }
+
+        int[] keys = map.keys();
+        Arrays.sort(keys);
+        assertArrayEquals(new int[]{-5, -4, -3, -2, -1, 0, 1, 2, 3, 4, 5}, keys);
+    }
+
+    @Test
+    void testClear() {
+        IntIntHashMap map = new IntIntHashMap();
+        map.put(0, 1);
+        map.put(7, 1);
+        map.clear();
+
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(0));
+        assertFalse(map.containsKey(7));
+    }
+}
@@ -0,0 +1,69 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Method;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class IoThreadsTest {
+
+    private static boolean isVirtual(Thread thread) throws ReflectiveOperationException {
+        Method isVirtual = Thread.class.getMethod("isVirtual");
+        return (boolean) isVirtual.invoke(thread);
+    }
+
+    @Test
+    void testPlatformThreads_DaemonAndNamed() throws Exception {
+        CompletableFuture<String> name = new CompletableFuture<>();
+        Thread thread = IoThreads.PLATFORM.newThread("aml-test", () -> name.complete(Thread.currentThread().getName()));
+
+        assertTrue(thread.isDaemon());
+        assertFalse(IoThreads.PLATFORM.isVirtual());
+        thread.start();
+        assertEquals("aml-test", name.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testVirtualThreads_UnsupportedBeforeJava21() {
+        assumeFalse(IoThreads.isVirtualSupported());
+
+        assertThrows(UnsupportedOperationException.class, IoThreads::virtual);
+        assertThrows(IllegalArgumentException.class,
+                () -> AMLAlertingOptions.parse(new String[]{"--virtual-threads", "transactions.csv"}));
+    }
+
+    @Test
+    void testVirtualThreads_NamedVirtualThreads() throws Exception {
+        assumeTrue(IoThreads.isVirtualSupported());
+
+        Thread thread = IoThreads.virtual().newThread("aml-test", () -> {
+        });
+        assertTrue(isVirtual(thread));
+        assertEquals("aml-test", thread.getName());
+    }
+
+    @Test
+    void testVirtualThreads_OutputWriter() throws Exception {
+        assumeTrue(IoThreads.isVirtualSupported());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ChannelOutputSink sink = new ChannelOutputSink(Channels.newChannel(out), 0, null, 64,
+                IoThreads.virtual())) {
+            for (int i = 0; i < 100; i++) {
+                sink.onResult(36000 + i, 100, 1, 0);
+            }
+        }
+        assertEquals(100, out.toString(StandardCharsets.US_ASCII).lines().count());
+    }
+}
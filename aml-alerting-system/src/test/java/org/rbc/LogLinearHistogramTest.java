@@ -0,0 +1,77 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogLinearHistogramTest {
+
+    @Test
+    void testBucketOf_RelativeErrorWithinSubBucket() {
+        Random random = new Random(3);
+        for (int i = 0; i < 100_000; i++) {
+            long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+            long highest = LogLinearHistogram.highestValueOf(LogLinearHistogram.bucketOf(value));
+            assertTrue(highest >= value, "Value " + value);
+            assertTrue(highest - value <= value / LogLinearHistogram.SUB_BUCKETS, "Value " + value);
+        }
+    }
+
+    @Test
+    void testBucketOf_SmallValuesAreExact() {
+        for (long value = 0; value < 2 * LogLinearHistogram.SUB_BUCKETS; value++) {
+            assertEquals(value, LogLinearHistogram.highestValueOf(LogLinearHistogram.bucketOf(value)));
+        }
+        assertEquals(Long.MAX_VALUE, LogLinearHistogram.highestValueOf(LogLinearHistogram.bucketOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void testValueAtPercentile() {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        for (int value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(1000, histogram.count());
+        assertEquals(1, histogram.valueAtPercentile(0));
+        assertEquals(500, histogram.valueAtPercentile(50), 500 / LogLinearHistogram.SUB_BUCKETS);
+        assertEquals(990, histogram.valueAtPercentile(99), 990 / LogLinearHistogram.SUB_BUCKETS);
+        assertEquals(1000, histogram.max(), 1000 / LogLinearHistogram.SUB_BUCKETS);
+    }
+
+    @Test
+    void testEmptyAndNegative() {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        assertEquals(0, histogram.max());
+
+        histogram.record(-5);
+        assertEquals(1, histogram.count());
+        assertEquals(0, histogram.max());
+    }
+
+    @Test
+    void testConcurrentRecording() throws InterruptedException {
+        LogLinearHistogram histogram = new LogLinearHistogram(2);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(i % 100);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(400_000, histogram.count());
+        assertEquals(99, histogram.max());
+    }
+}
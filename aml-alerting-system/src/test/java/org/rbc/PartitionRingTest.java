@@ -0,0 +1,80 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartitionRingTest {
+
+    @Test
+    void testPartitions_SpreadOverTheNodes() {
+        PartitionRing ring = new PartitionRing(List.of("9101", "9102", "9103", "9104"));
+
+        int[] counts = ring.getPartitionCounts();
+        int total = 0;
+        for (int count : counts) {
+            assertTrue(count > PartitionRing.PARTITION_COUNT / 4 / 2 && count < PartitionRing.PARTITION_COUNT / 4 * 2,
+                    "Unbalanced nodes");
+            total += count;
+        }
+        assertEquals(PartitionRing.PARTITION_COUNT, total);
+    }
+
+    @Test
+    void testNodeJoining_OnlyTakesPartitions() {
+        PartitionRing before = new PartitionRing(List.of("9101", "9102", "9103"));
+        PartitionRing after = new PartitionRing(List.of("9101", "9102", "9103", "9104"));
+
+        int moved = 0;
+        for (int partition = 0; partition < PartitionRing.PARTITION_COUNT; partition++) {
+            String owner = after.getNodes().get(after.ownerOf(partition));
+            if (!owner.equals(before.getNodes().get(before.ownerOf(partition)))) {
+                assertEquals("9104", owner);
+                moved++;
+            }
+        }
+        assertEquals(after.getPartitionCounts()[3], moved);
+    }
+
+    @Test
+    void testNodeLeaving_OnlyGivesItsPartitions() {
+        PartitionRing before = new PartitionRing(List.of("9101", "9102", "9103"));
+        // The order of the nodes does not matter
+        PartitionRing after = new PartitionRing(List.of("9103", "9101"));
+
+        for (int partition = 0; partition < PartitionRing.PARTITION_COUNT; partition++) {
+            String owner = before.getNodes().get(before.ownerOf(partition));
+            if (!owner.equals("9102"))
+                assertEquals(owner, after.getNodes().get(after.ownerOf(partition)));
+        }
+    }
+
+    @Test
+    void testNodeOf_ThePartitionOfTheAccount() {
+        PartitionRing ring = new PartitionRing(List.of("9101", "9102"));
+
+        for (int accountId = 0; accountId < 1000; accountId++) {
+            assertEquals(ring.ownerOf(PartitionRing.partitionOf(accountId)), ring.nodeOf(accountId));
+        }
+    }
+
+    @Test
+    void testInvalidNodes() {
+        assertThrows(IllegalArgumentException.class, () -> new PartitionRing(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> new PartitionRing(List.of("9101", "9101")));
+    }
+
+    @Test
+    void testAddressOf() {
+        assertEquals(new InetSocketAddress(InetAddress.getLoopbackAddress(), 9101), PartitionRouter.addressOf("9101"));
+        assertEquals(9102, PartitionRouter.addressOf("localhost:9102").getPort());
+        assertThrows(IllegalArgumentException.class, () -> PartitionRouter.addressOf("localhost"));
+        assertThrows(IllegalArgumentException.class, () -> PartitionRouter.addressOf("70000"));
+    }
+}
@@ -0,0 +1,144 @@
+package org.rbc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.rbc.TestTransactions.Result;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.rbc.TestTransactions.expectedResults;
+import static org.rbc.TestTransactions.randomTransactions;
+
+class PartitionRouterTest {
+
+    private static final AlertRuleSet RULES = new AlertRuleSet(List.of(new AlertRule(1, 50_000, 60),
+            new AlertRule(2, 200_000, 600)));
+
+    private final List<PartitionNode> nodes = new ArrayList<>();
+
+    @AfterEach
+    void closeNodes() throws IOException {
+        for (PartitionNode node : nodes) {
+            node.close();
+        }
+    }
+
+    /**
+     * Starts a node on any free port, serving on its own thread.
+     *
+     * @param shards The number of shards of the engine of the node, or 0 for a single thread engine.
+     * @return The name of the node.
+     */
+    private String startNode(AlertRuleSet ruleSet, int shards) throws IOException {
+        PartitionNode node = new PartitionNode(0, ruleSet.windowLayoutHash(), listener -> shards > 0
+                ? new ShardedTransactionEngine(shards, 64, () -> new AMLTransactionProcessor(
+                AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER, false, 0, ruleSet), listener)
+                : new SingleThreadTransactionEngine(() -> new AMLTransactionProcessor(
+                AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER, false, 0, ruleSet), listener));
+        nodes.add(node);
+        Thread thread = new Thread(() -> {
+            try {
+                node.serve();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, "test-node-" + node.getPort());
+        thread.setDaemon(true);
+        thread.start();
+        return String.valueOf(node.getPort());
+    }
+
+    @Test
+    void testResults_SameAsSingleProcessor() throws IOException {
+        List<String> nodes = List.of(startNode(RULES, 0), startNode(RULES, 2), startNode(RULES, 0));
+        TransactionBatch transactions = randomTransactions(50_000, 500, 0.25, 1);
+        List<Result> results = Collections.synchronizedList(new ArrayList<>());
+
+        try (PartitionRouter router = new PartitionRouter(nodes, RULES.windowLayoutHash(), 256,
+                (timestamp, amount, accountId, firedRules) ->
+                        results.add(new Result(timestamp, amount, accountId, firedRules)))) {
+            transactions.forEach(router);
+        }
+
+        List<Result> expected = expectedResults(transactions, RULES);
+        assertEquals(expected, results);
+        assertTrue(expected.stream().anyMatch(result -> result.firedRules() == 0b11));
+    }
+
+    @Test
+    void testMoveTo_WindowsHandedOver_SameAsSingleProcessor() throws IOException {
+        String first = startNode(RULES, 0);
+        String second = startNode(RULES, 2);
+        String third = startNode(RULES, 0);
+        TransactionBatch transactions = randomTransactions(60_000, 500, 0.25, 2);
+        List<Result> results = Collections.synchronizedList(new ArrayList<>());
+
+        try (PartitionRouter router = new PartitionRouter(List.of(first, second), RULES.windowLayoutHash(), 256,
+                (timestamp, amount, accountId, firedRules) ->
+                        results.add(new Result(timestamp, amount, accountId, firedRules)))) {
+            int[] count = {0};
+            transactions.forEach((timestamp, amount, accountId) -> {
+                if (count[0] == 20_000)
+                    router.moveTo(List.of(first, second, third));
+                // Applied before the next transaction
+                if (count[0] == 40_000)
+                    router.requestMove(List.of(third, second));
+                router.accept(timestamp, amount, accountId);
+                count[0]++;
+            });
+            assertEquals(List.of(third, second), router.getRing().getNodes());
+        }
+
+        assertEquals(expectedResults(transactions, RULES), results);
+    }
+
+    @Test
+    void testNodeWithOtherRules_Rejected() throws IOException {
+        String node = startNode(AlertRuleSet.DEFAULT, 0);
+
+        assertThrows(IOException.class, () -> new PartitionRouter(List.of(node), RULES.windowLayoutHash(), 256,
+                (timestamp, amount, accountId, firedRules) -> { }));
+    }
+
+    @Test
+    void testNodeClosingConnection_Reported() throws IOException {
+        // A node closing the connection right after its greeting
+        try (ServerSocket server = new ServerSocket()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            Thread thread = new Thread(() -> {
+                try (Socket socket = server.accept()) {
+                    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                    out.writeInt(PartitionNode.MAGIC);
+                    out.writeInt(PartitionNode.VERSION);
+                    out.writeLong(RULES.windowLayoutHash());
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            thread.start();
+
+            PartitionRouter router = new PartitionRouter(List.of(String.valueOf(server.getLocalPort())),
+                    RULES.windowLayoutHash(), 256, (timestamp, amount, accountId, firedRules) -> { });
+            try {
+                router.accept(0, 100, 1);
+            } catch (IllegalStateException e) {
+                // The connection is already known to be closed
+            }
+
+            assertThrows(IllegalStateException.class, router::close);
+        }
+    }
+}
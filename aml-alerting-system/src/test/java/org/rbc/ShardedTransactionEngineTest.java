@@ -0,0 +1,98 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+import org.rbc.TestTransactions.Result;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.rbc.TestTransactions.expectedResults;
+import static org.rbc.TestTransactions.randomTransactions;
+
+class ShardedTransactionEngineTest {
+
+    @Test
+    void testResultsInInputOrder_SameAsSingleProcessor() {
+        TransactionBatch transactions = randomTransactions(50_000, 300, 0.75, 1);
+        List<Result> results = new ArrayList<>();
+
+        try (ShardedTransactionEngine engine = new ShardedTransactionEngine(4, 8,
+                (timestamp, amount, accountId, firedRules) ->
+                        results.add(new Result(timestamp, amount, accountId, firedRules)))) {
+            transactions.forEach(engine);
+        }
+
+        List<Result> expected = expectedResults(transactions, AlertRuleSet.DEFAULT);
+        assertEquals(expected, results);
+        assertTrue(expected.stream().anyMatch(result -> result.firedRules() != 0));
+    }
+
+    @Test
+    void testSingleShard() {
+        TransactionBatch transactions = randomTransactions(1000, 10, 0.75, 2);
+        List<Result> results = new ArrayList<>();
+
+        try (ShardedTransactionEngine engine = new ShardedTransactionEngine(1,
+                (timestamp, amount, accountId, firedRules) ->
+                        results.add(new Result(timestamp, amount, accountId, firedRules)))) {
+            transactions.forEach(engine);
+        }
+
+        assertEquals(expectedResults(transactions, AlertRuleSet.DEFAULT), results);
+    }
+
+    @Test
+    void testGroups_SameAsSingleProcessor() {
+        TransactionBatch transactions = randomTransactions(50_000, 300, 0.75, 3);
+        AlertRuleSet ruleSet = new AlertRuleSet(List.of(new AlertRule(1, 50_000, 60),
+                new AlertRule(2, 80_000, 60, AlertRule.Scope.GROUP)));
+        IntIntHashMap groups = new IntIntHashMap();
+        for (int accountId = 0; accountId < 300; accountId += 3) {
+            groups.put(accountId, accountId / 30);
+        }
+
+        AMLTransactionProcessor single = new AMLTransactionProcessor(
+                AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER, false, 0, ruleSet, null,
+                new GroupWindowTable(AccountGroups.of(groups), ruleSet, 4));
+        List<Long> expected = new ArrayList<>();
+        transactions.forEach((timestamp, amount, accountId) ->
+                expected.add(single.evaluateTransaction(timestamp, amount, accountId)));
+
+        GroupWindowTable groupWindows = new GroupWindowTable(AccountGroups.of(groups), ruleSet, 4);
+        List<Long> results = new ArrayList<>();
+        try (ShardedTransactionEngine engine = new ShardedTransactionEngine(4, 8,
+                () -> new AMLTransactionProcessor(AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER, false, 0,
+                        ruleSet, null, groupWindows),
+                (timestamp, amount, accountId, firedRules) -> results.add(firedRules))) {
+            transactions.forEach(engine);
+        }
+
+        assertEquals(expected, results);
+        assertTrue(expected.contains(0b10L));
+    }
+
+    @Test
+    void testListenerFailure_ReportedOnClose() {
+        ShardedTransactionEngine engine = new ShardedTransactionEngine(2, 4,
+                (timestamp, amount, accountId, firedRules) -> {
+                    throw new IllegalStateException("Output failure");
+                });
+        engine.accept(0, 100, 1);
+
+        assertThrows(IllegalStateException.class, engine::close);
+    }
+
+    @Test
+    void testShardOf_SpreadsAccounts() {
+        int[] counts = new int[8];
+        for (int accountId = 0; accountId < 8000; accountId++) {
+            counts[ShardedTransactionEngine.shardOf(accountId, counts.length)]++;
+        }
+        for (int count : counts) {
+            assertTrue(count > 800 && count < 1200, "Unbalanced shards");
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.rbc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random transactions and their results from a single processor, to compare the engines spreading the accounts over
+ * several threads or nodes with.
+ */
+final class TestTransactions {
+
+    record Result(long timestamp, int amount, int accountId, long firedRules) {
+    }
+
+    private TestTransactions() {
+    }
+
+    /**
+     * @param secondsPerTransaction The time between two consecutive transactions, e.g. 0.25 for 4 per second.
+     */
+    static TransactionBatch randomTransactions(int count, int accounts, double secondsPerTransaction, long seed) {
+        TransactionBatch batch = new TransactionBatch(count);
+        Random random = new Random(seed);
+        for (int i = 0; i < count; i++) {
+            batch.accept((long) (i * secondsPerTransaction), random.nextInt(30_000), random.nextInt(accounts));
+        }
+        return batch;
+    }
+
+    /**
+     * @return The results of the transactions processed in order by a single processor.
+     */
+    static List<Result> expectedResults(TransactionBatch transactions, AlertRuleSet ruleSet) {
+        AMLTransactionProcessor processor = new AMLTransactionProcessor(
+                AMLTransactionProcessor.ConcurrencyMode.SINGLE_WRITER, false, 0, ruleSet);
+        List<Result> results = new ArrayList<>();
+        transactions.forEach((timestamp, amount, accountId) -> results.add(new Result(timestamp, amount,
+                accountId, processor.evaluateTransaction(timestamp, amount, accountId))));
+        return results;
+    }
+}
@@ -0,0 +1,76 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimestampsTest {
+
+    private static long parse(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        return AMLCSVByteParser.parseTimestamp(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    @Test
+    void testEpochDay_SameAsLocalDate() {
+        for (LocalDate date = LocalDate.of(1968, 1, 1); date.getYear() < 2104; date = date.plusDays(1)) {
+            assertEquals(date.toEpochDay(), Timestamps.epochDay(date.getYear(), date.getMonthValue(),
+                    date.getDayOfMonth()), date.toString());
+            assertEquals(date.lengthOfMonth(), Timestamps.lengthOfMonth(date.getYear(), date.getMonthValue()));
+        }
+    }
+
+    @Test
+    void testParseTimestamp_DateAndTime() {
+        LocalDateTime dateTime = LocalDateTime.of(2024, 2, 29, 23, 59, 58);
+        long expected = dateTime.toEpochSecond(ZoneOffset.UTC);
+
+        assertEquals(expected, parse("2024-02-29T23:59:58"));
+        assertEquals(expected, parse("2024-02-29 23:59:58"));
+        assertEquals(expected, parse("2024-02-29T23:59:58.250"));
+        assertFalse(Timestamps.isTimeOfDay(expected));
+        assertEquals(23 * 3600 + 59 * 60 + 58, Timestamps.secondOfDay(expected));
+    }
+
+    @Test
+    void testParseTimestamp_TimeOfDayWithoutDate() {
+        assertEquals(36000, parse("10:00:00"));
+        assertEquals(36000, parse("10:00"));
+        assertTrue(Timestamps.isTimeOfDay(parse("23:59:59")));
+    }
+
+    @Test
+    void testParseTimestamp_InvalidDates() {
+        assertThrows(DateTimeParseException.class, () -> parse("2023-02-29T10:00:00"));
+        assertThrows(DateTimeParseException.class, () -> parse("2024-13-01T10:00:00"));
+        assertThrows(DateTimeParseException.class, () -> parse("2024-01-01X10:00:00"));
+        assertThrows(DateTimeParseException.class, () -> parse("1970-06-01T10:00:00"));
+        assertThrows(DateTimeParseException.class, () -> parse("2024-01-01T24:00:00"));
+    }
+
+    @Test
+    void testFormat_SameAsJavaTime() {
+        Random random = new Random(17);
+        for (int i = 0; i < 10_000; i++) {
+            long timestamp = Timestamps.DATED_FROM
+                    + (long) (random.nextDouble() * 200 * 365 * Timestamps.SECONDS_PER_DAY);
+            LocalDateTime dateTime = LocalDateTime.ofEpochSecond(timestamp, 0, ZoneOffset.UTC);
+            assertEquals(dateTime.toString(), Timestamps.format(timestamp));
+            assertEquals(timestamp, parse(Timestamps.format(timestamp)));
+        }
+        assertEquals("10:02:30", Timestamps.format(36150));
+        assertEquals(LocalTime.of(0, 0, 10).toString(), Timestamps.format(Timestamps.SECONDS_PER_DAY + 10));
+    }
+}
@@ -0,0 +1,112 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionRingBufferTest {
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    /**
+     * Consumes the ring on another thread until it is drained, checking that the transactions arrive in order.
+     *
+     * @param received The number of transactions received so far, updated by the consumer.
+     */
+    private static CompletableFuture<Long> consumeAsync(TransactionRingBuffer ring, AtomicLong received) {
+        return CompletableFuture.supplyAsync(() -> {
+            while (!ring.isDrained()) {
+                if (ring.poll((timestamp, amount, accountId) -> {
+                    if (timestamp != received.get() || amount != (int) timestamp * 3 || accountId != timestamp % 7)
+                        throw new AssertionError("Transaction " + received.get() + " received as " + timestamp);
+                    received.incrementAndGet();
+                }) == 0)
+                    ring.awaitPublished();
+            }
+            return received.get();
+        });
+    }
+
+    @Test
+    void testBlockingProducer_AllTransactionsInOrder() throws Exception {
+        TransactionRingBuffer ring = new TransactionRingBuffer(8, TransactionRingBuffer.OverflowPolicy.BLOCK);
+        AtomicLong received = new AtomicLong();
+        CompletableFuture<Long> consumer = consumeAsync(ring, received);
+
+        int count = 200_000;
+        List<Long> expectedPositions = new ArrayList<>();
+        List<Long> commandPositions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            assertTrue(ring.offer(i, i * 3, i % 7));
+            if (i % 10_000 == 0) {
+                // The command runs after the transactions published before it, and before the following ones
+                expectedPositions.add(i + 1L);
+                ring.offer(() -> commandPositions.add(received.get()));
+            }
+        }
+        ring.close();
+
+        assertEquals(count, consumer.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(expectedPositions, commandPositions);
+        assertEquals(0, ring.getShedCount());
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    void testSheddingProducer_DropsWhenFull() {
+        TransactionRingBuffer ring = new TransactionRingBuffer(4, TransactionRingBuffer.OverflowPolicy.SHED);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i, i * 3, i % 7));
+        }
+        assertFalse(ring.offer(4, 12, 4));
+        assertEquals(1, ring.getShedCount());
+        assertEquals(4, ring.size());
+
+        List<Long> received = new ArrayList<>();
+        // A batch is at most a quarter of the ring
+        assertEquals(1, ring.poll((timestamp, amount, accountId) -> received.add(timestamp)));
+        assertTrue(ring.offer(5, 15, 5));
+        while (ring.poll((timestamp, amount, accountId) -> received.add(timestamp)) > 0) {
+        }
+        assertEquals(List.of(0L, 1L, 2L, 3L, 5L), received);
+    }
+
+    @Test
+    void testCommandsAreNeverShed() throws Exception {
+        TransactionRingBuffer ring = new TransactionRingBuffer(2, TransactionRingBuffer.OverflowPolicy.SHED);
+        ring.offer(0, 0, 0);
+        ring.offer(1, 3, 1);
+        assertFalse(ring.offer(2, 6, 2));
+
+        // The command waits for the consumer to free a slot
+        CompletableFuture<Long> consumer = consumeAsync(ring, new AtomicLong());
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        ring.offer(() -> done.complete(null));
+        ring.close();
+
+        done.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(2, consumer.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testClosed_RejectsTransactions() {
+        TransactionRingBuffer ring = new TransactionRingBuffer(4, TransactionRingBuffer.OverflowPolicy.BLOCK);
+        ring.offer(0, 0, 0);
+        ring.close();
+
+        assertThrows(IllegalStateException.class, () -> ring.offer(1, 3, 1));
+        assertFalse(ring.isDrained());
+        assertEquals(1, ring.poll((timestamp, amount, accountId) -> {
+        }));
+        assertTrue(ring.isDrained());
+    }
+}
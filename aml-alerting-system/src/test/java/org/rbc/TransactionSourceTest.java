@@ -0,0 +1,182 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class TransactionSourceTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Reads the source on another thread, queuing the transactions as "secondOfDay,amount,accountId".
+     */
+    private static CompletableFuture<Void> readAsync(TransactionSource source, BlockingQueue<String> transactions) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                source.forEachTransaction((secondOfDay, amount, accountId) ->
+                        transactions.add(secondOfDay + "," + amount + "," + accountId));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private static String take(BlockingQueue<String> transactions) throws InterruptedException {
+        return transactions.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testFollowedFile_RowsAppendedAfterTheEndAreRead() throws Exception {
+        Path file = tempDir.resolve("stream.csv");
+        Files.writeString(file, "Time,Amount,AccountId\n10:00:00,100,1\n");
+        BlockingQueue<String> transactions = new LinkedBlockingQueue<>();
+
+        TransactionSource source = new ChannelTransactionSource(new TailingFileChannel(file, 10));
+        CompletableFuture<Void> reading = readAsync(source, transactions);
+        assertEquals("36000,100,1", take(transactions));
+
+        Files.writeString(file, "10:00:01,200,2\n10:00:", StandardOpenOption.APPEND);
+        assertEquals("36001,200,2", take(transactions));
+        Files.writeString(file, "02,300,3\n", StandardOpenOption.APPEND);
+        assertEquals("36002,300,3", take(transactions));
+
+        source.close();
+        reading.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNull(transactions.poll());
+    }
+
+    @Test
+    void testSocket_RowsOfSeveralConnectionsAreRead() throws Exception {
+        BlockingQueue<String> transactions = new LinkedBlockingQueue<>();
+        SocketTransactionSource source = new SocketTransactionSource(0);
+        CompletableFuture<Void> reading = readAsync(source, transactions);
+
+        try (Socket first = new Socket(InetAddress.getLoopbackAddress(), source.getPort());
+             Socket second = new Socket(InetAddress.getLoopbackAddress(), source.getPort())) {
+            send(first, "Time,Amount,AccountId\n10:00:00,100,1\n");
+            assertEquals("36000,100,1", take(transactions));
+            send(second, "Time,Amount,AccountId\n10:00:01,200,2\n");
+            assertEquals("36001,200,2", take(transactions));
+            send(first, "10:00:02,300,1\n");
+            assertEquals("36002,300,1", take(transactions));
+        }
+
+        source.close();
+        reading.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testSocket_ConnectionsReadByVirtualThreads() throws Exception {
+        assumeTrue(IoThreads.isVirtualSupported());
+        BlockingQueue<String> transactions = new LinkedBlockingQueue<>();
+        SocketTransactionSource source = new SocketTransactionSource(0, IoThreads.virtual());
+        CompletableFuture<Void> reading = readAsync(source, transactions);
+
+        try (Socket first = new Socket(InetAddress.getLoopbackAddress(), source.getPort());
+             Socket second = new Socket(InetAddress.getLoopbackAddress(), source.getPort())) {
+            send(first, "Time,Amount,AccountId\n10:00:00,100,1\n");
+            assertEquals("36000,100,1", take(transactions));
+            send(second, "Time,Amount,AccountId\n10:00:01,200,2\n");
+            assertEquals("36001,200,2", take(transactions));
+        }
+
+        source.close();
+        reading.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testSocket_InvalidRowOnlyClosesItsConnection() throws Exception {
+        BlockingQueue<String> transactions = new LinkedBlockingQueue<>();
+        SocketTransactionSource source = new SocketTransactionSource(0);
+        CompletableFuture<Void> reading = readAsync(source, transactions);
+
+        try (Socket invalid = new Socket(InetAddress.getLoopbackAddress(), source.getPort())) {
+            send(invalid, "Time,Amount,AccountId\n10:00:00,abc,1\n");
+            // The source closes the connection
+            assertEquals(-1, invalid.getInputStream().read());
+        }
+        try (Socket valid = new Socket(InetAddress.getLoopbackAddress(), source.getPort())) {
+            send(valid, "Time,Amount,AccountId\n10:00:00,100,1\n");
+            assertEquals("36000,100,1", take(transactions));
+        }
+
+        source.close();
+        reading.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testSocket_ProcessingFailureStopsTheSource() throws Exception {
+        SocketTransactionSource source = new SocketTransactionSource(0);
+        CompletableFuture<Void> reading = CompletableFuture.runAsync(() -> {
+            try {
+                source.forEachTransaction((secondOfDay, amount, accountId) -> {
+                    throw new IllegalStateException("The processing of a transaction failed");
+                });
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), source.getPort())) {
+            send(socket, "Time,Amount,AccountId\n10:00:00,100,1\n");
+            Exception exception = assertThrows(Exception.class, () -> reading.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertEquals(IllegalStateException.class, exception.getCause().getClass());
+        }
+    }
+
+    @Test
+    void testEngineWritesResultsWhenIdle() throws Exception {
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        TransactionResultListener listener = new TransactionResultListener() {
+            private final StringBuilder buffered = new StringBuilder();
+
+            @Override
+            public void onResult(long timestamp, int amount, int accountId, long firedRules) {
+                buffered.append(accountId).append(firedRules != 0 ? "Y" : "N").append(' ');
+            }
+
+            @Override
+            public void onIdle() {
+                lines.add(buffered.toString().trim());
+                buffered.setLength(0);
+            }
+        };
+
+        for (TransactionEngine engine : List.of(new SingleThreadTransactionEngine(listener),
+                new ShardedTransactionEngine(2, listener))) {
+            try (engine) {
+                engine.accept(36000, 60000, 1);
+                // The result is flushed without waiting for more transactions or for the engine to be closed
+                assertEquals("1Y", take(lines));
+            }
+        }
+    }
+
+    private static void send(Socket socket, String data) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(data.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
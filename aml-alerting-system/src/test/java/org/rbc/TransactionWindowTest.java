@@ -0,0 +1,86 @@
+package org.rbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionWindowTest {
+
+    @Test
+    void testAdd_EvictsTransactionsOutsideWindow() {
+        TransactionWindow window = new TransactionWindow(60);
+
+        assertEquals(100, window.add(0, 100));
+        assertEquals(300, window.add(30, 200));
+        assertEquals(700, window.add(60, 400));
+        assertEquals(1600, window.add(61, 1000));
+        assertEquals(3, window.size());
+        assertEquals(1000, window.add(200, 1000));
+        assertEquals(1, window.size());
+    }
+
+    @Test
+    void testAdd_GrowsAcrossWrapAround_SameAsDeque() {
+        TransactionWindow window = new TransactionWindow(60);
+        Deque<int[]> expected = new ArrayDeque<>();
+        long expectedTotal = 0;
+        Random random = new Random(3);
+        int secondOfDay = 0;
+
+        for (int i = 0; i < 20_000; i++) {
+            // Bursts of transactions in the same second make the window grow, pauses make it shrink
+            secondOfDay += random.nextInt(100) < 95 ? 0 : random.nextInt(90);
+            int amount = random.nextInt(1000);
+            while (!expected.isEmpty() && expected.peekFirst()[0] < secondOfDay - 60) {
+                expectedTotal -= expected.removeFirst()[1];
+            }
+            expected.addLast(new int[]{secondOfDay, amount});
+            expectedTotal += amount;
+
+            assertEquals(expectedTotal, window.add(secondOfDay, amount));
+            assertEquals(expected.size(), window.size());
+            assertEquals(expected.peekFirst()[0], window.oldestTimestamp());
+            assertEquals(secondOfDay, window.newestTimestamp());
+        }
+    }
+
+    @Test
+    void testNestedWindows_SameAsSeparateWindows() {
+        int[] durations = {0, 10, 60, 3600};
+        TransactionWindow nested = new TransactionWindow(durations);
+        TransactionWindow[] separate = new TransactionWindow[durations.length];
+        for (int w = 0; w < durations.length; w++) {
+            separate[w] = new TransactionWindow(durations[w]);
+        }
+        Random random = new Random(7);
+        int secondOfDay = 0;
+
+        for (int i = 0; i < 20_000; i++) {
+            secondOfDay += random.nextInt(100) < 90 ? 0 : random.nextInt(30);
+            int amount = random.nextInt(1000);
+            assertEquals(separate[durations.length - 1].add(secondOfDay, amount), nested.add(secondOfDay, amount));
+            for (int w = 0; w < durations.length - 1; w++) {
+                separate[w].add(secondOfDay, amount);
+            }
+            for (int w = 0; w < durations.length; w++) {
+                assertEquals(separate[w].total(), nested.total(w));
+            }
+            assertEquals(separate[durations.length - 1].size(), nested.size());
+        }
+    }
+
+    @Test
+    void testNoWindow_KeepsNothing() {
+        TransactionWindow window = new TransactionWindow(new int[0]);
+        window.add(0, 100);
+        assertEquals(0, window.size());
+        assertTrue(window.isExpiredAt(0));
+        assertEquals(WindowSummary.NO_TIMESTAMP, window.oldestTimestamp());
+        assertEquals(WindowSummary.NO_TIMESTAMP, window.newestTimestamp());
+    }
+}
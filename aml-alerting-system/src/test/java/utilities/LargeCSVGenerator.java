@@ -1,50 +1,199 @@
 package utilities;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Random;
-import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 
 /**
  * This class generates a large CSV file containing simulated banking transactions.
  * The CSV file will have three columns: Time, Amount, and AccountId.
- * The number of transactions per account is defined by {@link #TRANSACTIONS_PER_ACCOUNT},
- * and the total number of accounts is defined by {@link #NUM_ACCOUNTS}.
- * The total number of transactions generated is the product of the number of accounts and transactions per account.
+ * <p>
+ * The data is parameterized by the number of accounts, the rate of transactions per second, the distribution of the
+ * transactions among the accounts and the distribution of the amounts, so the same generator can produce the
+ * workloads of the tests and of the benchmarks. The transactions start at 9:00 and are in chronological order.
+ * The generation is deterministic for a given seed.
  */
 public class LargeCSVGenerator {
-    private static final int NUM_ACCOUNTS = 2; // More than 5000 accounts
-    private static final int TRANSACTIONS_PER_ACCOUNT = 10001; // Reduced for brevity in output
-    private static final int TOTAL_TRANSACTIONS = NUM_ACCOUNTS * TRANSACTIONS_PER_ACCOUNT;
-    private static final Random RANDOM = new Random();
+    private static final int NUM_ACCOUNTS = 2;
+    private static final int TRANSACTIONS_PER_ACCOUNT = 10001;
+    private static final int START_SECOND_OF_DAY = 9 * 3600; // Start at 9:00 AM
+    private static final int SECONDS_PER_DAY = 24 * 3600;
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
 
-    public static Stream<String> generateTransactions() {
-        LocalTime startTime = LocalTime.of(9, 0); // Start at 9:00 AM
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss");
+    /**
+     * How the transactions are spread among the accounts.
+     */
+    public enum AccountDistribution {
+        /**
+         * The accounts take turns, as in the original data set.
+         */
+        ROUND_ROBIN,
+        /**
+         * Each transaction picks an account at random.
+         */
+        UNIFORM,
+        /**
+         * A few accounts get most of the transactions: the id is drawn from the square of a uniform variable, so the
+         * lowest ids are the hottest.
+         */
+        SKEWED
+    }
+
+    /**
+     * How the amounts are drawn.
+     */
+    public enum AmountDistribution {
+        /**
+         * Between 1000 and 61000, as in the original data set.
+         */
+        UNIFORM,
+        /**
+         * A Pareto distribution of mostly small amounts with a few very large ones, capped at 1000000.
+         */
+        HEAVY_TAILED
+    }
+
+    /**
+     * Receives the generated transactions without any string formatting.
+     */
+    @FunctionalInterface
+    public interface TransactionConsumer {
+        void accept(int secondOfDay, int amount, int accountId);
+    }
 
-        return Stream.concat(
-                Stream.of("Time,Amount,AccountId"), // Header
-                IntStream.range(0, TOTAL_TRANSACTIONS)
-                        .mapToObj(i -> {
-                            int accountId = i % NUM_ACCOUNTS + 1; // Ensure all accounts are used
-                            int amount = RANDOM.nextInt(60000) + 1000; // Random amount between 1000 and 60000
-                            LocalTime transactionTime = startTime.plusSeconds(i);
+    private final int accountCount;
+    private final int ratePerSecond;
+    private final AccountDistribution accountDistribution;
+    private final AmountDistribution amountDistribution;
+    private final long seed;
+
+    /**
+     * @param accountCount        The number of distinct accounts, with ids from 1.
+     * @param ratePerSecond       The number of transactions per second.
+     * @param accountDistribution How the transactions are spread among the accounts.
+     * @param amountDistribution  How the amounts are drawn.
+     * @param seed                The seed of the random generator.
+     */
+    public LargeCSVGenerator(int accountCount, int ratePerSecond, AccountDistribution accountDistribution,
+                             AmountDistribution amountDistribution, long seed) {
+        if (accountCount < 1 || ratePerSecond < 1)
+            throw new IllegalArgumentException("The account count and the rate must be positive");
+        this.accountCount = accountCount;
+        this.ratePerSecond = ratePerSecond;
+        this.accountDistribution = accountDistribution;
+        this.amountDistribution = amountDistribution;
+        this.seed = seed;
+    }
+
+    /**
+     * Generates transactions and hands them to the consumer in chronological order.
+     *
+     * @param count The number of transactions.
+     * @throws IllegalArgumentException If the transactions do not fit in a day at this rate.
+     */
+    public void generate(int count, TransactionConsumer consumer) {
+        if (START_SECOND_OF_DAY + (long) count / ratePerSecond >= SECONDS_PER_DAY)
+            throw new IllegalArgumentException("The transactions do not fit in a day at " + ratePerSecond + "/s");
+
+        Random random = new Random(seed);
+        for (int i = 0; i < count; i++) {
+            consumer.accept(START_SECOND_OF_DAY + i / ratePerSecond, nextAmount(random), nextAccountId(random, i));
+        }
+    }
 
-                            return String.format("%s,%d,%d",
-                                    transactionTime.format(formatter),
-                                    amount,
-                                    accountId);
-                        })
-        );
+    private int nextAccountId(Random random, int index) {
+        return switch (accountDistribution) {
+            case ROUND_ROBIN -> index % accountCount + 1;
+            case UNIFORM -> random.nextInt(accountCount) + 1;
+            case SKEWED -> {
+                double u = random.nextDouble();
+                yield (int) (u * u * accountCount) + 1;
+            }
+        };
     }
 
+    private int nextAmount(Random random) {
+        return switch (amountDistribution) {
+            case UNIFORM -> random.nextInt(60000) + 1000; // Random amount between 1000 and 60000
+            case HEAVY_TAILED -> (int) Math.min(1000 / Math.pow(1 - random.nextDouble(), 1 / 1.5), 1_000_000);
+        };
+    }
+
+    /**
+     * @return The header and the lines of the CSV file.
+     */
+    public Stream<String> lines(int count) {
+        Stream.Builder<String> lines = Stream.builder();
+        lines.add("Time,Amount,AccountId");
+        generate(count, (secondOfDay, amount, accountId) -> lines.add(
+                LocalTime.ofSecondOfDay(secondOfDay).format(FORMATTER) + "," + amount + "," + accountId));
+        return lines.build();
+    }
+
+    /**
+     * Writes a CSV file of transactions.
+     *
+     * @param count The number of transactions.
+     */
+    public void writeCsv(Path path, int count) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("Time,Amount,AccountId\n");
+            IOException[] failure = new IOException[1];
+            generate(count, (secondOfDay, amount, accountId) -> {
+                if (failure[0] != null)
+                    return;
+                try {
+                    writer.write(LocalTime.ofSecondOfDay(secondOfDay).format(FORMATTER));
+                    writer.write(',');
+                    writer.write(Integer.toString(amount));
+                    writer.write(',');
+                    writer.write(Integer.toString(accountId));
+                    writer.write('\n');
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null)
+                throw failure[0];
+        }
+    }
+
+    /**
+     * @return The original data set: 2 accounts taking turns, one transaction per second.
+     */
+    public static Stream<String> generateTransactions() {
+        return new LargeCSVGenerator(NUM_ACCOUNTS, 1, AccountDistribution.ROUND_ROBIN, AmountDistribution.UNIFORM,
+                new Random().nextLong()).lines(NUM_ACCOUNTS * TRANSACTIONS_PER_ACCOUNT);
+    }
+
+    /**
+     * Prints transactions to the standard output.
+     * Arguments, all optional: {@code <transactions> <accounts> <ratePerSecond> <ROUND_ROBIN|UNIFORM|SKEWED>
+     * <UNIFORM|HEAVY_TAILED> <seed>}. Without arguments, prints the original data set.
+     */
     public static void main(String[] args) {
-        // Print all generated transactions
-        generateTransactions().forEach(System.out::println);
+        if (args.length == 0) {
+            generateTransactions().forEach(System.out::println);
+            System.err.println("Total lines generated: " + (NUM_ACCOUNTS * TRANSACTIONS_PER_ACCOUNT + 1));
+            return;
+        }
+
+        int count = Integer.parseInt(args[0]);
+        LargeCSVGenerator generator = new LargeCSVGenerator(
+                args.length > 1 ? Integer.parseInt(args[1]) : NUM_ACCOUNTS,
+                args.length > 2 ? Integer.parseInt(args[2]) : 1,
+                args.length > 3 ? AccountDistribution.valueOf(args[3]) : AccountDistribution.ROUND_ROBIN,
+                args.length > 4 ? AmountDistribution.valueOf(args[4]) : AmountDistribution.UNIFORM,
+                args.length > 5 ? Long.parseLong(args[5]) : 0);
+        generator.lines(count).forEach(System.out::println);
 
         // Print total number of lines (including header) to stderr
-        System.err.println("Total lines generated: " + (TOTAL_TRANSACTIONS + 1));
+        System.err.println("Total lines generated: " + (count + 1));
     }
 }